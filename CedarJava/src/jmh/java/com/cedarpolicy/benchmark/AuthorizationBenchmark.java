@@ -0,0 +1,181 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy.benchmark;
+
+import static com.cedarpolicy.CedarJson.objectReader;
+import static com.cedarpolicy.CedarJson.objectWriter;
+
+import com.cedarpolicy.BasicAuthorizationEngine;
+import com.cedarpolicy.model.AuthorizationRequest;
+import com.cedarpolicy.model.AuthorizationResponse;
+import com.cedarpolicy.model.PartialAuthorizationRequest;
+import com.cedarpolicy.model.PartialAuthorizationResponse;
+import com.cedarpolicy.model.entity.Entity;
+import com.cedarpolicy.model.entity.EntityStore;
+import com.cedarpolicy.model.exception.AuthException;
+import com.cedarpolicy.model.exception.InternalException;
+import com.cedarpolicy.model.policy.CompiledPolicySet;
+import com.cedarpolicy.model.policy.PolicySet;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of a single authorization request, end to end and by stage.
+ *
+ * <p>{@link #isAuthorized()} is the full cost of a call. Its stages are measured as follows:
+ * <ul>
+ *     <li>Java serialization: {@link #serializeRequest()} produces the same JSON the engine sends.</li>
+ *     <li>Response deserialization: {@link #deserializeResponse()} parses a response of the same shape.</li>
+ *     <li>Rust evaluation: {@link #isAuthorizedWithHandles()} evaluates against policies and entities already
+ *     resident in the native library, so that only a small request crosses JNI.</li>
+ *     <li>JNI crossing and native parsing of the payload: the remainder of {@link #isAuthorized()}.</li>
+ * </ul>
+ *
+ * <p>{@link #isAuthorizedCbor()} and {@link #isAuthorizedWithHandlesCbor()} make the same calls with
+ * {@link BasicAuthorizationEngine.WireFormat#CBOR}, for comparison with the default JSON wire format.
+ *
+ * <p>The default parameters cover the whole range and take a long time to run; select a subset with
+ * <code>-p policyCount=10,1000 -p entityCount=10</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthorizationBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int policyCount;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int entityCount;
+
+    @Param({"1", "8"})
+    public int hierarchyDepth;
+
+    @Param({"1", "64"})
+    public int contextSize;
+
+    private final BasicAuthorizationEngine engine = new BasicAuthorizationEngine();
+    private final BasicAuthorizationEngine cborEngine = BasicAuthorizationEngine.builder()
+            .wireFormat(BasicAuthorizationEngine.WireFormat.CBOR)
+            .build();
+    private PolicySet policySet;
+    private Set<Entity> entities;
+    private AuthorizationRequest request;
+    private PartialAuthorizationRequest partialRequest;
+    private CompiledPolicySet compiledPolicySet;
+    private EntityStore entityStore;
+    private String responseJson;
+
+    /** The JSON document the engine sends for {@link #isAuthorized()}. */
+    private static final class AuthorizationCall extends AuthorizationRequest {
+        @JsonProperty private final PolicySet policies;
+        @JsonProperty private final Set<Entity> entities;
+
+        AuthorizationCall(AuthorizationRequest request, PolicySet policies, Set<Entity> entities) {
+            super(request.principalEUID, request.actionEUID, request.resourceEUID, request.context, request.schema,
+                    request.enableRequestValidation);
+            this.policies = policies;
+            this.entities = entities;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws InternalException {
+        policySet = BenchmarkData.policies(policyCount, entityCount, hierarchyDepth);
+        final List<Entity> entityList = BenchmarkData.entities(entityCount, hierarchyDepth);
+        entities = new HashSet<>(entityList);
+        request = new AuthorizationRequest(BenchmarkData.user(0), BenchmarkData.VIEW, BenchmarkData.photo(0),
+                BenchmarkData.context(contextSize));
+        partialRequest = PartialAuthorizationRequest.builder()
+                .principal(BenchmarkData.user(0))
+                .action(BenchmarkData.VIEW)
+                .context(BenchmarkData.context(contextSize))
+                .build();
+        compiledPolicySet = CompiledPolicySet.compile(policySet);
+        entityStore = EntityStore.create(entityList);
+
+        final StringBuilder reasons = new StringBuilder();
+        for (int i = 0; i < Math.min(policyCount, 10); i++) {
+            reasons.append(i == 0 ? "\"p" : ",\"p").append(i).append('"');
+        }
+        responseJson = "{\"type\":\"success\",\"response\":{\"decision\":\"allow\",\"diagnostics\":{\"reason\":["
+                + reasons + "],\"errors\":[]}},\"warnings\":[]}";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        compiledPolicySet.close();
+        entityStore.close();
+    }
+
+    @Benchmark
+    public AuthorizationResponse isAuthorized() throws AuthException {
+        return engine.isAuthorized(request, policySet, entities);
+    }
+
+    @Benchmark
+    public AuthorizationResponse isAuthorizedWithHandles() throws AuthException {
+        return engine.isAuthorized(request, compiledPolicySet, entityStore);
+    }
+
+    @Benchmark
+    public AuthorizationResponse isAuthorizedCbor() throws AuthException {
+        return cborEngine.isAuthorized(request, policySet, entities);
+    }
+
+    @Benchmark
+    public AuthorizationResponse isAuthorizedWithHandlesCbor() throws AuthException {
+        return cborEngine.isAuthorized(request, compiledPolicySet, entityStore);
+    }
+
+    @Benchmark
+    public PartialAuthorizationResponse isAuthorizedPartial() throws AuthException {
+        return engine.isAuthorizedPartial(partialRequest, policySet, entities);
+    }
+
+    @Benchmark
+    public String serializeRequest() throws JsonProcessingException {
+        return objectWriter().writeValueAsString(new AuthorizationCall(request, policySet, entities));
+    }
+
+    @Benchmark
+    public AuthorizationResponse deserializeResponse() throws IOException {
+        return objectReader().forType(AuthorizationResponse.class).readValue(responseJson);
+    }
+}
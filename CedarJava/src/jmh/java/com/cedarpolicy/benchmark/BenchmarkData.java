@@ -0,0 +1,129 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy.benchmark;
+
+import com.cedarpolicy.model.entity.Entity;
+import com.cedarpolicy.model.policy.Policy;
+import com.cedarpolicy.model.policy.PolicySet;
+import com.cedarpolicy.value.EntityTypeName;
+import com.cedarpolicy.value.EntityUID;
+import com.cedarpolicy.value.PrimLong;
+import com.cedarpolicy.value.Value;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates policies, entities and contexts of a given size for the benchmarks.
+ *
+ * <p>Entities are users, each a member of a group at the bottom of a chain of <code>hierarchyDepth</code> groups,
+ * and photos. Every policy permits the members of the group at the top of one chain to view one photo, provided the
+ * context carries a high enough <code>level</code>.
+ */
+final class BenchmarkData {
+    static final EntityTypeName USER = EntityTypeName.parse("User").get();
+    static final EntityTypeName GROUP = EntityTypeName.parse("Group").get();
+    static final EntityTypeName PHOTO = EntityTypeName.parse("Photo").get();
+    static final EntityUID VIEW = EntityTypeName.parse("Action").get().of("view");
+
+    /** Schema covering the generated policies and entities. */
+    static final String SCHEMA = "entity Group in [Group];\n"
+            + "entity User in [Group];\n"
+            + "entity Photo;\n"
+            + "action view appliesTo { principal: User, resource: Photo, context: { level: Long } };\n";
+
+    private static final int USERS_PER_CHAIN = 100;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Number of group chains for <code>entityCount</code> entities.
+     *
+     * @param entityCount total number of entities
+     * @return number of chains, at least one
+     */
+    static int chains(int entityCount) {
+        return Math.max(1, entityCount / USERS_PER_CHAIN);
+    }
+
+    static PolicySet policies(int policyCount, int entityCount, int hierarchyDepth) {
+        final int chains = chains(entityCount);
+        final Set<Policy> policies = new HashSet<>();
+        for (int i = 0; i < policyCount; i++) {
+            final String text = "permit(principal in " + group(hierarchyDepth - 1, i % chains)
+                    + ", action == " + VIEW + ", resource == " + photo(i) + ") when { context.level > " + (i % 10)
+                    + " };";
+            policies.add(new Policy(text, "p" + i));
+        }
+        return new PolicySet(policies);
+    }
+
+    /**
+     * Generate about <code>entityCount</code> entities: the groups of every chain, one photo per chain, and users
+     * making up the rest.
+     */
+    static List<Entity> entities(int entityCount, int hierarchyDepth) {
+        final int chains = chains(entityCount);
+        final List<Entity> entities = new ArrayList<>(entityCount);
+        for (int chain = 0; chain < chains; chain++) {
+            for (int level = 0; level < hierarchyDepth; level++) {
+                final Set<EntityUID> parents = new HashSet<>();
+                if (level + 1 < hierarchyDepth) {
+                    parents.add(group(level + 1, chain));
+                }
+                entities.add(new Entity(group(level, chain), parents));
+            }
+            entities.add(new Entity(photo(chain)));
+        }
+        for (int i = 0; entities.size() < entityCount; i++) {
+            final Set<EntityUID> parents = new HashSet<>();
+            parents.add(group(0, i % chains));
+            entities.add(new Entity(user(i), parents));
+        }
+        return entities;
+    }
+
+    /**
+     * Generate a context with <code>contextSize</code> attributes, one of which is the <code>level</code> the
+     * policies test.
+     */
+    static Map<String, Value> context(int contextSize) {
+        final Map<String, Value> context = new HashMap<>();
+        context.put("level", new PrimLong(5));
+        for (int i = 1; i < contextSize; i++) {
+            context.put("attr" + i, new PrimLong(i));
+        }
+        return context;
+    }
+
+    static EntityUID user(int i) {
+        return USER.of("user" + i);
+    }
+
+    static EntityUID group(int level, int chain) {
+        return GROUP.of("g" + level + "_" + chain);
+    }
+
+    static EntityUID photo(int i) {
+        return PHOTO.of("photo" + i);
+    }
+}
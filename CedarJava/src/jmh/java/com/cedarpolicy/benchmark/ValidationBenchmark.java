@@ -0,0 +1,88 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy.benchmark;
+
+import com.cedarpolicy.BasicAuthorizationEngine;
+import com.cedarpolicy.model.EntityValidationRequest;
+import com.cedarpolicy.model.ValidationRequest;
+import com.cedarpolicy.model.ValidationResponse;
+import com.cedarpolicy.model.exception.AuthException;
+import com.cedarpolicy.model.exception.InternalException;
+import com.cedarpolicy.model.schema.Schema;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of policy and entity validation against a schema parsed once up front. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int policyCount;
+
+    @Param({"10", "1000", "100000"})
+    public int entityCount;
+
+    @Param({"1", "8"})
+    public int hierarchyDepth;
+
+    private final BasicAuthorizationEngine engine = new BasicAuthorizationEngine();
+    private Schema schema;
+    private ValidationRequest validationRequest;
+    private EntityValidationRequest entityValidationRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InternalException {
+        schema = Schema.parse(Schema.JsonOrCedar.Cedar, BenchmarkData.SCHEMA);
+        validationRequest = new ValidationRequest(schema,
+                BenchmarkData.policies(policyCount, entityCount, hierarchyDepth));
+        entityValidationRequest = new EntityValidationRequest(schema,
+                BenchmarkData.entities(entityCount, hierarchyDepth));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        schema.close();
+    }
+
+    @Benchmark
+    public ValidationResponse validate() throws AuthException {
+        return engine.validate(validationRequest);
+    }
+
+    @Benchmark
+    public void validateEntities() throws AuthException {
+        engine.validateEntities(entityValidationRequest);
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy;
+
+import com.cedarpolicy.model.AuthorizationRequest;
+import com.cedarpolicy.model.AuthorizationResponse;
+import com.cedarpolicy.model.EntityValidationRequest;
+import com.cedarpolicy.model.PartialAuthorizationRequest;
+import com.cedarpolicy.model.PartialAuthorizationResponse;
+import com.cedarpolicy.model.ValidationRequest;
+import com.cedarpolicy.model.ValidationResponse;
+import com.cedarpolicy.model.entity.Entity;
+import com.cedarpolicy.model.entity.EntityStore;
+import com.cedarpolicy.model.exception.AuthException;
+import com.cedarpolicy.model.policy.CompiledPolicySet;
+import com.cedarpolicy.model.policy.PolicySet;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the calls of an {@link AuthorizationEngine} on a bounded pool of Java threads and returns their results as
+ * {@link CompletableFuture}s, so that callers such as event loops never block on Cedar.
+ *
+ * <p>Calls wait for a free thread in a bounded queue. Once the queue is full, further calls are not queued and do not
+ * block: their futures fail immediately with a {@link RejectedExecutionException}, which callers can use to shed load
+ * or retry later. Calls made after {@link #close()} fail the same way.
+ *
+ * <p>Futures are completed on the pool threads, so dependent stages added with the non-async methods of
+ * {@link CompletableFuture}, such as <code>thenApply</code>, also run there unless the future is already complete.
+ * Stages that may block or take long should be added with the async methods instead.
+ */
+public final class AsyncAuthorizationEngine implements AutoCloseable {
+    private static final AtomicInteger ENGINE_COUNTER = new AtomicInteger(0);
+
+    private final AuthorizationEngine delegate;
+    private final ThreadPoolExecutor executor;
+
+    private AsyncAuthorizationEngine(AuthorizationEngine delegate, ThreadPoolExecutor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    /**
+     * Create an asynchronous engine in front of a {@link BasicAuthorizationEngine}, with the default pool. Cedar runs
+     * directly on the pool threads ({@link BasicAuthorizationEngine.ExecutionMode#CALLING_THREAD}), whose stacks are
+     * large enough for it.
+     *
+     * @return The asynchronous engine
+     */
+    public static AsyncAuthorizationEngine create() {
+        return builder(new BasicAuthorizationEngine(BasicAuthorizationEngine.ExecutionMode.CALLING_THREAD)).build();
+    }
+
+    /**
+     * Creates a builder of an asynchronous engine in front of <code>delegate</code>.
+     *
+     * @param delegate The engine whose calls are run on the pool
+     * @return The builder
+     */
+    public static Builder builder(AuthorizationEngine delegate) {
+        return new Builder(delegate);
+    }
+
+    public static final class Builder {
+        private final AuthorizationEngine delegate;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int queueCapacity = -1;
+        private long threadStackSize = 16L * 1024 * 1024;
+
+        private Builder(AuthorizationEngine delegate) {
+            this.delegate = Objects.requireNonNull(delegate, "delegate");
+        }
+
+        /**
+         * Set the number of pool threads, which is the number of calls run at the same time. Defaults to the number
+         * of available processors.
+         *
+         * @param count Number of threads
+         * @return The builder.
+         * @throws IllegalArgumentException if <code>count</code> is not positive
+         */
+        public Builder threads(int count) throws IllegalArgumentException {
+            if (count <= 0) {
+                throw new IllegalArgumentException("Thread count must be positive: " + count);
+            }
+            this.threads = count;
+            return this;
+        }
+
+        /**
+         * Set the number of calls that may wait for a free thread. Calls beyond that are rejected. Defaults to 16 per
+         * thread.
+         *
+         * @param capacity Maximum number of waiting calls
+         * @return The builder.
+         * @throws IllegalArgumentException if <code>capacity</code> is not positive
+         */
+        public Builder queueCapacity(int capacity) throws IllegalArgumentException {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("Queue capacity must be positive: " + capacity);
+            }
+            this.queueCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * Set the stack size of the pool threads. Evaluating deeply nested policies needs a large stack when Cedar
+         * runs on the calling thread. Defaults to 16 MiB.
+         *
+         * @param bytes Stack size in bytes
+         * @return The builder.
+         * @throws IllegalArgumentException if <code>bytes</code> is not positive
+         */
+        public Builder threadStackSize(long bytes) throws IllegalArgumentException {
+            if (bytes <= 0) {
+                throw new IllegalArgumentException("Stack size must be positive: " + bytes);
+            }
+            this.threadStackSize = bytes;
+            return this;
+        }
+
+        /**
+         * Build the asynchronous engine and start its pool threads.
+         *
+         * @return The asynchronous engine.
+         */
+        public AsyncAuthorizationEngine build() {
+            final String prefix = "cedar-async-" + ENGINE_COUNTER.incrementAndGet() + "-";
+            final long stackSize = threadStackSize;
+            final AtomicInteger threadCounter = new AtomicInteger(0);
+            final ThreadFactory threadFactory = runnable -> {
+                final Thread thread = new Thread(null, runnable, prefix + threadCounter.incrementAndGet(), stackSize);
+                thread.setDaemon(true);
+                return thread;
+            };
+            final int capacity = queueCapacity > 0 ? queueCapacity : 16 * threads;
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(capacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+            executor.prestartAllCoreThreads();
+            return new AsyncAuthorizationEngine(delegate, executor);
+        }
+    }
+
+    /**
+     * Asynchronous {@link AuthorizationEngine#isAuthorized(AuthorizationRequest, PolicySet, Set)}.
+     *
+     * @param request The request to evaluate
+     * @param policySet The policy set to evaluate against
+     * @param entities The entities to evaluate against
+     * @return The response, or an {@link AuthException} or {@link RejectedExecutionException} failure
+     */
+    public CompletableFuture<AuthorizationResponse> isAuthorizedAsync(AuthorizationRequest request,
+                                                                     PolicySet policySet, Set<Entity> entities) {
+        return submit(() -> delegate.isAuthorized(request, policySet, entities));
+    }
+
+    /**
+     * Asynchronous {@link AuthorizationEngine#isAuthorized(AuthorizationRequest, CompiledPolicySet, Set)}.
+     *
+     * @param request The request to evaluate
+     * @param policySet The compiled policy set to evaluate against
+     * @param entities The entities to evaluate against
+     * @return The response, or an {@link AuthException} or {@link RejectedExecutionException} failure
+     */
+    public CompletableFuture<AuthorizationResponse> isAuthorizedAsync(AuthorizationRequest request,
+                                                                     CompiledPolicySet policySet,
+                                                                     Set<Entity> entities) {
+        return submit(() -> delegate.isAuthorized(request, policySet, entities));
+    }
+
+    /**
+     * Asynchronous {@link AuthorizationEngine#isAuthorized(AuthorizationRequest, PolicySet, EntityStore)}.
+     *
+     * @param request The request to evaluate
+     * @param policySet The policy set to evaluate against
+     * @param entityStore The entity store to evaluate against
+     * @return The response, or an {@link AuthException} or {@link RejectedExecutionException} failure
+     */
+    public CompletableFuture<AuthorizationResponse> isAuthorizedAsync(AuthorizationRequest request,
+                                                                     PolicySet policySet, EntityStore entityStore) {
+        return submit(() -> delegate.isAuthorized(request, policySet, entityStore));
+    }
+
+    /**
+     * Asynchronous {@link AuthorizationEngine#isAuthorized(AuthorizationRequest, CompiledPolicySet, EntityStore)}.
+     *
+     * @param request The request to evaluate
+     * @param policySet The compiled policy set to evaluate against
+     * @param entityStore The entity store to evaluate against
+     * @return The response, or an {@link AuthException} or {@link RejectedExecutionException} failure
+     */
+    public CompletableFuture<AuthorizationResponse> isAuthorizedAsync(AuthorizationRequest request,
+                                                                     CompiledPolicySet policySet,
+                                                                     EntityStore entityStore) {
+        return submit(() -> delegate.isAuthorized(request, policySet, entityStore));
+    }
+
+    /**
+     * Asynchronous {@link AuthorizationEngine#isAuthorizedBatch(List, PolicySet, Set)}. The batch occupies a single
+     * pool thread.
+     *
+     * @param requests The requests to evaluate
+     * @param policySet The policy set to evaluate against
+     * @param entities The entities to evaluate against
+     * @return The responses, or an {@link AuthException} or {@link RejectedExecutionException} failure
+     */
+    public CompletableFuture<List<AuthorizationResponse>> isAuthorizedBatchAsync(List<AuthorizationRequest> requests,
+                                                                                PolicySet policySet,
+                                                                                Set<Entity> entities) {
+        return submit(() -> delegate.isAuthorizedBatch(requests, policySet, entities));
+    }
+
+    /**
+     * Asynchronous {@link AuthorizationEngine#isAuthorizedPartial(PartialAuthorizationRequest, PolicySet, Set)}.
+     *
+     * @param request The request to evaluate
+     * @param policySet The policy set to evaluate against
+     * @param entities The entities to evaluate against
+     * @return The response, or an {@link AuthException} or {@link RejectedExecutionException} failure
+     */
+    @Experimental(ExperimentalFeature.PARTIAL_EVALUATION)
+    public CompletableFuture<PartialAuthorizationResponse> isAuthorizedPartialAsync(
+            PartialAuthorizationRequest request, PolicySet policySet, Set<Entity> entities) {
+        return submit(() -> delegate.isAuthorizedPartial(request, policySet, entities));
+    }
+
+    /**
+     * Asynchronous {@link AuthorizationEngine#validate(ValidationRequest)}.
+     *
+     * @param request The request containing the policies to validate and the schema to validate them against
+     * @return The response, or an {@link AuthException} or {@link RejectedExecutionException} failure
+     */
+    public CompletableFuture<ValidationResponse> validateAsync(ValidationRequest request) {
+        return submit(() -> delegate.validate(request));
+    }
+
+    /**
+     * Asynchronous {@link AuthorizationEngine#validateEntities(EntityValidationRequest)}.
+     *
+     * @param request The request containing the entities to validate and the schema to validate them against
+     * @return A future completed once the entities are found valid, or an {@link AuthException} or
+     *     {@link RejectedExecutionException} failure
+     */
+    public CompletableFuture<Void> validateEntitiesAsync(EntityValidationRequest request) {
+        return submit(() -> {
+            delegate.validateEntities(request);
+            return null;
+        });
+    }
+
+    /**
+     * Get the engine whose calls are run on the pool.
+     *
+     * @return The underlying engine
+     */
+    public AuthorizationEngine getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Get the number of calls waiting for a free thread.
+     *
+     * @return Number of queued calls
+     */
+    public int getQueuedCalls() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stop accepting calls. Calls already queued still run, and the pool threads exit once they are done.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /** A call to the underlying engine. */
+    @FunctionalInterface
+    private interface Call<T> {
+        T call() throws AuthException;
+    }
+
+    private <T> CompletableFuture<T> submit(Call<T> call) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                if (future.isDone()) {
+                    // Cancelled while queued
+                    return;
+                }
+                try {
+                    future.complete(call.call());
+                } catch (Throwable e) {
+                    // Errors such as a stack overflow must not leave the future pending forever
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+}
@@ -20,8 +20,12 @@ import com.cedarpolicy.model.*;
 import com.cedarpolicy.model.exception.AuthException;
 import com.cedarpolicy.model.exception.BadRequestException;
 import com.cedarpolicy.model.entity.Entity;
+import com.cedarpolicy.model.entity.EntityStore;
+import com.cedarpolicy.model.policy.CompiledPolicySet;
 import com.cedarpolicy.model.policy.PolicySet;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -51,6 +55,84 @@ public interface AuthorizationEngine {
      */
     AuthorizationResponse isAuthorized(AuthorizationRequest request, PolicySet policySet, Set<Entity> entities) throws AuthException;
 
+    /**
+     * Asks whether the given AuthorizationRequest <code>q</code> is approved by the precompiled
+     * <code>policySet</code> and <code>entities</code> hierarchy given. Implementations that cannot make use of the
+     * compiled form fall back to the policy set it was compiled from.
+     *
+     * @param request The request to evaluate
+     * @param policySet The compiled policy set to evaluate against
+     * @param entities The entities to evaluate against
+     * @return The result of the request evaluation
+     * @throws AuthException On failure to make the authorization request. Note that errors inside the
+     *     authorization engine are included in the <code>errors</code> field on the
+     *     AuthorizationResponse.
+     */
+    default AuthorizationResponse isAuthorized(AuthorizationRequest request, CompiledPolicySet policySet,
+                                               Set<Entity> entities) throws AuthException {
+        return isAuthorized(request, policySet.getPolicySet(), entities);
+    }
+
+    /**
+     * Asks whether the given AuthorizationRequest <code>q</code> is approved by the <code>policySet</code> and
+     * the entities held in <code>entityStore</code>. The entities of a store are only held by the native library, so
+     * implementations that do not evaluate requests there cannot support this.
+     *
+     * @param request The request to evaluate
+     * @param policySet The policy set to evaluate against
+     * @param entityStore The entity store to evaluate against
+     * @return The result of the request evaluation
+     * @throws AuthException On failure to make the authorization request. Note that errors inside the
+     *     authorization engine are included in the <code>errors</code> field on the
+     *     AuthorizationResponse.
+     * @throws UnsupportedOperationException if this engine cannot evaluate requests against an entity store
+     */
+    default AuthorizationResponse isAuthorized(AuthorizationRequest request, PolicySet policySet,
+                                               EntityStore entityStore) throws AuthException {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support entity stores");
+    }
+
+    /**
+     * Asks whether the given AuthorizationRequest <code>q</code> is approved by the precompiled
+     * <code>policySet</code> and the entities held in <code>entityStore</code>.
+     *
+     * @param request The request to evaluate
+     * @param policySet The compiled policy set to evaluate against
+     * @param entityStore The entity store to evaluate against
+     * @return The result of the request evaluation
+     * @throws AuthException On failure to make the authorization request. Note that errors inside the
+     *     authorization engine are included in the <code>errors</code> field on the
+     *     AuthorizationResponse.
+     * @throws UnsupportedOperationException if this engine cannot evaluate requests against an entity store
+     */
+    default AuthorizationResponse isAuthorized(AuthorizationRequest request, CompiledPolicySet policySet,
+                                               EntityStore entityStore) throws AuthException {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support entity stores");
+    }
+
+    /**
+     * Asks whether each of the given AuthorizationRequests is approved by the <code>policySet</code> and
+     * <code>entities</code> hierarchy given. This is equivalent to calling
+     * {@link #isAuthorized(AuthorizationRequest, PolicySet, Set)} for each request, but implementations may
+     * evaluate the whole batch at once, processing the policies and entities only once.
+     *
+     * @param requests The requests to evaluate
+     * @param policySet The policy set to evaluate against
+     * @param entities The entities to evaluate against
+     * @return The result of each request evaluation, in the same order as the requests
+     * @throws AuthException On failure to make the authorization requests. Note that errors inside the
+     *     authorization engine are included in the <code>errors</code> field on each
+     *     AuthorizationResponse.
+     */
+    default List<AuthorizationResponse> isAuthorizedBatch(List<AuthorizationRequest> requests, PolicySet policySet,
+                                                          Set<Entity> entities) throws AuthException {
+        final List<AuthorizationResponse> responses = new ArrayList<>(requests.size());
+        for (AuthorizationRequest request : requests) {
+            responses.add(isAuthorized(request, policySet, entities));
+        }
+        return responses;
+    }
+
     /**
      * Asks whether the given AuthorizationRequest <code>q</code> is approved by the <code>policySet</code> and
      * <code>entities</code> given. If information required to answer is missing, residual policies are returned.
@@ -16,29 +16,52 @@
 
 package com.cedarpolicy;
 
+import static com.cedarpolicy.CedarJson.cborReader;
+import static com.cedarpolicy.CedarJson.cborWriter;
 import static com.cedarpolicy.CedarJson.objectReader;
 import static com.cedarpolicy.CedarJson.objectWriter;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import com.cedarpolicy.loader.LibraryLoader;
+import com.cedarpolicy.metrics.CallMetrics;
+import com.cedarpolicy.metrics.EngineMetricsListener;
+import com.cedarpolicy.metrics.NativeTimings;
 import com.cedarpolicy.model.*;
 import com.cedarpolicy.model.exception.AuthException;
 import com.cedarpolicy.model.exception.BadRequestException;
 import com.cedarpolicy.model.exception.InternalException;
 import com.cedarpolicy.model.exception.MissingExperimentalFeatureException;
 import com.cedarpolicy.model.entity.Entity;
+import com.cedarpolicy.model.entity.EntityStore;
+import com.cedarpolicy.model.policy.CompiledPolicySet;
 import com.cedarpolicy.model.policy.PolicySet;
+import com.cedarpolicy.model.schema.Schema;
+import com.cedarpolicy.value.EntityUID;
+import com.cedarpolicy.value.Value;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /** An authorization engine that is compiled in process. Communicated with via JNI. */
 public final class BasicAuthorizationEngine implements AuthorizationEngine {
@@ -46,17 +69,387 @@ public final class BasicAuthorizationEngine implements AuthorizationEngine {
         LibraryLoader.loadLibrary();
     }
 
-    /** Construct a basic authorization engine. */
-    public BasicAuthorizationEngine() {
+    /** Cedar language version of the native library, checked once by every engine constructor. */
+    private static final String CEDAR_JNI_VERSION = getCedarJNIVersion();
+
+    /** Bit added to the execution mode code to ask the native library for {@link NativeTimings}. */
+    private static final int NATIVE_TIMINGS_FLAG = 0x100;
+
+    private final ExecutionMode executionMode;
+    private final WireFormat wireFormat;
+    private final EntitySlicing entitySlicing;
+    /** Receives the measurements of every call, or null if none are taken. */
+    private final EngineMetricsListener metricsListener;
+    /** Scope indexes of the policy sets this engine has seen, by identity, or null if policies are not indexed. */
+    private final Cache<PolicySet, PolicyScopeIndex> policyScopeIndexes;
+
+    /**
+     * Construct a basic authorization engine.
+     *
+     * @throws IllegalStateException if the native library supports a different Cedar language version
+     */
+    public BasicAuthorizationEngine() throws IllegalStateException {
+        this(ExecutionMode.SPAWN_THREAD);
+    }
+
+    /**
+     * Construct a basic authorization engine that runs Cedar calls as specified by <code>executionMode</code>.
+     *
+     * @param executionMode where Cedar calls are run
+     * @throws IllegalStateException if the native library supports a different Cedar language version
+     */
+    public BasicAuthorizationEngine(ExecutionMode executionMode) throws IllegalStateException {
+        this(executionMode, WireFormat.JSON);
+    }
+
+    /**
+     * Construct a basic authorization engine that runs Cedar calls as specified by <code>executionMode</code> and
+     * exchanges data with the native library in <code>wireFormat</code>.
+     *
+     * @param executionMode where Cedar calls are run
+     * @param wireFormat how requests and responses are encoded
+     * @throws IllegalStateException if the native library supports a different Cedar language version
+     */
+    public BasicAuthorizationEngine(ExecutionMode executionMode, WireFormat wireFormat) throws IllegalStateException {
+        this(executionMode, wireFormat, EntitySlicing.none());
+    }
+
+    /**
+     * Construct a basic authorization engine that runs Cedar calls as specified by <code>executionMode</code>,
+     * exchanges data with the native library in <code>wireFormat</code>, and only sends the entities selected by
+     * <code>entitySlicing</code> with each authorization request.
+     *
+     * @param executionMode where Cedar calls are run
+     * @param wireFormat how requests and responses are encoded
+     * @param entitySlicing which entities are sent with a request
+     * @throws IllegalStateException if the native library supports a different Cedar language version
+     */
+    public BasicAuthorizationEngine(ExecutionMode executionMode, WireFormat wireFormat, EntitySlicing entitySlicing)
+            throws IllegalStateException {
+        this(executionMode, wireFormat, entitySlicing, null, false);
+    }
+
+    private BasicAuthorizationEngine(ExecutionMode executionMode, WireFormat wireFormat, EntitySlicing entitySlicing,
+            EngineMetricsListener metricsListener, boolean policyScopeIndexing) throws IllegalStateException {
+        if (executionMode == null) {
+            throw new NullPointerException("executionMode");
+        }
+        if (wireFormat == null) {
+            throw new NullPointerException("wireFormat");
+        }
+        if (entitySlicing == null) {
+            throw new NullPointerException("entitySlicing");
+        }
+        if (!CEDAR_JNI_VERSION.equals(AuthorizationEngine.getCedarLangVersion())) {
+            throw new IllegalStateException(
+                    "Error, Java Cedar Language version is "
+                            + AuthorizationEngine.getCedarLangVersion()
+                            + " but JNI Cedar Language version is "
+                            + CEDAR_JNI_VERSION);
+        }
+        this.executionMode = executionMode;
+        this.wireFormat = wireFormat;
+        this.entitySlicing = entitySlicing;
+        this.metricsListener = metricsListener;
+        this.policyScopeIndexes = policyScopeIndexing ? CacheBuilder.newBuilder().weakKeys().build() : null;
+    }
+
+    /**
+     * Creates a builder of a basic authorization engine, which can set every option of the engine.
+     *
+     * @return The builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Builder of {@link BasicAuthorizationEngine}. Options that are not set have the defaults of the constructors. */
+    public static final class Builder {
+        private ExecutionMode executionMode = ExecutionMode.SPAWN_THREAD;
+        private WireFormat wireFormat = WireFormat.JSON;
+        private EntitySlicing entitySlicing = EntitySlicing.none();
+        private EngineMetricsListener metricsListener;
+        private boolean policyScopeIndexing;
+
+        private Builder() {
+        }
+
+        /**
+         * Set where Cedar calls are run.
+         *
+         * @param mode The execution mode
+         * @return The builder.
+         */
+        public Builder executionMode(ExecutionMode mode) {
+            this.executionMode = Objects.requireNonNull(mode, "executionMode");
+            return this;
+        }
+
+        /**
+         * Set how requests and responses are encoded.
+         *
+         * @param format The wire format
+         * @return The builder.
+         */
+        public Builder wireFormat(WireFormat format) {
+            this.wireFormat = Objects.requireNonNull(format, "wireFormat");
+            return this;
+        }
+
+        /**
+         * Set which entities are sent with a request.
+         *
+         * @param slicing The entity slicing
+         * @return The builder.
+         */
+        public Builder entitySlicing(EntitySlicing slicing) {
+            this.entitySlicing = Objects.requireNonNull(slicing, "entitySlicing");
+            return this;
+        }
+
+        /**
+         * Measure every call and report it to <code>listener</code>. Without a listener, which is the default,
+         * nothing is measured.
+         *
+         * @param listener The listener, for example an {@link com.cedarpolicy.metrics.EngineMetrics}
+         * @return The builder.
+         */
+        public Builder metricsListener(EngineMetricsListener listener) {
+            this.metricsListener = Objects.requireNonNull(listener, "metricsListener");
+            return this;
+        }
+
+        /**
+         * Send only the static policies whose scope can match a request, as selected by a {@link PolicyScopeIndex}.
+         * The engine indexes every {@link PolicySet} it is given, and indexes it again when it changes. This does
+         * not change responses, and pays off for large policy sets whose policies mostly constrain their scope to
+         * specific entities. Off by default.
+         *
+         * @param enabled Whether to index policies
+         * @return The builder.
+         */
+        public Builder policyScopeIndexing(boolean enabled) {
+            this.policyScopeIndexing = enabled;
+            return this;
+        }
+
+        /**
+         * Build the engine.
+         *
+         * @return The engine.
+         * @throws IllegalStateException if the native library supports a different Cedar language version
+         */
+        public BasicAuthorizationEngine build() throws IllegalStateException {
+            return new BasicAuthorizationEngine(executionMode, wireFormat, entitySlicing, metricsListener,
+                    policyScopeIndexing);
+        }
+    }
+
+    /**
+     * Get the execution mode of this engine.
+     *
+     * @return where Cedar calls are run
+     */
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * Get the wire format of this engine.
+     *
+     * @return how requests and responses are encoded
+     */
+    public WireFormat getWireFormat() {
+        return wireFormat;
+    }
+
+    /**
+     * Get the entity slicing of this engine.
+     *
+     * @return which entities are sent with a request
+     */
+    public EntitySlicing getEntitySlicing() {
+        return entitySlicing;
+    }
+
+    /**
+     * Get the listener receiving the measurements of the calls of this engine.
+     *
+     * @return the listener, if calls are measured
+     */
+    public Optional<EngineMetricsListener> getMetricsListener() {
+        return Optional.ofNullable(metricsListener);
+    }
+
+    /**
+     * Get whether this engine only sends the policies whose scope can match a request.
+     *
+     * @return true if policies are indexed by scope
+     */
+    public boolean isPolicyScopeIndexing() {
+        return policyScopeIndexes != null;
+    }
+
+    /** How an engine encodes the requests it sends to the native library and the responses it gets back. */
+    public enum WireFormat {
+        /** JSON text. This is the default. */
+        JSON,
+        /**
+         * CBOR (RFC 8949), a binary encoding of the same data. This avoids generating and parsing JSON text and the
+         * UTF-16 to UTF-8 conversion of Java strings. Requests on compiled policy sets, entity stores and parsed
+         * schemas, and batches, are decoded directly from CBOR; other requests are transcoded to JSON natively.
+         */
+        CBOR,
+        /**
+         * JSON encoded as UTF-8 into pooled direct buffers, which the native library reads and writes in place. This
+         * avoids copying requests and responses into and out of Java strings, and pays off for large requests such as
+         * ones carrying many entities.
+         */
+        JSON_DIRECT_BUFFER
+    }
+
+    /** Where the native library runs the Cedar calls made by an engine. */
+    public enum ExecutionMode {
+        /**
+         * Run every call on a freshly spawned native thread. This isolates Cedar from the stack size of the calling
+         * thread, at the cost of creating a thread per call. This is the default.
+         */
+        SPAWN_THREAD(0),
+        /**
+         * Run every call directly on the calling Java thread. This is the fastest mode, but evaluating deeply nested
+         * policies needs a large stack, so calling threads should be created with a generous stack size (for example
+         * using {@link Thread#Thread(ThreadGroup, Runnable, String, long)}).
+         */
+        CALLING_THREAD(1),
+        /**
+         * Hand every call to a fixed pool of native threads with large stacks, shared by all engines in the process.
+         * The pool has one thread per available processor; callers block while all workers are busy and the
+         * bounded queue in front of them is full.
+         */
+        WORKER_POOL(2),
+        /**
+         * Hand every call to a shared pool of Java platform threads with large stacks, which run Cedar directly, and
+         * wait for the result. This is meant for callers on virtual threads: a native call pins the carrier thread
+         * of a virtual thread for as long as it runs, whereas waiting for the pool lets the virtual thread unmount,
+         * so that concurrent calls do not starve the carrier threads. The request is still serialized, and the
+         * response parsed, on the calling thread.
+         */
+        PLATFORM_THREAD_POOL(1, true);
+
+        /** The code identifying this mode in the native library. */
+        private final int code;
+        /** Whether native calls are made from {@link PlatformThreadPool} rather than the calling thread. */
+        private final boolean offloaded;
+
+        ExecutionMode(int code) {
+            this(code, false);
+        }
+
+        ExecutionMode(int code, boolean offloaded) {
+            this.code = code;
+            this.offloaded = offloaded;
+        }
     }
 
     @Override
     public AuthorizationResponse isAuthorized(com.cedarpolicy.model.AuthorizationRequest q,
                                               PolicySet policySet, Set<Entity> entities) throws AuthException {
-        final AuthorizationRequest request = new AuthorizationRequest(q, policySet, entities);
+        final Set<Entity> slice = entitySlicing.slice(q, entities);
+        final PolicySet candidates = selectPolicies(q, policySet, entities);
+        try (Schema.HandleLease schema = leaseSchema(q.schema)) {
+            if (schema.getHandle().isPresent()) {
+                // Let the native side reuse the parsed schema instead of parsing it again
+                final HandleAuthorizationRequest request =
+                        new HandleAuthorizationRequest(q, candidates, null, slice, null, schema);
+                return call("AuthorizationHandleOperation", AuthorizationResponse.class, request);
+            }
+        }
+        final AuthorizationRequest request = new AuthorizationRequest(q, candidates, slice);
         return call("AuthorizationOperation", AuthorizationResponse.class, request);
     }
 
+    @Override
+    public AuthorizationResponse isAuthorized(com.cedarpolicy.model.AuthorizationRequest q,
+                                              CompiledPolicySet policySet, Set<Entity> entities) throws AuthException {
+        final Set<Entity> slice = entitySlicing.slice(q, entities);
+        try (Schema.HandleLease schema = leaseSchema(q.schema)) {
+            final HandleAuthorizationRequest request;
+            try {
+                request = new HandleAuthorizationRequest(q, null, policySet.getHandle(), slice, null, schema);
+            } catch (IllegalStateException e) {
+                throw new AuthException("Authorization error caused by closed policy set.", e);
+            }
+            return call("AuthorizationHandleOperation", AuthorizationResponse.class, request);
+        }
+    }
+
+    @Override
+    public AuthorizationResponse isAuthorized(com.cedarpolicy.model.AuthorizationRequest q,
+                                              PolicySet policySet, EntityStore entityStore) throws AuthException {
+        final PolicySet candidates = selectPolicies(q, policySet, null);
+        try (Schema.HandleLease schema = leaseSchema(q.schema)) {
+            final HandleAuthorizationRequest request;
+            try {
+                request = new HandleAuthorizationRequest(q, candidates, null, null, entityStore.getHandle(), schema);
+            } catch (IllegalStateException e) {
+                throw new AuthException("Authorization error caused by closed entity store.", e);
+            }
+            return call("AuthorizationHandleOperation", AuthorizationResponse.class, request);
+        }
+    }
+
+    @Override
+    public AuthorizationResponse isAuthorized(com.cedarpolicy.model.AuthorizationRequest q,
+                                              CompiledPolicySet policySet, EntityStore entityStore)
+            throws AuthException {
+        try (Schema.HandleLease schema = leaseSchema(q.schema)) {
+            final HandleAuthorizationRequest request;
+            try {
+                request = new HandleAuthorizationRequest(q, null, policySet.getHandle(), null, entityStore.getHandle(),
+                        schema);
+            } catch (IllegalStateException e) {
+                throw new AuthException("Authorization error caused by closed policy set or entity store.", e);
+            }
+            return call("AuthorizationHandleOperation", AuthorizationResponse.class, request);
+        }
+    }
+
+    @Override
+    public List<AuthorizationResponse> isAuthorizedBatch(List<com.cedarpolicy.model.AuthorizationRequest> requests,
+                                                         PolicySet policySet, Set<Entity> entities)
+            throws AuthException {
+        if (requests.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // The entities are parsed with the schema, so a batch can only be sent at once if all requests agree on it
+        final Optional<Schema> schema = requests.get(0).schema;
+        for (com.cedarpolicy.model.AuthorizationRequest q : requests) {
+            if (q.schema.orElse(null) != schema.orElse(null)) {
+                return AuthorizationEngine.super.isAuthorizedBatch(requests, policySet, entities);
+            }
+        }
+        final PolicySet candidates = selectPolicies(requests, policySet, entities);
+        final Set<Entity> slice = entitySlicing.slice(requests, entities);
+        final List<AuthorizationResponse> responses;
+        try (Schema.HandleLease lease = leaseSchema(schema)) {
+            final BatchAuthorizationRequest request =
+                    new BatchAuthorizationRequest(requests, schema, lease, candidates, slice);
+            responses = call("AuthorizationBatchOperation",
+                    objectReader().getTypeFactory().constructCollectionType(List.class, AuthorizationResponse.class),
+                    request);
+        }
+        if (responses.size() != requests.size()) {
+            // A batch the native library cannot decode is answered with a single failure
+            if (responses.size() == 1 && responses.get(0).errors.isPresent()) {
+                throw new InternalException(responses.get(0).errors.get().stream()
+                        .map(e -> e.message).toArray(String[]::new));
+            }
+            throw new AuthException("Expected " + requests.size() + " authorization responses but got "
+                    + responses.size());
+        }
+        return responses;
+    }
+
     @Experimental(ExperimentalFeature.PARTIAL_EVALUATION)
     @Override
     public PartialAuthorizationResponse isAuthorizedPartial(com.cedarpolicy.model.PartialAuthorizationRequest q,
@@ -75,12 +468,27 @@ public final class BasicAuthorizationEngine implements AuthorizationEngine {
 
     @Override
     public ValidationResponse validate(ValidationRequest q) throws AuthException {
+        try (Schema.HandleLease schema = q.getSchema().leaseHandle()) {
+            final OptionalLong schemaHandle = schema.getHandle();
+            if (schemaHandle.isPresent()) {
+                final HandleValidationRequest request =
+                        new HandleValidationRequest(schemaHandle.getAsLong(), q.getPolicySet());
+                return call("ValidateHandleOperation", ValidationResponse.class, request);
+            }
+        }
         return call("ValidateOperation", ValidationResponse.class, q);
     }
 
     @Override
     public void validateEntities(EntityValidationRequest q) throws AuthException {
-        EntityValidationResponse entityValidationResponse = call("ValidateEntities", EntityValidationResponse.class, q);
+        final EntityValidationResponse entityValidationResponse;
+        try (Schema.HandleLease schema = q.getSchema().leaseHandle()) {
+            final OptionalLong schemaHandle = schema.getHandle();
+            final Object request = schemaHandle.isPresent()
+                    ? new HandleEntityValidationRequest(schemaHandle.getAsLong(), q.getEntities())
+                    : q;
+            entityValidationResponse = call("ValidateEntities", EntityValidationResponse.class, request);
+        }
         if (!entityValidationResponse.success) {
             if (entityValidationResponse.isInternal) {
                 throw new InternalException(entityValidationResponse.errors.toArray(new String[0]));
@@ -90,24 +498,90 @@ public final class BasicAuthorizationEngine implements AuthorizationEngine {
         }
     }
 
-    private static <REQ, RESP> RESP call(String operation, Class<RESP> responseClass, REQ request)
+    private PolicySet selectPolicies(com.cedarpolicy.model.AuthorizationRequest q, PolicySet policySet,
+                                     Set<Entity> entities) {
+        return selectPolicies(Collections.singletonList(q), policySet, entities);
+    }
+
+    /** The policies of <code>policySet</code> that can apply to <code>requests</code>, if policies are indexed. */
+    private PolicySet selectPolicies(List<com.cedarpolicy.model.AuthorizationRequest> requests, PolicySet policySet,
+                                     Set<Entity> entities) {
+        if (policyScopeIndexes == null || policySet == null) {
+            return policySet;
+        }
+        PolicyScopeIndex index = policyScopeIndexes.getIfPresent(policySet);
+        if (index == null) {
+            index = PolicyScopeIndex.build(policySet);
+            policyScopeIndexes.put(policySet, index);
+        } else if (!index.isBuiltFrom(policySet)) {
+            // Only the policies that changed are converted again
+            index = index.rebuild(policySet);
+            policyScopeIndexes.put(policySet, index);
+        }
+        return index.select(requests, entities);
+    }
+
+    private <REQ, RESP> RESP call(String operation, Class<RESP> responseClass, REQ request)
             throws AuthException {
+        return call(operation, objectReader().getTypeFactory().constructType(responseClass), request);
+    }
+
+    private <REQ, RESP> RESP call(String operation, JavaType responseType, REQ request)
+            throws AuthException {
+        if (metricsListener == null) {
+            return call(operation, responseType, request, null);
+        }
+        final CallMetrics.Builder metrics = CallMetrics.builder(operation, wireFormat);
+        final RESP response;
         try {
-            final String cedarJNIVersion = getCedarJNIVersion();
-            if (!cedarJNIVersion.equals(AuthorizationEngine.getCedarLangVersion())) {
-                throw new AuthException(
-                        "Error, Java Cedar Language version is "
-                                + AuthorizationEngine.getCedarLangVersion()
-                                + " but JNI Cedar Language version is "
-                                + cedarJNIVersion);
+            response = call(operation, responseType, request, metrics);
+        } catch (AuthException | RuntimeException e) {
+            metricsListener.onCall(metrics.failed(true).build());
+            throw e;
+        }
+        metricsListener.onCall(metrics.build());
+        return response;
+    }
+
+    /** Make a call, and if <code>metrics</code> is not null, measure its stages into it. */
+    private <REQ, RESP> RESP call(String operation, JavaType responseType, REQ request, CallMetrics.Builder metrics)
+            throws AuthException {
+        final int mode = metrics == null ? executionMode.code : executionMode.code | NATIVE_TIMINGS_FLAG;
+        try {
+            if (wireFormat == WireFormat.CBOR) {
+                final long start = ticks(metrics);
+                final byte[] fullRequest = cborWriter().writeValueAsBytes(request);
+                final long serialized = ticks(metrics);
+                final byte[] response = callNative(() -> callCedarJNIBinary(operation, fullRequest, mode));
+                final long called = ticks(metrics);
+                final RESP result = reader(cborReader(), responseType, metrics).readValue(response);
+                if (metrics != null) {
+                    metrics.requestSize(fullRequest.length).responseSize(response.length)
+                            .serializationNanos(serialized - start).addNativeNanos(called - serialized)
+                            .deserializationNanos(System.nanoTime() - called);
+                }
+                return result;
+            }
+
+            if (wireFormat == WireFormat.JSON_DIRECT_BUFFER) {
+                return callWithDirectBuffers(operation, responseType, request, mode, metrics);
             }
+
             // Convert the request POJO to a JSON string
+            final long start = ticks(metrics);
             final String fullRequest = objectWriter().writeValueAsString(request);
+            final long serialized = ticks(metrics);
 
-            final String response = callCedarJNI(operation, fullRequest);
+            final String response = callNative(() -> callCedarJNI(operation, fullRequest, mode));
+            final long called = ticks(metrics);
 
-            final JsonNode responseNode = objectReader().readTree(response);
-            return objectReader().readValue(responseNode, responseClass);
+            final RESP result = reader(objectReader(), responseType, metrics).readValue(response);
+            if (metrics != null) {
+                metrics.requestSize(fullRequest.length()).responseSize(response.length())
+                        .serializationNanos(serialized - start).addNativeNanos(called - serialized)
+                        .deserializationNanos(System.nanoTime() - called);
+            }
+            return result;
         } catch (JsonProcessingException e) {
             throw new AuthException("JSON Serialization Error", e);
         } catch (IllegalArgumentException e) {
@@ -117,6 +591,71 @@ public final class BasicAuthorizationEngine implements AuthorizationEngine {
         }
     }
 
+    private <REQ, RESP> RESP callWithDirectBuffers(String operation, JavaType responseType, REQ request, int mode,
+            CallMetrics.Builder metrics) throws IOException {
+        final DirectBufferPool.Buffers buffers = DirectBufferPool.acquire();
+        try {
+            final long start = ticks(metrics);
+            objectWriter().writeValue(buffers.requestStream(), request);
+            long called = ticks(metrics);
+            if (metrics != null) {
+                metrics.serializationNanos(called - start).requestSize(buffers.getInputLength());
+            }
+            int length = callNative(() -> callCedarJNIBuffer(operation, buffers.getInput(), buffers.getInputLength(),
+                    buffers.getOutput(0), mode));
+            if (length < 0) {
+                // The response did not fit. The native library kept it and wrote a handle to it in its place.
+                final long pending = buffers.getOutput(0).getLong(0);
+                ByteBuffer output = null;
+                try {
+                    output = buffers.getOutput(-length);
+                } finally {
+                    length = takeCedarJNIResponse(pending, output);
+                }
+            }
+            if (metrics != null) {
+                final long now = System.nanoTime();
+                metrics.addNativeNanos(now - called).responseSize(length);
+                called = now;
+            }
+            buffers.setOutputLength(length);
+            final RESP result = reader(objectReader(), responseType, metrics).readValue(buffers.responseStream());
+            if (metrics != null) {
+                metrics.deserializationNanos(System.nanoTime() - called);
+            }
+            return result;
+        } finally {
+            DirectBufferPool.release(buffers);
+        }
+    }
+
+    /** The current time if the call is measured, so that unmeasured calls do not read the clock. */
+    private static long ticks(CallMetrics.Builder metrics) {
+        return metrics == null ? 0 : System.nanoTime();
+    }
+
+    /** A reader of <code>responseType</code> that passes the native timings of the response to the metrics. */
+    private static ObjectReader reader(ObjectReader reader, JavaType responseType, CallMetrics.Builder metrics) {
+        final ObjectReader typed = reader.forType(responseType);
+        if (metrics == null) {
+            return typed;
+        }
+        final Consumer<NativeTimings> receiver = metrics::nativeTimings;
+        return typed.withAttribute(NativeTimings.class, receiver);
+    }
+
+    /**
+     * Lease the native schema of a request, so that it is not released before the native call referring to it has
+     * returned.
+     */
+    private static Schema.HandleLease leaseSchema(Optional<Schema> schema) {
+        return schema.isPresent() ? schema.get().leaseHandle() : Schema.HandleLease.NONE;
+    }
+
+    private <T> T callNative(Supplier<T> call) {
+        return executionMode.offloaded ? PlatformThreadPool.run(call) : call.get();
+    }
+
     /**
      * The result of processing an EntityValidationRequest.
      */
@@ -168,6 +707,98 @@ public final class BasicAuthorizationEngine implements AuthorizationEngine {
         }
     }
 
+    /**
+     * An authorization request where the policy set, the entities, or both are passed as native handles. Exactly one
+     * of <code>policies</code> and <code>policySetHandle</code>, and at most one of <code>entities</code> and
+     * <code>entityStoreHandle</code>, are non-null.
+     */
+    private static final class HandleAuthorizationRequest extends com.cedarpolicy.model.AuthorizationRequest {
+        @JsonProperty private final PolicySet policies;
+        @JsonProperty private final Long policySetHandle;
+        @JsonProperty private final Set<Entity> entities;
+        @JsonProperty private final Long entityStoreHandle;
+        @JsonProperty private final Long schemaHandle;
+
+        HandleAuthorizationRequest(com.cedarpolicy.model.AuthorizationRequest request, PolicySet policies,
+                                   Long policySetHandle, Set<Entity> entities, Long entityStoreHandle,
+                                   Schema.HandleLease schema) {
+            super(
+                    request.principalEUID,
+                    request.actionEUID,
+                    request.resourceEUID,
+                    request.context,
+                    request.schema,
+                    request.enableRequestValidation);
+            this.policies = policies;
+            this.policySetHandle = policySetHandle;
+            this.entities = entities;
+            this.entityStoreHandle = entityStoreHandle;
+            final OptionalLong handle = schema.getHandle();
+            this.schemaHandle = handle.isPresent() ? handle.getAsLong() : null;
+        }
+
+        /** The schema is only sent when there is no native schema to refer to. */
+        @JsonProperty("schema")
+        Optional<Schema> getSchemaIfNotNative() {
+            return schemaHandle == null ? schema : Optional.empty();
+        }
+    }
+
+    private static final class BatchAuthorizationRequest {
+        @JsonProperty private final List<AuthorizationQuery> requests;
+        @JsonProperty private final Optional<Schema> schema;
+        @JsonProperty private final Long schemaHandle;
+        @JsonProperty private final PolicySet policies;
+        @JsonProperty private final Set<Entity> entities;
+
+        BatchAuthorizationRequest(List<com.cedarpolicy.model.AuthorizationRequest> requests, Optional<Schema> schema,
+                                  Schema.HandleLease lease, PolicySet policies, Set<Entity> entities) {
+            this.requests = requests.stream().map(AuthorizationQuery::new).collect(Collectors.toList());
+            final OptionalLong handle = lease.getHandle();
+            this.schemaHandle = handle.isPresent() ? handle.getAsLong() : null;
+            this.schema = handle.isPresent() ? Optional.empty() : schema;
+            this.policies = policies;
+            this.entities = entities;
+        }
+    }
+
+    /** One request of a {@link BatchAuthorizationRequest}, without the schema shared by the whole batch. */
+    private static final class AuthorizationQuery {
+        @JsonProperty private final EntityUID principal;
+        @JsonProperty private final EntityUID action;
+        @JsonProperty private final EntityUID resource;
+        @JsonProperty private final Optional<Map<String, Value>> context;
+        @JsonProperty private final boolean validateRequest;
+
+        AuthorizationQuery(com.cedarpolicy.model.AuthorizationRequest request) {
+            this.principal = request.principalEUID;
+            this.action = request.actionEUID;
+            this.resource = request.resourceEUID;
+            this.context = request.context;
+            this.validateRequest = request.enableRequestValidation;
+        }
+    }
+
+    private static final class HandleValidationRequest {
+        @JsonProperty private final long schemaHandle;
+        @JsonProperty private final PolicySet policies;
+
+        HandleValidationRequest(long schemaHandle, PolicySet policies) {
+            this.schemaHandle = schemaHandle;
+            this.policies = policies;
+        }
+    }
+
+    private static final class HandleEntityValidationRequest {
+        @JsonProperty private final long schemaHandle;
+        @JsonProperty private final List<Entity> entities;
+
+        HandleEntityValidationRequest(long schemaHandle, List<Entity> entities) {
+            this.schemaHandle = schemaHandle;
+            this.entities = entities;
+        }
+    }
+
     @JsonInclude(JsonInclude.Include.NON_ABSENT)
     private static final class PartialAuthorizationRequest extends com.cedarpolicy.model.PartialAuthorizationRequest {
         @JsonProperty private final PolicySet policies;
@@ -189,11 +820,52 @@ public final class BasicAuthorizationEngine implements AuthorizationEngine {
     /**
      * Call out to the Rust implementation.
      *
-     * @param call Call type ("AuthorizationOperation" or "ValidateOperation").
+     * @param call Call type ("AuthorizationOperation", "AuthorizationHandleOperation" or "ValidateOperation").
      * @param input Request input in JSON format as a String
+     * @param executionMode Code of the {@link ExecutionMode} to run the call with, with {@link #NATIVE_TIMINGS_FLAG}
+     *     set to add {@link NativeTimings} to authorization responses
      * @return The response (permit / deny for authorization, valid / invalid for validation)
      */
-    private static native String callCedarJNI(String call, String input);
+    private static native String callCedarJNI(String call, String input, int executionMode);
+
+    /**
+     * Call out to the Rust implementation with a CBOR encoded request.
+     *
+     * @param call Call type, as for {@link #callCedarJNI(String, String, int)}
+     * @param input Request input in CBOR format
+     * @param executionMode Code of the {@link ExecutionMode} to run the call with, with {@link #NATIVE_TIMINGS_FLAG}
+     *     set to add {@link NativeTimings} to authorization responses
+     * @return The response in CBOR format
+     */
+    private static native byte[] callCedarJNIBinary(String call, byte[] input, int executionMode);
+
+    /**
+     * Call out to the Rust implementation with a UTF-8 JSON request in a direct buffer. The request is read in place
+     * and the response written to the start of <code>output</code>.
+     *
+     * @param call Call type, as for {@link #callCedarJNI(String, String, int)}
+     * @param input Direct buffer holding the request at its start
+     * @param inputLength Length of the request in bytes
+     * @param output Direct buffer receiving the response
+     * @param executionMode Code of the {@link ExecutionMode} to run the call with, with {@link #NATIVE_TIMINGS_FLAG}
+     *     set to add {@link NativeTimings} to authorization responses
+     * @return The length of the response, or its negated length if it does not fit in <code>output</code>. In that
+     *     case the native library keeps the response, writes the handle to get it with
+     *     {@link #takeCedarJNIResponse(long, ByteBuffer)} to the first 8 bytes of <code>output</code>, and writes
+     *     nothing else
+     */
+    private static native int callCedarJNIBuffer(String call, ByteBuffer input, int inputLength, ByteBuffer output,
+            int executionMode);
+
+    /**
+     * Get a response that {@link #callCedarJNIBuffer(String, ByteBuffer, int, ByteBuffer, int)} kept because it did
+     * not fit in its buffer. The response is written to the start of <code>output</code> and released.
+     *
+     * @param handle Handle of the response
+     * @param output Direct buffer large enough for the response, or null to release the response without reading it
+     * @return The length of the response
+     */
+    private static native int takeCedarJNIResponse(long handle, ByteBuffer output);
 
     /**
      * Get the Cedar language major version supported by the JNI (e.g., "1.2")
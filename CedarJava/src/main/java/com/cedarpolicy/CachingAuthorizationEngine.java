@@ -0,0 +1,464 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy;
+
+import com.cedarpolicy.model.AuthorizationRequest;
+import com.cedarpolicy.model.AuthorizationResponse;
+import com.cedarpolicy.model.EntityValidationRequest;
+import com.cedarpolicy.model.PartialAuthorizationRequest;
+import com.cedarpolicy.model.PartialAuthorizationResponse;
+import com.cedarpolicy.model.ValidationRequest;
+import com.cedarpolicy.model.ValidationResponse;
+import com.cedarpolicy.model.entity.Entity;
+import com.cedarpolicy.model.entity.EntityStore;
+import com.cedarpolicy.model.exception.AuthException;
+import com.cedarpolicy.model.policy.CompiledPolicySet;
+import com.cedarpolicy.model.policy.PolicySet;
+import com.cedarpolicy.model.schema.Schema;
+import com.cedarpolicy.value.EntityUID;
+import com.cedarpolicy.value.Value;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An {@link AuthorizationEngine} that remembers the responses of another engine, so that repeated requests against
+ * unchanged policies and entities are answered without calling Cedar again.
+ *
+ * <p>Responses are keyed on the principal, action, resource, context and schema of the request, together with the
+ * identity of the policies and entities they were evaluated against. They are also keyed on the version of the
+ * policies ({@link PolicySet#getVersion()} or {@link CompiledPolicySet#getCompiledVersion()}) and of an
+ * {@link EntityStore}, so changes made through their methods take effect immediately. Changes to the public fields of
+ * a policy set and to entity sets passed as plain Java objects are not watched: after changing one in place, call
+ * {@link #invalidate(PolicySet)} or {@link #invalidate(Set)}, or pass a new object instead. Cached responses do not
+ * keep the policies, entities and schema they were computed against alive: once one of them is garbage collected, its
+ * responses are dropped.
+ *
+ * <p>Only successful authorization responses are cached. Partial authorization and validation are passed straight
+ * through to the underlying engine.
+ */
+public final class CachingAuthorizationEngine implements AuthorizationEngine {
+    private final AuthorizationEngine delegate;
+    private final Cache<Key, AuthorizationResponse> cache;
+    /** Notified when the policies, entities or schema of a cached response are garbage collected. */
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+    private CachingAuthorizationEngine(AuthorizationEngine delegate, Cache<Key, AuthorizationResponse> cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    /**
+     * Creates a builder of a caching engine in front of <code>delegate</code>.
+     *
+     * @param delegate The engine to call on a cache miss
+     * @return The builder
+     */
+    public static Builder builder(AuthorizationEngine delegate) {
+        return new Builder(delegate);
+    }
+
+    public static final class Builder {
+        private final AuthorizationEngine delegate;
+        private long maximumSize = 10_000;
+        private Duration expireAfterWrite;
+        private Duration expireAfterAccess;
+
+        private Builder(AuthorizationEngine delegate) {
+            this.delegate = Objects.requireNonNull(delegate, "delegate");
+        }
+
+        /**
+         * Set the maximum number of cached responses. When the cache is full, the least recently used responses are
+         * evicted first. Defaults to 10000.
+         *
+         * @param size Maximum number of responses
+         * @return The builder.
+         */
+        public Builder maximumSize(long size) {
+            this.maximumSize = size;
+            return this;
+        }
+
+        /**
+         * Evict responses once <code>ttl</code> has passed since they were computed. By default responses do not
+         * expire.
+         *
+         * @param ttl Time to live of a response
+         * @return The builder.
+         */
+        public Builder expireAfterWrite(Duration ttl) {
+            this.expireAfterWrite = Objects.requireNonNull(ttl, "ttl");
+            return this;
+        }
+
+        /**
+         * Evict responses that have not been used for <code>idle</code>. By default responses do not expire.
+         *
+         * @param idle Time after which an unused response is evicted
+         * @return The builder.
+         */
+        public Builder expireAfterAccess(Duration idle) {
+            this.expireAfterAccess = Objects.requireNonNull(idle, "idle");
+            return this;
+        }
+
+        /**
+         * Build the caching engine.
+         *
+         * @return The caching engine.
+         */
+        public CachingAuthorizationEngine build() {
+            CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats();
+            if (expireAfterWrite != null) {
+                builder = builder.expireAfterWrite(expireAfterWrite);
+            }
+            if (expireAfterAccess != null) {
+                builder = builder.expireAfterAccess(expireAfterAccess);
+            }
+            return new CachingAuthorizationEngine(delegate, builder.build());
+        }
+    }
+
+    @Override
+    public AuthorizationResponse isAuthorized(AuthorizationRequest request, PolicySet policySet,
+                                              Set<Entity> entities) throws AuthException {
+        final LookupKey key = new LookupKey(request, policySet, policySet.getVersion(), entities, 0);
+        final AuthorizationResponse cached = cached(key);
+        if (cached != null) {
+            return cached;
+        }
+        return remember(key, delegate.isAuthorized(request, policySet, entities));
+    }
+
+    @Override
+    public AuthorizationResponse isAuthorized(AuthorizationRequest request, CompiledPolicySet policySet,
+                                              Set<Entity> entities) throws AuthException {
+        final LookupKey key = new LookupKey(request, policySet, policySet.getCompiledVersion(), entities, 0);
+        final AuthorizationResponse cached = cached(key);
+        if (cached != null) {
+            return cached;
+        }
+        return remember(key, delegate.isAuthorized(request, policySet, entities));
+    }
+
+    @Override
+    public AuthorizationResponse isAuthorized(AuthorizationRequest request, PolicySet policySet,
+                                              EntityStore entityStore) throws AuthException {
+        final LookupKey key = new LookupKey(request, policySet, policySet.getVersion(), entityStore, entityStore.getVersion());
+        final AuthorizationResponse cached = cached(key);
+        if (cached != null) {
+            return cached;
+        }
+        return remember(key, delegate.isAuthorized(request, policySet, entityStore));
+    }
+
+    @Override
+    public AuthorizationResponse isAuthorized(AuthorizationRequest request, CompiledPolicySet policySet,
+                                              EntityStore entityStore) throws AuthException {
+        final LookupKey key = new LookupKey(request, policySet, policySet.getCompiledVersion(), entityStore,
+                entityStore.getVersion());
+        final AuthorizationResponse cached = cached(key);
+        if (cached != null) {
+            return cached;
+        }
+        return remember(key, delegate.isAuthorized(request, policySet, entityStore));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Cached responses are answered from the cache, and the remaining requests are passed to the underlying
+     * engine as a single batch.
+     */
+    @Override
+    public List<AuthorizationResponse> isAuthorizedBatch(List<AuthorizationRequest> requests, PolicySet policySet,
+                                                         Set<Entity> entities) throws AuthException {
+        final List<AuthorizationResponse> responses = new ArrayList<>(requests.size());
+        final List<Integer> missing = new ArrayList<>();
+        final List<LookupKey> missingKeys = new ArrayList<>();
+        final List<AuthorizationRequest> missingRequests = new ArrayList<>();
+        final long policiesVersion = policySet.getVersion();
+        for (AuthorizationRequest request : requests) {
+            final LookupKey key = new LookupKey(request, policySet, policiesVersion, entities, 0);
+            final AuthorizationResponse cached = cached(key);
+            if (cached == null) {
+                missing.add(responses.size());
+                missingKeys.add(key);
+                missingRequests.add(request);
+            }
+            responses.add(cached);
+        }
+        if (!missingRequests.isEmpty()) {
+            final List<AuthorizationResponse> computed =
+                    delegate.isAuthorizedBatch(missingRequests, policySet, entities);
+            if (computed.size() != missingRequests.size()) {
+                throw new AuthException("Expected " + missingRequests.size() + " authorization responses but got "
+                        + computed.size());
+            }
+            for (int i = 0; i < computed.size(); i++) {
+                responses.set(missing.get(i), remember(missingKeys.get(i), computed.get(i)));
+            }
+        }
+        return responses;
+    }
+
+    @Override
+    public PartialAuthorizationResponse isAuthorizedPartial(PartialAuthorizationRequest request,
+                                                            PolicySet policySet, Set<Entity> entities)
+            throws AuthException {
+        return delegate.isAuthorizedPartial(request, policySet, entities);
+    }
+
+    @Override
+    public ValidationResponse validate(ValidationRequest request) throws AuthException {
+        return delegate.validate(request);
+    }
+
+    @Override
+    public void validateEntities(EntityValidationRequest request) throws AuthException {
+        delegate.validateEntities(request);
+    }
+
+    /**
+     * Get hit, miss and eviction counts of the cache.
+     *
+     * @return Statistics since this engine was built
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Get the approximate number of cached responses.
+     *
+     * @return Number of cached responses
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Forget the responses computed against <code>policySet</code>, for example after changing it in place.
+     *
+     * @param policySet The policy set whose responses are evicted
+     */
+    public void invalidate(PolicySet policySet) {
+        cache.asMap().keySet().removeIf(key -> key.policies() == policySet);
+    }
+
+    /**
+     * Forget the responses computed against <code>policySet</code>.
+     *
+     * @param policySet The compiled policy set whose responses are evicted
+     */
+    public void invalidate(CompiledPolicySet policySet) {
+        cache.asMap().keySet().removeIf(key -> key.policies() == policySet);
+    }
+
+    /**
+     * Forget the responses computed against <code>entities</code>, for example after changing the set in place.
+     *
+     * @param entities The entities whose responses are evicted
+     */
+    public void invalidate(Set<Entity> entities) {
+        cache.asMap().keySet().removeIf(key -> key.entities() == entities);
+    }
+
+    /** Forget all cached responses. */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private AuthorizationResponse cached(LookupKey key) {
+        dropCollected();
+        return cache.getIfPresent(key);
+    }
+
+    private AuthorizationResponse remember(LookupKey key, AuthorizationResponse response) {
+        if (response.type == AuthorizationResponse.SuccessOrFailure.Success) {
+            cache.put(new StoredKey(key, collected), response);
+        }
+        return response;
+    }
+
+    /** Drop the responses whose policies, entities or schema have been garbage collected since the last call. */
+    private void dropCollected() {
+        if (collected.poll() == null) {
+            return;
+        }
+        while (collected.poll() != null) {
+            // Drain the queue: a single pass over the cache drops the responses of every collected object
+        }
+        cache.asMap().keySet().removeIf(Key::isStale);
+    }
+
+    /**
+     * Cache key. The request values and the versions of the policies and entities are compared by value, and the
+     * policies, entities and schema by identity.
+     */
+    private abstract static class Key {
+        private final EntityUID principal;
+        private final EntityUID action;
+        private final EntityUID resource;
+        private final Map<String, Value> context;
+        private final boolean enableRequestValidation;
+        private final long policiesVersion;
+        private final long entitiesVersion;
+        private final int hash;
+
+        Key(AuthorizationRequest request, Object policies, long policiesVersion, Object entities,
+            long entitiesVersion) {
+            this.principal = request.principalEUID;
+            this.action = request.actionEUID;
+            this.resource = request.resourceEUID;
+            // Requests keep their context immutable, so it can be shared with the cache
+            this.context = request.context.orElse(null);
+            this.enableRequestValidation = request.enableRequestValidation;
+            this.policiesVersion = policiesVersion;
+            this.entitiesVersion = entitiesVersion;
+            this.hash = Objects.hash(principal, action, resource, context,
+                    System.identityHashCode(request.schema.orElse(null)), enableRequestValidation,
+                    System.identityHashCode(policies), policiesVersion, System.identityHashCode(entities),
+                    entitiesVersion);
+        }
+
+        Key(Key key) {
+            this.principal = key.principal;
+            this.action = key.action;
+            this.resource = key.resource;
+            this.context = key.context;
+            this.enableRequestValidation = key.enableRequestValidation;
+            this.policiesVersion = key.policiesVersion;
+            this.entitiesVersion = key.entitiesVersion;
+            this.hash = key.hash;
+        }
+
+        abstract Object policies();
+
+        abstract Object entities();
+
+        abstract Schema schema();
+
+        /** Whether the policies, entities or schema of this key have been garbage collected. */
+        boolean isStale() {
+            return false;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return hash == other.hash
+                    && !isStale()
+                    && !other.isStale()
+                    && policies() == other.policies()
+                    && entities() == other.entities()
+                    && schema() == other.schema()
+                    && policiesVersion == other.policiesVersion
+                    && entitiesVersion == other.entitiesVersion
+                    && enableRequestValidation == other.enableRequestValidation
+                    && Objects.equals(principal, other.principal)
+                    && Objects.equals(action, other.action)
+                    && Objects.equals(resource, other.resource)
+                    && Objects.equals(context, other.context);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /** The key of a request being answered, which refers to its policies, entities and schema directly. */
+    private static final class LookupKey extends Key {
+        private final Object policies;
+        private final Object entities;
+        private final Schema schema;
+
+        LookupKey(AuthorizationRequest request, Object policies, long policiesVersion, Object entities,
+                  long entitiesVersion) {
+            super(request, policies, policiesVersion, entities, entitiesVersion);
+            this.policies = policies;
+            this.entities = entities;
+            this.schema = request.schema.orElse(null);
+        }
+
+        @Override
+        Object policies() {
+            return policies;
+        }
+
+        @Override
+        Object entities() {
+            return entities;
+        }
+
+        @Override
+        Schema schema() {
+            return schema;
+        }
+    }
+
+    /** The key of a cached response, which holds its policies, entities and schema weakly. */
+    private static final class StoredKey extends Key {
+        private final WeakReference<Object> policies;
+        private final WeakReference<Object> entities;
+        private final WeakReference<Schema> schema;
+
+        StoredKey(LookupKey key, ReferenceQueue<Object> queue) {
+            super(key);
+            this.policies = new WeakReference<>(key.policies, queue);
+            this.entities = new WeakReference<>(key.entities, queue);
+            this.schema = key.schema == null ? null : new WeakReference<>(key.schema, queue);
+        }
+
+        @Override
+        Object policies() {
+            return policies.get();
+        }
+
+        @Override
+        Object entities() {
+            return entities.get();
+        }
+
+        @Override
+        Schema schema() {
+            return schema == null ? null : schema.get();
+        }
+
+        @Override
+        boolean isStale() {
+            return policies.get() == null || entities.get() == null || (schema != null && schema.get() == null);
+        }
+    }
+}
@@ -16,10 +16,12 @@
 
 package com.cedarpolicy;
 
+import com.cedarpolicy.model.AuthorizationResponse;
 import com.cedarpolicy.model.entity.Entity;
 import com.cedarpolicy.model.policy.PolicySet;
 import com.cedarpolicy.model.policy.TemplateLink;
 import com.cedarpolicy.model.schema.Schema;
+import com.cedarpolicy.serializer.AuthorizationResponseDeserializer;
 import com.cedarpolicy.serializer.EntitySerializer;
 import com.cedarpolicy.serializer.PolicySetSerializer;
 import com.cedarpolicy.serializer.TemplateLinkSerializer;
@@ -32,10 +34,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 
 public final class CedarJson {
-    private static final ObjectMapper OBJECT_MAPPER = createObjectMapper();
+    private static final ObjectMapper OBJECT_MAPPER = configure(new ObjectMapper());
+    private static final ObjectMapper CBOR_MAPPER = configure(new CBORMapper());
 
     private CedarJson() {
         throw new IllegalStateException("Utility class");
@@ -53,9 +57,27 @@ public final class CedarJson {
         return OBJECT_MAPPER.reader();
     }
 
-    private static ObjectMapper createObjectMapper() {
-        final ObjectMapper mapper = new ObjectMapper();
+    /**
+     * Get a writer producing CBOR (RFC 8949) instead of JSON text, with the same data model as
+     * {@link #objectWriter()}.
+     *
+     * @return a CBOR writer
+     */
+    public static ObjectWriter cborWriter() {
+        return CBOR_MAPPER.writer();
+    }
+
+    /**
+     * Get a reader consuming CBOR (RFC 8949) instead of JSON text, with the same data model as
+     * {@link #objectReader()}.
+     *
+     * @return a CBOR reader
+     */
+    public static ObjectReader cborReader() {
+        return CBOR_MAPPER.reader();
+    }
 
+    private static ObjectMapper configure(ObjectMapper mapper) {
         final SimpleModule module = new SimpleModule();
         module.addSerializer(Entity.class, new EntitySerializer());
         module.addSerializer(Schema.class, new SchemaSerializer());
@@ -64,6 +86,7 @@ public final class CedarJson {
         module.addSerializer(Value.class, new ValueSerializer());
         module.addDeserializer(Value.class, new ValueDeserializer());
         module.addDeserializer(Entity.class, new EntityDeserializer());
+        module.addDeserializer(AuthorizationResponse.class, new AuthorizationResponseDeserializer());
         mapper.registerModule(module);
         mapper.registerModule(new Jdk8Module());
 
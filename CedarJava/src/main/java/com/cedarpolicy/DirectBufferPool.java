@@ -0,0 +1,185 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of direct buffer pairs used by {@link BasicAuthorizationEngine} to pass requests to the native library and get
+ * responses back without going through Java strings. A pair is used by one call at a time. Buffers grow as needed;
+ * pairs that grew beyond {@link #MAX_RETAINED_CAPACITY} are dropped instead of being returned to the pool so that a
+ * single huge request does not pin native memory.
+ */
+final class DirectBufferPool {
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024 * 1024;
+    private static final int MAX_POOLED = 64;
+
+    private static final BlockingQueue<Buffers> POOL = new ArrayBlockingQueue<>(MAX_POOLED);
+
+    private DirectBufferPool() {
+    }
+
+    /**
+     * Take a buffer pair from the pool, or allocate one if the pool is empty.
+     *
+     * @return buffers for exclusive use until they are passed to {@link #release(Buffers)}
+     */
+    static Buffers acquire() {
+        final Buffers buffers = POOL.poll();
+        return buffers != null ? buffers : new Buffers();
+    }
+
+    /**
+     * Return a buffer pair to the pool. Buffers that are too large, or that do not fit in the pool, are left to the
+     * garbage collector.
+     *
+     * @param buffers buffers obtained from {@link #acquire()}, which must no longer be used
+     * @return true if the buffers were returned to the pool
+     */
+    static boolean release(Buffers buffers) {
+        return buffers.input.capacity() <= MAX_RETAINED_CAPACITY
+                && buffers.output.capacity() <= MAX_RETAINED_CAPACITY
+                && POOL.offer(buffers);
+    }
+
+    /** A request buffer and a response buffer. */
+    static final class Buffers {
+        private ByteBuffer input = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+        private ByteBuffer output = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+        private int inputLength;
+        private int outputLength;
+
+        /**
+         * Start writing a new request.
+         *
+         * @return a stream writing to the request buffer, growing it when full
+         */
+        OutputStream requestStream() {
+            inputLength = 0;
+            return new OutputStream() {
+                @Override
+                public void write(int b) {
+                    ensureInputCapacity(1);
+                    input.put(inputLength++, (byte) b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    ensureInputCapacity(len);
+                    final ByteBuffer view = input.duplicate();
+                    ((Buffer) view).position(inputLength);
+                    view.put(b, off, len);
+                    inputLength += len;
+                }
+            };
+        }
+
+        /**
+         * Get the request buffer. The request occupies its first {@link #getInputLength()} bytes.
+         *
+         * @return the request buffer
+         */
+        ByteBuffer getInput() {
+            return input;
+        }
+
+        int getInputLength() {
+            return inputLength;
+        }
+
+        /**
+         * Get the response buffer, growing it to at least <code>minCapacity</code> bytes.
+         *
+         * @param minCapacity minimum capacity
+         * @return the response buffer
+         */
+        ByteBuffer getOutput(int minCapacity) {
+            if (output.capacity() < minCapacity) {
+                output = ByteBuffer.allocateDirect(grow(output.capacity(), minCapacity));
+            }
+            return output;
+        }
+
+        /**
+         * Record the length of the response the native library wrote to the response buffer.
+         *
+         * @param length response length in bytes
+         */
+        void setOutputLength(int length) {
+            outputLength = length;
+        }
+
+        /**
+         * Read the response.
+         *
+         * @return a stream over the response recorded by {@link #setOutputLength(int)}
+         */
+        InputStream responseStream() {
+            final ByteBuffer view = output.duplicate();
+            ((Buffer) view).limit(outputLength).position(0);
+            return new InputStream() {
+                @Override
+                public int read() {
+                    return view.hasRemaining() ? view.get() & 0xff : -1;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (len == 0) {
+                        return 0;
+                    }
+                    if (!view.hasRemaining()) {
+                        return -1;
+                    }
+                    final int n = Math.min(len, view.remaining());
+                    view.get(b, off, n);
+                    return n;
+                }
+
+                @Override
+                public int available() {
+                    return view.remaining();
+                }
+            };
+        }
+
+        private void ensureInputCapacity(int extra) {
+            final int required = inputLength + extra;
+            if (required < 0) {
+                throw new OutOfMemoryError("Request too large");
+            }
+            if (required > input.capacity()) {
+                final ByteBuffer grown = ByteBuffer.allocateDirect(grow(input.capacity(), required));
+                final ByteBuffer written = input.duplicate();
+                ((Buffer) written).limit(inputLength).position(0);
+                grown.duplicate().put(written);
+                input = grown;
+            }
+        }
+
+        private static int grow(int capacity, int minCapacity) {
+            final long doubled = 2L * capacity;
+            return (int) Math.min(Integer.MAX_VALUE - 8, Math.max(doubled, minCapacity));
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy;
+
+import static com.cedarpolicy.CedarJson.objectReader;
+
+import com.cedarpolicy.model.AuthorizationRequest;
+import com.cedarpolicy.model.entity.Entity;
+import com.cedarpolicy.model.exception.InternalException;
+import com.cedarpolicy.model.policy.Policy;
+import com.cedarpolicy.model.policy.PolicySet;
+import com.cedarpolicy.serializer.JsonEUID;
+import com.cedarpolicy.value.CedarList;
+import com.cedarpolicy.value.CedarMap;
+import com.cedarpolicy.value.EntityUID;
+import com.cedarpolicy.value.Value;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Selects the entities an authorization request can reach, so that {@link BasicAuthorizationEngine} only sends those
+ * to Cedar instead of every entity it is given.
+ *
+ * <p>The slice of a request starts from its principal, action and resource, the entities referenced in its context,
+ * and any additional roots. It contains these entities and all their ancestors, and follows entity references in
+ * attributes and tags (including those nested in sets and records) up to the attribute depth. At depth 0 only the
+ * roots and their ancestors are sent. At depth 1 the entities their attributes refer to are sent too, with their
+ * ancestors, which a condition such as <code>principal.manager in Group::"admins"</code> needs.
+ *
+ * <p>Slicing does not change decisions as long as the depth covers the longest chain of attribute and tag accesses in
+ * the policies, and the entities whose attributes policies read directly, such as <code>Group::"admins".level</code>,
+ * are roots. {@link #forPolicies(PolicySet)} finds both by analyzing the policies.
+ */
+public final class EntitySlicing {
+    private static final EntitySlicing NONE = new EntitySlicing(false, 0, ImmutableSet.of());
+
+    /** Expression operators that read an attribute or tag of an entity. */
+    private static final Set<String> ACCESS_OPERATORS = ImmutableSet.of(".", "has", "getTag", "hasTag");
+
+    private final boolean enabled;
+    private final int attributeDepth;
+    private final ImmutableSet<EntityUID> roots;
+
+    private EntitySlicing(boolean enabled, int attributeDepth, ImmutableSet<EntityUID> roots) {
+        this.enabled = enabled;
+        this.attributeDepth = attributeDepth;
+        this.roots = roots;
+    }
+
+    /**
+     * Send every entity. This is the default.
+     *
+     * @return slicing that keeps all entities
+     */
+    public static EntitySlicing none() {
+        return NONE;
+    }
+
+    /**
+     * Send the entities reachable from a request through at most <code>depth</code> entity-valued attributes or tags.
+     *
+     * @param depth the attribute depth; {@link Integer#MAX_VALUE} follows every reference
+     * @return the slicing
+     * @throws IllegalArgumentException if <code>depth</code> is negative
+     */
+    public static EntitySlicing attributeDepth(int depth) throws IllegalArgumentException {
+        return attributeDepth(depth, Collections.emptySet());
+    }
+
+    /**
+     * Send the entities reachable from a request and from <code>roots</code> through at most <code>depth</code>
+     * entity-valued attributes or tags.
+     *
+     * @param depth the attribute depth; {@link Integer#MAX_VALUE} follows every reference
+     * @param roots entities to include in every slice, such as the entities whose attributes policies read
+     * @return the slicing
+     * @throws IllegalArgumentException if <code>depth</code> is negative
+     * @throws NullPointerException if <code>roots</code> is null or contains null
+     */
+    public static EntitySlicing attributeDepth(int depth, Set<EntityUID> roots)
+            throws IllegalArgumentException, NullPointerException {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Attribute depth must not be negative: " + depth);
+        }
+        return new EntitySlicing(true, depth, ImmutableSet.copyOf(roots));
+    }
+
+    /**
+     * Analyze the static policies of <code>policySet</code> to find the attribute depth and the roots they need. The
+     * result reflects the policies at the time of the call and should be computed again when they change. Templates
+     * cannot be analyzed yet, so a policy set with templates gets {@link #none()}.
+     *
+     * @param policySet the policies the slicing is used with
+     * @return the slicing
+     * @throws InternalException if a policy cannot be converted to JSON
+     * @throws NullPointerException if <code>policySet</code> is null
+     */
+    public static EntitySlicing forPolicies(PolicySet policySet) throws InternalException, NullPointerException {
+        if (policySet.getNumTemplates() > 0) {
+            return NONE;
+        }
+        int depth = 0;
+        final ImmutableSet.Builder<EntityUID> roots = ImmutableSet.builder();
+        for (Policy policy : policySet.policies) {
+            final JsonNode json;
+            try {
+                json = objectReader().readTree(policy.toJson());
+            } catch (JsonProcessingException e) {
+                throw new InternalException("JSON Deserialization Error: " + e.getMessage());
+            }
+            for (JsonNode condition : json.path("conditions")) {
+                depth = Math.max(depth, analyze(condition.path("body"), roots));
+            }
+        }
+        return new EntitySlicing(true, depth, roots.build());
+    }
+
+    /**
+     * Get whether this slicing selects entities at all.
+     *
+     * @return false for {@link #none()}
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get the number of entity-valued attributes or tags followed from the roots of a request.
+     *
+     * @return the attribute depth
+     */
+    public int getAttributeDepth() {
+        return attributeDepth;
+    }
+
+    /**
+     * Get the entities included in every slice, in addition to the ones of the request.
+     *
+     * @return the additional roots
+     */
+    public Set<EntityUID> getRoots() {
+        return roots;
+    }
+
+    /**
+     * Select the entities <code>request</code> can reach.
+     *
+     * @param request the request
+     * @param entities all entities
+     * @return the entities to send, which is <code>entities</code> itself if slicing is disabled
+     */
+    public Set<Entity> slice(AuthorizationRequest request, Set<Entity> entities) {
+        return slice(Collections.singletonList(request), entities);
+    }
+
+    /**
+     * Select the entities any of <code>requests</code> can reach.
+     *
+     * @param requests the requests
+     * @param entities all entities
+     * @return the entities to send, which is <code>entities</code> itself if slicing is disabled
+     */
+    public Set<Entity> slice(List<AuthorizationRequest> requests, Set<Entity> entities) {
+        if (!enabled || entities.isEmpty()) {
+            return entities;
+        }
+        final Map<EntityUID, Entity> byEUID = new HashMap<>(entities.size() * 4 / 3 + 1);
+        for (Entity entity : entities) {
+            if (byEUID.put(entity.getEUID(), entity) != null) {
+                // Leave it to Cedar to report the duplicate
+                return entities;
+            }
+        }
+
+        final Set<EntityUID> seen = new HashSet<>();
+        List<EntityUID> level = new ArrayList<>(roots);
+        for (AuthorizationRequest request : requests) {
+            level.add(request.principalEUID);
+            level.add(request.actionEUID);
+            level.add(request.resourceEUID);
+            if (request.context.isPresent()) {
+                for (Value value : request.context.get().values()) {
+                    addEntityUIDs(value, level);
+                }
+            }
+        }
+        final Set<Entity> slice = new HashSet<>();
+        for (int depth = 0; !level.isEmpty(); depth++) {
+            final List<Entity> reached = new ArrayList<>();
+            // Ancestors are always complete, so that `in` is evaluated as it would be on all entities
+            for (int i = 0; i < level.size(); i++) {
+                final EntityUID euid = level.get(i);
+                final Entity entity = euid != null && seen.add(euid) ? byEUID.get(euid) : null;
+                if (entity != null) {
+                    reached.add(entity);
+                    level.addAll(entity.parentsEUIDs);
+                }
+            }
+            slice.addAll(reached);
+            if (depth == attributeDepth || slice.size() == byEUID.size()) {
+                break;
+            }
+            level = new ArrayList<>();
+            for (Entity entity : reached) {
+                for (Value value : entity.attrs.values()) {
+                    addEntityUIDs(value, level);
+                }
+                for (Value value : entity.tags.values()) {
+                    addEntityUIDs(value, level);
+                }
+            }
+            for (Iterator<EntityUID> it = level.iterator(); it.hasNext();) {
+                if (seen.contains(it.next())) {
+                    it.remove();
+                }
+            }
+        }
+        return slice;
+    }
+
+    private static void addEntityUIDs(Value value, Collection<EntityUID> euids) {
+        if (value instanceof EntityUID) {
+            euids.add((EntityUID) value);
+        } else if (value instanceof CedarList) {
+            for (Value element : (CedarList) value) {
+                addEntityUIDs(element, euids);
+            }
+        } else if (value instanceof CedarMap) {
+            for (Value element : ((CedarMap) value).values()) {
+                addEntityUIDs(element, euids);
+            }
+        }
+    }
+
+    /**
+     * Find the entity literals of a policy expression, and the largest number of attribute and tag accesses on any
+     * path through it. Every entity an expression reads from is obtained through fewer accesses than that, so this
+     * depth is enough even though it overestimates chains such as <code>principal.manager.name</code>.
+     */
+    private static int analyze(JsonNode expr, ImmutableSet.Builder<EntityUID> roots) {
+        int depth = 0;
+        if (expr.isArray()) {
+            for (JsonNode element : expr) {
+                depth = Math.max(depth, analyze(element, roots));
+            }
+            return depth;
+        }
+        if (!expr.isObject()) {
+            return 0;
+        }
+        final JsonNode entity = expr.get("__entity");
+        if (entity != null) {
+            EntityUID.parseFromJson(new JsonEUID(entity.path("type").asText(), entity.path("id").asText()))
+                    .ifPresent(roots::add);
+            return 0;
+        }
+        for (Iterator<Map.Entry<String, JsonNode>> it = expr.fields(); it.hasNext();) {
+            final Map.Entry<String, JsonNode> field = it.next();
+            final int access = ACCESS_OPERATORS.contains(field.getKey()) ? 1 : 0;
+            depth = Math.max(depth, access + analyze(field.getValue(), roots));
+        }
+        return depth;
+    }
+}
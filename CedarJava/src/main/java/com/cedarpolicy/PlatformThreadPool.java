@@ -0,0 +1,87 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Pool of platform threads used by {@link BasicAuthorizationEngine.ExecutionMode#PLATFORM_THREAD_POOL} to make native
+ * calls on behalf of other threads. A native call pins a virtual thread to its carrier until it returns; waiting for
+ * the pool instead lets the virtual thread unmount, so that long Cedar calls do not starve the carriers.
+ *
+ * <p>Every waiting caller has exactly one call in the queue, so the queue is bounded by the number of callers and
+ * does not need a limit of its own. Threads are started on demand and exit after a minute without calls.
+ */
+final class PlatformThreadPool {
+    /** Stack size of the pool threads, the same as the one of the native worker pool. */
+    private static final long STACK_SIZE = 16L * 1024 * 1024;
+
+    private PlatformThreadPool() {
+    }
+
+    /** Creates the threads the first time the pool is used. */
+    private static final class Holder {
+        private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+        private static ThreadPoolExecutor createExecutor() {
+            final AtomicInteger threadCounter = new AtomicInteger(0);
+            final int threads = Runtime.getRuntime().availableProcessors();
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                        final Thread thread = new Thread(null, runnable,
+                                "cedar-platform-" + threadCounter.incrementAndGet(), STACK_SIZE);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+
+    /**
+     * Make <code>call</code> on a pool thread and wait for its result. The call cannot be cancelled, so the wait
+     * is not interrupted either; the interrupt status of the calling thread is restored once the call returns.
+     *
+     * @param call the native call
+     * @param <T> the type of the result
+     * @return the result of the call
+     */
+    static <T> T run(Supplier<T> call) {
+        final FutureTask<T> task = new FutureTask<>(call::get);
+        Holder.EXECUTOR.execute(task);
+        try {
+            return Uninterruptibles.getUninterruptibly(task);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Native call failed", cause);
+        }
+    }
+}
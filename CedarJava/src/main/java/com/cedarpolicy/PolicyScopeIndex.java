@@ -0,0 +1,458 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy;
+
+import static com.cedarpolicy.CedarJson.objectReader;
+
+import com.cedarpolicy.model.AuthorizationRequest;
+import com.cedarpolicy.model.entity.Entity;
+import com.cedarpolicy.model.exception.InternalException;
+import com.cedarpolicy.model.policy.Policy;
+import com.cedarpolicy.model.policy.PolicySet;
+import com.cedarpolicy.model.policy.TemplateLink;
+import com.cedarpolicy.serializer.JsonEUID;
+import com.cedarpolicy.value.EntityTypeName;
+import com.cedarpolicy.value.EntityUID;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Index of the static policies of a {@link PolicySet} by the scope constraints on their principal, action and
+ * resource, which selects the policies that can apply to a request so that only those are sent to Cedar.
+ *
+ * <p>A policy whose scope does not match a request is not satisfied and is never evaluated further, so it affects
+ * neither the decision nor the diagnostics: the response to a request is the same with the selected policies as
+ * with all of them. Constraints are indexed by entity for <code>==</code> and <code>in</code>, and by entity type
+ * for <code>is</code>. <code>in</code> constraints are matched against the ancestors of the request entities, which
+ * are found in the entities sent with the request; when those are not known, such as with an
+ * {@link com.cedarpolicy.model.entity.EntityStore}, or for actions when the request has a schema that may declare
+ * their groups, every policy with an <code>in</code> constraint on that part of the scope is selected.
+ *
+ * <p>Templates and template-linked policies are always sent. Policies that cannot be converted to JSON are always
+ * selected, so that Cedar reports their errors as before.
+ *
+ * <p>An index reflects its policy set at the time it was built; {@link #isBuiltFrom(PolicySet)} tells whether the
+ * policy set has changed since, and {@link #rebuild(PolicySet)} indexes it again while only converting the policies
+ * that were added or replaced. {@link BasicAuthorizationEngine} builds and keeps indexes itself when built with
+ * {@link BasicAuthorizationEngine.Builder#policyScopeIndexing(boolean)}. An index does not keep its policy set alive,
+ * so it can be cached against the policy set with weak keys.
+ */
+public final class PolicyScopeIndex {
+    /** Number of distinct selections whose policy sets are kept, so that their JSON stays cached. */
+    private static final int SELECTION_CACHE_SIZE = 256;
+    /** Number of immutable entity sets whose entities are kept indexed by entity UID. */
+    private static final int HIERARCHY_CACHE_SIZE = 64;
+
+    /**
+     * The entities of immutable entity sets by entity UID, keyed by the identity of the set, so that requests sharing
+     * an entity set do not index it again. Sets that can change are indexed for every selection.
+     */
+    private static final Cache<Set<Entity>, Map<EntityUID, Entity>> HIERARCHIES =
+            CacheBuilder.newBuilder().weakKeys().maximumSize(HIERARCHY_CACHE_SIZE).build();
+
+    private final Object[] parts;
+    /** Held weakly, since indexes are cached with their policy set as a weak key. */
+    private final WeakReference<PolicySet> policySet;
+    private final List<Policy> policies;
+    private final Set<Policy> templates;
+    private final List<TemplateLink> templateLinks;
+    /** The scope of each policy, which is all that is kept of its JSON. */
+    private final Map<Policy, Scope> scopes = new IdentityHashMap<>();
+    /**
+     * False if the policies, templates and template links cannot be told apart by ID, in which case every policy is
+     * sent.
+     */
+    private final boolean selective;
+    private final ScopeIndex principal = new ScopeIndex();
+    private final ScopeIndex action = new ScopeIndex();
+    private final ScopeIndex resource = new ScopeIndex();
+    private final Cache<BitSet, PolicySet> selections =
+            CacheBuilder.newBuilder().maximumSize(SELECTION_CACHE_SIZE).build();
+
+    /** The scope constraints of a policy. */
+    private static final class Scope {
+        private final JsonNode principal;
+        private final JsonNode action;
+        private final JsonNode resource;
+
+        Scope(JsonNode json) {
+            this.principal = json.path("principal");
+            this.action = json.path("action");
+            this.resource = json.path("resource");
+        }
+    }
+
+    /** The policies satisfying one constraint of the scope, by the way they constrain it. */
+    private static final class ScopeIndex {
+        private final BitSet unconstrained = new BitSet();
+        private final Map<EntityUID, BitSet> equal = new HashMap<>();
+        private final Map<EntityTypeName, BitSet> isType = new HashMap<>();
+        /** <code>in</code> and <code>is ... in</code> constraints, by the entity the scope must be in. */
+        private final Map<EntityUID, BitSet> in = new HashMap<>();
+        /** Every policy in {@link #in}. */
+        private final BitSet anyIn = new BitSet();
+        /** The type required by each <code>is ... in</code> constraint, by policy. */
+        private final Map<Integer, EntityTypeName> inType = new HashMap<>();
+
+        /** Index policy <code>policy</code> under its constraint, or as unconstrained if it is not understood. */
+        void add(int policy, JsonNode constraint) {
+            final boolean indexed;
+            switch (constraint.path("op").asText()) {
+                case "==":
+                    indexed = addEqual(policy, constraint);
+                    break;
+                case "in":
+                    indexed = addIn(policy, constraint);
+                    break;
+                case "is":
+                    indexed = addIs(policy, constraint);
+                    break;
+                default:
+                    indexed = false;
+            }
+            if (!indexed) {
+                unconstrained.set(policy);
+            }
+        }
+
+        private boolean addEqual(int policy, JsonNode constraint) {
+            final Optional<EntityUID> entity = entity(constraint.get("entity"));
+            entity.ifPresent(euid -> equal.computeIfAbsent(euid, e -> new BitSet()).set(policy));
+            return entity.isPresent();
+        }
+
+        private boolean addIn(int policy, JsonNode constraint) {
+            final List<EntityUID> entities = new ArrayList<>();
+            // Actions can be constrained to be in any of a list of entities
+            final Iterable<JsonNode> elements = constraint.has("entities")
+                    ? constraint.get("entities")
+                    : Collections.singletonList(constraint.get("entity"));
+            for (JsonNode element : elements) {
+                final Optional<EntityUID> entity = entity(element);
+                if (!entity.isPresent()) {
+                    return false;
+                }
+                entities.add(entity.get());
+            }
+            addIn(policy, entities);
+            return true;
+        }
+
+        private boolean addIs(int policy, JsonNode constraint) {
+            final Optional<EntityTypeName> type = EntityTypeName.parse(constraint.path("entity_type").asText());
+            if (!type.isPresent()) {
+                return false;
+            }
+            final JsonNode within = constraint.get("in");
+            if (within == null) {
+                isType.computeIfAbsent(type.get(), t -> new BitSet()).set(policy);
+                return true;
+            }
+            final Optional<EntityUID> entity = entity(within.get("entity"));
+            if (!entity.isPresent()) {
+                return false;
+            }
+            addIn(policy, Collections.singletonList(entity.get()));
+            inType.put(policy, type.get());
+            return true;
+        }
+
+        private void addIn(int policy, List<EntityUID> entities) {
+            for (EntityUID entity : entities) {
+                in.computeIfAbsent(entity, e -> new BitSet()).set(policy);
+            }
+            anyIn.set(policy);
+        }
+
+        /**
+         * Select the policies whose constraint <code>euid</code> can satisfy.
+         *
+         * @param euid the entity of the request, or null if unknown
+         * @param ancestors the ancestors of <code>euid</code>, or null if unknown
+         */
+        BitSet select(EntityUID euid, Set<EntityUID> ancestors, int policyCount) {
+            final BitSet selected = new BitSet();
+            if (euid == null) {
+                selected.set(0, policyCount);
+                return selected;
+            }
+            selected.or(unconstrained);
+            or(selected, equal.get(euid));
+            or(selected, isType.get(euid.getType()));
+            if (anyIn.isEmpty()) {
+                return selected;
+            }
+            final BitSet within;
+            if (ancestors == null) {
+                within = (BitSet) anyIn.clone();
+            } else {
+                within = new BitSet();
+                or(within, in.get(euid));
+                for (EntityUID ancestor : ancestors) {
+                    or(within, in.get(ancestor));
+                }
+            }
+            for (Map.Entry<Integer, EntityTypeName> typed : inType.entrySet()) {
+                if (!typed.getValue().equals(euid.getType())) {
+                    within.clear(typed.getKey());
+                }
+            }
+            selected.or(within);
+            return selected;
+        }
+
+        boolean hasIn() {
+            return !anyIn.isEmpty();
+        }
+
+        private static void or(BitSet selected, BitSet policies) {
+            if (policies != null) {
+                selected.or(policies);
+            }
+        }
+    }
+
+    private PolicyScopeIndex(PolicySet policySet, Map<Policy, Scope> known) {
+        this.parts = parts(policySet);
+        this.policySet = new WeakReference<>(policySet);
+        this.policies = new ArrayList<>(policySet.policies);
+        this.templates = policySet.templates;
+        this.templateLinks = policySet.templateLinks;
+        final Set<String> ids = new HashSet<>();
+        boolean distinct = true;
+        // A static policy may share its ID with a template or link, which Cedar reports as long as it is sent
+        for (Policy template : templates == null ? Collections.<Policy>emptySet() : templates) {
+            distinct &= ids.add(template.policyID);
+        }
+        for (TemplateLink link : templateLinks == null ? Collections.<TemplateLink>emptyList() : templateLinks) {
+            distinct &= ids.add(link.getResultPolicyId());
+        }
+        for (int i = 0; i < policies.size(); i++) {
+            final Policy policy = policies.get(i);
+            distinct &= ids.add(policy.policyID);
+            Scope scope = known.get(policy);
+            if (scope == null) {
+                scope = scope(policy);
+            }
+            scopes.put(policy, scope);
+            principal.add(i, scope.principal);
+            action.add(i, scope.action);
+            resource.add(i, scope.resource);
+        }
+        // Cedar reports duplicate IDs, which it could not do if only some of the duplicates were sent
+        this.selective = distinct;
+    }
+
+    /**
+     * Index the static policies of <code>policySet</code>. This converts every policy to JSON once.
+     *
+     * @param policySet the policies to index
+     * @return the index
+     * @throws NullPointerException if <code>policySet</code> is null
+     */
+    public static PolicyScopeIndex build(PolicySet policySet) throws NullPointerException {
+        return new PolicyScopeIndex(policySet, Collections.emptyMap());
+    }
+
+    /**
+     * Index the static policies of <code>changed</code>, reusing the scopes of the policies this index already
+     * holds. Only the policies that are not in this index, such as those added with
+     * {@link PolicySet#addPolicy(Policy)} or {@link PolicySet#replacePolicy(Policy)}, are converted to JSON, so
+     * indexing a policy set again after a few changes is much cheaper than building a new index.
+     *
+     * @param changed the policies to index, usually the ones this index was built from after they changed
+     * @return the new index
+     * @throws NullPointerException if <code>changed</code> is null
+     */
+    public PolicyScopeIndex rebuild(PolicySet changed) throws NullPointerException {
+        return new PolicyScopeIndex(changed, scopes);
+    }
+
+    /**
+     * Get whether this index was built from <code>other</code> in its current state, that is, from the same policy
+     * set holding the same policies, templates and links.
+     *
+     * @param other a policy set
+     * @return true if this index can select from <code>other</code>
+     */
+    public boolean isBuiltFrom(PolicySet other) {
+        if (other != policySet.get()) {
+            return false;
+        }
+        final Object[] current = parts(other);
+        if (current.length != parts.length) {
+            return false;
+        }
+        for (int i = 0; i < parts.length; i++) {
+            if (current[i] != parts[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Select the policies that can apply to <code>request</code>.
+     *
+     * @param request the request
+     * @param entities the entities sent with the request, or null if their hierarchy is not known here
+     * @return a policy set with the selected static policies and all templates and links, which is the indexed policy
+     *     set itself if every policy is selected
+     */
+    public PolicySet select(AuthorizationRequest request, Set<Entity> entities) {
+        return select(Collections.singletonList(request), entities);
+    }
+
+    /**
+     * Select the policies that can apply to any of <code>requests</code>.
+     *
+     * @param requests the requests
+     * @param entities the entities sent with the requests, or null if their hierarchy is not known here
+     * @return a policy set with the selected static policies and all templates and links, which is the indexed policy
+     *     set itself if every policy is selected
+     */
+    @SuppressFBWarnings("EI_EXPOSE_REP")
+    public PolicySet select(List<AuthorizationRequest> requests, Set<Entity> entities) {
+        final int count = policies.size();
+        if (!selective || count == 0) {
+            return indexed();
+        }
+        final Map<EntityUID, Entity> byEUID = entities == null
+                || !(principal.hasIn() || action.hasIn() || resource.hasIn()) ? null : index(entities);
+        final BitSet selected = new BitSet();
+        for (AuthorizationRequest request : requests) {
+            final BitSet candidates = principal.select(request.principalEUID,
+                    ancestors(request.principalEUID, byEUID), count);
+            // Action groups may be declared in the schema rather than in the entities
+            candidates.and(action.select(request.actionEUID,
+                    request.schema.isPresent() ? null : ancestors(request.actionEUID, byEUID), count));
+            candidates.and(resource.select(request.resourceEUID,
+                    ancestors(request.resourceEUID, byEUID), count));
+            selected.or(candidates);
+        }
+        if (selected.cardinality() == count) {
+            return indexed();
+        }
+        final PolicySet cached = selections.getIfPresent(selected);
+        if (cached != null) {
+            return cached;
+        }
+        final ImmutableSet.Builder<Policy> builder = ImmutableSet.builder();
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+            builder.add(policies.get(i));
+        }
+        final PolicySet selection = new PolicySet(builder.build(), templates, templateLinks);
+        selections.put(selected, selection);
+        return selection;
+    }
+
+    /** The indexed policy set, or a copy of it if it has been garbage collected. */
+    private PolicySet indexed() {
+        final PolicySet indexed = policySet.get();
+        return indexed != null ? indexed : new PolicySet(ImmutableSet.copyOf(policies), templates, templateLinks);
+    }
+
+    private static Object[] parts(PolicySet policySet) {
+        final Object[] parts = new Object[3 + policySet.policies.size()];
+        int i = 0;
+        parts[i++] = policySet.policies;
+        parts[i++] = policySet.templates;
+        parts[i++] = policySet.templateLinks;
+        for (Policy policy : policySet.policies) {
+            parts[i++] = policy;
+        }
+        return parts;
+    }
+
+    /** The scope of a policy, which is unconstrained if the policy cannot be converted to JSON. */
+    private static Scope scope(Policy policy) {
+        try {
+            return new Scope(objectReader().readTree(policy.toJson()));
+        } catch (InternalException | JsonProcessingException e) {
+            return new Scope(objectReader().createObjectNode());
+        }
+    }
+
+    private static Optional<EntityUID> entity(JsonNode json) {
+        if (json == null) {
+            return Optional.empty();
+        }
+        final JsonNode entity = json.has("__entity") ? json.get("__entity") : json;
+        if (!entity.path("type").isTextual() || !entity.path("id").isTextual()) {
+            return Optional.empty();
+        }
+        return EntityUID.parseFromJson(new JsonEUID(entity.get("type").asText(), entity.get("id").asText()));
+    }
+
+    private static Map<EntityUID, Entity> index(Set<Entity> entities) {
+        if (entities instanceof ImmutableSet) {
+            final Map<EntityUID, Entity> cached = HIERARCHIES.getIfPresent(entities);
+            if (cached != null) {
+                return cached;
+            }
+            final Map<EntityUID, Entity> byEUID = indexAll(entities);
+            HIERARCHIES.put(entities, byEUID);
+            return byEUID;
+        }
+        return indexAll(entities);
+    }
+
+    private static Map<EntityUID, Entity> indexAll(Set<Entity> entities) {
+        final Map<EntityUID, Entity> byEUID = new HashMap<>(entities.size() * 4 / 3 + 1);
+        for (Entity entity : entities) {
+            byEUID.putIfAbsent(entity.getEUID(), entity);
+        }
+        return byEUID;
+    }
+
+    /** The transitive ancestors of <code>euid</code>, or null if they are not known. */
+    private static Set<EntityUID> ancestors(EntityUID euid, Map<EntityUID, Entity> byEUID) {
+        if (byEUID == null || euid == null) {
+            return null;
+        }
+        final Set<EntityUID> ancestors = new HashSet<>();
+        final List<EntityUID> pending = new ArrayList<>();
+        pending.add(euid);
+        while (!pending.isEmpty()) {
+            final Entity entity = byEUID.get(pending.remove(pending.size() - 1));
+            if (entity != null) {
+                for (EntityUID parent : entity.parentsEUIDs) {
+                    if (ancestors.add(parent)) {
+                        pending.add(parent);
+                    }
+                }
+            }
+        }
+        return ancestors;
+    }
+}
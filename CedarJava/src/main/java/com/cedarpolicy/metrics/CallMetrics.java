@@ -0,0 +1,262 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy.metrics;
+
+import com.cedarpolicy.BasicAuthorizationEngine.WireFormat;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Measurements of one call from a {@link com.cedarpolicy.BasicAuthorizationEngine} to the native library. A call goes
+ * through three stages on the Java side: serializing the request, the native call itself, and parsing the response.
+ * The native call includes crossing JNI, converting the request and response, and handing the call to another thread
+ * as required by the execution mode; {@link #getNativeTimings()} tells how much of it was spent in Cedar.
+ *
+ * <p>Sizes are in bytes for {@link WireFormat#CBOR} and {@link WireFormat#JSON_DIRECT_BUFFER}, and in characters
+ * for {@link WireFormat#JSON}. The measurements of a failed call may be incomplete, with zero for missing ones.
+ */
+public final class CallMetrics {
+    private final String operation;
+    private final WireFormat wireFormat;
+    private final boolean failed;
+    private final long requestSize;
+    private final long responseSize;
+    private final long serializationNanos;
+    private final long nativeNanos;
+    private final long deserializationNanos;
+    private final Optional<NativeTimings> nativeTimings;
+
+    private CallMetrics(Builder builder) {
+        this.operation = builder.operation;
+        this.wireFormat = builder.wireFormat;
+        this.failed = builder.failed;
+        this.requestSize = builder.requestSize;
+        this.responseSize = builder.responseSize;
+        this.serializationNanos = builder.serializationNanos;
+        this.nativeNanos = builder.nativeNanos;
+        this.deserializationNanos = builder.deserializationNanos;
+        this.nativeTimings = Optional.ofNullable(builder.nativeTimings);
+    }
+
+    /**
+     * Creates a builder of the measurements of a call.
+     *
+     * @param operation the native operation, such as <code>AuthorizationOperation</code>
+     * @param wireFormat how the request and response were encoded
+     * @return The builder
+     */
+    public static Builder builder(String operation, WireFormat wireFormat) {
+        return new Builder(operation, wireFormat);
+    }
+
+    /** Builder of {@link CallMetrics}, filled in as a call goes through its stages. */
+    public static final class Builder {
+        private final String operation;
+        private final WireFormat wireFormat;
+        private boolean failed;
+        private long requestSize;
+        private long responseSize;
+        private long serializationNanos;
+        private long nativeNanos;
+        private long deserializationNanos;
+        private NativeTimings nativeTimings;
+
+        private Builder(String operation, WireFormat wireFormat) {
+            this.operation = Objects.requireNonNull(operation, "operation");
+            this.wireFormat = Objects.requireNonNull(wireFormat, "wireFormat");
+        }
+
+        /**
+         * Set whether the call threw an exception.
+         *
+         * @param value true if the call failed
+         * @return The builder.
+         */
+        public Builder failed(boolean value) {
+            this.failed = value;
+            return this;
+        }
+
+        /**
+         * Set the size of the request sent to the native library.
+         *
+         * @param size the size of the request
+         * @return The builder.
+         */
+        public Builder requestSize(long size) {
+            this.requestSize = size;
+            return this;
+        }
+
+        /**
+         * Set the size of the response received from the native library.
+         *
+         * @param size the size of the response
+         * @return The builder.
+         */
+        public Builder responseSize(long size) {
+            this.responseSize = size;
+            return this;
+        }
+
+        /**
+         * Set the time spent serializing the request.
+         *
+         * @param nanos the time in nanoseconds
+         * @return The builder.
+         */
+        public Builder serializationNanos(long nanos) {
+            this.serializationNanos = nanos;
+            return this;
+        }
+
+        /**
+         * Add to the time spent in native calls. A call is made again when its response does not fit in the
+         * buffer it was given, so this can be called more than once.
+         *
+         * @param nanos the time in nanoseconds
+         * @return The builder.
+         */
+        public Builder addNativeNanos(long nanos) {
+            this.nativeNanos += nanos;
+            return this;
+        }
+
+        /**
+         * Set the time spent parsing the response.
+         *
+         * @param nanos the time in nanoseconds
+         * @return The builder.
+         */
+        public Builder deserializationNanos(long nanos) {
+            this.deserializationNanos = nanos;
+            return this;
+        }
+
+        /**
+         * Set the timings reported by the native library.
+         *
+         * @param timings the timings
+         * @return The builder.
+         */
+        public Builder nativeTimings(NativeTimings timings) {
+            this.nativeTimings = timings;
+            return this;
+        }
+
+        /**
+         * Build the measurements.
+         *
+         * @return The measurements.
+         */
+        public CallMetrics build() {
+            return new CallMetrics(this);
+        }
+    }
+
+    /**
+     * Get the native operation that was called.
+     *
+     * @return the operation, such as <code>AuthorizationOperation</code>
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Get how the request and response were encoded.
+     *
+     * @return the wire format
+     */
+    public WireFormat getWireFormat() {
+        return wireFormat;
+    }
+
+    /**
+     * Get whether the call threw an exception. Requests that Cedar rejects, for example because a policy does not
+     * parse, are successful calls with a failure response.
+     *
+     * @return true if the call failed
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Get the size of the request sent to the native library.
+     *
+     * @return the size in bytes, or in characters for {@link WireFormat#JSON}
+     */
+    public long getRequestSize() {
+        return requestSize;
+    }
+
+    /**
+     * Get the size of the response received from the native library.
+     *
+     * @return the size in bytes, or in characters for {@link WireFormat#JSON}
+     */
+    public long getResponseSize() {
+        return responseSize;
+    }
+
+    /**
+     * Get the time spent serializing the request.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getSerializationNanos() {
+        return serializationNanos;
+    }
+
+    /**
+     * Get the time spent in native calls, as seen from Java.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getNativeNanos() {
+        return nativeNanos;
+    }
+
+    /**
+     * Get the time spent parsing the response.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getDeserializationNanos() {
+        return deserializationNanos;
+    }
+
+    /**
+     * Get the time the native library reports having spent on the request. This is only reported for single
+     * authorization requests.
+     *
+     * @return the native timings, if reported
+     */
+    public Optional<NativeTimings> getNativeTimings() {
+        return nativeTimings;
+    }
+
+    @Override
+    public String toString() {
+        return "CallMetrics{operation=" + operation + ", wireFormat=" + wireFormat + ", failed=" + failed
+                + ", requestSize=" + requestSize + ", responseSize=" + responseSize + ", serializationNanos="
+                + serializationNanos + ", nativeNanos=" + nativeNanos + ", deserializationNanos="
+                + deserializationNanos + ", nativeTimings=" + nativeTimings.orElse(null) + "}";
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy.metrics;
+
+import com.cedarpolicy.metrics.OperationStats.Stage;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * Aggregates the measurements of engine calls per operation: call and failure counts, the sizes of requests and
+ * responses, and a latency histogram for every stage of a call. Recording never blocks, so one instance can be shared
+ * by all engines of an application:
+ *
+ * <pre>{@code
+ * EngineMetrics metrics = new EngineMetrics();
+ * metrics.register("default");
+ * BasicAuthorizationEngine engine = BasicAuthorizationEngine.builder().metricsListener(metrics).build();
+ * }</pre>
+ *
+ * <p>Once registered, the statistics are visible in any JMX client under
+ * <code>com.cedarpolicy:type=EngineMetrics,name="default"</code>.
+ */
+public final class EngineMetrics implements EngineMetricsListener, EngineMetricsMXBean {
+    private final ConcurrentMap<String, OperationRecorder> operations = new ConcurrentHashMap<>();
+
+    /** The counters and histograms of one operation. */
+    private static final class OperationRecorder {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder requestSize = new LongAdder();
+        private final LongAdder responseSize = new LongAdder();
+        private final Map<Stage, LatencyHistogram> latencies = new EnumMap<>(Stage.class);
+
+        OperationRecorder() {
+            for (Stage stage : Stage.values()) {
+                latencies.put(stage, new LatencyHistogram());
+            }
+        }
+
+        void record(CallMetrics metrics) {
+            calls.increment();
+            requestSize.add(metrics.getRequestSize());
+            responseSize.add(metrics.getResponseSize());
+            if (metrics.isFailed()) {
+                failures.increment();
+                return;
+            }
+            latencies.get(Stage.SERIALIZATION).record(metrics.getSerializationNanos());
+            latencies.get(Stage.NATIVE_CALL).record(metrics.getNativeNanos());
+            latencies.get(Stage.DESERIALIZATION).record(metrics.getDeserializationNanos());
+            if (metrics.getNativeTimings().isPresent()) {
+                final NativeTimings timings = metrics.getNativeTimings().get();
+                timings.getParseNanos().ifPresent(latencies.get(Stage.NATIVE_PARSE)::record);
+                timings.getEvaluationNanos().ifPresent(latencies.get(Stage.NATIVE_EVALUATION)::record);
+            }
+        }
+
+        void reset() {
+            calls.reset();
+            failures.reset();
+            requestSize.reset();
+            responseSize.reset();
+            for (LatencyHistogram histogram : latencies.values()) {
+                histogram.reset();
+            }
+        }
+
+        OperationStats snapshot() {
+            final Map<Stage, LatencyStats> snapshot = new EnumMap<>(Stage.class);
+            for (Map.Entry<Stage, LatencyHistogram> entry : latencies.entrySet()) {
+                snapshot.put(entry.getKey(), entry.getValue().snapshot());
+            }
+            return new OperationStats(calls.sum(), failures.sum(), requestSize.sum(), responseSize.sum(), snapshot);
+        }
+    }
+
+    @Override
+    public void onCall(CallMetrics metrics) {
+        operations.computeIfAbsent(metrics.getOperation(), operation -> new OperationRecorder()).record(metrics);
+    }
+
+    @Override
+    public Map<String, OperationStats> getOperations() {
+        final Map<String, OperationStats> snapshot = new TreeMap<>();
+        for (Map.Entry<String, OperationRecorder> entry : operations.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Get a snapshot of the calls of one operation.
+     *
+     * @param operation the native operation, such as <code>AuthorizationOperation</code>
+     * @return the statistics of the operation, if it has been called
+     */
+    public Optional<OperationStats> getOperation(String operation) {
+        final OperationRecorder recorder = operations.get(operation);
+        return recorder == null ? Optional.empty() : Optional.of(recorder.snapshot());
+    }
+
+    @Override
+    public long getCalls() {
+        long calls = 0;
+        for (OperationRecorder recorder : operations.values()) {
+            calls += recorder.calls.sum();
+        }
+        return calls;
+    }
+
+    @Override
+    public void reset() {
+        for (OperationRecorder recorder : operations.values()) {
+            recorder.reset();
+        }
+    }
+
+    /**
+     * Register these metrics with the platform MBean server.
+     *
+     * @param name the name distinguishing these metrics from others in the same JVM
+     * @return the name the metrics are registered under
+     * @throws JMException if the name is invalid or already registered
+     */
+    public ObjectName register(String name) throws JMException {
+        final ObjectName objectName = objectName(name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Unregister metrics registered with {@link #register(String)}.
+     *
+     * @param name the name the metrics were registered with
+     * @throws JMException if no metrics are registered under that name
+     */
+    public static void unregister(String name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(name));
+    }
+
+    private static ObjectName objectName(String name) throws MalformedObjectNameException {
+        return new ObjectName("com.cedarpolicy:type=EngineMetrics,name=" + ObjectName.quote(name));
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy.metrics;
+
+/**
+ * Receives the measurements of every native call made by a {@link com.cedarpolicy.BasicAuthorizationEngine} built
+ * with it. Engines without a listener take no measurements at all.
+ *
+ * <p>The listener is called on the thread that made the call, after the response has been parsed and before it is
+ * returned, so it must be fast and thread safe. An exception thrown by the listener is thrown to the caller.
+ */
+@FunctionalInterface
+public interface EngineMetricsListener {
+    /**
+     * Record the measurements of one call.
+     *
+     * @param metrics the measurements
+     */
+    void onCall(CallMetrics metrics);
+}
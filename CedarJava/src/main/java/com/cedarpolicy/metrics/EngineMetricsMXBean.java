@@ -0,0 +1,39 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy.metrics;
+
+import java.util.Map;
+
+/** Management interface of {@link EngineMetrics}, under which it is registered with JMX. */
+public interface EngineMetricsMXBean {
+    /**
+     * Get a snapshot of the calls made so far, by operation.
+     *
+     * @return the statistics of every operation that has been called, by name
+     */
+    Map<String, OperationStats> getOperations();
+
+    /**
+     * Get the number of calls made so far.
+     *
+     * @return the number of calls of all operations
+     */
+    long getCalls();
+
+    /** Forget all calls made so far. */
+    void reset();
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of latencies in buckets of powers of two, which any number of threads can record into without
+ * blocking. Bucket <code>i</code> counts the latencies <code>v</code> with <code>2^(i-1) &lt;= v &lt; 2^i</code>,
+ * so percentiles are known to within a factor of two, which is enough to tell a microsecond from a millisecond.
+ */
+final class LatencyHistogram {
+    private static final int BUCKETS = Long.SIZE;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    void record(long nanos) {
+        final long value = Math.max(nanos, 0);
+        counts[Long.SIZE - Long.numberOfLeadingZeros(value)].increment();
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    void reset() {
+        for (LongAdder count : counts) {
+            count.reset();
+        }
+        total.reset();
+        max.reset();
+    }
+
+    LatencyStats snapshot() {
+        final long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+            count += snapshot[i];
+        }
+        final long maxNanos = max.get();
+        return new LatencyStats(count, total.sum(), maxNanos, percentile(snapshot, count, 0.5, maxNanos),
+                percentile(snapshot, count, 0.9, maxNanos), percentile(snapshot, count, 0.99, maxNanos));
+    }
+
+    /** The upper bound of the bucket holding the <code>quantile</code>, which is never above the maximum. */
+    private static long percentile(long[] buckets, long count, double quantile, long maxNanos) {
+        final long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= rank && seen > 0) {
+                return i == 0 ? 0 : Math.min((1L << i) - 1, maxNanos);
+            }
+        }
+        return 0;
+    }
+}
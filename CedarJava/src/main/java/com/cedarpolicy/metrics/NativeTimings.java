@@ -0,0 +1,79 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy.metrics;
+
+import java.util.OptionalLong;
+
+/**
+ * Time spent in the native library on an authorization request, as measured by the library itself. Parsing covers
+ * decoding the request and building the Cedar request, context and entities from it; evaluation covers the
+ * authorizer. Both are only measured for requests on compiled policy sets, entity stores or parsed schemas; for
+ * other requests policies are parsed as part of the Cedar call, and only the total is known.
+ */
+public final class NativeTimings {
+    private static final long UNKNOWN = -1;
+
+    private final long parseNanos;
+    private final long evaluationNanos;
+    private final long totalNanos;
+
+    /**
+     * Construct native timings.
+     *
+     * @param parseNanos time spent parsing, or -1 if unknown
+     * @param evaluationNanos time spent evaluating, or -1 if unknown
+     * @param totalNanos time spent handling the request in the native library
+     */
+    public NativeTimings(long parseNanos, long evaluationNanos, long totalNanos) {
+        this.parseNanos = parseNanos < 0 ? UNKNOWN : parseNanos;
+        this.evaluationNanos = evaluationNanos < 0 ? UNKNOWN : evaluationNanos;
+        this.totalNanos = totalNanos;
+    }
+
+    /**
+     * Get the time spent parsing the request.
+     *
+     * @return the time in nanoseconds, if it was measured
+     */
+    public OptionalLong getParseNanos() {
+        return parseNanos == UNKNOWN ? OptionalLong.empty() : OptionalLong.of(parseNanos);
+    }
+
+    /**
+     * Get the time spent evaluating the policies.
+     *
+     * @return the time in nanoseconds, if it was measured
+     */
+    public OptionalLong getEvaluationNanos() {
+        return evaluationNanos == UNKNOWN ? OptionalLong.empty() : OptionalLong.of(evaluationNanos);
+    }
+
+    /**
+     * Get the time spent handling the request, from decoding it to encoding the response.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "NativeTimings{parseNanos=" + parseNanos + ", evaluationNanos=" + evaluationNanos + ", totalNanos="
+                + totalNanos + "}";
+    }
+}
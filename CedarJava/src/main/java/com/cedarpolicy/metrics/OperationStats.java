@@ -0,0 +1,136 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy.metrics;
+
+import java.util.Map;
+
+/**
+ * Snapshot of the calls of one operation. Latencies are only recorded for calls that did not fail, and the native
+ * parse and evaluation latencies only for calls whose native timings include them.
+ */
+public final class OperationStats {
+    /** Stages of a call with a latency histogram. */
+    enum Stage {
+        SERIALIZATION,
+        NATIVE_CALL,
+        NATIVE_PARSE,
+        NATIVE_EVALUATION,
+        DESERIALIZATION
+    }
+
+    private final long calls;
+    private final long failures;
+    private final long totalRequestSize;
+    private final long totalResponseSize;
+    private final Map<Stage, LatencyStats> latencies;
+
+    OperationStats(long calls, long failures, long totalRequestSize, long totalResponseSize,
+                   Map<Stage, LatencyStats> latencies) {
+        this.calls = calls;
+        this.failures = failures;
+        this.totalRequestSize = totalRequestSize;
+        this.totalResponseSize = totalResponseSize;
+        this.latencies = latencies;
+    }
+
+    /**
+     * Get the number of calls.
+     *
+     * @return the number of calls, including failed ones
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * Get the number of calls that threw an exception.
+     *
+     * @return the number of failed calls
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Get the total size of the requests sent to the native library.
+     *
+     * @return the size in bytes, or in characters for the JSON wire format
+     */
+    public long getTotalRequestSize() {
+        return totalRequestSize;
+    }
+
+    /**
+     * Get the total size of the responses received from the native library.
+     *
+     * @return the size in bytes, or in characters for the JSON wire format
+     */
+    public long getTotalResponseSize() {
+        return totalResponseSize;
+    }
+
+    /**
+     * Get the latencies of serializing requests.
+     *
+     * @return the latencies
+     */
+    public LatencyStats getSerialization() {
+        return latencies.get(Stage.SERIALIZATION);
+    }
+
+    /**
+     * Get the latencies of native calls, as seen from Java.
+     *
+     * @return the latencies
+     */
+    public LatencyStats getNativeCall() {
+        return latencies.get(Stage.NATIVE_CALL);
+    }
+
+    /**
+     * Get the latencies of parsing requests in the native library.
+     *
+     * @return the latencies
+     */
+    public LatencyStats getNativeParse() {
+        return latencies.get(Stage.NATIVE_PARSE);
+    }
+
+    /**
+     * Get the latencies of evaluating policies in the native library.
+     *
+     * @return the latencies
+     */
+    public LatencyStats getNativeEvaluation() {
+        return latencies.get(Stage.NATIVE_EVALUATION);
+    }
+
+    /**
+     * Get the latencies of parsing responses.
+     *
+     * @return the latencies
+     */
+    public LatencyStats getDeserialization() {
+        return latencies.get(Stage.DESERIALIZATION);
+    }
+
+    @Override
+    public String toString() {
+        return "OperationStats{calls=" + calls + ", failures=" + failures + ", totalRequestSize=" + totalRequestSize
+                + ", totalResponseSize=" + totalResponseSize + ", latencies=" + latencies + "}";
+    }
+}
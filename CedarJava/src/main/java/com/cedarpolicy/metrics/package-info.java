@@ -0,0 +1,23 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Instrumentation of {@link com.cedarpolicy.BasicAuthorizationEngine}: the time spent in each stage of a call and
+ * the size of the data crossing into the native library, reported to an
+ * {@link com.cedarpolicy.metrics.EngineMetricsListener}. {@link com.cedarpolicy.metrics.EngineMetrics} aggregates
+ * them per operation and exposes them through JMX.
+ */
+package com.cedarpolicy.metrics;
@@ -21,7 +21,7 @@ import com.cedarpolicy.model.entity.Entity;
 import com.cedarpolicy.value.EntityUID;
 import com.cedarpolicy.value.Value;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import java.util.HashMap;
+import com.google.common.collect.ImmutableMap;
 import java.util.Map;
 import java.util.Optional;
 
@@ -37,6 +37,9 @@ import java.util.Optional;
  * (e.g., string instead of integer).
  * If the schema is provided and `enableRequestValidation` is true, then the
  * schema will also be used for request validation.
+ *
+ * <p>Requests are immutable: the context is kept as an immutable map, which is shared rather than copied when the
+ * context is already an {@link ImmutableMap} or a {@link Context}. A request can be reused across threads and calls.
  */
 public class AuthorizationRequest {
     /** EUID of the principal in the request. */
@@ -49,7 +52,7 @@ public class AuthorizationRequest {
     @JsonProperty("resource")
     public final EntityUID resourceEUID;
 
-    /** Key/Value map representing the context of the request. */
+    /** Key/Value map representing the context of the request. The map is immutable. */
     public final Optional<Map<String, Value>> context;
 
     /** JSON object representing the Schema. Used for schema-based parsing of
@@ -70,11 +73,12 @@ public class AuthorizationRequest {
      * @param principalEUID Principal's EUID.
      * @param actionEUID Action's EUID.
      * @param resourceEUID Resource's EUID.
-     * @param context Key/Value context.
+     * @param context Key/Value context, copied unless it is already an {@link ImmutableMap}.
      * @param schema Schema (optional).
      * @param enableRequestValidation Whether to use the schema for just
      * schema-based parsing of `context` (false) or also for request validation
      * (true). No effect if `schema` is not provided.
+     * @throws NullPointerException if the context contains null keys or values
      */
     public AuthorizationRequest(
             EntityUID principalEUID,
@@ -89,7 +93,7 @@ public class AuthorizationRequest {
         if (!context.isPresent() || context.get() == null) {
             this.context = Optional.empty();
         } else {
-            this.context = Optional.of(new HashMap<>(context.get()));
+            this.context = Optional.of(ImmutableMap.copyOf(context.get()));
         }
         this.schema = schema;
         this.enableRequestValidation = enableRequestValidation;
@@ -118,7 +122,7 @@ public class AuthorizationRequest {
     this.principalEUID = principalEUID;
     this.actionEUID = actionEUID;
     this.resourceEUID = resourceEUID;
-    this.context = Optional.of(context.getContext());
+    this.context = Optional.of(context.asMap());
     this.schema = schema;
     this.enableRequestValidation = enableRequestValidation;
 }
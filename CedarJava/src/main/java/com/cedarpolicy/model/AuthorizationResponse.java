@@ -49,15 +49,39 @@ public final class AuthorizationResponse {
         @JsonProperty("response") Optional<AuthorizationSuccessResponse> success,
         @JsonProperty("errors") Optional<ArrayList<DetailedError>> errors,
         @JsonProperty("warnings") ArrayList<String> warnings
+    ) {
+        this(type, success, errors.map((list) -> ImmutableList.copyOf(list)),
+                warnings == null ? ImmutableList.of() : ImmutableList.copyOf(warnings));
+    }
+
+    private AuthorizationResponse(
+        SuccessOrFailure type,
+        Optional<AuthorizationSuccessResponse> success,
+        Optional<ImmutableList<DetailedError>> errors,
+        ImmutableList<String> warnings
     ) {
         this.type = type;
         this.success = success;
-        this.errors = errors.map((list) -> ImmutableList.copyOf(list));
-        if (warnings == null) {
-            this.warnings = ImmutableList.of(); // empty
-        } else {
-            this.warnings = ImmutableList.copyOf(warnings);
-        }
+        this.errors = errors;
+        this.warnings = warnings;
+    }
+
+    /**
+     * Construct a response from already immutable parts, without copying them.
+     *
+     * @param type Whether this is a success or a failure response
+     * @param success The successful response, if <code>type</code> is <code>Success</code>
+     * @param errors The errors, if <code>type</code> is <code>Failure</code>
+     * @param warnings The warnings
+     * @return The response
+     */
+    public static AuthorizationResponse of(
+        SuccessOrFailure type,
+        Optional<AuthorizationSuccessResponse> success,
+        Optional<ImmutableList<DetailedError>> errors,
+        ImmutableList<String> warnings
+    ) {
+        return new AuthorizationResponse(type, success, errors, warnings);
     }
 
     @Override
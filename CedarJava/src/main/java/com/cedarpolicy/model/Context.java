@@ -17,23 +17,27 @@
 package com.cedarpolicy.model;
 
 import java.util.HashMap;
-import java.util.Collections;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 import java.util.Map;
 import com.cedarpolicy.value.Value;
+import com.google.common.collect.ImmutableMap;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
+/**
+ * The context of an authorization request. The key-value pairs are kept in an immutable map, which merging replaces,
+ * so that {@link #asMap()} can hand the pairs to an {@link AuthorizationRequest} without copying them.
+ */
 public class Context {
 
-    private Map<String, Value> context;
+    private ImmutableMap<String, Value> context;
 
     /**
      * Constructs a new empty Context with no key-value pairs. Initializes the internal context map as an empty
      * immutable map.
      */
     public Context() {
-        context = Collections.emptyMap();
+        context = ImmutableMap.of();
     }
 
     public boolean isEmpty() {
@@ -50,20 +54,19 @@ public class Context {
      */
     @SuppressFBWarnings("CT_CONSTRUCTOR_THROW")
     public Context(Iterable<Map.Entry<String, Value>> contextList) {
-        context = new HashMap<>();
+        context = ImmutableMap.of();
         mergeContextFromIterable(contextList);
     }
 
     /**
      * Constructs a new Context with the provided map of key-value pairs. Creates a defensive copy of the input map to
-     * maintain immutability.
+     * maintain immutability, unless the input map is already an {@link ImmutableMap}.
      *
      * @param contextMap The map of key-value pairs to initialize this context with
-     * @throws IllegalArgumentException if the contextMap parameter is null
+     * @throws NullPointerException if the contextMap parameter is null or contains null keys or values
      */
     public Context(Map<String, Value> contextMap) {
-        context = new HashMap<>();
-        context.putAll(contextMap);
+        context = ImmutableMap.copyOf(contextMap);
     }
 
     /**
@@ -75,6 +78,16 @@ public class Context {
         return new HashMap<>(context);
     }
 
+    /**
+     * Returns the key-value pairs of this context as an immutable map, without copying them. The map is a snapshot:
+     * merging into this context later does not change it.
+     *
+     * @return An immutable map of the key-value pairs of this context
+     */
+    public Map<String, Value> asMap() {
+        return context;
+    }
+
     /**
      * Merges another Context object into the current context.
      *
@@ -83,7 +96,7 @@ public class Context {
      * @throws IllegalArgumentException if the contextToMerge parameter is null
      */
     public void merge(Context contextToMerge) throws IllegalStateException, IllegalArgumentException {
-        mergeContextFromIterable(contextToMerge.getContext().entrySet());
+        mergeContextFromIterable(contextToMerge.asMap().entrySet());
     }
 
     /**
@@ -134,7 +147,10 @@ public class Context {
                         String.format("Duplicate key '%s' in existing context", entry.getKey()));
             }
         }).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-        context.putAll(newEntries);
+        context = ImmutableMap.<String, Value>builderWithExpectedSize(context.size() + newEntries.size())
+                .putAll(context)
+                .putAll(newEntries)
+                .build();
     }
 
     /** Readable string representation. */
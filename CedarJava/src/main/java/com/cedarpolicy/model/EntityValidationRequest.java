@@ -16,6 +16,7 @@
 
  package com.cedarpolicy.model;
 
+ import java.util.Collections;
  import java.util.List;
  import java.util.Objects;
 
@@ -53,6 +54,24 @@
          this.entities = entities;
      }
 
+     /**
+      * Get the schema.
+      *
+      * @return The schema.
+      */
+     public Schema getSchema() {
+         return this.schema;
+     }
+
+     /**
+      * Get the entities.
+      *
+      * @return The entities to validate.
+      */
+     public List<Entity> getEntities() {
+         return Collections.unmodifiableList(this.entities);
+     }
+
      /**
       * Test equality.
       */
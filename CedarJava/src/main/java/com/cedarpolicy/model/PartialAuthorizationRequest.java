@@ -26,7 +26,6 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.google.common.collect.ImmutableMap;
 
 import java.util.Map;
-import java.util.HashMap;
 import java.util.Optional;
 
 /**
@@ -161,7 +160,7 @@ public class PartialAuthorizationRequest {
         }
 
         public Builder context(Context context) {
-            this.context = Optional.of(ImmutableMap.copyOf(context.getContext()));
+            this.context = Optional.of(context.asMap());
             return this;
         }
 
@@ -170,7 +169,7 @@ public class PartialAuthorizationRequest {
          * @return The builder.
          */
         public Builder emptyContext() {
-            this.context = Optional.of(new HashMap<>());
+            this.context = Optional.of(ImmutableMap.of());
             return this;
         }
 
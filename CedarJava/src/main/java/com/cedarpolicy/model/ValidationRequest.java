@@ -64,6 +64,7 @@ public final class ValidationRequest {
      * @return A `PolicySet` object
      */
     @JsonProperty("policies")
+    @SuppressFBWarnings("EI_EXPOSE_REP")
     public PolicySet getPolicySet() {
         return this.policies;
     }
@@ -21,8 +21,12 @@ import com.cedarpolicy.value.Value;
 import static com.cedarpolicy.CedarJson.objectReader;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -34,6 +38,8 @@ import java.nio.file.Path;
  * mapped to values, zero or more parent entities, and zero or more tags.
  */
 public class Entity {
+    private static final TypeReference<Set<Entity>> ENTITY_SET = new TypeReference<Set<Entity>>() { };
+
     private final EntityUID euid;
 
     /** Key/Value attribute map. */
@@ -90,6 +96,35 @@ public class Entity {
         this.tags = new HashMap<>(tags);
     }
 
+    private Entity(EntityUID uid, ImmutableMap<String, Value> attributes, ImmutableSet<EntityUID> parentsEUIDs,
+                   ImmutableMap<String, Value> tags) {
+        this.attrs = attributes;
+        this.euid = uid;
+        this.parentsEUIDs = parentsEUIDs;
+        this.tags = tags;
+    }
+
+    /**
+     * Create an immutable entity. Its attributes, parents and tags are kept in immutable collections, which are used
+     * as they are when they already are Guava immutable collections, and copied once otherwise. Unlike entities
+     * created with the constructors, whose collections are mutable, an immutable entity can be shared between
+     * threads and requests without copying. Its JSON encoding is computed once and reused by every request it is
+     * sent with, unless sets or records among its attribute and tag values, which can still change, make it encoded
+     * again for every request.
+     *
+     * @param uid          EUID of the Entity.
+     * @param attributes   Key/Value map of attributes.
+     * @param parentsEUIDs Set of parent entities' EUIDs.
+     * @param tags         Key/Value map of tags.
+     * @return The immutable entity
+     * @throws NullPointerException if any argument is null, or any collection contains null
+     */
+    public static Entity immutable(EntityUID uid, Map<String, Value> attributes, Set<EntityUID> parentsEUIDs,
+                                   Map<String, Value> tags) throws NullPointerException {
+        return new Entity(Objects.requireNonNull(uid, "uid"), ImmutableMap.copyOf(attributes),
+                ImmutableSet.copyOf(parentsEUIDs), ImmutableMap.copyOf(tags));
+    }
+
     /**
      * Get the value for the given attribute, or null if not present.
      *
@@ -178,4 +213,47 @@ public class Entity {
         String jsonString = Files.readString(filePath);
         return parse(jsonString);
     }
+
+    /**
+     * Parse a JSON array of Entities, in the same format as the entities passed to the authorizer. Each distinct
+     * entity type name is parsed once for the whole array, which makes this considerably faster than parsing the
+     * entities one at a time.
+     *
+     * @param jsonString The JSON string representation of an array of Entities
+     *
+     * @return Set of Entity objects parsed from the JSON string
+     * @throws JsonProcessingException if the JSON string cannot be parsed into Entities
+     */
+    public static Set<Entity> parseAll(String jsonString) throws JsonProcessingException {
+        return objectReader().forType(ENTITY_SET).readValue(jsonString);
+    }
+
+    /**
+     * Parse a JSON array of Entities from a stream. Entities are read as the stream is consumed, without holding the
+     * whole document in memory. The stream is not closed.
+     *
+     * @param stream Stream of the JSON representation of an array of Entities
+     *
+     * @return Set of Entity objects parsed from the stream
+     * @throws IOException             if there is an error reading the stream
+     * @throws JsonProcessingException if the stream contents cannot be parsed into Entities
+     */
+    public static Set<Entity> parseAll(InputStream stream) throws IOException, JsonProcessingException {
+        return objectReader().forType(ENTITY_SET).readValue(stream);
+    }
+
+    /**
+     * Parse a JSON array of Entities from a file.
+     *
+     * @param filePath Path to the file containing the JSON array of Entities
+     *
+     * @return Set of Entity objects parsed from the file contents
+     * @throws IOException             if there is an error reading the file
+     * @throws JsonProcessingException if the file contents cannot be parsed into Entities
+     */
+    public static Set<Entity> parseAll(Path filePath) throws IOException, JsonProcessingException {
+        try (InputStream stream = Files.newInputStream(filePath)) {
+            return parseAll(stream);
+        }
+    }
 }
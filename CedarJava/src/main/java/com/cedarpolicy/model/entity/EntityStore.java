@@ -0,0 +1,191 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy.model.entity;
+
+import static com.cedarpolicy.CedarJson.objectWriter;
+
+import com.cedarpolicy.loader.LibraryLoader;
+import com.cedarpolicy.model.exception.InternalException;
+import com.cedarpolicy.serializer.JsonEUID;
+import com.cedarpolicy.value.EntityUID;
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A set of entities kept resident in the Cedar native library. Entities can be added, replaced and removed
+ * individually, and authorization requests against the store only send a handle across JNI instead of serializing
+ * the whole entity hierarchy for every request.
+ *
+ * <p>Updates are atomic: a request running concurrently with an update sees either all or none of its changes.
+ * The entities are only kept in the native library, so the store does not hold on to the {@link Entity} objects it
+ * is given. Instances hold native memory and must be closed once they are no longer needed.
+ */
+public final class EntityStore implements AutoCloseable {
+    static {
+        LibraryLoader.loadLibrary();
+    }
+
+    /** Native handle, or 0 once closed. Guarded by {@code this}. */
+    private long handle;
+
+    /** Incremented on every update. Guarded by {@code this}. */
+    private long version;
+
+    private EntityStore(long handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * Create an empty entity store.
+     *
+     * @return the entity store
+     * @throws InternalException if the store could not be created
+     */
+    public static EntityStore create() throws InternalException {
+        return create(Collections.emptySet());
+    }
+
+    /**
+     * Create an entity store holding the given entities.
+     *
+     * @param entities the initial entities
+     * @return the entity store
+     * @throws InternalException if the entities are invalid, for example if two of them have the same EUID
+     * @throws NullPointerException if the entities are null
+     */
+    public static EntityStore create(Collection<Entity> entities) throws InternalException, NullPointerException {
+        return new EntityStore(createEntityStoreJni(toJson(entities)));
+    }
+
+    /**
+     * Add an entity, replacing any entity with the same EUID.
+     *
+     * @param entity the entity to add
+     * @throws InternalException if the entity is invalid
+     * @throws IllegalStateException if the store has been closed
+     */
+    public void upsert(Entity entity) throws InternalException, IllegalStateException {
+        upsertAll(Collections.singletonList(entity));
+    }
+
+    /**
+     * Add entities, replacing any entities with the same EUIDs. All entities are added in a single update, which is
+     * considerably cheaper than adding them one at a time.
+     *
+     * @param updated the entities to add
+     * @throws InternalException if any entity is invalid, in which case the store is unchanged
+     * @throws IllegalStateException if the store has been closed
+     */
+    public synchronized void upsertAll(Collection<Entity> updated) throws InternalException, IllegalStateException {
+        upsertEntitiesJni(getHandle(), toJson(updated));
+        version++;
+    }
+
+    /**
+     * Remove the entity with the given EUID, if present.
+     *
+     * @param euid the EUID of the entity to remove
+     * @throws InternalException if the entity could not be removed
+     * @throws IllegalStateException if the store has been closed
+     */
+    public void remove(EntityUID euid) throws InternalException, IllegalStateException {
+        removeAll(Collections.singletonList(euid));
+    }
+
+    /**
+     * Remove the entities with the given EUIDs. EUIDs that are not in the store are ignored.
+     *
+     * @param euids the EUIDs of the entities to remove
+     * @throws InternalException if the entities could not be removed, in which case the store is unchanged
+     * @throws IllegalStateException if the store has been closed
+     */
+    public synchronized void removeAll(Collection<EntityUID> euids) throws InternalException, IllegalStateException {
+        final List<JsonEUID> json = euids.stream().map(EntityUID::asJson).collect(Collectors.toList());
+        removeEntitiesJni(getHandle(), toJson(json));
+        version++;
+    }
+
+    /**
+     * Get the version of the store, which increases with every update. Two reads returning the same version saw
+     * the same entities.
+     *
+     * @return the current version
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the native handle identifying the store. This is mostly an implementation detail of
+     * {@link com.cedarpolicy.BasicAuthorizationEngine}.
+     *
+     * @return the native handle
+     * @throws IllegalStateException if the store has been closed
+     */
+    public synchronized long getHandle() throws IllegalStateException {
+        if (handle == 0) {
+            throw new IllegalStateException("Entity store has been closed");
+        }
+        return handle;
+    }
+
+    /**
+     * Check whether the native store has been released.
+     *
+     * @return true if {@link #close()} has been called
+     */
+    public synchronized boolean isClosed() {
+        return handle == 0;
+    }
+
+    /** Release the native store. Requests already in flight are unaffected. Closing twice has no effect. */
+    @Override
+    public synchronized void close() {
+        if (handle != 0) {
+            releaseEntityStoreJni(handle);
+            handle = 0;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "EntityStore(handle=" + handle + ", version=" + version + ")";
+    }
+
+    private static String toJson(Object value) throws InternalException {
+        try {
+            return objectWriter().writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new InternalException("JSON Serialization Error: " + e.getMessage());
+        }
+    }
+
+    private static native long createEntityStoreJni(String entitiesJson)
+            throws InternalException, NullPointerException;
+
+    private static native void upsertEntitiesJni(long handle, String entitiesJson)
+            throws InternalException, NullPointerException;
+
+    private static native void removeEntitiesJni(long handle, String euidsJson)
+            throws InternalException, NullPointerException;
+
+    private static native void releaseEntityStoreJni(long handle);
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy.model.policy;
+
+import static com.cedarpolicy.CedarJson.objectWriter;
+
+import com.cedarpolicy.loader.LibraryLoader;
+import com.cedarpolicy.model.exception.InternalException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A policy set that has been parsed once by the Cedar native library and is kept resident there. Authorization
+ * requests against a compiled policy set only send a handle across JNI, so their cost no longer grows with the
+ * number of policies.
+ *
+ * <p>The compiled form is a snapshot: later changes to the source {@link PolicySet} are only reflected once
+ * {@link #update()} is called. Changes made through the methods of {@link PolicySet} are applied to the compiled form
+ * one by one, so only the policies that changed are parsed again; otherwise the policy set is compiled again in full.
+ * Instances hold native memory and must be closed once they are no longer needed.
+ */
+public final class CompiledPolicySet implements AutoCloseable {
+    static {
+        LibraryLoader.loadLibrary();
+    }
+
+    private final PolicySet policySet;
+
+    /** Native handle, or 0 once closed. */
+    private final AtomicLong handle;
+
+    /** The version of the policy set the native policy set reflects. Guarded by {@code this}. */
+    private long compiledVersion;
+
+    private CompiledPolicySet(PolicySet policySet, long handle, long compiledVersion) {
+        this.policySet = policySet;
+        this.handle = new AtomicLong(handle);
+        this.compiledVersion = compiledVersion;
+    }
+
+    /**
+     * Parse a policy set in the native library and keep the result resident.
+     *
+     * @param policySet the policy set to compile
+     * @return the compiled policy set
+     * @throws InternalException if any policy, template or link is invalid
+     * @throws NullPointerException if the policy set is null
+     */
+    public static CompiledPolicySet compile(PolicySet policySet) throws InternalException, NullPointerException {
+        if (policySet == null) {
+            throw new NullPointerException("policySet");
+        }
+        final String policySetJson;
+        final long version;
+        // The version must be the one of the policies that are serialized
+        synchronized (policySet) {
+            version = policySet.getVersion();
+            policySetJson = toJson(policySet);
+        }
+        return new CompiledPolicySet(policySet, compilePolicySetJni(policySetJson), version);
+    }
+
+    /**
+     * Bring the native policy set up to date with the source policy set. If the change log of the source policy set
+     * covers every change since the last compilation or update, only those changes are sent and the policies that did
+     * not change are kept as they are; otherwise the whole policy set is compiled again. Either way the update is
+     * atomic: concurrent requests see the policy set either before or after it, and the handle does not change.
+     *
+     * @throws InternalException if a policy, template or link is invalid, in which case the native policy set is
+     *     unchanged
+     * @throws IllegalStateException if this policy set has been closed
+     */
+    public synchronized void update() throws InternalException, IllegalStateException {
+        final long current = getHandle();
+        final long version;
+        final Optional<List<PolicySetChange>> changes;
+        synchronized (policySet) {
+            version = policySet.getVersion();
+            changes = policySet.getChangesSince(compiledVersion);
+        }
+        if (changes.isPresent()) {
+            try {
+                if (!changes.get().isEmpty()) {
+                    updatePolicySetJni(current, toJson(changesToJson(changes.get())));
+                }
+                compiledVersion = version;
+                return;
+            } catch (InternalException e) {
+                // A policy that was added and removed again may be invalid without the policy set being invalid
+            }
+        }
+        recompile(current);
+    }
+
+    /**
+     * Get the version of the source policy set the native policy set reflects.
+     *
+     * @return the version at the last compilation or update
+     */
+    public synchronized long getCompiledVersion() {
+        return compiledVersion;
+    }
+
+    /**
+     * Get the policy set this was compiled from.
+     *
+     * @return the source policy set
+     */
+    @SuppressFBWarnings("EI_EXPOSE_REP")
+    public PolicySet getPolicySet() {
+        return policySet;
+    }
+
+    /**
+     * Get the native handle identifying the compiled policy set. This is mostly an implementation detail of
+     * {@link com.cedarpolicy.BasicAuthorizationEngine}.
+     *
+     * @return the native handle
+     * @throws IllegalStateException if this policy set has been closed
+     */
+    public long getHandle() throws IllegalStateException {
+        final long h = handle.get();
+        if (h == 0) {
+            throw new IllegalStateException("Compiled policy set has been closed");
+        }
+        return h;
+    }
+
+    /**
+     * Check whether the native policy set has been released.
+     *
+     * @return true if {@link #close()} has been called
+     */
+    public boolean isClosed() {
+        return handle.get() == 0;
+    }
+
+    /** Release the native policy set. Requests already in flight are unaffected. Closing twice has no effect. */
+    @Override
+    public void close() {
+        final long h = handle.getAndSet(0);
+        if (h != 0) {
+            releasePolicySetJni(h);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledPolicySet(handle=" + handle.get() + ", policies=" + policySet.getNumPolicies()
+                + ", templates=" + policySet.getNumTemplates() + ")";
+    }
+
+    private void recompile(long current) throws InternalException {
+        final long version;
+        final String policySetJson;
+        synchronized (policySet) {
+            version = policySet.getVersion();
+            policySetJson = toJson(policySet);
+        }
+        // Replaced in place, since requests that already read the handle may not have sent it yet
+        replacePolicySetJni(current, policySetJson);
+        compiledVersion = version;
+    }
+
+    private static String toJson(Object value) throws InternalException {
+        try {
+            return objectWriter().writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new InternalException("JSON Serialization Error: " + e.getMessage());
+        }
+    }
+
+    /** The changes in the format read by the native library. */
+    private static List<Map<String, Object>> changesToJson(List<PolicySetChange> changes) {
+        final List<Map<String, Object>> json = new ArrayList<>(changes.size());
+        for (PolicySetChange change : changes) {
+            final Map<String, Object> op = new LinkedHashMap<>();
+            switch (change.getKind()) {
+                case ADD_POLICY:
+                    op.put("op", "addPolicy");
+                    op.put("id", change.getId());
+                    op.put("source", change.getPolicy().get().getSource());
+                    break;
+                case REMOVE_POLICY:
+                    op.put("op", "removePolicy");
+                    op.put("id", change.getId());
+                    break;
+                case ADD_TEMPLATE:
+                    op.put("op", "addTemplate");
+                    op.put("id", change.getId());
+                    op.put("source", change.getPolicy().get().getSource());
+                    break;
+                case REMOVE_TEMPLATE:
+                    op.put("op", "removeTemplate");
+                    op.put("id", change.getId());
+                    break;
+                case ADD_TEMPLATE_LINK:
+                    op.put("op", "link");
+                    op.put("link", change.getTemplateLink().get());
+                    break;
+                case REMOVE_TEMPLATE_LINK:
+                    op.put("op", "unlink");
+                    op.put("id", change.getId());
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown change " + change.getKind());
+            }
+            json.add(op);
+        }
+        return json;
+    }
+
+    private static native long compilePolicySetJni(String policySetJson) throws InternalException, NullPointerException;
+
+    private static native void updatePolicySetJni(long handle, String changesJson)
+            throws InternalException, NullPointerException;
+
+    private static native void replacePolicySetJni(long handle, String policySetJson)
+            throws InternalException, NullPointerException;
+
+    private static native void releasePolicySetJni(long handle);
+}
@@ -18,53 +18,355 @@ package com.cedarpolicy.model.policy;
 
 import com.cedarpolicy.loader.LibraryLoader;
 import com.cedarpolicy.model.exception.InternalException;
+import com.google.common.collect.ImmutableCollection;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
-/** Policy set containing policies in the Cedar language. */
+/**
+ * Policy set containing policies in the Cedar language.
+ *
+ * <p>Policies, templates and template links can be added and removed one at a time with methods such as
+ * {@link #addPolicy(Policy)}. Each of these changes increments the {@linkplain #getVersion() version} of the policy
+ * set and is recorded in a change log, so that a {@link CompiledPolicySet} or an index built from the policy set can
+ * apply just the changes instead of starting over. The methods replace the collections in the public fields with
+ * immutable copies, so readers iterating over the previous collections are not affected by the change.
+ *
+ * <p>The public fields can still be assigned or modified directly, but such changes are not tracked: they do not
+ * change the version, and {@link #getChangesSince(long)} no longer knows what changed once they have been made.
+ */
 public class PolicySet {
     static {
         LibraryLoader.loadLibrary();
     }
 
+    /** Number of changes kept in the change log. */
+    private static final int MAX_LOGGED_CHANGES = 1024;
+
     /** Static policies */
+    @SuppressFBWarnings("PA_PUBLIC_PRIMITIVE_ATTRIBUTE")
     public Set<Policy> policies;
 
     /** Template-linked policies */
+    @SuppressFBWarnings("PA_PUBLIC_PRIMITIVE_ATTRIBUTE")
     public List<TemplateLink> templateLinks;
 
     /** Policy templates */
+    @SuppressFBWarnings("PA_PUBLIC_PRIMITIVE_ATTRIBUTE")
     public Set<Policy> templates;
 
+    /** The collections the fields held after the last tracked change, or null before the first one. */
+    private Set<Policy> trackedPolicies;
+    private Set<Policy> trackedTemplates;
+    private List<TemplateLink> trackedTemplateLinks;
+
+    /** The tracked policies, templates and links by ID, or null until the first change builds them. */
+    private Map<String, Policy> policiesById;
+    private Map<String, Policy> templatesById;
+    private Map<String, TemplateLink> templateLinksById;
+
+    /** Incremented on every tracked change. Guarded by {@code this}. */
+    private long version;
+
+    /** The oldest version whose changes are all in {@link #changes}. Guarded by {@code this}. */
+    private long loggedSince;
+
+    /** The most recent changes, oldest first. Guarded by {@code this}. */
+    private final ArrayDeque<PolicySetChange> changes = new ArrayDeque<>();
+
     public PolicySet() {
-        this.policies = Collections.emptySet();
-        this.templates = Collections.emptySet();
-        this.templateLinks = Collections.emptyList();
+        this(Collections.emptySet(), Collections.emptySet(), Collections.emptyList());
     }
 
     public PolicySet(Set<Policy> policies) {
-        this.policies = policies;
-        this.templates = Collections.emptySet();
-        this.templateLinks = Collections.emptyList();
+        this(policies, Collections.emptySet(), Collections.emptyList());
     }
 
     public PolicySet(Set<Policy> policies, Set<Policy> templates) {
-        this.policies = policies;
-        this.templates = templates;
-        this.templateLinks = Collections.emptyList();
+        this(policies, templates, Collections.emptyList());
     }
 
+    @SuppressFBWarnings("EI_EXPOSE_REP2")
     public PolicySet(Set<Policy> policies, Set<Policy> templates, List<TemplateLink> templateLinks) {
         this.policies = policies;
         this.templates = templates;
         this.templateLinks = templateLinks;
+        // Collections that cannot be modified are known not to change behind the change log
+        if (isImmutable(policies) && isImmutable(templates) && isImmutable(templateLinks)) {
+            this.trackedPolicies = policies;
+            this.trackedTemplates = templates;
+            this.trackedTemplateLinks = templateLinks;
+        }
+    }
+
+    /**
+     * Add a static policy.
+     *
+     * @param policy the policy to add
+     * @throws IllegalArgumentException if a policy, template or template link already has the ID of the policy
+     * @throws NullPointerException if the policy is null
+     */
+    public synchronized void addPolicy(Policy policy) throws IllegalArgumentException, NullPointerException {
+        beginChange();
+        checkUnusedId(policy.getID());
+        policies = with(trackedPolicies, policy);
+        policiesById.put(policy.getID(), policy);
+        endChange(new PolicySetChange(version + 1, PolicySetChange.Kind.ADD_POLICY, policy));
+    }
+
+    /**
+     * Replace the static policy with the ID of <code>policy</code>.
+     *
+     * @param policy the new policy
+     * @return the policy that was replaced
+     * @throws IllegalArgumentException if there is no static policy with the ID of the policy
+     * @throws NullPointerException if the policy is null
+     */
+    public synchronized Policy replacePolicy(Policy policy) throws IllegalArgumentException, NullPointerException {
+        beginChange();
+        final Policy replaced = policiesById.get(policy.getID());
+        if (replaced == null) {
+            throw new IllegalArgumentException("No static policy with ID " + policy.getID());
+        }
+        policies = with(without(trackedPolicies, replaced), policy);
+        policiesById.put(policy.getID(), policy);
+        changes.add(new PolicySetChange(version + 1, PolicySetChange.Kind.REMOVE_POLICY, replaced));
+        endChange(new PolicySetChange(version + 1, PolicySetChange.Kind.ADD_POLICY, policy));
+        return replaced;
+    }
+
+    /**
+     * Remove the static policy with the given ID, if present.
+     *
+     * @param policyId the ID of the policy
+     * @return the removed policy, or empty if there was no static policy with that ID
+     */
+    public synchronized Optional<Policy> removePolicy(String policyId) {
+        beginChange();
+        final Policy removed = policiesById.remove(policyId);
+        if (removed == null) {
+            return Optional.empty();
+        }
+        policies = without(trackedPolicies, removed);
+        endChange(new PolicySetChange(version + 1, PolicySetChange.Kind.REMOVE_POLICY, removed));
+        return Optional.of(removed);
+    }
+
+    /**
+     * Add a policy template.
+     *
+     * @param template the template to add
+     * @throws IllegalArgumentException if a policy, template or template link already has the ID of the template
+     * @throws NullPointerException if the template is null
+     */
+    public synchronized void addTemplate(Policy template) throws IllegalArgumentException, NullPointerException {
+        beginChange();
+        checkUnusedId(template.getID());
+        templates = with(trackedTemplates, template);
+        templatesById.put(template.getID(), template);
+        endChange(new PolicySetChange(version + 1, PolicySetChange.Kind.ADD_TEMPLATE, template));
+    }
+
+    /**
+     * Remove the template with the given ID, if present.
+     *
+     * @param templateId the ID of the template
+     * @return the removed template, or empty if there was no template with that ID
+     * @throws IllegalStateException if template links still refer to the template
+     */
+    public synchronized Optional<Policy> removeTemplate(String templateId) throws IllegalStateException {
+        beginChange();
+        final Policy removed = templatesById.get(templateId);
+        if (removed == null) {
+            return Optional.empty();
+        }
+        for (TemplateLink link : trackedTemplateLinks) {
+            if (templateId.equals(link.getTemplateId())) {
+                throw new IllegalStateException("Template " + templateId + " is linked by "
+                        + link.getResultPolicyId());
+            }
+        }
+        templatesById.remove(templateId);
+        templates = without(trackedTemplates, removed);
+        endChange(new PolicySetChange(version + 1, PolicySetChange.Kind.REMOVE_TEMPLATE, removed));
+        return Optional.of(removed);
+    }
+
+    /**
+     * Add a template-linked policy.
+     *
+     * @param link the template link to add
+     * @throws IllegalArgumentException if the template is not in the policy set, or if a policy, template or
+     *     template link already has the ID of the resulting policy
+     * @throws NullPointerException if the link is null
+     */
+    public synchronized void addTemplateLink(TemplateLink link) throws IllegalArgumentException, NullPointerException {
+        beginChange();
+        checkUnusedId(link.getResultPolicyId());
+        if (!templatesById.containsKey(link.getTemplateId())) {
+            throw new IllegalArgumentException("No template with ID " + link.getTemplateId());
+        }
+        templateLinks = with(trackedTemplateLinks, link);
+        templateLinksById.put(link.getResultPolicyId(), link);
+        endChange(new PolicySetChange(version + 1, PolicySetChange.Kind.ADD_TEMPLATE_LINK, link));
+    }
+
+    /**
+     * Remove the template-linked policy with the given ID, if present.
+     *
+     * @param policyId the ID of the template-linked policy
+     * @return the removed link, or empty if there was no template-linked policy with that ID
+     */
+    public synchronized Optional<TemplateLink> removeTemplateLink(String policyId) {
+        beginChange();
+        final TemplateLink removed = templateLinksById.remove(policyId);
+        if (removed == null) {
+            return Optional.empty();
+        }
+        templateLinks = without(trackedTemplateLinks, removed);
+        endChange(new PolicySetChange(version + 1, PolicySetChange.Kind.REMOVE_TEMPLATE_LINK, removed));
+        return Optional.of(removed);
+    }
+
+    /**
+     * Get the version of the policy set, which is incremented by every change made through the methods of this
+     * class. Changes made directly to the public fields do not change it.
+     *
+     * @return the current version
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the changes made since <code>since</code>, oldest first. The log only covers recent changes, and none made
+     * before the public fields were last assigned or modified directly, since those are not tracked.
+     *
+     * @param since a version previously returned by {@link #getVersion()}
+     * @return the changes, or empty if they are not all known and the policy set must be read again in full
+     * @throws IllegalArgumentException if <code>since</code> is greater than the current version
+     */
+    public synchronized Optional<List<PolicySetChange>> getChangesSince(long since) throws IllegalArgumentException {
+        if (since > version) {
+            throw new IllegalArgumentException("Version " + since + " is newer than the current version " + version);
+        }
+        if (!isTracked() || since < loggedSince) {
+            return Optional.empty();
+        }
+        final List<PolicySetChange> result = new ArrayList<>();
+        for (Iterator<PolicySetChange> it = changes.descendingIterator(); it.hasNext();) {
+            final PolicySetChange change = it.next();
+            if (change.getVersion() <= since) {
+                break;
+            }
+            result.add(change);
+        }
+        Collections.reverse(result);
+        return Optional.of(result);
+    }
+
+    /** Whether the fields still hold the collections installed by the last tracked change. */
+    private boolean isTracked() {
+        return trackedPolicies != null && policies == trackedPolicies && templates == trackedTemplates
+                && templateLinks == trackedTemplateLinks;
+    }
+
+    /** Take over the current contents of the fields if they were changed directly, and index them by ID. */
+    private void beginChange() {
+        if (!isTracked()) {
+            // Whatever happened to the fields since the last tracked change is not in the log
+            changes.clear();
+            loggedSince = version + 1;
+            policies = policies == null ? ImmutableSet.of() : ImmutableSet.copyOf(policies);
+            templates = templates == null ? ImmutableSet.of() : ImmutableSet.copyOf(templates);
+            templateLinks = templateLinks == null ? ImmutableList.of() : ImmutableList.copyOf(templateLinks);
+            track();
+            policiesById = null;
+        }
+        if (policiesById == null) {
+            policiesById = new HashMap<>();
+            for (Policy policy : policies) {
+                policiesById.putIfAbsent(policy.getID(), policy);
+            }
+            templatesById = new HashMap<>();
+            for (Policy template : templates) {
+                templatesById.putIfAbsent(template.getID(), template);
+            }
+            templateLinksById = new HashMap<>();
+            for (TemplateLink link : templateLinks) {
+                templateLinksById.putIfAbsent(link.getResultPolicyId(), link);
+            }
+        }
+    }
+
+    /** Record a change whose new collections have been assigned to the fields. */
+    private void endChange(PolicySetChange change) {
+        track();
+        version = change.getVersion();
+        changes.add(change);
+        while (changes.size() > MAX_LOGGED_CHANGES) {
+            loggedSince = changes.removeFirst().getVersion();
+        }
+    }
+
+    private void track() {
+        trackedPolicies = policies;
+        trackedTemplates = templates;
+        trackedTemplateLinks = templateLinks;
+    }
+
+    private void checkUnusedId(String id) {
+        if (policiesById.containsKey(id) || templatesById.containsKey(id) || templateLinksById.containsKey(id)) {
+            throw new IllegalArgumentException("Duplicate policy ID " + id);
+        }
+    }
+
+    private static boolean isImmutable(Collection<?> collection) {
+        return collection instanceof ImmutableCollection || collection == Collections.emptySet()
+                || collection == Collections.emptyList();
+    }
+
+    private static <T> ImmutableSet<T> with(Set<T> elements, T element) {
+        return ImmutableSet.<T>builderWithExpectedSize(elements.size() + 1).addAll(elements).add(element).build();
+    }
+
+    private static <T> ImmutableList<T> with(List<T> elements, T element) {
+        return ImmutableList.<T>builderWithExpectedSize(elements.size() + 1).addAll(elements).add(element).build();
+    }
+
+    private static <T> ImmutableSet<T> without(Set<T> elements, T element) {
+        final ImmutableSet.Builder<T> builder = ImmutableSet.builderWithExpectedSize(elements.size());
+        for (T e : elements) {
+            if (e != element) {
+                builder.add(e);
+            }
+        }
+        return builder.build();
+    }
+
+    private static <T> ImmutableList<T> without(List<T> elements, T element) {
+        final ImmutableList.Builder<T> builder = ImmutableList.builderWithExpectedSize(elements.size());
+        for (T e : elements) {
+            if (e != element) {
+                builder.add(e);
+            }
+        }
+        return builder.build();
     }
 
     /**
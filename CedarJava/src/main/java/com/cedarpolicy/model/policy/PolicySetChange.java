@@ -0,0 +1,104 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy.model.policy;
+
+import java.util.Optional;
+
+/**
+ * One entry of the change log of a {@link PolicySet}. Replacing a policy is logged as its removal followed by the
+ * addition of the new policy, both with the same version.
+ */
+public final class PolicySetChange {
+    /** What a change did. */
+    public enum Kind {
+        ADD_POLICY,
+        REMOVE_POLICY,
+        ADD_TEMPLATE,
+        REMOVE_TEMPLATE,
+        ADD_TEMPLATE_LINK,
+        REMOVE_TEMPLATE_LINK
+    }
+
+    private final long version;
+    private final Kind kind;
+    private final Policy policy;
+    private final TemplateLink templateLink;
+
+    PolicySetChange(long version, Kind kind, Policy policy) {
+        this.version = version;
+        this.kind = kind;
+        this.policy = policy;
+        this.templateLink = null;
+    }
+
+    PolicySetChange(long version, Kind kind, TemplateLink templateLink) {
+        this.version = version;
+        this.kind = kind;
+        this.policy = null;
+        this.templateLink = templateLink;
+    }
+
+    /**
+     * Get the version of the policy set once the change was made.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get what the change did.
+     *
+     * @return the kind of change
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Get the ID of the policy, template or template-linked policy that was added or removed.
+     *
+     * @return the ID
+     */
+    public String getId() {
+        return policy != null ? policy.policyID : templateLink.getResultPolicyId();
+    }
+
+    /**
+     * Get the policy or template that was added or removed.
+     *
+     * @return the policy, or empty for changes to template links
+     */
+    public Optional<Policy> getPolicy() {
+        return Optional.ofNullable(policy);
+    }
+
+    /**
+     * Get the template link that was added or removed.
+     *
+     * @return the template link, or empty for changes to policies and templates
+     */
+    public Optional<TemplateLink> getTemplateLink() {
+        return Optional.ofNullable(templateLink);
+    }
+
+    @Override
+    public String toString() {
+        return "PolicySetChange(version=" + version + ", kind=" + kind + ", id=" + getId() + ")";
+    }
+}
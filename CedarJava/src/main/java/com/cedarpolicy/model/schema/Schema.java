@@ -21,16 +21,39 @@ import com.cedarpolicy.model.exception.InternalException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-/** Represents a schema. */
-public final class Schema {
+/**
+ * Represents a schema.
+ *
+ * <p>A schema obtained from {@link #parse} also owns the schema parsed by the native library, which the
+ * authorization engine reuses instead of parsing the schema again for every request. The native schema is released
+ * by {@link #close()} or, failing that, some time after the schema becomes unreachable, and in either case not before
+ * the calls already using it have returned.
+ */
+public final class Schema implements AutoCloseable {
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
+    /** Native schemas that have not been released yet, so that their references stay reachable. */
+    private static final Set<NativeSchema> NATIVE_SCHEMAS = ConcurrentHashMap.newKeySet();
+
+    /** Native schemas whose owning {@link Schema} has been garbage collected. */
+    private static final ReferenceQueue<Schema> UNREACHABLE = new ReferenceQueue<>();
+
     static {
         LibraryLoader.loadLibrary();
     }
 
+    /** Native schema owned by this schema, or null if it was not parsed by {@link #parse}. */
+    private final NativeSchema nativeSchema;
+
     /** Is this schema in the JSON or Cedar format */
     public final JsonOrCedar type;
 
@@ -51,6 +74,10 @@ public final class Schema {
      * @param schemaText Optional schema in the Cedar schema format.
      */
     public Schema(JsonOrCedar type, Optional<String> schemaJson, Optional<String> schemaText) {
+        this(type, schemaJson, schemaText, 0);
+    }
+
+    private Schema(JsonOrCedar type, Optional<String> schemaJson, Optional<String> schemaText, long handle) {
         this.type = type;
         this.schemaJson = schemaJson.map(jsonStr -> {
             try {
@@ -61,6 +88,7 @@ public final class Schema {
             }
         });
         this.schemaText = schemaText;
+        this.nativeSchema = handle == 0 ? null : new NativeSchema(this, handle);
     }
 
     /**
@@ -76,6 +104,7 @@ public final class Schema {
         this.type = JsonOrCedar.Json;
         this.schemaJson = Optional.of(schemaJson);
         this.schemaText = Optional.empty();
+        this.nativeSchema = null;
     }
 
     /**
@@ -91,6 +120,7 @@ public final class Schema {
         this.type = JsonOrCedar.Cedar;
         this.schemaJson = Optional.empty();
         this.schemaText = Optional.of(schemaText);
+        this.nativeSchema = null;
     }
 
     public String toString() {
@@ -112,16 +142,168 @@ public final class Schema {
      * @return A {@link Schema} that is guaranteed to be valid.
      */
     public static Schema parse(JsonOrCedar type, String str) throws InternalException, NullPointerException {
+        releaseUnreachable();
         if (type == JsonOrCedar.Json) {
-            parseJsonSchemaJni(str);
-            return new Schema(JsonOrCedar.Json, Optional.of(str), Optional.empty());
+            final long handle = parseJsonSchemaJni(str);
+            return new Schema(JsonOrCedar.Json, Optional.of(str), Optional.empty(), handle);
         } else {
-            parseCedarSchemaJni(str);
-            return new Schema(JsonOrCedar.Cedar, Optional.empty(), Optional.of(str));
+            final long handle = parseCedarSchemaJni(str);
+            return new Schema(JsonOrCedar.Cedar, Optional.empty(), Optional.of(str), handle);
         }
 
     }
 
+    /**
+     * Get the handle of the native schema owned by this schema. This is mostly an implementation detail of
+     * {@link com.cedarpolicy.BasicAuthorizationEngine}.
+     *
+     * @return the native handle, or empty if this schema was not created by {@link #parse} or has been closed
+     */
+    public OptionalLong getHandle() {
+        if (nativeSchema == null) {
+            return OptionalLong.empty();
+        }
+        final long handle = nativeSchema.current();
+        return handle == 0 ? OptionalLong.empty() : OptionalLong.of(handle);
+    }
+
+    /**
+     * Keep the native schema owned by this schema from being released until the returned lease is closed, even if
+     * this schema is closed or becomes unreachable meanwhile. This is mostly an implementation detail of
+     * {@link com.cedarpolicy.BasicAuthorizationEngine}, which holds a lease for every native call that refers to the
+     * schema by its handle.
+     *
+     * @return a lease on the native handle, which has no handle if this schema was not created by {@link #parse} or
+     *     has been closed
+     */
+    public HandleLease leaseHandle() {
+        if (nativeSchema == null) {
+            return HandleLease.NONE;
+        }
+        final long handle = nativeSchema.acquire();
+        return handle == 0 ? HandleLease.NONE : new HandleLease(nativeSchema, handle);
+    }
+
+    /**
+     * Release the native schema owned by this schema, if any. The schema remains usable, but the engine goes back
+     * to sending the schema text with every request. Closing twice has no effect.
+     */
+    @Override
+    public void close() {
+        if (nativeSchema != null) {
+            nativeSchema.release();
+        }
+    }
+
+    /** Release the native schemas of every {@link Schema} that has been garbage collected. */
+    private static void releaseUnreachable() {
+        Reference<? extends Schema> ref;
+        while ((ref = UNREACHABLE.poll()) != null) {
+            ((NativeSchema) ref).release();
+        }
+    }
+
+    /**
+     * A lease on the native schema of a {@link Schema}, obtained with {@link #leaseHandle()}. The native schema is not
+     * released before every lease on it has been closed.
+     */
+    public static final class HandleLease implements AutoCloseable {
+        /** A lease without a native schema. */
+        public static final HandleLease NONE = new HandleLease(null, 0);
+
+        private final NativeSchema nativeSchema;
+        private final long handle;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private HandleLease(NativeSchema nativeSchema, long handle) {
+            this.nativeSchema = nativeSchema;
+            this.handle = handle;
+        }
+
+        /**
+         * Get the leased native handle.
+         *
+         * @return the native handle, or empty if there is no native schema
+         */
+        public OptionalLong getHandle() {
+            return nativeSchema == null ? OptionalLong.empty() : OptionalLong.of(handle);
+        }
+
+        /** Let the native schema be released if its schema was closed or collected meanwhile. */
+        @Override
+        public void close() {
+            if (nativeSchema != null && closed.compareAndSet(false, true)) {
+                nativeSchema.releaseLease();
+            }
+        }
+    }
+
+    /**
+     * A native schema handle, released once its owning {@link Schema} is closed or garbage collected and no lease on
+     * it is still open.
+     */
+    private static final class NativeSchema extends PhantomReference<Schema> {
+        /** The native handle, or 0 once released. Guarded by {@code this}, as are the fields below. */
+        private long handle;
+        private int leases;
+        private boolean released;
+
+        NativeSchema(Schema owner, long handle) {
+            super(owner, UNREACHABLE);
+            this.handle = handle;
+            NATIVE_SCHEMAS.add(this);
+        }
+
+        /** The handle, or 0 if it is being released. */
+        synchronized long current() {
+            return released ? 0 : handle;
+        }
+
+        /** Take a lease on the handle, or return 0 if it is being released. */
+        synchronized long acquire() {
+            if (released) {
+                return 0;
+            }
+            leases++;
+            return handle;
+        }
+
+        void releaseLease() {
+            final long h;
+            synchronized (this) {
+                leases--;
+                if (!released || leases > 0) {
+                    return;
+                }
+                h = handle;
+                handle = 0;
+            }
+            free(h);
+        }
+
+        void release() {
+            final long h;
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                if (leases > 0) {
+                    // Freed by the last lease instead
+                    return;
+                }
+                h = handle;
+                handle = 0;
+            }
+            free(h);
+        }
+
+        private void free(long h) {
+            releaseSchemaJni(h);
+            NATIVE_SCHEMAS.remove(this);
+        }
+    }
+
     /** Specifies the schema format used. */
     public enum JsonOrCedar {
         /**
@@ -136,7 +318,9 @@ public final class Schema {
         Cedar
     }
 
-    private static native String parseJsonSchemaJni(String schemaJson) throws InternalException, NullPointerException;
+    private static native long parseJsonSchemaJni(String schemaJson) throws InternalException, NullPointerException;
+
+    private static native long parseCedarSchemaJni(String schemaText) throws InternalException, NullPointerException;
 
-    private static native String parseCedarSchemaJni(String schemaText) throws InternalException, NullPointerException;
+    private static native void releaseSchemaJni(long handle);
 }
@@ -0,0 +1,239 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy.serializer;
+
+import com.cedarpolicy.model.AuthorizationResponse;
+import com.cedarpolicy.model.AuthorizationResponse.SuccessOrFailure;
+import com.cedarpolicy.model.AuthorizationSuccessResponse;
+import com.cedarpolicy.model.AuthorizationSuccessResponse.AuthorizationError;
+import com.cedarpolicy.model.AuthorizationSuccessResponse.Decision;
+import com.cedarpolicy.metrics.NativeTimings;
+import com.cedarpolicy.model.DetailedError;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Deserialize Json to AuthorizationResponse in a single pass over the tokens, building the immutable collections of
+ * the response directly. Responses without errors, by far the most common, never go through Jackson's generic
+ * binding; errors are rare and are bound with the annotations of {@link DetailedError}.
+ *
+ * <p>The native library adds the time it spent on the request when asked to. These timings are not part of the
+ * response; they are passed to the <code>Consumer&lt;NativeTimings&gt;</code> set as the
+ * <code>NativeTimings.class</code> attribute of the reader, and skipped if there is none.
+ */
+public class AuthorizationResponseDeserializer extends JsonDeserializer<AuthorizationResponse> {
+
+    @Override
+    public AuthorizationResponse deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (!parser.isExpectedStartObjectToken()) {
+            return (AuthorizationResponse) context.handleUnexpectedToken(AuthorizationResponse.class, parser);
+        }
+        SuccessOrFailure type = null;
+        AuthorizationSuccessResponse success = null;
+        ImmutableList<DetailedError> errors = null;
+        ImmutableList<String> warnings = ImmutableList.of();
+        for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+            final JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (field) {
+                case "type":
+                    type = parseType(parser, context);
+                    break;
+                case "response":
+                    success = parseSuccess(parser, context);
+                    break;
+                case "errors":
+                    errors = parseList(parser, context, DetailedError.class);
+                    break;
+                case "warnings":
+                    warnings = parseStrings(parser, context);
+                    break;
+                case "timings":
+                    parseTimings(parser, context);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return AuthorizationResponse.of(type, Optional.ofNullable(success), Optional.ofNullable(errors), warnings);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void parseTimings(JsonParser parser, DeserializationContext context) throws IOException {
+        final Object receiver = context.getAttribute(NativeTimings.class);
+        if (!(receiver instanceof Consumer)) {
+            parser.skipChildren();
+            return;
+        }
+        expectStartObject(parser, context);
+        long parseNanos = -1;
+        long evaluationNanos = -1;
+        long totalNanos = 0;
+        for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+            if (parser.nextToken() == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (field) {
+                case "parseNanos":
+                    parseNanos = parser.getLongValue();
+                    break;
+                case "evaluationNanos":
+                    evaluationNanos = parser.getLongValue();
+                    break;
+                case "totalNanos":
+                    totalNanos = parser.getLongValue();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        ((Consumer<NativeTimings>) receiver).accept(new NativeTimings(parseNanos, evaluationNanos, totalNanos));
+    }
+
+    private static SuccessOrFailure parseType(JsonParser parser, DeserializationContext context) throws IOException {
+        final String text = expectString(parser, context);
+        switch (text) {
+            case "success":
+                return SuccessOrFailure.Success;
+            case "failure":
+                return SuccessOrFailure.Failure;
+            default:
+                return context.reportInputMismatch(SuccessOrFailure.class, "Unknown response type \"%s\"", text);
+        }
+    }
+
+    private static AuthorizationSuccessResponse parseSuccess(JsonParser parser, DeserializationContext context)
+            throws IOException {
+        expectStartObject(parser, context);
+        Decision decision = null;
+        ImmutableSet<String> reason = ImmutableSet.of();
+        ImmutableList<AuthorizationError> errors = ImmutableList.of();
+        for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+            final JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (field) {
+                case "decision":
+                    decision = parseDecision(parser, context);
+                    break;
+                case "diagnostics":
+                    expectStartObject(parser, context);
+                    for (String name = parser.nextFieldName(); name != null; name = parser.nextFieldName()) {
+                        final JsonToken value = parser.nextToken();
+                        if (value == JsonToken.VALUE_NULL) {
+                            continue;
+                        }
+                        if (name.equals("reason")) {
+                            reason = parseStringSet(parser, context);
+                        } else if (name.equals("errors")) {
+                            errors = parseList(parser, context, AuthorizationError.class);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return new AuthorizationSuccessResponse(decision, new AuthorizationSuccessResponse.Diagnostics(reason, errors));
+    }
+
+    private static Decision parseDecision(JsonParser parser, DeserializationContext context) throws IOException {
+        final String text = expectString(parser, context);
+        switch (text) {
+            case "allow":
+                return Decision.Allow;
+            case "deny":
+                return Decision.Deny;
+            default:
+                return context.reportInputMismatch(Decision.class, "Unknown decision \"%s\"", text);
+        }
+    }
+
+    private static ImmutableSet<String> parseStringSet(JsonParser parser, DeserializationContext context)
+            throws IOException {
+        expectStartArray(parser, context);
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return ImmutableSet.of();
+        }
+        final ImmutableSet.Builder<String> strings = ImmutableSet.builder();
+        for (; token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+            strings.add(expectString(parser, context));
+        }
+        return strings.build();
+    }
+
+    private static ImmutableList<String> parseStrings(JsonParser parser, DeserializationContext context)
+            throws IOException {
+        expectStartArray(parser, context);
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return ImmutableList.of();
+        }
+        final ImmutableList.Builder<String> strings = ImmutableList.builder();
+        for (; token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+            strings.add(expectString(parser, context));
+        }
+        return strings.build();
+    }
+
+    private static <T> ImmutableList<T> parseList(JsonParser parser, DeserializationContext context, Class<T> type)
+            throws IOException {
+        expectStartArray(parser, context);
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return ImmutableList.of();
+        }
+        final ImmutableList.Builder<T> elements = ImmutableList.builder();
+        for (; token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+            elements.add(context.readValue(parser, type));
+        }
+        return elements.build();
+    }
+
+    private static String expectString(JsonParser parser, DeserializationContext context) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_STRING) {
+            context.reportWrongTokenException(String.class, JsonToken.VALUE_STRING, null);
+        }
+        return parser.getText();
+    }
+
+    private static void expectStartObject(JsonParser parser, DeserializationContext context) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            context.reportWrongTokenException(AuthorizationResponse.class, JsonToken.START_OBJECT, null);
+        }
+    }
+
+    private static void expectStartArray(JsonParser parser, DeserializationContext context) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            context.reportWrongTokenException(AuthorizationResponse.class, JsonToken.START_ARRAY, null);
+        }
+    }
+}
@@ -17,27 +17,27 @@
 package com.cedarpolicy.serializer;
 
 import com.cedarpolicy.model.exception.InvalidValueDeserializationException;
+import com.cedarpolicy.value.EntityIdentifier;
+import com.cedarpolicy.value.EntityTypeName;
 import com.cedarpolicy.value.Value;
 import com.cedarpolicy.value.EntityUID;
 import com.cedarpolicy.model.entity.Entity;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.IOException;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Optional;
 import java.util.Set;
-import java.util.Spliterator;
-import java.util.Spliterators;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 /**
- * Deserialize Json to Entity.
+ * Deserialize Json to Entity. Entities are read straight from the token stream, and entity type names are parsed once
+ * per distinct name in a document, so that reading a large set of entities in one call makes few JNI calls.
  */
 public class EntityDeserializer extends JsonDeserializer<Entity> {
 
@@ -54,104 +54,124 @@ public class EntityDeserializer extends JsonDeserializer<Entity> {
     @Override
     public Entity deserialize(JsonParser parser, DeserializationContext context)
             throws IOException, InvalidValueDeserializationException {
-        final JsonNode node = parser.getCodec().readTree(parser);
-        final ObjectMapper mapper = (ObjectMapper) parser.getCodec();
-
-        EntityUID euid;
-        if (node.has("uid")) {
-            JsonNode uidNode = node.get("uid");
-            euid = parseEntityUID(parser, uidNode);
-        } else {
-            String msg = "\"uid\" not found";
-            throw new InvalidValueDeserializationException(parser, msg, node.asToken(), Entity.class);
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            String msg = "Entity must be a JSON object";
+            throw new InvalidValueDeserializationException(parser, msg, parser.currentToken(), Entity.class);
         }
 
-        Map<String, Value> attrs;
-        if (node.has("attrs")) {
-            JsonNode attrsNode = node.get("attrs");
-            if (attrsNode.isObject()) {
-                attrs = parseValueMap(mapper, attrsNode);
-            } else {
-                String msg = "\"attrs\" must be a JSON object";
-                throw new InvalidValueDeserializationException(parser, msg, attrsNode.asToken(), Entity.class);
+        EntityUID euid = null;
+        Map<String, Value> attrs = null;
+        Set<EntityUID> parentEUIDs = null;
+        Map<String, Value> tags = new HashMap<>();
+        for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+            parser.nextToken();
+            switch (field) {
+                case "uid":
+                    euid = parseEntityUID(parser, context);
+                    break;
+                case "attrs":
+                    attrs = parseValueMap(parser, context, "\"attrs\" must be a JSON object");
+                    break;
+                case "parents":
+                    parentEUIDs = parseParents(parser, context);
+                    break;
+                case "tags":
+                    tags = parseValueMap(parser, context, "\"tags\" must be a JSON object");
+                    break;
+                default:
+                    parser.skipChildren();
             }
-        } else {
-            String msg = "\"attrs\" not found";
-            throw new InvalidValueDeserializationException(parser, msg, node.asToken(), Entity.class);
         }
 
-        Set<EntityUID> parentEUIDs;
-        if (node.has("parents")) {
-            JsonNode parentsNode = node.get("parents");
-            if (parentsNode.isArray()) {
-                parentEUIDs = StreamSupport.stream(parentsNode.spliterator(), false).map(parentNode -> {
-                    try {
-                        return parseEntityUID(parser, parentNode);
-                    } catch (InvalidValueDeserializationException e) {
-                        throw new RuntimeException(e);
-                    }
-                }).collect(Collectors.toSet());
-            } else {
-                String msg = "\"parents\" field must be a JSON array";
-                throw new InvalidValueDeserializationException(parser, msg, parentsNode.asToken(), Entity.class);
-            }
-        } else {
-            String msg = "\"parents\" not found";
-            throw new InvalidValueDeserializationException(parser, msg, node.asToken(), Entity.class);
+        if (euid == null) {
+            String msg = "\"uid\" not found";
+            throw new InvalidValueDeserializationException(parser, msg, parser.currentToken(), Entity.class);
         }
-
-        Map<String, Value> tags = new HashMap<>();
-        if (node.has("tags")) {
-            JsonNode tagsNode = node.get("tags");
-            if (tagsNode.isObject()) {
-                tags.putAll(parseValueMap(mapper, tagsNode));
-            } else {
-                String msg = "\"tags\" must be a JSON object";
-                throw new InvalidValueDeserializationException(parser, msg, tagsNode.asToken(), Entity.class);
-            }
+        if (attrs == null) {
+            String msg = "\"attrs\" not found";
+            throw new InvalidValueDeserializationException(parser, msg, parser.currentToken(), Entity.class);
+        }
+        if (parentEUIDs == null) {
+            String msg = "\"parents\" not found";
+            throw new InvalidValueDeserializationException(parser, msg, parser.currentToken(), Entity.class);
         }
         return new Entity(euid, attrs, parentEUIDs, tags);
     }
 
     /**
-     * Parses a JSON node into an EntityUID object.
+     * Parses the entity UID object at the current token.
      *
-     * @param parser        The JsonParser used for error reporting
-     * @param entityUIDJson The JsonNode containing the entity UID data to parse. Must have "type" and "id" fields.
+     * @param parser  The JsonParser positioned on the start of the entity UID. Must have "type" and "id" fields.
+     * @param context The deserialization context, which caches parsed entity type names
      *
      * @return An EntityUID object constructed from the JSON data
+     * @throws IOException                          If there is an error reading from the JsonParser
      * @throws InvalidValueDeserializationException if the required fields are missing or invalid
      */
-    private EntityUID parseEntityUID(JsonParser parser, JsonNode entityUIDJson)
-            throws InvalidValueDeserializationException {
-        if (entityUIDJson.has("type") && entityUIDJson.has("id")) {
-            JsonEUID jsonEuid = new JsonEUID(entityUIDJson.get("type").asText(), entityUIDJson.get("id").asText());
-            return EntityUID.parseFromJson(jsonEuid).get();
+    private static EntityUID parseEntityUID(JsonParser parser, DeserializationContext context) throws IOException {
+        String type = null;
+        String id = null;
+        if (parser.currentToken() == JsonToken.START_OBJECT) {
+            for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+                final JsonToken token = parser.nextToken();
+                if (field.equals("type") && token.isScalarValue()) {
+                    type = parser.getText();
+                } else if (field.equals("id") && token.isScalarValue()) {
+                    id = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
         } else {
+            parser.skipChildren();
+        }
+        if (type == null || id == null) {
             String msg = "\"type\" or \"id\" not found";
-            throw new InvalidValueDeserializationException(parser, msg, entityUIDJson.asToken(), Entity.class);
+            throw new InvalidValueDeserializationException(parser, msg, parser.currentToken(), Entity.class);
+        }
+        final Optional<EntityTypeName> typeName = EntityTypeNameCache.parse(context, type);
+        if (!typeName.isPresent()) {
+            String msg = "Invalid entity type name: " + type;
+            throw new InvalidValueDeserializationException(parser, msg, parser.currentToken(), Entity.class);
         }
+        return new EntityUID(typeName.get(), new EntityIdentifier(id));
+    }
+
+    private static Set<EntityUID> parseParents(JsonParser parser, DeserializationContext context) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            String msg = "\"parents\" field must be a JSON array";
+            throw new InvalidValueDeserializationException(parser, msg, parser.currentToken(), Entity.class);
+        }
+        final Set<EntityUID> parents = new HashSet<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            parents.add(parseEntityUID(parser, context));
+        }
+        return parents;
     }
 
     /**
-     * Parses a JSON node containing key-value pairs into a Map of String to Value objects.
+     * Parses the JSON object at the current token into a Map of String to Value objects.
      *
-     * @param mapper       The ObjectMapper used to convert JSON nodes to Value objects
-     * @param valueMapJson The JsonNode containing the key-value pairs to parse
+     * @param parser  The JsonParser positioned on the start of the object
+     * @param context The deserialization context used to read the values
+     * @param msg     Error message if the current token is not an object
      *
      * @return A Map where keys are Strings and values are Value objects
-     * @throws RuntimeException if there is an error converting a JSON node to a Value
+     * @throws IOException if there is an error reading a value
      */
-    private Map<String, Value> parseValueMap(ObjectMapper mapper, JsonNode valueMapJson) {
-        Map<String, Value> valueMap = StreamSupport
-                .stream(Spliterators.spliteratorUnknownSize(valueMapJson.fields(), Spliterator.ORDERED), false)
-                .collect(Collectors.toMap(Map.Entry::getKey, entry -> {
-                    try {
-                        return mapper.treeToValue(entry.getValue(), Value.class);
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
-                }));
+    private static Map<String, Value> parseValueMap(JsonParser parser, DeserializationContext context, String msg)
+            throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw new InvalidValueDeserializationException(parser, msg, parser.currentToken(), Entity.class);
+        }
+        final Map<String, Value> valueMap = new HashMap<>();
+        for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+            if (parser.nextToken() == JsonToken.VALUE_NULL) {
+                String nullMsg = "Value of \"" + field + "\" must not be null";
+                throw new InvalidValueDeserializationException(parser, nullMsg, parser.currentToken(), Entity.class);
+            }
+            valueMap.put(field, context.readValue(parser, Value.class));
+        }
         return valueMap;
     }
 }
@@ -17,27 +17,79 @@
 package com.cedarpolicy.serializer;
 
 import com.cedarpolicy.model.entity.Entity;
+import com.cedarpolicy.value.Decimal;
 import com.cedarpolicy.value.EntityUID;
+import com.cedarpolicy.value.IpAddress;
+import com.cedarpolicy.value.PrimBool;
+import com.cedarpolicy.value.PrimLong;
+import com.cedarpolicy.value.PrimString;
+import com.cedarpolicy.value.Unknown;
+import com.cedarpolicy.value.Value;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializerProvider;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import java.io.IOException;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
 
-/** Serialize an entity. */
+/**
+ * Serialize an entity. The JSON of immutable entities, created with
+ * {@link Entity#immutable(EntityUID, java.util.Map, java.util.Set, java.util.Map)}, is cached so that entities shared
+ * between requests are encoded once, unless one of their attribute or tag values is a set or record, which can still
+ * change.
+ */
 public class EntitySerializer extends JsonSerializer<Entity> {
+    /** The value classes whose instances cannot change. Subclasses are not included, since they might. */
+    private static final Set<Class<? extends Value>> IMMUTABLE_VALUES = ImmutableSet.of(PrimBool.class,
+            PrimLong.class, PrimString.class, EntityUID.class, Decimal.class, IpAddress.class, Unknown.class);
 
     /** Serialize an entity. */
     @Override
     public void serialize(
             Entity entity, JsonGenerator jsonGenerator, SerializerProvider serializerProvider)
             throws IOException {
+        if (entity.attrs instanceof ImmutableMap && entity.parentsEUIDs instanceof ImmutableSet
+                && entity.tags instanceof ImmutableMap && hasImmutableValues(entity.attrs)
+                && hasImmutableValues(entity.tags)) {
+            JsonFragmentCache.write(entity, JsonFragmentCache.IMMUTABLE, jsonGenerator, serializerProvider,
+                    EntitySerializer::writeEntity);
+        } else {
+            writeEntity(entity, jsonGenerator, serializerProvider);
+        }
+    }
+
+    private static void writeEntity(
+            Entity entity, JsonGenerator jsonGenerator, SerializerProvider serializerProvider)
+            throws IOException {
+        jsonGenerator.writeStartObject();
+        jsonGenerator.writeFieldName("uid");
+        writeEUID(entity.getEUID(), jsonGenerator);
+        serializerProvider.defaultSerializeField("attrs", entity.attrs, jsonGenerator);
+        jsonGenerator.writeArrayFieldStart("parents");
+        for (EntityUID parent : entity.parentsEUIDs) {
+            writeEUID(parent, jsonGenerator);
+        }
+        jsonGenerator.writeEndArray();
+        serializerProvider.defaultSerializeField("tags", entity.tags, jsonGenerator);
+        jsonGenerator.writeEndObject();
+    }
+
+    private static boolean hasImmutableValues(Map<String, Value> values) {
+        for (Value value : values.values()) {
+            if (!IMMUTABLE_VALUES.contains(value.getClass())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Write an EUID the way {@link JsonEUID} is serialized, without creating one. */
+    private static void writeEUID(EntityUID euid, JsonGenerator jsonGenerator) throws IOException {
         jsonGenerator.writeStartObject();
-        jsonGenerator.writeObjectField("uid", entity.getEUID().asJson());
-        jsonGenerator.writeObjectField("attrs", entity.attrs);
-        jsonGenerator.writeObjectField("parents",
-                entity.getParents().stream().map(EntityUID::asJson).collect(Collectors.toSet()));
-        jsonGenerator.writeObjectField("tags", entity.tags);
+        jsonGenerator.writeStringField("type", euid.getType().toString());
+        jsonGenerator.writeStringField("id", euid.getId().toString());
         jsonGenerator.writeEndObject();
     }
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy.serializer;
+
+import com.cedarpolicy.value.EntityTypeName;
+import com.fasterxml.jackson.databind.DeserializationContext;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Parsed entity type names, remembered for the duration of a single deserialization call. Parsing a type name is a
+ * JNI call, and a document with many entities repeats the same few type names for every entity, parent and entity
+ * reference in its attributes, so each distinct name is only parsed once per document. Parsed names are interned,
+ * so that entities read by different calls share the same type name instances.
+ */
+final class EntityTypeNameCache {
+    /** Key of the cache among the per-call attributes of the deserialization context. */
+    private static final Object ATTRIBUTE = EntityTypeNameCache.class;
+
+    /** Bound on the distinct names remembered per call, so that adversarial input cannot grow the cache. */
+    private static final int MAX_ENTRIES = 1024;
+
+    private EntityTypeNameCache() {
+    }
+
+    /**
+     * Parse an entity type name, reusing the result of an earlier parse of the same string in this call.
+     *
+     * @param context The deserialization context of the current call
+     * @param src The string to parse
+     * @return The entity type name, or empty if <code>src</code> is not a valid entity type name
+     */
+    static Optional<EntityTypeName> parse(DeserializationContext context, String src) {
+        @SuppressWarnings("unchecked")
+        Map<String, Optional<EntityTypeName>> cache =
+                (Map<String, Optional<EntityTypeName>>) context.getAttribute(ATTRIBUTE);
+        if (cache == null) {
+            cache = new HashMap<>();
+            context.setAttribute(ATTRIBUTE, cache);
+        }
+        Optional<EntityTypeName> parsed = cache.get(src);
+        if (parsed == null) {
+            parsed = EntityTypeName.parse(src).map(EntityTypeName::intern);
+            if (cache.size() < MAX_ENTRIES) {
+                cache.put(src, parsed);
+            }
+        }
+        return parsed;
+    }
+}
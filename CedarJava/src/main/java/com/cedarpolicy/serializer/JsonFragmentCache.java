@@ -0,0 +1,120 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy.serializer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * Encoded JSON of policies, policy sets and entities, so that objects reused across many requests are encoded once
+ * and then copied into every request as they are. Entries are looked up by identity and kept while their object is
+ * reachable, up to {@link #MAX_CACHED_CHARS} characters in total.
+ *
+ * <p>An entry also remembers the objects its JSON was computed from, such as the collections and policies of a policy
+ * set, and is only used while the owner still has exactly those. Changing a mutable owner, for example by adding a
+ * policy to a policy set, therefore encodes it again.
+ */
+final class JsonFragmentCache {
+    /** The owner has no parts that can change. */
+    static final Object[] IMMUTABLE = new Object[0];
+
+    private static final long MAX_CACHED_CHARS = 64L * 1024 * 1024;
+
+    private static final Cache<Object, Fragment> FRAGMENTS = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumWeight(MAX_CACHED_CHARS)
+            .weigher((Object owner, Fragment fragment) -> fragment.json.charLength())
+            .build();
+
+    private JsonFragmentCache() {
+    }
+
+    /**
+     * Writes the JSON of a value to a generator.
+     *
+     * @param <T> the type of the value
+     */
+    @FunctionalInterface
+    interface ValueWriter<T> {
+        void write(T value, JsonGenerator generator, SerializerProvider provider) throws IOException;
+    }
+
+    /**
+     * Write <code>value</code>, reusing its cached JSON if it was computed from <code>parts</code>. Only JSON text
+     * can be spliced, so values written in other formats, such as CBOR, are always written with
+     * <code>writer</code>.
+     *
+     * @param value the value to write, which must not be one of its own parts
+     * @param parts the objects the JSON of <code>value</code> depends on, compared by identity
+     * @param generator the generator to write to
+     * @param provider the provider of serializers for nested values
+     * @param writer writes the JSON of <code>value</code> when it is not cached
+     * @throws IOException if writing fails
+     */
+    static <T> void write(T value, Object[] parts, JsonGenerator generator, SerializerProvider provider,
+                          ValueWriter<T> writer) throws IOException {
+        final ObjectCodec codec = generator.getCodec();
+        if (!(generator instanceof JsonGeneratorImpl) || codec == null) {
+            writer.write(value, generator, provider);
+            return;
+        }
+        final Fragment cached = FRAGMENTS.getIfPresent(value);
+        if (cached != null && cached.isComputedFrom(parts)) {
+            generator.writeRawValue(cached.json);
+            return;
+        }
+        final StringWriter json = new StringWriter();
+        try (JsonGenerator fragment = codec.getFactory().createGenerator(json)) {
+            writer.write(value, fragment, provider);
+        }
+        final Fragment computed = new Fragment(parts, json.toString());
+        FRAGMENTS.put(value, computed);
+        generator.writeRawValue(computed.json);
+    }
+
+    private static final class Fragment {
+        private final Object[] parts;
+        /** Caches its UTF-8 encoding, which is copied as is into byte based generators. */
+        private final SerializableString json;
+
+        Fragment(Object[] parts, String json) {
+            this.parts = parts;
+            this.json = new SerializedString(json);
+        }
+
+        boolean isComputedFrom(Object[] current) {
+            if (parts.length != current.length) {
+                return false;
+            }
+            for (int i = 0; i < parts.length; i++) {
+                if (parts[i] != current[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -16,13 +16,21 @@
 
 package com.cedarpolicy.serializer;
 
+import com.cedarpolicy.model.policy.Policy;
 import com.cedarpolicy.model.policy.PolicySet;
+import com.cedarpolicy.model.policy.TemplateLink;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
 
-/** Serialize a policy set. */
+/**
+ * Serialize a policy set. The JSON of a policy set and of its policies is cached, so that a policy set used for many
+ * requests is only encoded again after it changes.
+ */
 public class PolicySetSerializer extends JsonSerializer<PolicySet> {
 
     /** Serialize a policy set. */
@@ -30,10 +38,62 @@ public class PolicySetSerializer extends JsonSerializer<PolicySet> {
     public void serialize(
             PolicySet policySet, JsonGenerator jsonGenerator, SerializerProvider serializerProvider)
             throws IOException {
+        for (TemplateLink link : policySet.templateLinks) {
+            // A subclass could return different link values each time, which the cached JSON would not reflect
+            if (link.getClass() != TemplateLink.class) {
+                writePolicySet(policySet, jsonGenerator, serializerProvider);
+                return;
+            }
+        }
+        JsonFragmentCache.write(policySet, parts(policySet), jsonGenerator, serializerProvider,
+                PolicySetSerializer::writePolicySet);
+    }
+
+    private static void writePolicySet(
+            PolicySet policySet, JsonGenerator jsonGenerator, SerializerProvider serializerProvider)
+            throws IOException {
         jsonGenerator.writeStartObject();
-        jsonGenerator.writeObjectField("staticPolicies", policySet.getStaticPolicies());
-        jsonGenerator.writeObjectField("templates", policySet.getTemplates());
-        jsonGenerator.writeObjectField("templateLinks", policySet.templateLinks);
+        writePolicies(jsonGenerator, serializerProvider, "staticPolicies", policySet.policies);
+        writePolicies(jsonGenerator, serializerProvider, "templates", policySet.templates);
+        serializerProvider.defaultSerializeField("templateLinks", policySet.templateLinks, jsonGenerator);
         jsonGenerator.writeEndObject();
     }
+
+    private static void writePolicies(JsonGenerator jsonGenerator, SerializerProvider serializerProvider,
+                                      String fieldName, Set<Policy> policies) throws IOException {
+        jsonGenerator.writeObjectFieldStart(fieldName);
+        final Set<String> ids = new HashSet<>();
+        for (Policy policy : policies) {
+            if (!ids.add(policy.getID())) {
+                throw JsonMappingException.from(jsonGenerator, "Duplicate policy ID " + policy.getID());
+            }
+            jsonGenerator.writeFieldName(policy.getID());
+            JsonFragmentCache.write(policy, JsonFragmentCache.IMMUTABLE, jsonGenerator, serializerProvider,
+                    (p, generator, provider) -> generator.writeString(p.getSource()));
+        }
+        jsonGenerator.writeEndObject();
+    }
+
+    /**
+     * The collections of the policy set and their elements, which its JSON depends on. The values of a template link
+     * are copied into an immutable list when it is created, so the link stands for its values.
+     */
+    private static Object[] parts(PolicySet policySet) {
+        final Object[] parts = new Object[3 + policySet.policies.size() + policySet.templates.size()
+                + policySet.templateLinks.size()];
+        int i = 0;
+        parts[i++] = policySet.policies;
+        parts[i++] = policySet.templates;
+        parts[i++] = policySet.templateLinks;
+        for (Policy policy : policySet.policies) {
+            parts[i++] = policy;
+        }
+        for (Policy template : policySet.templates) {
+            parts[i++] = template;
+        }
+        for (TemplateLink link : policySet.templateLinks) {
+            parts[i++] = link;
+        }
+        return parts;
+    }
 }
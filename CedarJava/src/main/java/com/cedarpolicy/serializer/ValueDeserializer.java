@@ -31,12 +31,11 @@ import com.cedarpolicy.value.PrimString;
 import com.cedarpolicy.value.Unknown;
 import com.cedarpolicy.value.Value;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.JsonTokenId;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
 
@@ -46,109 +45,153 @@ public class ValueDeserializer extends JsonDeserializer<Value> {
     private static final String ENTITY_ESCAPE_SEQ = "__entity";
     private static final String EXTENSION_ESCAPE_SEQ = "__extn";
 
-    private enum EscapeType {
-        ENTITY,
-        EXTENSION,
-        UNRECOGNIZED
-    }
-
-    /** Deserialize Json to Value. */
+    /**
+     * Deserialize Json to Value. Values are read straight from the token stream: the first field name of an object
+     * decides whether it is an escaped entity or extension value, and lists and records are built as their elements
+     * are read.
+     */
     @Override
     public Value deserialize(JsonParser parser, DeserializationContext context) throws IOException {
-        final JsonNode node = parser.getCodec().readTree(parser);
-        final ObjectMapper mapper = (ObjectMapper) parser.getCodec();
         try {
-            if (node.canConvertToLong()) {
-                return new PrimLong(node.asLong());
-            } else if (node.isBoolean()) {
-                return new PrimBool(node.asBoolean());
-            } else if (node.isTextual()) {
-                return new PrimString(node.asText());
-            } else if (node.isArray()) {
-                CedarList myNode = new CedarList();
-                Iterator<JsonNode> iter = node.elements();
-                while (iter.hasNext()) {
-                    myNode.add(mapper.treeToValue(iter.next(), Value.class));
+            return parseValue(parser, context);
+        } catch (StackOverflowError e) {
+            throw new DeserializationRecursionDepthException("Stack overflow while deserializing value. " + e.toString());
+        }
+    }
+
+    /** Parse the value starting at the current token, leaving the parser on the last token of the value. */
+    private static Value parseValue(JsonParser parser, DeserializationContext context) throws IOException {
+        switch (parser.currentTokenId()) {
+            case JsonTokenId.ID_NUMBER_INT:
+                if (parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER) {
+                    throw invalid(parser, parser.getText(), Object.class);
                 }
-                return myNode;
-            } else if (node.isObject()) {
-                Iterator<Map.Entry<String, JsonNode>> iter = node.fields();
-                // Do two passes, one to check if it is an escaped entity or extension and a second to
-                // write into a
-                // map
-                EscapeType escapeType = EscapeType.UNRECOGNIZED;
-                int count = 0;
-                while (iter.hasNext()) {
-                    count++;
-                    Map.Entry<String, JsonNode> entry = iter.next();
-                    if (entry.getKey().equals(ENTITY_ESCAPE_SEQ)) {
-                        escapeType = EscapeType.ENTITY;
-                    } else if (entry.getKey().equals(EXTENSION_ESCAPE_SEQ)) {
-                        escapeType = EscapeType.EXTENSION;
-                    }
+                return new PrimLong(parser.getLongValue());
+            case JsonTokenId.ID_NUMBER_FLOAT:
+                final double number = parser.getDoubleValue();
+                if (number >= Long.MIN_VALUE && number <= Long.MAX_VALUE) {
+                    return new PrimLong((long) number);
                 }
-                if (escapeType != EscapeType.UNRECOGNIZED) {
-                    if (count == 1) {
-                        if (escapeType == EscapeType.ENTITY) {
-                            JsonNode val = node.get(ENTITY_ESCAPE_SEQ);
-                            if (val.isObject() && val.has("id") && val.has("type")) {
-                                int numFields = 0;
-                                for (Iterator<String> it = val.fieldNames(); it.hasNext(); it.next()) {
-                                    numFields++;
-                                }
-                                if (numFields == 2) {
-                                    EntityIdentifier id = new EntityIdentifier(val.get("id").textValue());
-                                    Optional<EntityTypeName> type = EntityTypeName.parse(val.get("type").textValue());
-                                    if (type.isPresent()) {
-                                        return new EntityUID(type.get(), id);
-                                    } else {
-                                        String msg = "Invalid Entity Type" + val.get("type").textValue();
-                                        throw new InvalidValueDeserializationException(parser, msg, node.asToken(), Map.class);
-                                    }
-                                }
-                            }
-                            throw new InvalidValueDeserializationException(parser,
-                                    "Not textual node: " + node.toString(), node.asToken(), Map.class);
-                        } else {
-                            JsonNode val = node.get(EXTENSION_ESCAPE_SEQ);
-                            JsonNode fn = val.get("fn");
-                            if (!fn.isTextual()) {
-                                throw new InvalidValueDeserializationException(parser,
-                                        "Not textual node: " + fn.toString(), node.asToken(), Map.class);
-                            }
-                            JsonNode arg = val.get("arg");
-                            if (!arg.isTextual()) {
-                                throw new InvalidValueDeserializationException(parser,
-                                        "Not textual node: " + arg.toString(), node.asToken(), Map.class);
-                            }
-                            if (fn.textValue().equals("ip")) {
-                                return new IpAddress(arg.textValue());
-                            } else if (fn.textValue().equals("decimal")) {
-                                return new Decimal(arg.textValue());
-                            } else if (fn.textValue().equals("unknown")) {
-                                return new Unknown(arg.textValue());
-                            } else {
-                                throw new InvalidValueDeserializationException(parser,
-                                        "Invalid function type: " + fn.toString(), node.asToken(), Map.class);
-                            }
-                        }
-                    } else {
-                        throw new InvalidValueDeserializationException(parser,
-                                "More than one K,V pair with {__entity, __extn}: " + node.toString(), node.asToken(), Map.class);
-                    }
+                throw invalid(parser, parser.getText(), Object.class);
+            case JsonTokenId.ID_TRUE:
+                return new PrimBool(true);
+            case JsonTokenId.ID_FALSE:
+                return new PrimBool(false);
+            case JsonTokenId.ID_STRING:
+                return new PrimString(parser.getText());
+            case JsonTokenId.ID_START_ARRAY:
+                final CedarList list = new CedarList();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    list.add(parseElement(parser, context));
+                }
+                return list;
+            case JsonTokenId.ID_START_OBJECT:
+                return parseObject(parser, context);
+            default:
+                throw invalid(parser, String.valueOf(parser.getText()), Object.class);
+        }
+    }
+
+    /** Parse a list element or record attribute. As elements of lists and records, nulls are kept as null. */
+    private static Value parseElement(JsonParser parser, DeserializationContext context) throws IOException {
+        return parser.currentToken() == JsonToken.VALUE_NULL ? null : parseValue(parser, context);
+    }
+
+    private static Value parseObject(JsonParser parser, DeserializationContext context) throws IOException {
+        final String first = parser.nextFieldName();
+        if (ENTITY_ESCAPE_SEQ.equals(first) || EXTENSION_ESCAPE_SEQ.equals(first)) {
+            parser.nextToken();
+            final Value value = first.equals(ENTITY_ESCAPE_SEQ) ? parseEntity(parser, context) : parseExtension(parser);
+            if (parser.nextToken() != JsonToken.END_OBJECT) {
+                throw moreThanOneEscape(parser);
+            }
+            return value;
+        }
+        final CedarMap map = new CedarMap();
+        for (String field = first; field != null; field = parser.nextFieldName()) {
+            if (field.equals(ENTITY_ESCAPE_SEQ) || field.equals(EXTENSION_ESCAPE_SEQ)) {
+                throw moreThanOneEscape(parser);
+            }
+            parser.nextToken();
+            map.put(field, parseElement(parser, context));
+        }
+        return map;
+    }
+
+    /** Parse the body of an <code>__entity</code> escape, which has exactly the fields <code>type</code> and
+     * <code>id</code>. */
+    private static Value parseEntity(JsonParser parser, DeserializationContext context) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw invalid(parser, "Not an entity: " + parser.getText(), Map.class);
+        }
+        String type = null;
+        String id = null;
+        int numFields = 0;
+        for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+            numFields++;
+            final JsonToken token = parser.nextToken();
+            if (field.equals("type") && token == JsonToken.VALUE_STRING) {
+                type = parser.getText();
+            } else if (field.equals("id") && token == JsonToken.VALUE_STRING) {
+                id = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (type == null || id == null || numFields != 2) {
+            throw invalid(parser, "Not an entity: expected \"type\" and \"id\" strings", Map.class);
+        }
+        final Optional<EntityTypeName> typeName = EntityTypeNameCache.parse(context, type);
+        if (typeName.isPresent()) {
+            return new EntityUID(typeName.get(), new EntityIdentifier(id));
+        } else {
+            throw invalid(parser, "Invalid Entity Type" + type, Map.class);
+        }
+    }
+
+    /** Parse the body of an <code>__extn</code> escape, which has string fields <code>fn</code> and
+     * <code>arg</code>. */
+    private static Value parseExtension(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw invalid(parser, "Not an extension value: " + parser.getText(), Map.class);
+        }
+        String fn = null;
+        String arg = null;
+        for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+            final JsonToken token = parser.nextToken();
+            if (field.equals("fn") || field.equals("arg")) {
+                if (token != JsonToken.VALUE_STRING) {
+                    throw invalid(parser, "Not textual node: " + parser.getText(), Map.class);
                 }
-                CedarMap myMap = new CedarMap();
-                iter = node.fields();
-                while (iter.hasNext()) {
-                    Map.Entry<String, JsonNode> entry = iter.next();
-                    myMap.put(entry.getKey(), mapper.treeToValue(entry.getValue(), Value.class));
+                if (field.equals("fn")) {
+                    fn = parser.getText();
+                } else {
+                    arg = parser.getText();
                 }
-                return myMap;
             } else {
-                throw new InvalidValueDeserializationException(parser, node.toString(), node.asToken(), Object.class);
+                parser.skipChildren();
             }
-        } catch (StackOverflowError e) {
-            throw new DeserializationRecursionDepthException("Stack overflow while deserializing value. " + e.toString());
         }
+        if (fn == null || arg == null) {
+            throw invalid(parser, "Extension value needs \"fn\" and \"arg\"", Map.class);
+        }
+        switch (fn) {
+            case "ip":
+                return new IpAddress(arg);
+            case "decimal":
+                return new Decimal(arg);
+            case "unknown":
+                return new Unknown(arg);
+            default:
+                throw invalid(parser, "Invalid function type: " + fn, Map.class);
+        }
+    }
+
+    private static InvalidValueDeserializationException moreThanOneEscape(JsonParser parser) {
+        return invalid(parser, "More than one K,V pair with {__entity, __extn}", Map.class);
+    }
+
+    private static InvalidValueDeserializationException invalid(JsonParser parser, String msg, Class<?> targetType) {
+        return new InvalidValueDeserializationException(parser, msg, parser.currentToken(), targetType);
     }
 }
@@ -21,7 +21,6 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
-import java.util.Objects;
 import java.util.stream.Collectors;
 
 /** Lists in the Cedar language. */
@@ -59,7 +58,7 @@ public final class CedarList extends Value implements List<Value> {
     /** Hash. */
     @Override
     public int hashCode() {
-        return Objects.hash(list);
+        return list.hashCode();
     }
 
     /** toString. */
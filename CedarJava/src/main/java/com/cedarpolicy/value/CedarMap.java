@@ -19,7 +19,6 @@ package com.cedarpolicy.value;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -58,7 +57,7 @@ public final class CedarMap extends Value implements Map<String, Value> {
     /** Hash. */
     @Override
     public int hashCode() {
-        return Objects.hash(map);
+        return map.hashCode();
     }
 
     /** To Cedar expr that can be used in a Cedar policy. */
@@ -17,40 +17,23 @@
 package com.cedarpolicy.value;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 
 /**
  * Represents a Cedar fixed-point decimal extension value. Decimals are encoded as strings in
- * dot-decimal notation with 4 decimals after the dot (e.g., <code>"1.0000"</code>).
+ * dot-decimal notation with 1 to 4 decimals after the dot (e.g., <code>"1.0000"</code>, <code>"-0.5"</code>).
+ * The value is kept as a long scaled by 10^4, as in Cedar, so decimals can be compared without going to the engine.
  */
-public class Decimal extends Value {
-
-    private static class DecimalValidator {
-        private static final Pattern DECIMAL_PATTERN = Pattern.compile("^([0-9])*(\\.)([0-9]{0,4})$");
-
-        public static boolean validDecimal(String d) {
-            if (d == null || d.isEmpty()) {
-                return false;
-            }
-            d = d.trim();
-            if (d.length() > 21) {
-                return false; // 19digits, decimal point and - sign
-            }
-            try {
-                Matcher matcher = DECIMAL_PATTERN.matcher(d);
-                return matcher.matches();
-            } catch (PatternSyntaxException ex) {
-                return false;
-            }
-        }
-    }
+public class Decimal extends Value implements Comparable<Decimal> {
+    /** Number of digits after the dot. */
+    private static final int DIGITS = 4;
+    private static final long SCALE = 10_000;
 
     /** decimal as a string. */
     private final String decimal;
 
+    /** value multiplied by 10^4. */
+    private final long scaled;
+
     /**
      * Construct Decimal.
      *
@@ -58,20 +41,92 @@ public class Decimal extends Value {
      */
     @SuppressFBWarnings("CT_CONSTRUCTOR_THROW")
     public Decimal(String decimal) throws NullPointerException, IllegalArgumentException {
-        if (!DecimalValidator.validDecimal(decimal)) {
-            throw new IllegalArgumentException(
-                    "Input string is not a valid decimal. E.g., \"1.0000\") \n " + decimal);
-        }
+        this.scaled = parse(decimal);
+        this.decimal = decimal;
+    }
+
+    private Decimal(long scaled, String decimal) {
+        this.scaled = scaled;
         this.decimal = decimal;
     }
 
+    /**
+     * Construct a Decimal from its value multiplied by 10^4, e.g. <code>15000</code> for <code>1.5</code>.
+     *
+     * @param scaled Value multiplied by 10^4
+     * @return The Decimal, written with 4 digits after the dot
+     */
+    public static Decimal ofScaled(long scaled) {
+        final long integer = scaled / SCALE;
+        final long fraction = Math.abs(scaled % SCALE);
+        final String sign = scaled < 0 && integer == 0 ? "-" : "";
+        final String digits = Long.toString(fraction + SCALE).substring(1);
+        return new Decimal(scaled, sign + integer + "." + digits);
+    }
+
+    /**
+     * Get the value multiplied by 10^4, which is how Cedar represents decimals.
+     *
+     * @return The scaled value
+     */
+    public long getScaledValue() {
+        return scaled;
+    }
+
+    /**
+     * Cedar's <code>lessThan</code>.
+     *
+     * @param other Decimal to compare to
+     * @return true if this decimal is smaller than <code>other</code>
+     */
+    public boolean lessThan(Decimal other) {
+        return scaled < other.scaled;
+    }
+
+    /**
+     * Cedar's <code>lessThanOrEqual</code>.
+     *
+     * @param other Decimal to compare to
+     * @return true if this decimal is smaller than or equal to <code>other</code>
+     */
+    public boolean lessThanOrEqual(Decimal other) {
+        return scaled <= other.scaled;
+    }
+
+    /**
+     * Cedar's <code>greaterThan</code>.
+     *
+     * @param other Decimal to compare to
+     * @return true if this decimal is larger than <code>other</code>
+     */
+    public boolean greaterThan(Decimal other) {
+        return scaled > other.scaled;
+    }
+
+    /**
+     * Cedar's <code>greaterThanOrEqual</code>.
+     *
+     * @param other Decimal to compare to
+     * @return true if this decimal is larger than or equal to <code>other</code>
+     */
+    public boolean greaterThanOrEqual(Decimal other) {
+        return scaled >= other.scaled;
+    }
+
+    /** Compare by value. */
+    @Override
+    public int compareTo(Decimal other) {
+        return Long.compare(scaled, other.scaled);
+    }
+
     /** Convert Decimal to Cedar expr that can be used in a Cedar policy. */
     @Override
     public String toCedarExpr() {
         return "decimal(\"" + decimal + "\")";
     }
 
-    /** Equals. */
+    /** Equals. Decimals are equal if they have the same value, like in Cedar, so <code>1.5</code> equals
+     * <code>1.50</code>. */
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -81,13 +136,13 @@ public class Decimal extends Value {
             return false;
         }
         Decimal decimal1 = (Decimal) o;
-        return decimal.equals(decimal1.decimal);
+        return scaled == decimal1.scaled;
     }
 
     /** Hash. */
     @Override
     public int hashCode() {
-        return Objects.hash(decimal);
+        return Long.hashCode(scaled);
     }
 
     /** As a string. */
@@ -95,4 +150,59 @@ public class Decimal extends Value {
     public String toString() {
         return decimal;
     }
+
+    /**
+     * Parse Cedar's decimal syntax: an optional minus sign, at least one digit, a dot and 1 to 4 digits, within the
+     * range of a long once scaled by 10^4.
+     */
+    private static long parse(String d) throws NullPointerException, IllegalArgumentException {
+        final int length = d.length();
+        int i = 0;
+        final boolean negative = length > 0 && d.charAt(0) == '-';
+        if (negative) {
+            i++;
+        }
+        final int integerStart = i;
+        // Accumulate negatively so that the smallest value, whose magnitude has no positive long, can be parsed
+        long value = 0;
+        try {
+            while (i < length && isDigit(d.charAt(i))) {
+                value = Math.subtractExact(Math.multiplyExact(value, 10), d.charAt(i) - '0');
+                i++;
+            }
+            final int integerDigits = i - integerStart;
+            if (integerDigits == 0 || i == length || d.charAt(i) != '.') {
+                throw invalid(d);
+            }
+            i++;
+            final int fractionStart = i;
+            long fraction = 0;
+            while (i < length && isDigit(d.charAt(i))) {
+                fraction = fraction * 10 + (d.charAt(i) - '0');
+                i++;
+                if (i - fractionStart > DIGITS) {
+                    throw invalid(d);
+                }
+            }
+            final int fractionDigits = i - fractionStart;
+            if (fractionDigits == 0 || i != length) {
+                throw invalid(d);
+            }
+            for (int k = fractionDigits; k < DIGITS; k++) {
+                fraction *= 10;
+            }
+            value = Math.subtractExact(Math.multiplyExact(value, SCALE), fraction);
+            return negative ? value : Math.negateExact(value);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Decimal is out of range: " + d, e);
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static IllegalArgumentException invalid(String d) {
+        return new IllegalArgumentException("Input string is not a valid decimal. E.g., \"1.0000\") \n " + d);
+    }
 }
@@ -24,7 +24,7 @@ import com.cedarpolicy.loader.LibraryLoader;
  * All strings are valid Entity Identifiers
  */
 public final class EntityIdentifier {
-    private String id;
+    private final String id;
 
     static {
         LibraryLoader.loadLibrary();
@@ -39,11 +39,12 @@ public final class EntityIdentifier {
     }
 
     /**
-     * Calls the Rust core and returns the quoted representation of this Entity Identifier
-     * @return String containing the quoted representation of this Entity Identifier
+     * Returns the escaped representation of this Entity Identifier, as it appears between the quotes of an EntityUID
+     * in Cedar syntax. This is computed in Java and gives the same result as the Rust core.
+     * @return String containing the escaped representation of this Entity Identifier
      */
     public String getRepr() {
-        return getEntityIdentifierRepr(this);
+        return escape(id);
     }
 
     @Override
@@ -53,20 +54,13 @@ public final class EntityIdentifier {
 
     @Override
     public boolean equals(Object o) {
-        if (o == null) {
+        if (o == this) {
             return true;
-        } else if (o == this) {
-            return false;
-        } else {
-            try {
-                EntityIdentifier rhs = (EntityIdentifier) o;
-                return this.id.equals(rhs.id);
-            } catch (ClassCastException e) {
-                return false;
-            }
         }
+        return o instanceof EntityIdentifier && id.equals(((EntityIdentifier) o).id);
     }
 
+    /** The hash of the identifier string, which the string computes once and caches. */
     @Override
     public int hashCode() {
         return id.hashCode();
@@ -77,6 +71,95 @@ public final class EntityIdentifier {
     }
 
 
+    /**
+     * Escape a string the way Cedar prints entity identifiers, which is Rust's <code>str::escape_debug</code>: quotes,
+     * backslashes, NUL, tab, carriage return and newline are escaped with a backslash, and characters that are not
+     * printable become Unicode escapes with the hexadecimal code point in braces. A grapheme extender, such as a
+     * combining accent, is also escaped when it is the first character, since it would otherwise combine with the
+     * opening quote.
+     */
+    static String escape(String s) {
+        int i = 0;
+        while (i < s.length() && isPlainAscii(s.charAt(i))) {
+            i++;
+        }
+        if (i == s.length()) {
+            return s;
+        }
+        final StringBuilder escaped = new StringBuilder(s.length() + 16).append(s, 0, i);
+        while (i < s.length()) {
+            final int cp = s.codePointAt(i);
+            switch (cp) {
+                case 0:
+                    escaped.append("\\0");
+                    break;
+                case '\t':
+                    escaped.append("\\t");
+                    break;
+                case '\r':
+                    escaped.append("\\r");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\\':
+                case '"':
+                case '\'':
+                    escaped.append('\\').append((char) cp);
+                    break;
+                default:
+                    if (isPrintable(cp) && !(i == 0 && isGraphemeExtend(cp))) {
+                        escaped.appendCodePoint(cp);
+                    } else {
+                        escaped.append("\\u{").append(Integer.toHexString(cp)).append('}');
+                    }
+            }
+            i += Character.charCount(cp);
+        }
+        return escaped.toString();
+    }
+
+    private static boolean isPlainAscii(char c) {
+        return c >= ' ' && c < 0x7f && c != '"' && c != '\'' && c != '\\';
+    }
+
+    /** Rust's notion of printable: anything but separators other than space, and the "other" categories. */
+    private static boolean isPrintable(int cp) {
+        switch (Character.getType(cp)) {
+            case Character.SPACE_SEPARATOR:
+                return cp == ' ';
+            case Character.LINE_SEPARATOR:
+            case Character.PARAGRAPH_SEPARATOR:
+            case Character.CONTROL:
+            case Character.FORMAT:
+            case Character.SURROGATE:
+            case Character.PRIVATE_USE:
+            case Character.UNASSIGNED:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /** The Unicode Grapheme_Extend property: nonspacing and enclosing marks, and Other_Grapheme_Extend. */
+    private static boolean isGraphemeExtend(int cp) {
+        final int type = Character.getType(cp);
+        if (type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK) {
+            return true;
+        }
+        switch (cp) {
+            case 0x09BE: case 0x09D7: case 0x0B3E: case 0x0B57: case 0x0BBE: case 0x0BD7: case 0x0CC2: case 0x0CD5:
+            case 0x0CD6: case 0x0D3E: case 0x0D57: case 0x0DCF: case 0x0DDF: case 0x1B35: case 0x200C: case 0x302E:
+            case 0x302F: case 0xFF9E: case 0xFF9F: case 0x1133E: case 0x11357: case 0x114B0: case 0x114BD:
+            case 0x115AF: case 0x11930: case 0x1D165: case 0x1D16E: case 0x1D16F: case 0x1D170: case 0x1D171:
+            case 0x1D172:
+                return true;
+            default:
+                return cp >= 0xE0020 && cp <= 0xE007F;
+        }
+    }
+
+    /** Rust formatting, which the Java formatting is checked against in tests. */
     private static native String getEntityIdentifierRepr(EntityIdentifier id);
 
 }
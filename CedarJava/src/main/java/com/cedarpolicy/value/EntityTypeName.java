@@ -17,12 +17,11 @@
 package com.cedarpolicy.value;
 
 import com.cedarpolicy.loader.LibraryLoader;
-import com.google.common.base.Suppliers;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.Objects;
-import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -35,7 +34,11 @@ import java.util.stream.Stream;
 public final class EntityTypeName {
     private final List<String> namespace;
     private final String basename;
-    private final Supplier<String> entityTypeNameRepr;
+    private final String entityTypeNameRepr;
+    private final int hash;
+
+    /** Canonical instances, held weakly so that names no longer in use can be collected. */
+    private static final Interner<EntityTypeName> INTERNER = Interners.newWeakInterner();
 
     static {
         LibraryLoader.loadLibrary();
@@ -50,7 +53,8 @@ public final class EntityTypeName {
     protected EntityTypeName(List<String> namespace, String  basename) {
         this.namespace = namespace;
         this.basename = basename;
-        this.entityTypeNameRepr = Suppliers.memoize(() -> getEntityTypeNameRepr(this));
+        this.entityTypeNameRepr = namespace.isEmpty() ? basename : String.join("::", namespace) + "::" + basename;
+        this.hash = 31 * basename.hashCode() + namespace.hashCode();
     }
 
     /**
@@ -71,6 +75,16 @@ public final class EntityTypeName {
         return new EntityUID(this, id);
     }
 
+    /**
+     * Get the canonical instance equal to this entity type name. All interned names that are equal are the same
+     * instance, so they share their string representation, which is otherwise computed once per instance, and can be
+     * compared by reference. Canonical instances are held weakly and are collected once no longer referenced.
+     * @return The canonical instance equal to this entity type name
+     */
+    public EntityTypeName intern() {
+        return INTERNER.intern(this);
+    }
+
     /**
      * Get the namespace components in order from the root
      * Ex: the namespace `foo::bar::baz` would be returned in the order: `foo`, `bar`, `baz`
@@ -94,7 +108,7 @@ public final class EntityTypeName {
     }
 
     public String toString() {
-        return this.entityTypeNameRepr.get();
+        return this.entityTypeNameRepr;
     }
 
     /**
@@ -106,23 +120,24 @@ public final class EntityTypeName {
     }
 
 
+    @Override
     public boolean equals(Object rhs) {
-        if (rhs == null) {
-            return false;
-        }
         if (rhs == this) {
             return true;
         }
-        try {
-            EntityTypeName rhsTypename = (EntityTypeName) rhs;
-            return basename.equals(rhsTypename.basename) && namespace.equals(rhsTypename.namespace);
-        } catch (ClassCastException e) {
+        if (!(rhs instanceof EntityTypeName)) {
             return false;
         }
+        EntityTypeName rhsTypename = (EntityTypeName) rhs;
+        return hash == rhsTypename.hash
+                && basename.equals(rhsTypename.basename)
+                && namespace.equals(rhsTypename.namespace);
     }
 
+    /** The hash is computed once, when the name is constructed. */
+    @Override
     public int hashCode() {
-        return Objects.hash(basename, namespace);
+        return hash;
     }
 
     /**
@@ -135,5 +150,6 @@ public final class EntityTypeName {
     }
 
     private static native Optional<EntityTypeName> parseEntityTypeName(String src);
+    /** Rust formatting, which the Java formatting is checked against in tests. */
     private static native String getEntityTypeNameRepr(EntityTypeName type);
 }
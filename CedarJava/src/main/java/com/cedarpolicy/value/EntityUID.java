@@ -18,11 +18,11 @@ package com.cedarpolicy.value;
 
 import java.util.Optional;
 import java.util.Objects;
-import java.util.function.Supplier;
 
 import com.cedarpolicy.loader.LibraryLoader;
 import com.cedarpolicy.serializer.JsonEUID;
-import com.google.common.base.Suppliers;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 
 /**
  * Represents a Cedar Entity UID. An entity UID contains both the entity type and a unique
@@ -31,7 +31,12 @@ import com.google.common.base.Suppliers;
 public final class EntityUID extends Value {
     private final EntityTypeName type;
     private final EntityIdentifier id;
-    private final Supplier<String> euidRepr;
+    private final int hash;
+    /** Cedar syntax of this EUID, computed on first use. */
+    private String euidRepr;
+
+    /** Canonical instances, held weakly so that EUIDs no longer in use can be collected. */
+    private static final Interner<EntityUID> INTERNER = Interners.newWeakInterner();
 
     static {
         LibraryLoader.loadLibrary();
@@ -43,9 +48,9 @@ public final class EntityUID extends Value {
      * @param id the id portion of the EUID
      */
     public EntityUID(EntityTypeName type, EntityIdentifier id) {
-        this.type = type;
-        this.id = id;
-        this.euidRepr = Suppliers.memoize(() -> getEUIDRepr(type, id));
+        this.type = Objects.requireNonNull(type, "type");
+        this.id = Objects.requireNonNull(id, "id");
+        this.hash = 31 * type.hashCode() + id.hashCode();
     }
 
     /**
@@ -73,36 +78,49 @@ public final class EntityUID extends Value {
         return id;
     }
 
+    /**
+     * Get the canonical instance equal to this EUID. All interned EUIDs that are equal are the same instance, with an
+     * interned type, so they share their string representation and can be compared by reference. This is worthwhile
+     * when the same EUIDs are used over and over, for example as keys of long-lived maps. Canonical instances are held
+     * weakly and are collected once no longer referenced.
+     * @return The canonical instance equal to this EUID
+     */
+    public EntityUID intern() {
+        final EntityTypeName canonicalType = type.intern();
+        return INTERNER.intern(canonicalType == type ? this : new EntityUID(canonicalType, id));
+    }
 
     @Override
     public String toString() {
-        return euidRepr.get();
+        String repr = euidRepr;
+        if (repr == null) {
+            repr = type.toString() + "::\"" + id.getRepr() + "\"";
+            euidRepr = repr;
+        }
+        return repr;
     }
 
     @Override
     public boolean equals(Object o) {
-        if (o == null) {
-            return false;
-        } else if (o == this) {
+        if (o == this) {
             return true;
-        } else {
-            try {
-                EntityUID rhs = (EntityUID) o;
-                return this.type.equals(rhs.type) && this.id.equals(rhs.id);
-            } catch (ClassCastException e) {
-                return false;
-            }
         }
+        if (!(o instanceof EntityUID)) {
+            return false;
+        }
+        EntityUID rhs = (EntityUID) o;
+        return hash == rhs.hash && type.equals(rhs.type) && id.equals(rhs.id);
     }
 
+    /** The hash is computed once, when the EUID is constructed. */
     @Override
     public int hashCode() {
-        return Objects.hash(type, id);
+        return hash;
     }
 
     @Override
     public String toCedarExpr() {
-        return euidRepr.get();
+        return toString();
     }
 
 
@@ -119,6 +137,7 @@ public final class EntityUID extends Value {
     }
 
     private static native Optional<EntityUID> parseEntityUID(String src);
+    /** Rust formatting, which the Java formatting is checked against in tests. */
     private static native String getEUIDRepr(EntityTypeName type, EntityIdentifier id);
 
 }
@@ -17,71 +17,35 @@
 package com.cedarpolicy.value;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
+import java.util.Arrays;
 
 /**
  * Represents a Cedar ip address extension value. Ip address are encoded as strings in dot-decimal
  * notation (e.g., <code>"192.168.1.0"</code>). Values for CIDR ranges may also be constructed by
  * providing strings in CIDR notation.
+ *
+ * <p>The address is kept parsed, as its bytes and prefix length, so that the checks Cedar offers on ip addresses are
+ * also available in Java before requests go to the engine.
  */
 public class IpAddress extends Value {
+    private static final int IPV4_BYTES = 4;
+    private static final int IPV6_BYTES = 16;
 
-    private static class IpAddressValidator {
-
-        private static final Pattern IPV4_PATTERN =
-                Pattern.compile(
-                        "^(?:(?:25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)\\.)"
-                                + "{3}(?:25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)$");
+    private static final IpAddress IPV4_LOOPBACK = new IpAddress("127.0.0.0/8");
+    private static final IpAddress IPV6_LOOPBACK = new IpAddress("::1");
+    private static final IpAddress IPV4_MULTICAST = new IpAddress("224.0.0.0/4");
+    private static final IpAddress IPV6_MULTICAST = new IpAddress("ff00::/8");
 
-        public static boolean validIPv4(String ip) {
-            if (ip == null || ip.isEmpty()) {
-                return false;
-            }
-            ip = ip.trim();
-            if ((ip.length() < 6) || (ip.length() > 15)) {
-                return false;
-            }
-            try {
-                Matcher matcher = IPV4_PATTERN.matcher(ip);
-                return matcher.matches();
-            } catch (PatternSyntaxException ex) {
-                return false;
-            }
-        }
+    /** ip address as a string. */
+    private final String ipAddress;
 
-        private static final Pattern IPV6_PATTERN =
-                Pattern.compile(
-                        "^(([0-9A-Fa-f]{1,4}:){7}([0-9A-Fa-f]{1,4}|:))|"
-                                + "(([0-9A-Fa-f]{1,4}:){6}(:[0-9A-Fa-f]{1,4}|:))|"
-                                + "(([0-9A-Fa-f]{1,4}:){5}(((:[0-9A-Fa-f]{1,4}){1,2})|:))|"
-                                + "(([0-9A-Fa-f]{1,4}:){4}(((:[0-9A-Fa-f]{1,4}){1,3})|:))|"
-                                + "(([0-9A-Fa-f]{1,4}:){3}(((:[0-9A-Fa-f]{1,4}){1,4})|:))|"
-                                + "(([0-9A-Fa-f]{1,4}:){2}(((:[0-9A-Fa-f]{1,4}){1,5})|:))|"
-                                + "(([0-9A-Fa-f]{1,4}:)(((:[0-9A-Fa-f]{1,4}){1,6})|:))|"
-                                + "((:)(((:[0-9A-Fa-f]{1,4}){1,7})|:))|$");
+    /** 4 bytes for IPv4, 16 for IPv6, in network order. */
+    private final byte[] address;
 
-        public static boolean validIPv6(String ip) {
-            if (ip == null || ip.isEmpty()) {
-                return false;
-            }
-            ip = ip.trim();
-            if ((ip.length() < 3) || (ip.length() > 39)) {
-                return false;
-            }
-            try {
-                Matcher matcher = IPV6_PATTERN.matcher(ip);
-                return matcher.matches();
-            } catch (PatternSyntaxException ex) {
-                return false;
-            }
-        }
-    }
+    /** prefix length, which is the number of address bits for a single address. */
+    private final int prefix;
 
-    /** ip address as a string. */
-    private final String ipAddress;
+    private final int hash;
 
     /**
      * Construct IPAddress.
@@ -90,13 +54,105 @@ public class IpAddress extends Value {
      */
     @SuppressFBWarnings("CT_CONSTRUCTOR_THROW")
     public IpAddress(String ipAddress) throws NullPointerException, IllegalArgumentException {
-        if (!IpAddressValidator.validIPv4(ipAddress) && !IpAddressValidator.validIPv6(ipAddress)) {
-            throw new IllegalArgumentException(
-                    "Input string is not a valid IPv4 or IPv6 address\n"
-                            + "(Note we do not allow mixing IPv4 and IPv6 syntax. E.g., \"::ffff:127.0.0.1\") \n "
-                            + ipAddress);
+        final int slash = ipAddress.indexOf('/');
+        final String addressPart = slash < 0 ? ipAddress : ipAddress.substring(0, slash);
+        final byte[] parsed;
+        if (addressPart.indexOf(':') >= 0) {
+            parsed = addressPart.indexOf('.') < 0 ? parseIpv6(addressPart) : null;
+        } else {
+            parsed = parseIpv4(addressPart);
+        }
+        if (parsed == null) {
+            throw invalid(ipAddress);
+        }
+        final int maxPrefix = parsed.length * 8;
+        this.prefix = slash < 0 ? maxPrefix : parsePrefix(ipAddress.substring(slash + 1), maxPrefix);
+        if (prefix < 0) {
+            throw invalid(ipAddress);
         }
         this.ipAddress = ipAddress;
+        this.address = parsed;
+        this.hash = 31 * Arrays.hashCode(address) + prefix;
+    }
+
+    /**
+     * Check whether this is an IPv4 address or range.
+     *
+     * @return true for IPv4
+     */
+    public boolean isIpv4() {
+        return address.length == IPV4_BYTES;
+    }
+
+    /**
+     * Check whether this is an IPv6 address or range.
+     *
+     * @return true for IPv6
+     */
+    public boolean isIpv6() {
+        return address.length == IPV6_BYTES;
+    }
+
+    /**
+     * Get the prefix length: the number of leading bits that are fixed in the range, or the number of bits of the
+     * address (32 or 128) for a single address.
+     *
+     * @return The prefix length
+     */
+    public int getPrefixLength() {
+        return prefix;
+    }
+
+    /**
+     * Get the address bytes in network order, 4 for IPv4 and 16 for IPv6.
+     *
+     * @return A copy of the address bytes
+     */
+    public byte[] getAddress() {
+        return address.clone();
+    }
+
+    /**
+     * Cedar's <code>isInRange</code>: whether every address of this range (or this single address) is in
+     * <code>range</code>. Addresses of different IP versions are never in range of each other.
+     *
+     * @param range The containing range
+     * @return true if this is within <code>range</code>
+     */
+    public boolean isInRange(IpAddress range) {
+        if (address.length != range.address.length || range.prefix > prefix) {
+            return false;
+        }
+        final int fullBytes = range.prefix / 8;
+        for (int i = 0; i < fullBytes; i++) {
+            if (address[i] != range.address[i]) {
+                return false;
+            }
+        }
+        final int remainingBits = range.prefix % 8;
+        if (remainingBits == 0) {
+            return true;
+        }
+        final int mask = 0xff << (8 - remainingBits);
+        return (address[fullBytes] & mask) == (range.address[fullBytes] & mask);
+    }
+
+    /**
+     * Cedar's <code>isLoopback</code>: whether this is within <code>127.0.0.0/8</code> or is <code>::1</code>.
+     *
+     * @return true for loopback addresses
+     */
+    public boolean isLoopback() {
+        return isInRange(isIpv4() ? IPV4_LOOPBACK : IPV6_LOOPBACK);
+    }
+
+    /**
+     * Cedar's <code>isMulticast</code>: whether this is within <code>224.0.0.0/4</code> or <code>ff00::/8</code>.
+     *
+     * @return true for multicast addresses
+     */
+    public boolean isMulticast() {
+        return isInRange(isIpv4() ? IPV4_MULTICAST : IPV6_MULTICAST);
     }
 
     /** Convert IPAddress to Cedar expr that can be used in a Cedar policy. */
@@ -105,7 +161,8 @@ public class IpAddress extends Value {
         return "ip(\"" + ipAddress + "\")";
     }
 
-    /** Equals. */
+    /** Equals. Addresses are equal if they have the same bytes and prefix length, like in Cedar, regardless of how
+     * they were written. */
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -115,13 +172,13 @@ public class IpAddress extends Value {
             return false;
         }
         IpAddress ipAddress1 = (IpAddress) o;
-        return ipAddress.equals(ipAddress1.ipAddress);
+        return hash == ipAddress1.hash && prefix == ipAddress1.prefix && Arrays.equals(address, ipAddress1.address);
     }
 
     /** Hash. */
     @Override
     public int hashCode() {
-        return Objects.hash(ipAddress);
+        return hash;
     }
 
     /** As a string. */
@@ -129,4 +186,123 @@ public class IpAddress extends Value {
     public String toString() {
         return ipAddress;
     }
+
+    /** Parse four decimal octets without leading zeros, or return null. */
+    private static byte[] parseIpv4(String s) {
+        final byte[] bytes = new byte[IPV4_BYTES];
+        int i = 0;
+        for (int octet = 0; octet < IPV4_BYTES; octet++) {
+            if (octet > 0) {
+                if (i >= s.length() || s.charAt(i) != '.') {
+                    return null;
+                }
+                i++;
+            }
+            final int start = i;
+            int value = 0;
+            while (i < s.length() && i - start < 3 && isDigit(s.charAt(i))) {
+                value = value * 10 + (s.charAt(i) - '0');
+                i++;
+            }
+            final int digits = i - start;
+            if (digits == 0 || value > 255 || (digits > 1 && s.charAt(start) == '0')) {
+                return null;
+            }
+            bytes[octet] = (byte) value;
+        }
+        return i == s.length() ? bytes : null;
+    }
+
+    /** Parse eight groups of 1 to 4 hex digits, where one run of zero groups may be written <code>::</code>, or
+     * return null. */
+    private static byte[] parseIpv6(String s) {
+        final int[] groups = new int[IPV6_BYTES / 2];
+        int count = 0;
+        int gap = -1;
+        int i = 0;
+        if (s.startsWith("::")) {
+            gap = 0;
+            i = 2;
+        }
+        while (i < s.length()) {
+            if (count == groups.length) {
+                return null;
+            }
+            final int start = i;
+            int value = 0;
+            while (i < s.length() && i - start < 4 && hexValue(s.charAt(i)) >= 0) {
+                value = (value << 4) | hexValue(s.charAt(i));
+                i++;
+            }
+            if (i == start) {
+                return null;
+            }
+            groups[count++] = value;
+            if (i == s.length()) {
+                break;
+            }
+            if (s.charAt(i) != ':') {
+                return null;
+            }
+            i++;
+            if (i < s.length() && s.charAt(i) == ':') {
+                if (gap >= 0) {
+                    return null;
+                }
+                gap = count;
+                i++;
+            } else if (i == s.length()) {
+                // A single trailing colon
+                return null;
+            }
+        }
+        if (gap < 0 ? count != groups.length : count == groups.length) {
+            return null;
+        }
+        final byte[] bytes = new byte[IPV6_BYTES];
+        final int shift = groups.length - count;
+        for (int g = 0; g < count; g++) {
+            final int position = gap >= 0 && g >= gap ? g + shift : g;
+            bytes[2 * position] = (byte) (groups[g] >> 8);
+            bytes[2 * position + 1] = (byte) groups[g];
+        }
+        return bytes;
+    }
+
+    /** Parse a decimal prefix length without leading zeros of at most <code>max</code>, or return -1. */
+    private static int parsePrefix(String s, int max) {
+        if (s.isEmpty() || s.length() > 3 || (s.length() > 1 && s.charAt(0) == '0')) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (!isDigit(s.charAt(i))) {
+                return -1;
+            }
+            value = value * 10 + (s.charAt(i) - '0');
+        }
+        return value <= max ? value : -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int hexValue(char c) {
+        if (isDigit(c)) {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static IllegalArgumentException invalid(String ipAddress) {
+        return new IllegalArgumentException(
+                "Input string is not a valid IPv4 or IPv6 address\n"
+                        + "(Note we do not allow mixing IPv4 and IPv6 syntax. E.g., \"::ffff:127.0.0.1\") \n "
+                        + ipAddress);
+    }
 }
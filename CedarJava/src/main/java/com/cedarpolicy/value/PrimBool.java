@@ -16,7 +16,6 @@
 
 package com.cedarpolicy.value;
 
-import java.util.Objects;
 
 /** Represents a primitive Cedar boolean value. */
 public final class PrimBool extends Value {
@@ -52,7 +51,7 @@ public final class PrimBool extends Value {
     /** Hash. */
     @Override
     public int hashCode() {
-        return Objects.hash(value);
+        return Boolean.hashCode(value);
     }
 
     /** toString. */
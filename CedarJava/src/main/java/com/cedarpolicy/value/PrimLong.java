@@ -16,7 +16,6 @@
 
 package com.cedarpolicy.value;
 
-import java.util.Objects;
 
 /** Represents the primitive Cedar integer type. */
 public final class PrimLong extends Value {
@@ -52,7 +51,7 @@ public final class PrimLong extends Value {
     /** hash. */
     @Override
     public int hashCode() {
-        return Objects.hash(value);
+        return Long.hashCode(value);
     }
 
     /** toString. */
@@ -16,7 +16,6 @@
 
 package com.cedarpolicy.value;
 
-import java.util.Objects;
 
 /** Represents a primitive Cedar string value. */
 public final class PrimString extends Value {
@@ -48,7 +47,7 @@ public final class PrimString extends Value {
     /** Hash. */
     @Override
     public int hashCode() {
-        return Objects.hash(value);
+        return value.hashCode();
     }
 
     /** ToString. */
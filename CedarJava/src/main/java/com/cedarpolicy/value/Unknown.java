@@ -16,7 +16,6 @@
 
 package com.cedarpolicy.value;
 
-import java.util.Objects;
 
 import com.cedarpolicy.Experimental;
 import com.cedarpolicy.ExperimentalFeature;
@@ -72,7 +71,7 @@ public class Unknown extends Value {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(arg);
+        return arg.hashCode();
     }
 
     /**
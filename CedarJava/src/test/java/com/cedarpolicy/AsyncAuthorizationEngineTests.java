@@ -0,0 +1,146 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.cedarpolicy.model.AuthorizationRequest;
+import com.cedarpolicy.model.AuthorizationResponse;
+import com.cedarpolicy.model.EntityValidationRequest;
+import com.cedarpolicy.model.PartialAuthorizationRequest;
+import com.cedarpolicy.model.PartialAuthorizationResponse;
+import com.cedarpolicy.model.ValidationRequest;
+import com.cedarpolicy.model.ValidationResponse;
+import com.cedarpolicy.model.entity.Entity;
+import com.cedarpolicy.model.exception.AuthException;
+import com.cedarpolicy.model.exception.InternalException;
+import com.cedarpolicy.model.policy.Policy;
+import com.cedarpolicy.model.policy.PolicySet;
+import com.cedarpolicy.value.EntityTypeName;
+import com.cedarpolicy.value.EntityUID;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+public class AsyncAuthorizationEngineTests {
+
+    /** Blocks every authorization until released, then fails it. */
+    private static final class GatedEngine implements AuthorizationEngine {
+        private final CountDownLatch gate = new CountDownLatch(1);
+
+        @Override
+        public AuthorizationResponse isAuthorized(AuthorizationRequest request, PolicySet policySet,
+                                                  Set<Entity> entities) throws AuthException {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new InternalException("gated");
+        }
+
+        @Override
+        public PartialAuthorizationResponse isAuthorizedPartial(PartialAuthorizationRequest request,
+                                                                PolicySet policySet, Set<Entity> entities) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ValidationResponse validate(ValidationRequest request) {
+            throw new StackOverflowError();
+        }
+
+        @Override
+        public void validateEntities(EntityValidationRequest request) {
+        }
+    }
+
+    @Test
+    public void decisionsAreReturnedAsFutures() throws Exception {
+        EntityTypeName user = EntityTypeName.parse("User").get();
+        EntityUID alice = user.of("alice");
+        EntityUID view = EntityTypeName.parse("Action").get().of("view");
+        Set<Policy> policies = new HashSet<>();
+        policies.add(new Policy("permit(principal == User::\"alice\", action, resource);", "p0"));
+        PolicySet policySet = new PolicySet(policies);
+
+        try (AsyncAuthorizationEngine engine = AsyncAuthorizationEngine.create()) {
+            CompletableFuture<AuthorizationResponse> allowed = engine.isAuthorizedAsync(
+                    new AuthorizationRequest(alice, view, alice, new HashMap<>()), policySet, new HashSet<>());
+            CompletableFuture<AuthorizationResponse> denied = engine.isAuthorizedAsync(
+                    new AuthorizationRequest(user.of("bob"), view, alice, new HashMap<>()), policySet, new HashSet<>());
+            assertTrue(allowed.get().success.get().isAllowed());
+            assertFalse(denied.get().success.get().isAllowed());
+        }
+    }
+
+    @Test
+    public void fullQueueRejectsWithoutBlocking() throws Exception {
+        GatedEngine gated = new GatedEngine();
+        try (AsyncAuthorizationEngine engine = AsyncAuthorizationEngine.builder(gated).threads(1).queueCapacity(2)
+                .build()) {
+            List<CompletableFuture<AuthorizationResponse>> accepted = new ArrayList<>();
+            CompletableFuture<AuthorizationResponse> rejected = null;
+            // At most one call runs and two wait, so one of the first four calls is rejected
+            for (int i = 0; i < 4 && rejected == null; i++) {
+                CompletableFuture<AuthorizationResponse> future =
+                        engine.isAuthorizedAsync(null, new PolicySet(), new HashSet<>());
+                if (future.isCompletedExceptionally()) {
+                    rejected = future;
+                } else {
+                    accepted.add(future);
+                }
+            }
+            assertNotNull(rejected);
+            CompletableFuture<AuthorizationResponse> rejectedFuture = rejected;
+            ExecutionException e = assertThrows(ExecutionException.class, rejectedFuture::get);
+            assertInstanceOf(RejectedExecutionException.class, e.getCause());
+
+            gated.gate.countDown();
+            for (CompletableFuture<AuthorizationResponse> future : accepted) {
+                e = assertThrows(ExecutionException.class, future::get);
+                assertInstanceOf(InternalException.class, e.getCause());
+            }
+            assertEquals(0, engine.getQueuedCalls());
+        }
+    }
+
+    @Test
+    public void errorsAndClosingFailTheFuture() {
+        AsyncAuthorizationEngine engine = AsyncAuthorizationEngine.builder(new GatedEngine()).build();
+        ExecutionException e = assertThrows(ExecutionException.class, () -> engine.validateAsync(null).get());
+        assertInstanceOf(StackOverflowError.class, e.getCause());
+
+        engine.close();
+        e = assertThrows(ExecutionException.class, () -> engine.validateAsync(null).get());
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+    }
+}
@@ -16,8 +16,11 @@
 
 package com.cedarpolicy;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.cedarpolicy.model.AuthorizationRequest;
 import com.cedarpolicy.model.PartialAuthorizationRequest;
@@ -34,12 +37,15 @@ import com.cedarpolicy.value.EntityUID;
 import com.cedarpolicy.value.Unknown;
 import com.cedarpolicy.value.Value;
 import com.cedarpolicy.value.PrimBool;
+import com.cedarpolicy.value.PrimLong;
+import com.cedarpolicy.value.PrimString;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -65,6 +71,174 @@ public class AuthTests {
         assertAllowed(q, policySet, new HashSet<>());
     }
 
+    @Test
+    public void batch() {
+        var alice = new EntityUID(EntityTypeName.parse("User").get(), "alice");
+        var bob = new EntityUID(EntityTypeName.parse("User").get(), "bob");
+        var view = new EntityUID(EntityTypeName.parse("Action").get(), "view");
+        var policies = new HashSet<Policy>();
+        policies.add(new Policy("permit(principal == User::\"alice\",action,resource);", "p0"));
+        var policySet = new PolicySet(policies);
+        var requests = List.of(
+                new AuthorizationRequest(alice, view, alice, new HashMap<>()),
+                new AuthorizationRequest(bob, view, alice, new HashMap<>()),
+                new AuthorizationRequest(alice, view, bob, new HashMap<>()));
+        var engine = new BasicAuthorizationEngine();
+        var responses = assertDoesNotThrow(() -> engine.isAuthorizedBatch(requests, policySet, new HashSet<>()));
+        assertEquals(3, responses.size());
+        for (int i = 0; i < requests.size(); i++) {
+            var request = requests.get(i);
+            var expected = assertDoesNotThrow(() -> engine.isAuthorized(request, policySet, new HashSet<>()));
+            assertEquals(SuccessOrFailure.Success, responses.get(i).type);
+            assertEquals(expected.success.get().isAllowed(), responses.get(i).success.get().isAllowed());
+        }
+        assertTrue(responses.get(0).success.get().isAllowed());
+        assertFalse(responses.get(1).success.get().isAllowed());
+        assertTrue(assertDoesNotThrow(() -> engine.isAuthorizedBatch(List.of(), policySet, new HashSet<>())).isEmpty());
+    }
+
+    @Test
+    public void batchWithInvalidPolicyFailsEveryRequest() {
+        var alice = new EntityUID(EntityTypeName.parse("User").get(), "alice");
+        var view = new EntityUID(EntityTypeName.parse("Action").get(), "view");
+        var policies = new HashSet<Policy>();
+        policies.add(new Policy("permit(principal,action,resource", "p0"));
+        var requests = List.of(
+                new AuthorizationRequest(alice, view, alice, new HashMap<>()),
+                new AuthorizationRequest(alice, view, alice, new HashMap<>()));
+        var responses = assertDoesNotThrow(() ->
+                new BasicAuthorizationEngine().isAuthorizedBatch(requests, new PolicySet(policies), new HashSet<>()));
+        assertEquals(2, responses.size());
+        for (var response : responses) {
+            assertEquals(SuccessOrFailure.Failure, response.type);
+        }
+    }
+
+    @Test
+    public void everyExecutionModeGivesTheSameDecisions() {
+        var alice = new EntityUID(EntityTypeName.parse("User").get(), "alice");
+        var bob = new EntityUID(EntityTypeName.parse("User").get(), "bob");
+        var view = new EntityUID(EntityTypeName.parse("Action").get(), "view");
+        var policies = new HashSet<Policy>();
+        policies.add(new Policy("permit(principal == User::\"alice\",action,resource);", "p0"));
+        var policySet = new PolicySet(policies);
+        for (var mode : BasicAuthorizationEngine.ExecutionMode.values()) {
+            var engine = new BasicAuthorizationEngine(mode);
+            assertEquals(mode, engine.getExecutionMode());
+            assertDoesNotThrow(() -> {
+                assertTrue(engine.isAuthorized(new AuthorizationRequest(alice, view, alice, new HashMap<>()),
+                        policySet, new HashSet<>()).success.get().isAllowed());
+                assertFalse(engine.isAuthorized(new AuthorizationRequest(bob, view, alice, new HashMap<>()),
+                        policySet, new HashSet<>()).success.get().isAllowed());
+            });
+        }
+    }
+
+    @Test
+    public void cborWireFormatGivesTheSameResponses() {
+        var alice = new EntityUID(EntityTypeName.parse("User").get(), "alice");
+        var bob = new EntityUID(EntityTypeName.parse("User").get(), "bob");
+        var view = new EntityUID(EntityTypeName.parse("Action").get(), "view");
+        var policies = new HashSet<Policy>();
+        policies.add(new Policy("permit(principal == User::\"alice\",action,resource) when { context.n > 1 };",
+                "p0"));
+        var policySet = new PolicySet(policies);
+        var entities = new HashSet<Entity>();
+        entities.add(new Entity(alice, new HashMap<>(Map.of("name", new PrimString("Alice"))), new HashSet<>()));
+        var requests = List.of(
+                new AuthorizationRequest(alice, view, alice, Map.of("n", new PrimLong(2))),
+                new AuthorizationRequest(bob, view, alice, Map.of("n", new PrimLong(2))),
+                new AuthorizationRequest(alice, view, alice, Map.of("n", new PrimBool(true))));
+        var json = new BasicAuthorizationEngine(BasicAuthorizationEngine.ExecutionMode.SPAWN_THREAD,
+                BasicAuthorizationEngine.WireFormat.JSON);
+        var cbor = new BasicAuthorizationEngine(BasicAuthorizationEngine.ExecutionMode.SPAWN_THREAD,
+                BasicAuthorizationEngine.WireFormat.CBOR);
+        assertEquals(BasicAuthorizationEngine.WireFormat.CBOR, cbor.getWireFormat());
+        assertDoesNotThrow(() -> {
+            for (var request : requests) {
+                var expected = json.isAuthorized(request, policySet, entities).success.get();
+                var actual = cbor.isAuthorized(request, policySet, entities).success.get();
+                assertEquals(expected.getDecision(), actual.getDecision());
+                assertEquals(expected.getReason(), actual.getReason());
+                assertEquals(expected.getErrors().size(), actual.getErrors().size());
+            }
+            var batch = cbor.isAuthorizedBatch(requests, policySet, entities);
+            assertEquals(requests.size(), batch.size());
+            assertTrue(batch.get(0).success.get().isAllowed());
+            assertFalse(batch.get(1).success.get().isAllowed());
+            assertFalse(batch.get(2).success.get().isAllowed());
+        });
+    }
+
+    @Test
+    public void directBufferWireFormatHandlesLargeRequests() {
+        var userType = EntityTypeName.parse("User").get();
+        var group = new EntityUID(EntityTypeName.parse("Group").get(), "staff");
+        var view = new EntityUID(EntityTypeName.parse("Action").get(), "view");
+        var policies = new HashSet<Policy>();
+        policies.add(new Policy("permit(principal in Group::\"staff\",action,resource);", "p0"));
+        var policySet = new PolicySet(policies);
+        var entities = new HashSet<Entity>();
+        entities.add(new Entity(group));
+        for (int i = 0; i < 5000; i++) {
+            entities.add(new Entity(userType.of("user" + i), i % 2 == 0 ? Set.of(group) : Set.of()));
+        }
+        var engine = new BasicAuthorizationEngine(BasicAuthorizationEngine.ExecutionMode.SPAWN_THREAD,
+                BasicAuthorizationEngine.WireFormat.JSON_DIRECT_BUFFER);
+        assertDoesNotThrow(() -> {
+            for (int i = 0; i < 4; i++) {
+                var user = userType.of("user" + i);
+                var response = engine.isAuthorized(new AuthorizationRequest(user, view, user, new HashMap<>()),
+                        policySet, entities);
+                assertEquals(i % 2 == 0, response.success.get().isAllowed());
+            }
+        });
+    }
+
+    @Test
+    public void workerPoolHandlesConcurrentCalls() throws InterruptedException {
+        var alice = new EntityUID(EntityTypeName.parse("User").get(), "alice");
+        var view = new EntityUID(EntityTypeName.parse("Action").get(), "view");
+        var q = new AuthorizationRequest(alice, view, alice, new HashMap<>());
+        var policies = new HashSet<Policy>();
+        policies.add(new Policy("permit(principal,action,resource);", "p0"));
+        var policySet = new PolicySet(policies);
+        var engine = new BasicAuthorizationEngine(BasicAuthorizationEngine.ExecutionMode.WORKER_POOL);
+        var executor = Executors.newFixedThreadPool(16);
+        var results = new ArrayList<Future<Boolean>>();
+        for (int i = 0; i < 500; i++) {
+            results.add(executor.submit(() -> engine.isAuthorized(q, policySet, new HashSet<>()).success.get().isAllowed()));
+        }
+        executor.shutdown();
+        for (var result : results) {
+            assertTrue(assertDoesNotThrow(() -> result.get()));
+        }
+    }
+
+    @Test
+    public void platformThreadPoolHandlesConcurrentCalls() throws InterruptedException {
+        var alice = new EntityUID(EntityTypeName.parse("User").get(), "alice");
+        var view = new EntityUID(EntityTypeName.parse("Action").get(), "view");
+        var q = new AuthorizationRequest(alice, view, alice, new HashMap<>());
+        var policies = new HashSet<Policy>();
+        policies.add(new Policy("permit(principal,action,resource);", "p0"));
+        var policySet = new PolicySet(policies);
+        var executor = Executors.newFixedThreadPool(16);
+        var results = new ArrayList<Future<Boolean>>();
+        for (var wireFormat : BasicAuthorizationEngine.WireFormat.values()) {
+            var engine = new BasicAuthorizationEngine(BasicAuthorizationEngine.ExecutionMode.PLATFORM_THREAD_POOL,
+                    wireFormat);
+            for (int i = 0; i < 200; i++) {
+                results.add(executor.submit(() -> engine.isAuthorized(q, policySet, new HashSet<>()).success.get()
+                        .isAllowed()));
+            }
+        }
+        executor.shutdown();
+        for (var result : results) {
+            assertTrue(assertDoesNotThrow(() -> result.get()));
+        }
+    }
+
     private Set<Entity> buildEntitiesForContextTests() {
         EntityTypeName principalType = EntityTypeName.parse("User").get();
         EntityTypeName actionType = EntityTypeName.parse("Action").get();
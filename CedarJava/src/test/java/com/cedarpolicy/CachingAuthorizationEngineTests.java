@@ -0,0 +1,253 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.cedarpolicy.model.AuthorizationRequest;
+import com.cedarpolicy.model.AuthorizationResponse;
+import com.cedarpolicy.model.EntityValidationRequest;
+import com.cedarpolicy.model.PartialAuthorizationRequest;
+import com.cedarpolicy.model.PartialAuthorizationResponse;
+import com.cedarpolicy.model.ValidationRequest;
+import com.cedarpolicy.model.ValidationResponse;
+import com.cedarpolicy.model.entity.Entity;
+import com.cedarpolicy.model.entity.EntityStore;
+import com.cedarpolicy.model.exception.AuthException;
+import com.cedarpolicy.model.policy.CompiledPolicySet;
+import com.cedarpolicy.model.policy.Policy;
+import com.cedarpolicy.model.policy.PolicySet;
+import com.cedarpolicy.value.EntityTypeName;
+import com.cedarpolicy.value.EntityUID;
+import com.cedarpolicy.value.PrimLong;
+import com.cedarpolicy.value.Value;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class CachingAuthorizationEngineTests {
+    private static final EntityTypeName USER = EntityTypeName.parse("User").get();
+    private static final EntityUID ADMINS = EntityTypeName.parse("Group").get().of("admins");
+    private static final EntityUID VIEW = new EntityUID(EntityTypeName.parse("Action").get(), "view");
+
+    /** Counts the authorization requests that reach the native library. */
+    private static final class CountingEngine implements AuthorizationEngine {
+        private final BasicAuthorizationEngine engine = new BasicAuthorizationEngine();
+        private int requests;
+        private boolean dropLastBatchResponse;
+
+        @Override
+        public AuthorizationResponse isAuthorized(AuthorizationRequest request, PolicySet policySet,
+                                                  Set<Entity> entities) throws AuthException {
+            requests++;
+            return engine.isAuthorized(request, policySet, entities);
+        }
+
+        @Override
+        public AuthorizationResponse isAuthorized(AuthorizationRequest request, PolicySet policySet,
+                                                  EntityStore entityStore) throws AuthException {
+            requests++;
+            return engine.isAuthorized(request, policySet, entityStore);
+        }
+
+        @Override
+        public List<AuthorizationResponse> isAuthorizedBatch(List<AuthorizationRequest> batch, PolicySet policySet,
+                                                             Set<Entity> entities) throws AuthException {
+            requests += batch.size();
+            List<AuthorizationResponse> responses = engine.isAuthorizedBatch(batch, policySet, entities);
+            return dropLastBatchResponse ? responses.subList(0, responses.size() - 1) : responses;
+        }
+
+        @Override
+        public PartialAuthorizationResponse isAuthorizedPartial(PartialAuthorizationRequest request,
+                                                                PolicySet policySet, Set<Entity> entities)
+                throws AuthException {
+            return engine.isAuthorizedPartial(request, policySet, entities);
+        }
+
+        @Override
+        public ValidationResponse validate(ValidationRequest request) throws AuthException {
+            return engine.validate(request);
+        }
+
+        @Override
+        public void validateEntities(EntityValidationRequest request) throws AuthException {
+            engine.validateEntities(request);
+        }
+    }
+
+    private static PolicySet buildPolicySet() {
+        Set<Policy> policies = new HashSet<>();
+        policies.add(new Policy("permit(principal in Group::\"admins\", action, resource) when { context.n > 0 };",
+                "p0"));
+        return new PolicySet(policies);
+    }
+
+    private static AuthorizationRequest request(String user, long n) {
+        EntityUID principal = USER.of(user);
+        Map<String, Value> context = new HashMap<>();
+        context.put("n", new PrimLong(n));
+        return new AuthorizationRequest(principal, VIEW, principal, context);
+    }
+
+    @Test
+    public void repeatedRequestsAreAnsweredFromTheCache() throws AuthException {
+        CountingEngine counting = new CountingEngine();
+        CachingAuthorizationEngine engine = CachingAuthorizationEngine.builder(counting).build();
+        PolicySet policySet = buildPolicySet();
+        Set<Entity> entities = new HashSet<>();
+        entities.add(new Entity(USER.of("alice"), Set.of(ADMINS)));
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(engine.isAuthorized(request("alice", 1), policySet, entities).success.get().isAllowed());
+            assertFalse(engine.isAuthorized(request("alice", 0), policySet, entities).success.get().isAllowed());
+        }
+        assertEquals(2, counting.requests);
+        assertEquals(8, engine.getStats().hitCount());
+        assertEquals(2, engine.getStats().missCount());
+        assertEquals(2, engine.size());
+    }
+
+    @Test
+    public void entityStoreUpdatesAreNotMaskedByTheCache() throws AuthException {
+        CountingEngine counting = new CountingEngine();
+        CachingAuthorizationEngine engine = CachingAuthorizationEngine.builder(counting).build();
+        PolicySet policySet = buildPolicySet();
+        try (EntityStore store = EntityStore.create(List.of(new Entity(USER.of("alice"))))) {
+            assertFalse(engine.isAuthorized(request("alice", 1), policySet, store).success.get().isAllowed());
+            assertFalse(engine.isAuthorized(request("alice", 1), policySet, store).success.get().isAllowed());
+            assertEquals(1, counting.requests);
+
+            store.upsert(new Entity(USER.of("alice"), Set.of(ADMINS)));
+            assertTrue(engine.isAuthorized(request("alice", 1), policySet, store).success.get().isAllowed());
+            assertEquals(2, counting.requests);
+        }
+    }
+
+    @Test
+    public void policySetChangesAreNotMaskedByTheCache() throws AuthException {
+        CountingEngine counting = new CountingEngine();
+        CachingAuthorizationEngine engine = CachingAuthorizationEngine.builder(counting).build();
+        PolicySet policySet = buildPolicySet();
+        Set<Entity> entities = new HashSet<>();
+
+        assertFalse(engine.isAuthorized(request("alice", 1), policySet, entities).success.get().isAllowed());
+        policySet.addPolicy(new Policy("permit(principal, action, resource);", "p1"));
+        assertTrue(engine.isAuthorized(request("alice", 1), policySet, entities).success.get().isAllowed());
+        policySet.removePolicy("p1");
+        assertFalse(engine.isAuthorized(request("alice", 1), policySet, entities).success.get().isAllowed());
+        assertEquals(3, counting.requests);
+
+        try (CompiledPolicySet compiled = CompiledPolicySet.compile(policySet)) {
+            assertFalse(engine.isAuthorized(request("alice", 1), compiled, entities).success.get().isAllowed());
+            policySet.addPolicy(new Policy("permit(principal, action, resource);", "p1"));
+            compiled.update();
+            assertTrue(engine.isAuthorized(request("alice", 1), compiled, entities).success.get().isAllowed());
+            assertEquals(5, counting.requests);
+        }
+    }
+
+    @Test
+    public void invalidationForgetsResponses() throws AuthException {
+        CountingEngine counting = new CountingEngine();
+        CachingAuthorizationEngine engine = CachingAuthorizationEngine.builder(counting).build();
+        PolicySet policySet = buildPolicySet();
+        Set<Entity> entities = new HashSet<>();
+
+        assertFalse(engine.isAuthorized(request("alice", 1), policySet, entities).success.get().isAllowed());
+        policySet.policies.add(new Policy("permit(principal, action, resource);", "p1"));
+        engine.invalidate(policySet);
+        assertTrue(engine.isAuthorized(request("alice", 1), policySet, entities).success.get().isAllowed());
+
+        entities.add(new Entity(USER.of("bob")));
+        engine.invalidate(entities);
+        assertTrue(engine.isAuthorized(request("alice", 1), policySet, entities).success.get().isAllowed());
+        assertEquals(3, counting.requests);
+
+        engine.invalidateAll();
+        assertEquals(0, engine.size());
+    }
+
+    @Test
+    public void batchOnlyEvaluatesMisses() throws AuthException {
+        CountingEngine counting = new CountingEngine();
+        CachingAuthorizationEngine engine = CachingAuthorizationEngine.builder(counting).maximumSize(100).build();
+        PolicySet policySet = buildPolicySet();
+        Set<Entity> entities = new HashSet<>();
+        entities.add(new Entity(USER.of("alice"), Set.of(ADMINS)));
+
+        engine.isAuthorized(request("alice", 1), policySet, entities);
+        List<AuthorizationResponse> responses = engine.isAuthorizedBatch(
+                List.of(request("alice", 1), request("bob", 1), request("alice", 0)), policySet, entities);
+        assertEquals(3, counting.requests);
+        assertTrue(responses.get(0).success.get().isAllowed());
+        assertFalse(responses.get(1).success.get().isAllowed());
+        assertFalse(responses.get(2).success.get().isAllowed());
+    }
+
+    @Test
+    public void batchFailsWhenResponsesAreMissing() {
+        CountingEngine counting = new CountingEngine();
+        counting.dropLastBatchResponse = true;
+        CachingAuthorizationEngine engine = CachingAuthorizationEngine.builder(counting).build();
+        assertThrows(AuthException.class, () -> engine.isAuthorizedBatch(
+                List.of(request("alice", 1), request("bob", 1)), buildPolicySet(), new HashSet<>()));
+    }
+
+    @Test
+    public void cachedResponsesDoNotKeepPolicySetsAlive() throws AuthException, InterruptedException {
+        CountingEngine counting = new CountingEngine();
+        CachingAuthorizationEngine engine = CachingAuthorizationEngine.builder(counting).build();
+        Set<Entity> entities = new HashSet<>();
+        PolicySet policySet = buildPolicySet();
+        engine.isAuthorized(request("alice", 1), policySet, entities);
+        WeakReference<PolicySet> collected = new WeakReference<>(policySet);
+        policySet = null;
+
+        PolicySet other = buildPolicySet();
+        for (int i = 0; i < 100 && (collected.get() != null || engine.size() != 1); i++) {
+            System.gc();
+            Thread.sleep(10);
+            engine.isAuthorized(request("bob", 1), other, entities);
+        }
+        assertNull(collected.get());
+        assertEquals(1, engine.size());
+    }
+
+    @Test
+    public void cacheIsBounded() throws AuthException {
+        CountingEngine counting = new CountingEngine();
+        CachingAuthorizationEngine engine = CachingAuthorizationEngine.builder(counting).maximumSize(10).build();
+        PolicySet policySet = buildPolicySet();
+        Set<Entity> entities = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            engine.isAuthorized(request("user" + i, 1), policySet, entities);
+        }
+        assertTrue(engine.size() <= 10);
+        assertTrue(engine.getStats().evictionCount() >= 90);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.cedarpolicy.model.AuthorizationRequest;
+import com.cedarpolicy.model.AuthorizationResponse;
+import com.cedarpolicy.model.AuthorizationResponse.SuccessOrFailure;
+import com.cedarpolicy.model.exception.AuthException;
+import com.cedarpolicy.model.exception.InternalException;
+import com.cedarpolicy.model.policy.CompiledPolicySet;
+import com.cedarpolicy.model.policy.LinkValue;
+import com.cedarpolicy.model.policy.Policy;
+import com.cedarpolicy.model.policy.PolicySet;
+import com.cedarpolicy.model.policy.TemplateLink;
+import com.cedarpolicy.value.EntityTypeName;
+import com.cedarpolicy.value.EntityUID;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+public class CompiledPolicySetTests {
+    private static final EntityTypeName USER = EntityTypeName.parse("User").get();
+    private static final EntityUID VIEW = new EntityUID(EntityTypeName.parse("Action").get(), "view");
+
+    private static PolicySet buildPolicySet() {
+        Set<Policy> policies = new HashSet<>();
+        policies.add(new Policy("permit(principal == User::\"alice\", action, resource);", "p0"));
+        Set<Policy> templates = new HashSet<>();
+        templates.add(new Policy("permit(principal == ?principal, action, resource);", "t0"));
+        List<TemplateLink> links = List.of(
+                new TemplateLink("t0", "t0-bob", List.of(new LinkValue("?principal", USER.of("bob")))));
+        return new PolicySet(policies, templates, links);
+    }
+
+    private static AuthorizationResponse authorize(CompiledPolicySet policySet, String user) throws AuthException {
+        EntityUID principal = USER.of(user);
+        AuthorizationRequest q = new AuthorizationRequest(principal, VIEW, principal, new HashMap<>());
+        return new BasicAuthorizationEngine().isAuthorized(q, policySet, new HashSet<>());
+    }
+
+    @Test
+    public void matchesUncompiledDecisions() {
+        PolicySet policySet = buildPolicySet();
+        BasicAuthorizationEngine engine = new BasicAuthorizationEngine();
+        assertDoesNotThrow(() -> {
+            try (CompiledPolicySet compiled = CompiledPolicySet.compile(policySet)) {
+                for (String user : List.of("alice", "bob", "eve")) {
+                    EntityUID principal = USER.of(user);
+                    AuthorizationRequest q = new AuthorizationRequest(principal, VIEW, principal, new HashMap<>());
+                    AuthorizationResponse expected = engine.isAuthorized(q, policySet, new HashSet<>());
+                    AuthorizationResponse actual = authorize(compiled, user);
+                    assertEquals(SuccessOrFailure.Success, actual.type);
+                    assertEquals(expected.success.get().isAllowed(), actual.success.get().isAllowed());
+                    assertEquals(expected.success.get().getReason(), actual.success.get().getReason());
+                }
+            }
+        });
+    }
+
+    @Test
+    public void compiledPolicySetIsReusable() {
+        assertDoesNotThrow(() -> {
+            try (CompiledPolicySet compiled = CompiledPolicySet.compile(buildPolicySet())) {
+                for (int i = 0; i < 10; i++) {
+                    assertTrue(authorize(compiled, "alice").success.get().isAllowed());
+                    assertTrue(authorize(compiled, "bob").success.get().isAllowed());
+                    assertFalse(authorize(compiled, "eve").success.get().isAllowed());
+                }
+            }
+        });
+    }
+
+    @Test
+    public void closeIsIdempotent() throws InternalException {
+        CompiledPolicySet compiled = CompiledPolicySet.compile(buildPolicySet());
+        assertFalse(compiled.isClosed());
+        compiled.close();
+        assertTrue(compiled.isClosed());
+        assertDoesNotThrow(compiled::close);
+        assertThrows(IllegalStateException.class, compiled::getHandle);
+    }
+
+    @Test
+    public void authorizingWithClosedPolicySetFails() throws InternalException {
+        CompiledPolicySet compiled = CompiledPolicySet.compile(buildPolicySet());
+        compiled.close();
+        assertThrows(AuthException.class, () -> authorize(compiled, "alice"));
+    }
+
+    @Test
+    public void updateAppliesChanges() throws AuthException {
+        PolicySet policySet = buildPolicySet();
+        try (CompiledPolicySet compiled = CompiledPolicySet.compile(policySet)) {
+            // The first tracked change takes over collections that may have been modified directly
+            policySet.addPolicy(new Policy("permit(principal == User::\"eve\", action, resource);", "p1"));
+            compiled.update();
+            assertTrue(authorize(compiled, "eve").success.get().isAllowed());
+            assertEquals(policySet.getVersion(), compiled.getCompiledVersion());
+
+            // Later changes are sent one by one to the same native policy set
+            long handle = compiled.getHandle();
+            policySet.replacePolicy(new Policy("permit(principal == User::\"carol\", action, resource);", "p1"));
+            policySet.removeTemplateLink("t0-bob");
+            compiled.update();
+            assertEquals(handle, compiled.getHandle());
+            assertFalse(authorize(compiled, "eve").success.get().isAllowed());
+            assertFalse(authorize(compiled, "bob").success.get().isAllowed());
+            assertTrue(authorize(compiled, "carol").success.get().isAllowed());
+
+            // A policy that never reaches the compiled form does not need to be valid
+            policySet.addPolicy(new Policy("permit(principal, action, resource", "p2"));
+            policySet.removePolicy("p2");
+            compiled.update();
+            assertTrue(authorize(compiled, "alice").success.get().isAllowed());
+
+            policySet.addPolicy(new Policy("permit(principal, action, resource", "p3"));
+            assertThrows(InternalException.class, compiled::update);
+            assertTrue(authorize(compiled, "alice").success.get().isAllowed());
+        }
+    }
+
+    @Test
+    public void recompilationKeepsTheHandle() throws AuthException, InterruptedException {
+        PolicySet policySet = buildPolicySet();
+        try (CompiledPolicySet compiled = CompiledPolicySet.compile(policySet)) {
+            long handle = compiled.getHandle();
+            AtomicBoolean running = new AtomicBoolean(true);
+            // A response or exception of a request made while the policy set was being replaced
+            AtomicReference<Object> failure = new AtomicReference<>();
+            Thread requests = new Thread(() -> {
+                while (running.get() && failure.get() == null) {
+                    try {
+                        AuthorizationResponse response = authorize(compiled, "alice");
+                        if (response.type != SuccessOrFailure.Success) {
+                            failure.set(response);
+                        }
+                    } catch (AuthException e) {
+                        failure.set(e);
+                    }
+                }
+            });
+            requests.start();
+            // Assigning the fields directly is not tracked, so each update compiles the policy set again
+            for (int i = 0; i < 50; i++) {
+                policySet.policies = new HashSet<>(policySet.policies);
+                compiled.update();
+            }
+            running.set(false);
+            requests.join();
+            assertNull(failure.get());
+            assertEquals(handle, compiled.getHandle());
+
+            policySet.policies = new HashSet<>();
+            compiled.update();
+            assertFalse(authorize(compiled, "alice").success.get().isAllowed());
+            assertTrue(authorize(compiled, "bob").success.get().isAllowed());
+        }
+    }
+
+    @Test
+    public void invalidPolicyFailsToCompile() {
+        Set<Policy> policies = new HashSet<>();
+        policies.add(new Policy("permit(principal, action, resource", "p0"));
+        assertThrows(InternalException.class, () -> CompiledPolicySet.compile(new PolicySet(policies)));
+        assertThrows(NullPointerException.class, () -> CompiledPolicySet.compile(null));
+    }
+}
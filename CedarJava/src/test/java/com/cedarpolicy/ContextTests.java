@@ -20,7 +20,10 @@ import com.cedarpolicy.value.PrimBool;
 import com.cedarpolicy.value.PrimLong;
 import com.cedarpolicy.value.PrimString;
 import com.cedarpolicy.value.Value;
+import com.cedarpolicy.model.AuthorizationRequest;
 import com.cedarpolicy.model.Context;
+import com.cedarpolicy.value.EntityTypeName;
+import com.cedarpolicy.value.EntityUID;
 
 import org.junit.jupiter.api.Test;
 import java.util.AbstractMap;
@@ -31,6 +34,7 @@ import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 public class ContextTests {
 
@@ -154,4 +158,34 @@ public class ContextTests {
 
         assertEquals(null, validContext.get("invalidKey"));
     }
+
+    @Test
+    public void asMapIsAnImmutableSnapshot() {
+        Context context = new Context(getValidMap());
+        Map<String, Value> snapshot = context.asMap();
+
+        assertSame(snapshot, context.asMap());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.put("key4", new PrimLong(1)));
+
+        context.merge(Set.of(Map.entry("key4", new PrimLong(1))));
+        assertEquals(getValidMap(), snapshot);
+        assertEquals(4, context.asMap().size());
+    }
+
+    @Test
+    public void requestsShareTheContextWithoutCopying() {
+        EntityUID alice = EntityTypeName.parse("User").get().of("alice");
+        EntityUID view = EntityTypeName.parse("Action").get().of("view");
+        Context context = new Context(getValidMap());
+
+        AuthorizationRequest request = new AuthorizationRequest(alice, view, alice, context);
+        assertSame(context.asMap(), request.context.get());
+
+        AuthorizationRequest fromMap = new AuthorizationRequest(alice, view, alice, request.context.get());
+        assertSame(request.context.get(), fromMap.context.get());
+
+        AuthorizationRequest fromMutableMap = new AuthorizationRequest(alice, view, alice, getValidMap());
+        assertEquals(getValidMap(), fromMutableMap.context.get());
+        assertThrows(UnsupportedOperationException.class, () -> fromMutableMap.context.get().clear());
+    }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.cedarpolicy.value.Decimal;
+
+import org.junit.jupiter.api.Test;
+
+public class DecimalTests {
+
+    @Test
+    public void parsesCedarSyntax() {
+        assertEquals(15000, new Decimal("1.5").getScaledValue());
+        assertEquals(12345, new Decimal("1.2345").getScaledValue());
+        assertEquals(-5, new Decimal("-0.0005").getScaledValue());
+        assertEquals(0, new Decimal("0.0").getScaledValue());
+        assertEquals(Long.MAX_VALUE, new Decimal("922337203685477.5807").getScaledValue());
+        assertEquals(Long.MIN_VALUE, new Decimal("-922337203685477.5808").getScaledValue());
+        assertEquals("1.50", new Decimal("1.50").toString());
+        assertEquals("decimal(\"1.50\")", new Decimal("1.50").toCedarExpr());
+    }
+
+    @Test
+    public void rejectsInvalidDecimals() {
+        for (String invalid : new String[] {"", "1", "1.", ".5", "-.5", "1.23456", "1.5 ", " 1.5", "+1.5", "1..5",
+            "1.5.0", "1,5", "-", "922337203685477.5808", "-922337203685477.5809", "99999999999999999999.0",
+            "１.5"}) {
+            assertThrows(IllegalArgumentException.class, () -> new Decimal(invalid), invalid);
+        }
+        assertThrows(NullPointerException.class, () -> new Decimal(null));
+    }
+
+    @Test
+    public void comparesByValue() {
+        Decimal small = new Decimal("-1.5");
+        Decimal large = new Decimal("1.25");
+        assertTrue(small.lessThan(large));
+        assertTrue(small.lessThanOrEqual(large));
+        assertFalse(small.greaterThan(large));
+        assertTrue(large.greaterThanOrEqual(new Decimal("1.2500")));
+        assertTrue(small.compareTo(large) < 0);
+        assertEquals(new Decimal("1.25"), new Decimal("1.2500"));
+        assertEquals(new Decimal("1.25").hashCode(), new Decimal("1.2500").hashCode());
+        assertNotEquals(new Decimal("1.25"), new Decimal("-1.25"));
+    }
+
+    @Test
+    public void ofScaledRoundTrips() {
+        for (long scaled : new long[] {0, 1, -1, 15000, -5000, 123456789, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            Decimal decimal = Decimal.ofScaled(scaled);
+            assertEquals(scaled, decimal.getScaledValue());
+            assertEquals(decimal, new Decimal(decimal.toString()));
+        }
+        assertEquals("-0.5000", Decimal.ofScaled(-5000).toString());
+    }
+}
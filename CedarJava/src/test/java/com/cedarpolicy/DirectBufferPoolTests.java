@@ -0,0 +1,90 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+public class DirectBufferPoolTests {
+    private static byte[] pattern(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        return bytes;
+    }
+
+    @Test
+    public void requestBufferGrowsAndKeepsContents() throws IOException {
+        DirectBufferPool.Buffers buffers = DirectBufferPool.acquire();
+        byte[] expected = pattern(300_000);
+        try (OutputStream out = buffers.requestStream()) {
+            out.write(expected[0]);
+            for (int i = 1; i < expected.length; i += 7000) {
+                out.write(expected, i, Math.min(7000, expected.length - i));
+            }
+        }
+        ByteBuffer input = buffers.getInput();
+        assertTrue(input.isDirect());
+        assertEquals(expected.length, buffers.getInputLength());
+        byte[] actual = new byte[expected.length];
+        input.duplicate().get(actual);
+        assertArrayEquals(expected, actual);
+        DirectBufferPool.release(buffers);
+    }
+
+    @Test
+    public void responseBufferGrowsOnDemand() throws IOException {
+        DirectBufferPool.Buffers buffers = DirectBufferPool.acquire();
+        byte[] expected = pattern(200_000);
+        ByteBuffer output = buffers.getOutput(expected.length);
+        assertTrue(output.isDirect());
+        assertTrue(output.capacity() >= expected.length);
+        output.duplicate().put(expected);
+        buffers.setOutputLength(expected.length);
+        assertArrayEquals(expected, buffers.responseStream().readAllBytes());
+        DirectBufferPool.release(buffers);
+    }
+
+    @Test
+    public void oversizedBuffersAreNotPooled() {
+        DirectBufferPool.Buffers buffers = DirectBufferPool.acquire();
+        buffers.getOutput(32 * 1024 * 1024);
+        assertFalse(DirectBufferPool.release(buffers));
+    }
+
+    @Test
+    public void newRequestStartsEmpty() throws IOException {
+        DirectBufferPool.Buffers buffers = DirectBufferPool.acquire();
+        try (OutputStream out = buffers.requestStream()) {
+            out.write(pattern(100));
+        }
+        try (OutputStream out = buffers.requestStream()) {
+            out.write(pattern(10));
+        }
+        assertEquals(10, buffers.getInputLength());
+        DirectBufferPool.release(buffers);
+    }
+}
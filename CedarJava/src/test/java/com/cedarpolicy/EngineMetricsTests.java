@@ -0,0 +1,129 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.cedarpolicy.BasicAuthorizationEngine.WireFormat;
+import com.cedarpolicy.metrics.CallMetrics;
+import com.cedarpolicy.metrics.EngineMetrics;
+import com.cedarpolicy.metrics.LatencyStats;
+import com.cedarpolicy.metrics.NativeTimings;
+import com.cedarpolicy.metrics.OperationStats;
+import com.cedarpolicy.model.AuthorizationRequest;
+import com.cedarpolicy.model.policy.CompiledPolicySet;
+import com.cedarpolicy.model.policy.Policy;
+import com.cedarpolicy.model.policy.PolicySet;
+import com.cedarpolicy.value.EntityTypeName;
+import com.cedarpolicy.value.EntityUID;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.jupiter.api.Test;
+
+public class EngineMetricsTests {
+
+    @Test
+    public void everyCallIsMeasured() throws Exception {
+        EntityUID alice = EntityTypeName.parse("User").get().of("alice");
+        EntityUID view = EntityTypeName.parse("Action").get().of("view");
+        AuthorizationRequest request = new AuthorizationRequest(alice, view, alice, new HashMap<>());
+        Set<Policy> policies = new HashSet<>();
+        policies.add(new Policy("permit(principal == User::\"alice\", action, resource);", "p0"));
+        PolicySet policySet = new PolicySet(policies);
+
+        for (WireFormat wireFormat : WireFormat.values()) {
+            List<CallMetrics> calls = new ArrayList<>();
+            BasicAuthorizationEngine engine = BasicAuthorizationEngine.builder().wireFormat(wireFormat)
+                    .metricsListener(calls::add).build();
+            assertTrue(engine.isAuthorized(request, policySet, new HashSet<>()).success.get().isAllowed());
+            try (CompiledPolicySet compiled = CompiledPolicySet.compile(policySet)) {
+                assertTrue(engine.isAuthorized(request, compiled, new HashSet<>()).success.get().isAllowed());
+            }
+
+            assertEquals(2, calls.size());
+            for (CallMetrics call : calls) {
+                assertEquals(wireFormat, call.getWireFormat());
+                assertFalse(call.isFailed());
+                assertTrue(call.getRequestSize() > 0);
+                assertTrue(call.getResponseSize() > 0);
+                assertTrue(call.getNativeNanos() > 0);
+                NativeTimings timings = call.getNativeTimings().get();
+                assertTrue(timings.getTotalNanos() > 0);
+                assertTrue(timings.getTotalNanos() <= call.getNativeNanos());
+            }
+            // Only requests on native-resident objects are parsed and evaluated in separate steps
+            assertEquals("AuthorizationOperation", calls.get(0).getOperation());
+            assertFalse(calls.get(0).getNativeTimings().get().getEvaluationNanos().isPresent());
+            assertEquals("AuthorizationHandleOperation", calls.get(1).getOperation());
+            assertTrue(calls.get(1).getNativeTimings().get().getParseNanos().isPresent());
+            assertTrue(calls.get(1).getNativeTimings().get().getEvaluationNanos().isPresent());
+        }
+    }
+
+    @Test
+    public void statisticsAreAggregatedAndExposedThroughJmx() throws Exception {
+        EngineMetrics metrics = new EngineMetrics();
+        for (long i = 1; i <= 100; i++) {
+            metrics.onCall(CallMetrics.builder("AuthorizationHandleOperation", WireFormat.CBOR).requestSize(100)
+                    .responseSize(10).serializationNanos(i * 1000).addNativeNanos(i * 10_000)
+                    .deserializationNanos(500).nativeTimings(new NativeTimings(i, 2 * i, 4 * i)).build());
+        }
+        metrics.onCall(CallMetrics.builder("ValidateOperation", WireFormat.CBOR).failed(true).build());
+
+        assertEquals(101, metrics.getCalls());
+        OperationStats stats = metrics.getOperation("AuthorizationHandleOperation").get();
+        assertEquals(100, stats.getCalls());
+        assertEquals(10_000, stats.getTotalRequestSize());
+        assertEquals(1000, stats.getTotalResponseSize());
+        LatencyStats serialization = stats.getSerialization();
+        assertEquals(100, serialization.getCount());
+        assertEquals(50_500, serialization.getMeanNanos());
+        assertEquals(100_000, serialization.getMaxNanos());
+        // Percentiles are the upper bound of their power of two bucket
+        assertTrue(serialization.getP50Nanos() >= 50_000 && serialization.getP50Nanos() < 100_000);
+        assertEquals(100_000, serialization.getP99Nanos());
+        assertEquals(100, stats.getNativeEvaluation().getCount());
+        OperationStats failed = metrics.getOperation("ValidateOperation").get();
+        assertEquals(1, failed.getFailures());
+        assertEquals(0, failed.getNativeCall().getCount());
+
+        ObjectName name = metrics.register("test");
+        try {
+            TabularData operations = (TabularData) ManagementFactory.getPlatformMBeanServer()
+                    .getAttribute(name, "Operations");
+            CompositeData row = operations.get(new Object[] {"AuthorizationHandleOperation"});
+            CompositeData value = (CompositeData) row.get("value");
+            assertEquals(100L, value.get("calls"));
+            assertEquals(100_000L, ((CompositeData) value.get("serialization")).get("maxNanos"));
+            ManagementFactory.getPlatformMBeanServer().invoke(name, "reset", null, null);
+            assertEquals(0, metrics.getCalls());
+        } finally {
+            EngineMetrics.unregister("test");
+        }
+    }
+}
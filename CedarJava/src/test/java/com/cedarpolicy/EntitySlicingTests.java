@@ -0,0 +1,140 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.cedarpolicy.BasicAuthorizationEngine.ExecutionMode;
+import com.cedarpolicy.BasicAuthorizationEngine.WireFormat;
+import com.cedarpolicy.model.AuthorizationRequest;
+import com.cedarpolicy.model.entity.Entity;
+import com.cedarpolicy.model.exception.AuthException;
+import com.cedarpolicy.model.policy.Policy;
+import com.cedarpolicy.model.policy.PolicySet;
+import com.cedarpolicy.value.CedarList;
+import com.cedarpolicy.value.CedarMap;
+import com.cedarpolicy.value.EntityTypeName;
+import com.cedarpolicy.value.EntityUID;
+import com.cedarpolicy.value.PrimLong;
+import com.cedarpolicy.value.Value;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+public class EntitySlicingTests {
+    private static final EntityTypeName USER = EntityTypeName.parse("User").get();
+    private static final EntityTypeName GROUP = EntityTypeName.parse("Group").get();
+    private static final EntityUID ALICE = USER.of("alice");
+    private static final EntityUID BOB = USER.of("bob");
+    private static final EntityUID CAROL = USER.of("carol");
+    private static final EntityUID ADMINS = GROUP.of("admins");
+    private static final EntityUID STAFF = GROUP.of("staff");
+    private static final EntityUID VIEW = EntityTypeName.parse("Action").get().of("view");
+    private static final EntityUID DOC = EntityTypeName.parse("Doc").get().of("doc");
+
+    /** Alice is managed by Bob, who is friends with Carol. Bob is an admin, and admins are staff. */
+    private static Set<Entity> buildEntities() {
+        Set<Entity> entities = new HashSet<>();
+        entities.add(new Entity(ALICE, Map.of("manager", BOB), Set.of(), Map.of()));
+        entities.add(new Entity(BOB, Map.of("friends", new CedarList(List.of(CAROL))), Set.of(ADMINS), Map.of()));
+        entities.add(new Entity(CAROL, Map.of("level", new PrimLong(3)), Set.of(), Map.of()));
+        entities.add(new Entity(ADMINS, Set.of(STAFF)));
+        entities.add(new Entity(STAFF));
+        entities.add(new Entity(DOC));
+        entities.add(new Entity(USER.of("stranger")));
+        return entities;
+    }
+
+    private static Set<EntityUID> sliceEUIDs(EntitySlicing slicing, AuthorizationRequest request) {
+        return slicing.slice(request, buildEntities()).stream().map(Entity::getEUID).collect(Collectors.toSet());
+    }
+
+    @Test
+    public void sliceFollowsParentsAndAttributesUpToTheDepth() {
+        AuthorizationRequest request = new AuthorizationRequest(ALICE, VIEW, DOC, new HashMap<>());
+
+        assertEquals(Set.of(ALICE, DOC), sliceEUIDs(EntitySlicing.attributeDepth(0), request));
+        assertEquals(Set.of(ALICE, DOC, BOB, ADMINS, STAFF), sliceEUIDs(EntitySlicing.attributeDepth(1), request));
+        assertEquals(Set.of(ALICE, DOC, BOB, ADMINS, STAFF, CAROL),
+                sliceEUIDs(EntitySlicing.attributeDepth(Integer.MAX_VALUE), request));
+        assertEquals(Set.of(ALICE, DOC, CAROL), sliceEUIDs(EntitySlicing.attributeDepth(0, Set.of(CAROL)), request));
+    }
+
+    @Test
+    public void sliceStartsFromTheContext() {
+        Map<String, Value> context = new HashMap<>();
+        context.put("on_behalf_of", new CedarMap(Map.of("user", BOB)));
+        AuthorizationRequest request = new AuthorizationRequest(ALICE, VIEW, DOC, context);
+
+        assertEquals(Set.of(ALICE, DOC, BOB, ADMINS, STAFF), sliceEUIDs(EntitySlicing.attributeDepth(0), request));
+    }
+
+    @Test
+    public void noSlicingSendsEveryEntity() {
+        Set<Entity> entities = buildEntities();
+        AuthorizationRequest request = new AuthorizationRequest(ALICE, VIEW, DOC, new HashMap<>());
+        assertSame(entities, EntitySlicing.none().slice(request, entities));
+        assertFalse(EntitySlicing.none().isEnabled());
+        assertThrows(IllegalArgumentException.class, () -> EntitySlicing.attributeDepth(-1));
+    }
+
+    @Test
+    public void policyAnalysisFindsDepthAndRoots() throws AuthException {
+        Set<Policy> policies = new HashSet<>();
+        policies.add(new Policy("permit(principal in Group::\"admins\", action, resource);", "p0"));
+        assertEquals(0, EntitySlicing.forPolicies(new PolicySet(policies)).getAttributeDepth());
+
+        policies.add(new Policy("permit(principal, action, resource) when { principal.manager in Group::\"admins\" "
+                + "&& User::\"carol\".level > 2 };", "p1"));
+        EntitySlicing slicing = EntitySlicing.forPolicies(new PolicySet(policies));
+        assertTrue(slicing.isEnabled());
+        assertEquals(1, slicing.getAttributeDepth());
+        assertTrue(slicing.getRoots().contains(CAROL));
+
+        Set<Policy> templates = Set.of(new Policy("permit(principal == ?principal, action, resource);", "t0"));
+        assertFalse(EntitySlicing.forPolicies(new PolicySet(policies, templates)).isEnabled());
+    }
+
+    @Test
+    public void slicedDecisionsMatchUnslicedOnes() throws AuthException {
+        Set<Policy> policies = new HashSet<>();
+        policies.add(new Policy("permit(principal, action, resource) when { principal.manager in Group::\"staff\" "
+                + "&& User::\"carol\".level > 2 };", "p0"));
+        PolicySet policySet = new PolicySet(policies);
+        BasicAuthorizationEngine sliced = new BasicAuthorizationEngine(ExecutionMode.SPAWN_THREAD, WireFormat.JSON,
+                EntitySlicing.forPolicies(policySet));
+        BasicAuthorizationEngine unsliced = new BasicAuthorizationEngine();
+
+        for (EntityUID principal : List.of(ALICE, BOB, CAROL)) {
+            AuthorizationRequest request = new AuthorizationRequest(principal, VIEW, DOC, new HashMap<>());
+            assertEquals(unsliced.isAuthorized(request, policySet, buildEntities()).success.get().isAllowed(),
+                    sliced.isAuthorized(request, policySet, buildEntities()).success.get().isAllowed());
+        }
+        assertTrue(sliced.isAuthorized(new AuthorizationRequest(ALICE, VIEW, DOC, new HashMap<>()), policySet,
+                buildEntities()).success.get().isAllowed());
+    }
+}
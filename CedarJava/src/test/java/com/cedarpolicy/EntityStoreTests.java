@@ -0,0 +1,126 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.cedarpolicy.model.AuthorizationRequest;
+import com.cedarpolicy.model.AuthorizationResponse.SuccessOrFailure;
+import com.cedarpolicy.model.exception.AuthException;
+import com.cedarpolicy.model.exception.InternalException;
+import com.cedarpolicy.model.entity.Entity;
+import com.cedarpolicy.model.entity.EntityStore;
+import com.cedarpolicy.model.policy.CompiledPolicySet;
+import com.cedarpolicy.model.policy.Policy;
+import com.cedarpolicy.model.policy.PolicySet;
+import com.cedarpolicy.value.EntityTypeName;
+import com.cedarpolicy.value.EntityUID;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class EntityStoreTests {
+    private static final EntityTypeName USER = EntityTypeName.parse("User").get();
+    private static final EntityTypeName GROUP = EntityTypeName.parse("Group").get();
+    private static final EntityUID ADMINS = GROUP.of("admins");
+    private static final EntityUID VIEW = new EntityUID(EntityTypeName.parse("Action").get(), "view");
+
+    private static PolicySet buildPolicySet() {
+        Set<Policy> policies = new HashSet<>();
+        policies.add(new Policy("permit(principal in Group::\"admins\", action, resource);", "p0"));
+        return new PolicySet(policies);
+    }
+
+    private static boolean isAllowed(PolicySet policySet, EntityStore store, String user) throws AuthException {
+        EntityUID principal = USER.of(user);
+        AuthorizationRequest q = new AuthorizationRequest(principal, VIEW, principal, new HashMap<>());
+        var response = new BasicAuthorizationEngine().isAuthorized(q, policySet, store);
+        assertEquals(SuccessOrFailure.Success, response.type);
+        return response.success.get().isAllowed();
+    }
+
+    @Test
+    public void updatesAreVisibleToAuthorization() {
+        PolicySet policySet = buildPolicySet();
+        assertDoesNotThrow(() -> {
+            try (EntityStore store = EntityStore.create(List.of(new Entity(ADMINS), new Entity(USER.of("alice"))))) {
+                assertFalse(isAllowed(policySet, store, "alice"));
+
+                store.upsert(new Entity(USER.of("alice"), Set.of(ADMINS)));
+                assertTrue(isAllowed(policySet, store, "alice"));
+
+                store.upsertAll(List.of(new Entity(USER.of("bob"), Set.of(ADMINS)),
+                        new Entity(USER.of("eve"))));
+                assertTrue(isAllowed(policySet, store, "bob"));
+                assertFalse(isAllowed(policySet, store, "eve"));
+
+                store.remove(USER.of("alice"));
+                assertFalse(isAllowed(policySet, store, "alice"));
+                assertTrue(isAllowed(policySet, store, "bob"));
+            }
+        });
+    }
+
+    @Test
+    public void worksWithCompiledPolicySet() {
+        assertDoesNotThrow(() -> {
+            try (CompiledPolicySet compiled = CompiledPolicySet.compile(buildPolicySet());
+                    EntityStore store = EntityStore.create(List.of(new Entity(USER.of("alice"), Set.of(ADMINS))))) {
+                EntityUID alice = USER.of("alice");
+                AuthorizationRequest q = new AuthorizationRequest(alice, VIEW, alice, new HashMap<>());
+                assertTrue(new BasicAuthorizationEngine().isAuthorized(q, compiled, store).success.get().isAllowed());
+            }
+        });
+    }
+
+    @Test
+    public void versionIncreasesWithEveryUpdate() throws InternalException {
+        try (EntityStore store = EntityStore.create()) {
+            long version = store.getVersion();
+            store.upsert(new Entity(USER.of("alice")));
+            assertTrue(store.getVersion() > version);
+
+            version = store.getVersion();
+            store.removeAll(List.of(USER.of("alice"), USER.of("nobody")));
+            assertTrue(store.getVersion() > version);
+        }
+    }
+
+    @Test
+    public void duplicateEntitiesAreRejected() {
+        assertThrows(InternalException.class,
+                () -> EntityStore.create(List.of(new Entity(USER.of("alice")), new Entity(USER.of("alice")))));
+    }
+
+    @Test
+    public void closedStoreCannotBeUsed() throws InternalException {
+        EntityStore store = EntityStore.create();
+        store.close();
+        assertTrue(store.isClosed());
+        assertDoesNotThrow(store::close);
+        assertThrows(IllegalStateException.class, () -> store.upsert(new Entity(USER.of("alice"))));
+        assertThrows(AuthException.class, () -> isAllowed(buildPolicySet(), store, "alice"));
+    }
+}
@@ -19,6 +19,7 @@ package com.cedarpolicy;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import com.cedarpolicy.value.*;
 import com.cedarpolicy.model.entity.Entity;
@@ -26,10 +27,16 @@ import static com.cedarpolicy.CedarJson.objectWriter;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class EntityTests {
     private static final String TEST_RESOURCES_DIR = "src/test/resources/";
@@ -177,6 +184,62 @@ public class EntityTests {
         });
     }
 
+    @Test
+    public void givenJSONArrayParseAllReturnsEveryEntity() throws IOException {
+        String entitiesJson = """
+                [
+                    {"uid":{"type":"App::User","id":"alice"},
+                     "attrs":{"manager":{"__entity":{"type":"App::User","id":"bob"}}},
+                     "parents":[{"type":"App::Group","id":"admins"}]},
+                    {"uid":{"type":"App::User","id":"bob"},
+                     "attrs":{},
+                     "parents":[{"type":"App::Group","id":"admins"}],
+                     "tags":{"level":3}},
+                    {"uid":{"type":"App::Group","id":"admins"},"attrs":{},"parents":[]}
+                ]
+                """;
+        EntityTypeName user = EntityTypeName.parse("App::User").get();
+        EntityUID admins = EntityTypeName.parse("App::Group").get().of("admins");
+
+        for (Set<Entity> entities : List.of(
+                Entity.parseAll(entitiesJson),
+                Entity.parseAll(new ByteArrayInputStream(entitiesJson.getBytes(StandardCharsets.UTF_8))))) {
+            Map<EntityUID, Entity> byEUID = entities.stream().collect(Collectors.toMap(Entity::getEUID, e -> e));
+            assertEquals(3, byEUID.size());
+            assertEquals(user.of("bob"), byEUID.get(user.of("alice")).getAttr("manager"));
+            assertEquals(Set.of(admins), byEUID.get(user.of("alice")).getParents());
+            assertEquals(new PrimLong(3), byEUID.get(user.of("bob")).getTags().get("level"));
+            assertEquals(Set.of(), byEUID.get(admins).getParents());
+        }
+    }
+
+    @Test
+    public void immutableEntitiesAreNotCopied() {
+        EntityTypeName user = EntityTypeName.parse("User").get();
+        Map<String, Value> attrs = Map.of("age", new PrimLong(42));
+        Set<EntityUID> parents = Set.of(user.of("bob"));
+        Entity entity = Entity.immutable(user.of("alice"), attrs, parents, Map.of());
+
+        assertEquals(new PrimLong(42), entity.getAttr("age"));
+        assertEquals(parents, entity.getParents());
+        assertThrows(UnsupportedOperationException.class, () -> entity.attrs.put("age", new PrimLong(1)));
+        assertThrows(UnsupportedOperationException.class, () -> entity.parentsEUIDs.add(user.of("carol")));
+
+        Entity copy = Entity.immutable(entity.getEUID(), entity.attrs, entity.parentsEUIDs, entity.tags);
+        assertSame(entity.attrs, copy.attrs);
+        assertSame(entity.parentsEUIDs, copy.parentsEUIDs);
+        assertSame(entity.tags, copy.tags);
+    }
+
+    @Test
+    public void givenInvalidEntityTypeParseAllThrows() {
+        String entitiesJson = """
+                [{"uid":{"type":"App::","id":"alice"},"attrs":{},"parents":[]}]
+                """;
+        assertThrows(JsonProcessingException.class, () -> Entity.parseAll(entitiesJson));
+        assertThrows(JsonProcessingException.class, () -> Entity.parseAll("{}"));
+    }
+
     public void givenValidJSONFileParseReturns() throws JsonProcessingException, IOException {
         Entity entity = Entity.parse(Path.of(TEST_RESOURCES_DIR + "valid_entity.json"));
         String jsonRepresentation = objectWriter().writeValueAsString(entity);
@@ -18,6 +18,7 @@ package com.cedarpolicy;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -127,6 +128,15 @@ public class EntityTypeNameTests {
         assertEquals(s, o.get().toString());
     }
 
+    @Property
+    public void internReturnsOneCanonicalInstance(@ForAll @From("multiLevelName") EntityTypeName name) {
+        var copy = EntityTypeName.parse(name.toString()).get();
+        var canonical = name.intern();
+        assertEquals(name, canonical);
+        assertSame(canonical, copy.intern());
+        assertSame(canonical, canonical.intern());
+    }
+
     @Property
     public void singleLevelRoundTrip(@ForAll @From("validName") String name) {
         var o = EntityTypeName.parse(name);
@@ -18,6 +18,7 @@ package com.cedarpolicy;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import org.junit.jupiter.api.Test;
@@ -112,6 +113,27 @@ public class EntityUIDTests {
         assertEquals(euid, euid2);
     }
 
+    @Property
+    void equalEuidsHaveEqualHashes(@ForAll @From("euids") EntityUID euid) {
+        var copy = new EntityUID(EntityTypeName.parse(euid.getType().toString()).get(), euid.getId().toString());
+        assertEquals(euid, copy);
+        assertEquals(euid.hashCode(), copy.hashCode());
+        assertEquals(euid.getId(), copy.getId());
+        assertFalse(euid.equals(null));
+        assertFalse(euid.equals(euid.toString()));
+        assertFalse(euid.getId().equals(null));
+        assertFalse(euid.equals(new EntityUID(euid.getType(), euid.getId().toString() + "x")));
+    }
+
+    @Property
+    void internReturnsOneCanonicalInstance(@ForAll @From("euids") EntityUID euid) {
+        var copy = EntityUID.parse(euid.toString()).get();
+        var canonical = euid.intern();
+        assertEquals(euid, canonical);
+        assertSame(canonical, copy.intern());
+        assertSame(canonical, canonical.intern());
+        assertSame(canonical.getType(), euid.getType().intern());
+    }
 
     @Provide
     public Arbitrary<EntityUID> euids() {
@@ -0,0 +1,96 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.cedarpolicy.value.IpAddress;
+
+import org.junit.jupiter.api.Test;
+
+public class IpAddressTests {
+
+    @Test
+    public void parsesIpv4() {
+        IpAddress ip = new IpAddress("192.168.1.20");
+        assertTrue(ip.isIpv4());
+        assertEquals(32, ip.getPrefixLength());
+        assertArrayEquals(new byte[] {(byte) 192, (byte) 168, 1, 20}, ip.getAddress());
+        assertEquals(8, new IpAddress("10.0.0.0/8").getPrefixLength());
+        assertEquals("ip(\"10.0.0.0/8\")", new IpAddress("10.0.0.0/8").toCedarExpr());
+    }
+
+    @Test
+    public void parsesIpv6() {
+        IpAddress ip = new IpAddress("2001:db8::ff00:42:8329");
+        assertTrue(ip.isIpv6());
+        assertEquals(128, ip.getPrefixLength());
+        assertEquals(new IpAddress("2001:0db8:0000:0000:0000:ff00:0042:8329"), ip);
+        assertEquals(new IpAddress("::"), new IpAddress("0:0:0:0:0:0:0:0"));
+        assertEquals(new IpAddress("::1"), new IpAddress("0:0:0:0:0:0:0:1"));
+        assertEquals(new IpAddress("1::"), new IpAddress("1:0:0:0:0:0:0:0"));
+        assertEquals(new IpAddress("1::2:3"), new IpAddress("1:0:0:0:0:0:2:3"));
+        assertEquals(new IpAddress("::2:3:4:5:6:7:8"), new IpAddress("0:2:3:4:5:6:7:8"));
+        assertEquals(new IpAddress("FF00::"), new IpAddress("ff00::"));
+        assertEquals(64, new IpAddress("2001:db8::/64").getPrefixLength());
+    }
+
+    @Test
+    public void rejectsInvalidAddresses() {
+        for (String invalid : new String[] {"", "1.2.3", "1.2.3.4.5", "256.0.0.1", "01.2.3.4", "1.2.3.4/33",
+            "1.2.3.4/", "1.2.3.4/08", "1.2.3.4/a", " 1.2.3.4", "1.2.3.4 ", "1:2:3:4:5:6:7", "1:2:3:4:5:6:7:8:9",
+            "1::2::3", ":1", "1:", "1:::2", "12345::", "1:2:3:4:5:6:7::8", "::1:2:3:4:5:6:7:8", "::ffff:127.0.0.1",
+            "::1/129", "fe80::1%eth0", "g::", "１.2.3.4"}) {
+            assertThrows(IllegalArgumentException.class, () -> new IpAddress(invalid), invalid);
+        }
+        assertThrows(NullPointerException.class, () -> new IpAddress(null));
+    }
+
+    @Test
+    public void equalityIncludesThePrefix() {
+        assertEquals(new IpAddress("10.0.0.1"), new IpAddress("10.0.0.1/32"));
+        assertNotEquals(new IpAddress("10.0.0.0/8"), new IpAddress("10.0.0.0/16"));
+        assertNotEquals(new IpAddress("10.0.0.1/8"), new IpAddress("10.0.0.0/8"));
+    }
+
+    @Test
+    public void rangeChecks() {
+        IpAddress range = new IpAddress("10.0.0.0/8");
+        assertTrue(new IpAddress("10.1.2.3").isInRange(range));
+        assertTrue(new IpAddress("10.1.0.0/16").isInRange(range));
+        assertTrue(range.isInRange(range));
+        assertFalse(new IpAddress("11.0.0.1").isInRange(range));
+        assertFalse(new IpAddress("10.0.0.0/7").isInRange(range));
+        assertTrue(new IpAddress("192.168.1.129").isInRange(new IpAddress("192.168.1.128/25")));
+        assertFalse(new IpAddress("192.168.1.127").isInRange(new IpAddress("192.168.1.128/25")));
+        assertTrue(new IpAddress("2001:db8::1").isInRange(new IpAddress("2001:db8::/32")));
+        assertFalse(new IpAddress("::a00:1").isInRange(range));
+        assertTrue(new IpAddress("1.2.3.4").isInRange(new IpAddress("0.0.0.0/0")));
+
+        assertTrue(new IpAddress("127.0.0.1").isLoopback());
+        assertTrue(new IpAddress("::1").isLoopback());
+        assertFalse(new IpAddress("::2").isLoopback());
+        assertTrue(new IpAddress("224.0.0.1").isMulticast());
+        assertTrue(new IpAddress("ff02::1").isMulticast());
+        assertFalse(new IpAddress("10.0.0.1").isMulticast());
+    }
+}
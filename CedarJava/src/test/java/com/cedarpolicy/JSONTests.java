@@ -25,9 +25,16 @@ import com.cedarpolicy.model.AuthorizationResponse;
 import com.cedarpolicy.model.PartialAuthorizationRequest;
 import com.cedarpolicy.model.PartialAuthorizationResponse;
 import com.cedarpolicy.model.AuthorizationSuccessResponse.Decision;
+import com.cedarpolicy.model.entity.Entity;
+import com.cedarpolicy.model.policy.Policy;
+import com.cedarpolicy.model.policy.PolicySet;
+import com.cedarpolicy.model.policy.TemplateLink;
 import com.cedarpolicy.value.CedarList;
+import com.cedarpolicy.value.CedarMap;
+import com.cedarpolicy.value.Decimal;
 import com.cedarpolicy.value.EntityUID;
 import com.cedarpolicy.value.EntityTypeName;
+import com.cedarpolicy.value.IpAddress;
 import com.cedarpolicy.value.PrimBool;
 import com.cedarpolicy.value.PrimLong;
 import com.cedarpolicy.value.PrimString;
@@ -43,6 +50,10 @@ import com.fasterxml.jackson.databind.node.TextNode;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.junit.jupiter.api.Test;
 
@@ -68,6 +79,59 @@ public class JSONTests {
         }
     }
 
+    @Test
+    public void testAuthSuccessResponseWithReasonsErrorsAndWarnings() {
+        String src = "{ \"type\": \"success\", \"response\": { \"decision\": \"deny\", \"diagnostics\": {"
+                + " \"reason\": [\"p1\", \"p0\"], \"errors\": [ { \"policyId\": \"p2\", \"error\":"
+                + " { \"message\": \"overflow\", \"severity\": \"error\" } } ] } },"
+                + " \"warnings\": [\"w0\"], \"ignored\": { \"nested\": [1, 2] } }";
+        AuthorizationResponse r = assertDoesNotThrow(
+                () -> objectReader().forType(AuthorizationResponse.class).readValue(src));
+        assertEquals(AuthorizationResponse.SuccessOrFailure.Success, r.type);
+        assertEquals(Decision.Deny, r.success.get().getDecision());
+        assertEquals(List.of("p1", "p0"), new ArrayList<>(r.success.get().getReason()));
+        assertEquals(1, r.success.get().getErrors().size());
+        assertEquals("p2", r.success.get().getErrors().get(0).getPolicyId());
+        assertEquals("overflow", r.success.get().getErrors().get(0).getError().message);
+        assertEquals(List.of("w0"), r.warnings);
+        assertTrue(r.errors.isEmpty());
+    }
+
+    @Test
+    public void testAuthFailureResponse() {
+        String src = "{ \"type\": \"failure\", \"errors\": [ { \"message\": \"bad request\","
+                + " \"help\": \"fix it\" } ], \"warnings\": [] }";
+        AuthorizationResponse r = assertDoesNotThrow(
+                () -> objectReader().forType(AuthorizationResponse.class).readValue(src));
+        assertEquals(AuthorizationResponse.SuccessOrFailure.Failure, r.type);
+        assertTrue(r.success.isEmpty());
+        assertEquals("bad request", r.errors.get().get(0).message);
+        assertEquals("fix it", r.errors.get().get(0).help.get());
+        assertTrue(r.warnings.isEmpty());
+    }
+
+    @Test
+    public void testAuthResponseBatch() {
+        String one = "{ \"type\": \"success\", \"response\": { \"decision\": \"allow\","
+                + " \"diagnostics\": { \"reason\": [\"p0\"], \"errors\": [] } }, \"warnings\": [] }";
+        List<AuthorizationResponse> responses = assertDoesNotThrow(() -> objectReader()
+                .forType(objectReader().getTypeFactory().constructCollectionType(List.class,
+                        AuthorizationResponse.class))
+                .readValue("[" + one + "," + one + "]"));
+        assertEquals(2, responses.size());
+        assertTrue(responses.stream().allMatch(r -> r.success.get().isAllowed()));
+    }
+
+    @Test
+    public void testMalformedAuthResponse() {
+        assertThrows(JsonProcessingException.class, () -> objectReader().forType(AuthorizationResponse.class)
+                .readValue("{ \"type\": \"success\", \"response\": { \"decision\": \"maybe\" } }"));
+        assertThrows(JsonProcessingException.class, () -> objectReader().forType(AuthorizationResponse.class)
+                .readValue("{ \"type\": \"success\", \"response\": { \"diagnostics\": { \"reason\": 3 } } }"));
+        assertThrows(JsonProcessingException.class, () -> objectReader().forType(AuthorizationResponse.class)
+                .readValue("[]"));
+    }
+
     @Test
     public void testAuthConcretePartialResponse() {
         String src =
@@ -264,6 +328,51 @@ public class JSONTests {
         assertEquals("test", unknown.toString());
     }
 
+    /** Tests deserialization of records nesting every kind of value */
+    @Test
+    public void testDeserializationNestedRecord() throws JsonProcessingException {
+        String json = "{\"name\":\"alice\",\"age\":42,\"admin\":true,"
+                + "\"manager\":{\"__entity\":{\"type\":\"Org::User\",\"id\":\"bob\"}},"
+                + "\"addr\":{\"__extn\":{\"fn\":\"ip\",\"arg\":\"10.0.0.1\"}},"
+                + "\"score\":{\"__extn\":{\"arg\":\"1.5\",\"fn\":\"decimal\"}},"
+                + "\"tags\":[\"a\",[1,2],{}],\"nested\":{\"deeper\":{\"list\":[false]}}}";
+        Value value = CedarJson.objectMapper().readValue(json, Value.class);
+
+        CedarMap expected = new CedarMap();
+        expected.put("name", new PrimString("alice"));
+        expected.put("age", new PrimLong(42));
+        expected.put("admin", new PrimBool(true));
+        expected.put("manager", new EntityUID(EntityTypeName.parse("Org::User").get(), "bob"));
+        expected.put("addr", new IpAddress("10.0.0.1"));
+        expected.put("score", new Decimal("1.5"));
+        expected.put("tags", new CedarList(Arrays.asList(new PrimString("a"),
+                new CedarList(Arrays.asList(new PrimLong(1), new PrimLong(2))), new CedarMap())));
+        CedarMap deeper = new CedarMap();
+        deeper.put("list", new CedarList(Arrays.asList(new PrimBool(false))));
+        CedarMap nested = new CedarMap();
+        nested.put("deeper", deeper);
+        expected.put("nested", nested);
+        assertEquals(expected, value);
+    }
+
+    /** Tests that malformed escapes are rejected */
+    @Test
+    public void testDeserializationInvalidEscapes() {
+        for (String json : Arrays.asList(
+                "{\"__entity\":{\"type\":\"User\",\"id\":\"alice\"},\"extra\":1}",
+                "{\"extra\":1,\"__extn\":{\"fn\":\"ip\",\"arg\":\"10.0.0.1\"}}",
+                "{\"__entity\":{\"type\":\"User\"}}",
+                "{\"__entity\":{\"type\":\"User\",\"id\":\"alice\",\"other\":\"x\"}}",
+                "{\"__entity\":\"User::alice\"}",
+                "{\"__extn\":{\"fn\":\"sqrt\",\"arg\":\"4\"}}",
+                "{\"__extn\":{\"fn\":\"ip\"}}",
+                "{\"__extn\":{\"fn\":\"ip\",\"arg\":7}}",
+                "123456789012345678901234567890")) {
+            assertThrows(JsonProcessingException.class, () -> CedarJson.objectMapper().readValue(json, Value.class),
+                    json);
+        }
+    }
+
     /** Tests deserialization of value that causes stack overflow */
     @Test
     public void testDeserializationStackOverflow() {
@@ -275,4 +384,71 @@ public class JSONTests {
             assertTrue(e instanceof StreamConstraintsException);
         }
     }
+
+    @Test
+    public void testPolicySetSerializationFollowsChanges() throws JsonProcessingException {
+        Set<Policy> policies = new HashSet<>();
+        policies.add(new Policy("permit(principal, action, resource);", "p0"));
+        PolicySet policySet = new PolicySet(policies);
+        String before = objectWriter().writeValueAsString(policySet);
+        assertEquals(before, objectWriter().writeValueAsString(policySet));
+
+        policies.add(new Policy("forbid(principal, action, resource);", "p1"));
+        JsonNode after = objectReader().readTree(objectWriter().writeValueAsString(policySet));
+        assertEquals(2, after.get("staticPolicies").size());
+        assertEquals("forbid(principal, action, resource);", after.get("staticPolicies").get("p1").asText());
+
+        policySet.policies = Set.of(new Policy("permit(principal, action, resource);", "p2"));
+        after = objectReader().readTree(objectWriter().writeValueAsString(policySet));
+        assertEquals(1, after.get("staticPolicies").size());
+        assertTrue(after.get("staticPolicies").has("p2"));
+    }
+
+    @Test
+    public void testImmutableEntitySerialization() throws JsonProcessingException {
+        EntityTypeName user = EntityTypeName.parse("User").get();
+        Map<String, Value> attrs = new HashMap<>();
+        attrs.put("name", new PrimString("alice"));
+        Entity mutable = new Entity(user.of("alice"), attrs, Set.of(user.of("bob")), new HashMap<>());
+        Entity immutable = Entity.immutable(user.of("alice"), attrs, Set.of(user.of("bob")), Map.of());
+
+        String expected = objectWriter().writeValueAsString(mutable);
+        assertEquals(expected, objectWriter().writeValueAsString(immutable));
+        assertEquals(expected, objectWriter().writeValueAsString(immutable));
+        assertEquals(objectReader().readTree(expected),
+                objectReader().readTree(objectWriter().writeValueAsString(List.of(immutable, immutable))).get(1));
+    }
+
+    @Test
+    public void testImmutableEntitySerializationFollowsChangedValues() throws JsonProcessingException {
+        EntityTypeName user = EntityTypeName.parse("User").get();
+        CedarList roles = new CedarList(List.of(new PrimString("reader")));
+        Entity entity = Entity.immutable(user.of("alice"), Map.of("roles", roles), Set.of(), Map.of());
+        assertEquals(1, objectReader().readTree(objectWriter().writeValueAsString(entity))
+                .get("attrs").get("roles").size());
+
+        // Sets and records can still change, so the JSON of an entity holding them is not reused
+        roles.add(new PrimString("writer"));
+        assertEquals(2, objectReader().readTree(objectWriter().writeValueAsString(entity))
+                .get("attrs").get("roles").size());
+    }
+
+    @Test
+    public void testPolicySetSerializationFollowsTemplateLinkSubclasses() throws JsonProcessingException {
+        EntityTypeName user = EntityTypeName.parse("User").get();
+        Map<String, EntityUID> values = new HashMap<>();
+        values.put("?principal", user.of("alice"));
+        TemplateLink link = new TemplateLink("t0", "t0-link", List.of()) {
+            @Override
+            public Map<String, EntityUID> getLinkValues() {
+                return values;
+            }
+        };
+        Set<Policy> templates = Set.of(new Policy("permit(principal == ?principal, action, resource);", "t0"));
+        PolicySet policySet = new PolicySet(Set.of(), templates, List.of(link));
+        String before = objectWriter().writeValueAsString(policySet);
+
+        values.put("?principal", user.of("bob"));
+        assertNotEquals(before, objectWriter().writeValueAsString(policySet));
+    }
 }
@@ -0,0 +1,199 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.cedarpolicy.model.AuthorizationRequest;
+import com.cedarpolicy.model.AuthorizationResponse;
+import com.cedarpolicy.model.entity.Entity;
+import com.cedarpolicy.model.exception.AuthException;
+import com.cedarpolicy.model.policy.LinkValue;
+import com.cedarpolicy.model.policy.Policy;
+import com.cedarpolicy.model.policy.PolicySet;
+import com.cedarpolicy.model.policy.TemplateLink;
+import com.cedarpolicy.value.EntityTypeName;
+import com.cedarpolicy.value.EntityUID;
+import com.google.common.collect.ImmutableSet;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+public class PolicyScopeIndexTests {
+    private static final EntityTypeName USER = EntityTypeName.parse("User").get();
+    private static final EntityTypeName GROUP = EntityTypeName.parse("Group").get();
+    private static final EntityTypeName ACTION = EntityTypeName.parse("Action").get();
+    private static final EntityUID ALICE = USER.of("alice");
+    private static final EntityUID BOB = USER.of("bob");
+    private static final EntityUID ADMINS = GROUP.of("admins");
+    private static final EntityUID VIEW = ACTION.of("view");
+    private static final EntityUID EDIT = ACTION.of("edit");
+    private static final EntityUID READ = ACTION.of("read");
+    private static final EntityUID FOLDER = EntityTypeName.parse("Folder").get().of("shared");
+    private static final EntityUID DOC = EntityTypeName.parse("Doc").get().of("doc");
+
+    private static PolicySet buildPolicySet() {
+        Set<Policy> policies = new HashSet<>();
+        policies.add(new Policy("permit(principal == User::\"alice\", action, resource);", "alice"));
+        policies.add(new Policy("permit(principal == User::\"bob\", action == Action::\"edit\", resource);", "bob"));
+        policies.add(new Policy("permit(principal in Group::\"admins\", action, resource);", "admins"));
+        policies.add(new Policy("forbid(principal is Group, action, resource);", "groups"));
+        policies.add(new Policy("permit(principal, action in [Action::\"read\"], resource in Folder::\"shared\");",
+                "shared"));
+        policies.add(new Policy("forbid(principal, action, resource) when { resource == Doc::\"secret\" };",
+                "secret"));
+        return new PolicySet(policies);
+    }
+
+    /** Alice is an admin, the document is in the shared folder, and viewing is reading. */
+    private static Set<Entity> buildEntities() {
+        Set<Entity> entities = new HashSet<>();
+        entities.add(new Entity(ALICE, Set.of(ADMINS)));
+        entities.add(new Entity(BOB));
+        entities.add(new Entity(ADMINS));
+        entities.add(new Entity(DOC, Set.of(FOLDER)));
+        entities.add(new Entity(FOLDER));
+        entities.add(new Entity(VIEW, Set.of(READ)));
+        return entities;
+    }
+
+    private static Set<String> selectedIds(PolicyScopeIndex index, EntityUID principal, EntityUID action,
+                                           Set<Entity> entities) {
+        AuthorizationRequest request = new AuthorizationRequest(principal, action, DOC, new HashMap<>());
+        return index.select(request, entities).policies.stream().map(Policy::getID).collect(Collectors.toSet());
+    }
+
+    @Test
+    public void selectsPoliciesWhoseScopeCanMatch() {
+        PolicyScopeIndex index = PolicyScopeIndex.build(buildPolicySet());
+        Set<Entity> entities = buildEntities();
+
+        assertEquals(Set.of("alice", "admins", "shared", "secret"), selectedIds(index, ALICE, VIEW, entities));
+        assertEquals(Set.of("bob", "secret"), selectedIds(index, BOB, EDIT, entities));
+        assertEquals(Set.of("admins", "groups", "shared", "secret"), selectedIds(index, ADMINS, READ, entities));
+        // Without the entities, every policy with an `in` constraint may apply
+        assertEquals(Set.of("admins", "shared", "secret"), selectedIds(index, BOB, VIEW, null));
+
+        // The hierarchy of an immutable entity set is indexed once and then reused
+        Set<Entity> immutable = ImmutableSet.copyOf(entities);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(Set.of("alice", "admins", "shared", "secret"), selectedIds(index, ALICE, VIEW, immutable));
+            assertEquals(Set.of("admins", "groups", "shared", "secret"), selectedIds(index, ADMINS, READ, immutable));
+        }
+    }
+
+    @Test
+    public void changesAreDetected() {
+        PolicySet policySet = buildPolicySet();
+        PolicyScopeIndex index = PolicyScopeIndex.build(policySet);
+        assertTrue(index.isBuiltFrom(policySet));
+        assertFalse(index.isBuiltFrom(buildPolicySet()));
+
+        policySet.policies.add(new Policy("permit(principal, action, resource);", "everyone"));
+        assertFalse(index.isBuiltFrom(policySet));
+        PolicySet selected = PolicyScopeIndex.build(policySet).select(
+                new AuthorizationRequest(BOB, VIEW, DOC, new HashMap<>()), buildEntities());
+        assertEquals(Set.of("shared", "secret", "everyone"), selected.getStaticPolicies().keySet());
+    }
+
+    @Test
+    public void rebuildIndexesChangedPolicies() {
+        PolicySet policySet = buildPolicySet();
+        PolicyScopeIndex index = PolicyScopeIndex.build(policySet);
+        policySet.replacePolicy(new Policy("permit(principal == User::\"bob\", action, resource);", "bob"));
+        policySet.removePolicy("alice");
+        assertFalse(index.isBuiltFrom(policySet));
+
+        PolicyScopeIndex rebuilt = index.rebuild(policySet);
+        assertTrue(rebuilt.isBuiltFrom(policySet));
+        Set<Entity> entities = buildEntities();
+        assertEquals(Set.of("bob", "shared", "secret"), selectedIds(rebuilt, BOB, VIEW, entities));
+        assertEquals(Set.of("admins", "shared", "secret"), selectedIds(rebuilt, ALICE, VIEW, entities));
+    }
+
+    @Test
+    public void decisionsMatchUnindexedOnes() throws AuthException {
+        PolicySet policySet = buildPolicySet();
+        BasicAuthorizationEngine indexed = BasicAuthorizationEngine.builder().policyScopeIndexing(true).build();
+        BasicAuthorizationEngine unindexed = new BasicAuthorizationEngine();
+        assertTrue(indexed.isPolicyScopeIndexing());
+
+        for (EntityUID principal : List.of(ALICE, BOB, ADMINS)) {
+            for (EntityUID action : List.of(VIEW, EDIT, READ)) {
+                AuthorizationRequest request = new AuthorizationRequest(principal, action, DOC, new HashMap<>());
+                AuthorizationResponse expected = unindexed.isAuthorized(request, policySet, buildEntities());
+                AuthorizationResponse actual = indexed.isAuthorized(request, policySet, buildEntities());
+                assertEquals(expected.success.get().isAllowed(), actual.success.get().isAllowed());
+                assertEquals(expected.success.get().getReason(), actual.success.get().getReason());
+            }
+        }
+        List<AuthorizationRequest> batch = List.of(new AuthorizationRequest(ALICE, VIEW, DOC, new HashMap<>()),
+                new AuthorizationRequest(BOB, VIEW, DOC, new HashMap<>()));
+        assertEquals(List.of(true, false), indexed.isAuthorizedBatch(batch, policySet, buildEntities()).stream()
+                .map(response -> response.success.get().isAllowed()).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void cachedIndexesDoNotKeepPolicySetsAlive() throws AuthException, InterruptedException {
+        BasicAuthorizationEngine engine = BasicAuthorizationEngine.builder().policyScopeIndexing(true).build();
+        AuthorizationRequest request = new AuthorizationRequest(ALICE, VIEW, DOC, new HashMap<>());
+        PolicySet policySet = buildPolicySet();
+        engine.isAuthorized(request, policySet, buildEntities());
+        PolicyScopeIndex index = PolicyScopeIndex.build(policySet);
+        WeakReference<PolicySet> collected = new WeakReference<>(policySet);
+        policySet = null;
+
+        for (int i = 0; i < 100 && collected.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(collected.get());
+        // An index whose policy set is gone still selects from the same policies
+        assertEquals(Set.of("alice", "admins", "shared", "secret"), selectedIds(index, ALICE, VIEW, buildEntities()));
+    }
+
+    @Test
+    public void unindexableSetsAreSentWhole() {
+        Set<Policy> policies = new HashSet<>();
+        policies.add(new Policy("permit(principal == User::\"alice\", action, resource);", "p0"));
+        policies.add(new Policy("permit(principal == User::\"bob\", action, resource);", "p0"));
+        PolicySet duplicates = new PolicySet(policies);
+        AuthorizationRequest request = new AuthorizationRequest(ALICE, VIEW, DOC, new HashMap<>());
+        assertSame(duplicates, PolicyScopeIndex.build(duplicates).select(request, buildEntities()));
+
+        // Cedar also rejects a static policy with the ID of a template or template link
+        Set<Policy> templates = Set.of(new Policy("permit(principal == ?principal, action, resource);", "p0"));
+        PolicySet sharedWithTemplate = new PolicySet(Set.of(policies.iterator().next()), templates);
+        assertSame(sharedWithTemplate, PolicyScopeIndex.build(sharedWithTemplate).select(request, buildEntities()));
+
+        Set<Policy> linked = Set.of(new Policy("permit(principal == ?principal, action, resource);", "t0"));
+        List<TemplateLink> links = List.of(new TemplateLink("t0", "p1", List.of(new LinkValue("?principal", BOB))));
+        Set<Policy> statics = Set.of(new Policy("permit(principal == User::\"bob\", action, resource);", "p1"));
+        PolicySet sharedWithLink = new PolicySet(statics, linked, links);
+        assertSame(sharedWithLink, PolicyScopeIndex.build(sharedWithLink).select(request, buildEntities()));
+    }
+}
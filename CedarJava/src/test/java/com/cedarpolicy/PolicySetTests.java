@@ -17,16 +17,27 @@
 package com.cedarpolicy;
 
 import com.cedarpolicy.model.exception.InternalException;
+import com.cedarpolicy.model.policy.LinkValue;
 import com.cedarpolicy.model.policy.Policy;
 import com.cedarpolicy.model.policy.PolicySet;
+import com.cedarpolicy.model.policy.PolicySetChange;
+import com.cedarpolicy.model.policy.TemplateLink;
+import com.cedarpolicy.value.EntityTypeName;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class PolicySetTests {
     private static final String TEST_RESOURCES_DIR = "src/test/resources/";
@@ -83,6 +94,79 @@ public class PolicySetTests {
         });
     }
 
+    @Test
+    public void changesAreVersionedAndLogged() {
+        PolicySet policySet = new PolicySet();
+        Policy p0 = new Policy("permit(principal, action, resource);", "p0");
+        Policy t0 = new Policy("permit(principal == ?principal, action, resource);", "t0");
+        TemplateLink link = new TemplateLink("t0", "t0-bob",
+                List.of(new LinkValue("?principal", EntityTypeName.parse("User").get().of("bob"))));
+
+        Set<Policy> before = policySet.policies;
+        policySet.addPolicy(p0);
+        policySet.addTemplate(t0);
+        policySet.addTemplateLink(link);
+        assertEquals(3, policySet.getVersion());
+        assertEquals(0, before.size());
+        assertNotSame(before, policySet.policies);
+
+        Policy p1 = new Policy("forbid(principal, action, resource);", "p0");
+        assertEquals(p0, policySet.replacePolicy(p1));
+        assertEquals(Set.of(p1), policySet.policies);
+        assertEquals(Optional.of(link), policySet.removeTemplateLink("t0-bob"));
+        assertEquals(Optional.empty(), policySet.removeTemplateLink("t0-bob"));
+        assertEquals(5, policySet.getVersion());
+
+        List<PolicySetChange> changes = policySet.getChangesSince(3).get();
+        assertEquals(List.of(PolicySetChange.Kind.REMOVE_POLICY, PolicySetChange.Kind.ADD_POLICY,
+                PolicySetChange.Kind.REMOVE_TEMPLATE_LINK),
+                changes.stream().map(PolicySetChange::getKind).collect(Collectors.toList()));
+        assertEquals(List.of(4L, 4L, 5L),
+                changes.stream().map(PolicySetChange::getVersion).collect(Collectors.toList()));
+        assertEquals(Optional.of(p1), changes.get(1).getPolicy());
+        assertEquals(6, policySet.getChangesSince(0).get().size());
+        assertTrue(policySet.getChangesSince(5).get().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> policySet.getChangesSince(6));
+    }
+
+    @Test
+    public void invalidChangesAreRejected() {
+        PolicySet policySet = new PolicySet();
+        policySet.addPolicy(new Policy("permit(principal, action, resource);", "p0"));
+        policySet.addTemplate(new Policy("permit(principal == ?principal, action, resource);", "t0"));
+        policySet.addTemplateLink(new TemplateLink("t0", "t0-bob",
+                List.of(new LinkValue("?principal", EntityTypeName.parse("User").get().of("bob")))));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> policySet.addTemplate(new Policy("permit(principal, action, resource);", "p0")));
+        assertThrows(IllegalArgumentException.class,
+                () -> policySet.replacePolicy(new Policy("permit(principal, action, resource);", "p1")));
+        assertThrows(IllegalArgumentException.class,
+                () -> policySet.addTemplateLink(new TemplateLink("t1", "t1-bob", List.of())));
+        assertThrows(IllegalStateException.class, () -> policySet.removeTemplate("t0"));
+        assertEquals(3, policySet.getVersion());
+    }
+
+    @Test
+    public void directChangesAreNotTracked() {
+        Set<Policy> policies = new HashSet<>();
+        policies.add(new Policy("permit(principal, action, resource);", "p0"));
+        PolicySet policySet = new PolicySet(policies);
+        // Nothing is known about collections that can be modified directly
+        policies.add(new Policy("permit(principal, action, resource);", "p1"));
+        policySet.addPolicy(new Policy("permit(principal, action, resource);", "p2"));
+        assertEquals(1, policySet.getVersion());
+        assertEquals(Optional.empty(), policySet.getChangesSince(0));
+        assertEquals(3, policySet.getNumPolicies());
+        assertThrows(IllegalArgumentException.class,
+                () -> policySet.addPolicy(new Policy("permit(principal, action, resource);", "p1")));
+
+        policySet.addPolicy(new Policy("permit(principal, action, resource);", "p3"));
+        assertEquals(1, policySet.getChangesSince(1).get().size());
+        policySet.policies = new HashSet<>(policySet.policies);
+        assertEquals(Optional.empty(), policySet.getChangesSince(1));
+    }
+
     @Test
     public void getNumTests() throws InternalException, IOException {
         // Null policy set
@@ -16,13 +16,21 @@
 
 package com.cedarpolicy;
 
+import com.cedarpolicy.model.ValidationRequest;
+import com.cedarpolicy.model.policy.PolicySet;
 import com.cedarpolicy.model.schema.Schema;
 import com.cedarpolicy.model.schema.Schema.JsonOrCedar;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class SchemaTests {
     @Test
@@ -107,4 +115,52 @@ public class SchemaTests {
             Schema.parse(JsonOrCedar.Cedar, "namspace Foo::Bar;");
         });
     }
+
+    @Test
+    public void parsedSchemaOwnsNativeSchema() {
+        assertFalse(new Schema("entity User;").getHandle().isPresent());
+        Schema schema = assertDoesNotThrow(() -> Schema.parse(JsonOrCedar.Cedar, "entity User;"));
+        assertTrue(schema.getHandle().isPresent());
+        schema.close();
+        assertFalse(schema.getHandle().isPresent());
+        assertDoesNotThrow(schema::close);
+    }
+
+    @Test
+    public void leasedNativeSchemaOutlivesClose() {
+        Schema schema = assertDoesNotThrow(() -> Schema.parse(JsonOrCedar.Cedar, "entity User;"));
+        Schema.HandleLease lease = schema.leaseHandle();
+        assertEquals(schema.getHandle(), lease.getHandle());
+        schema.close();
+        // The lease keeps its handle, but no new lease is given out
+        assertTrue(lease.getHandle().isPresent());
+        assertFalse(schema.getHandle().isPresent());
+        assertFalse(schema.leaseHandle().getHandle().isPresent());
+        lease.close();
+        assertDoesNotThrow(lease::close);
+        assertFalse(new Schema("entity User;").leaseHandle().getHandle().isPresent());
+    }
+
+    @Test
+    public void closingSchemaDoesNotFailCallsUsingIt() throws InterruptedException {
+        BasicAuthorizationEngine engine = new BasicAuthorizationEngine();
+        for (int i = 0; i < 20; i++) {
+            Schema schema = assertDoesNotThrow(() -> Schema.parse(JsonOrCedar.Cedar, "entity User;"));
+            ValidationRequest request = new ValidationRequest(schema, new PolicySet());
+            AtomicReference<Exception> failure = new AtomicReference<>();
+            Thread validations = new Thread(() -> {
+                try {
+                    for (int j = 0; j < 20; j++) {
+                        engine.validate(request);
+                    }
+                } catch (Exception e) {
+                    failure.set(e);
+                }
+            });
+            validations.start();
+            schema.close();
+            validations.join();
+            assertNull(failure.get());
+        }
+    }
 }
@@ -88,6 +88,30 @@ public class ValidationTests {
         thenIsNotValid(response);
     }
 
+    /** Test. */
+    @Test
+    public void givenParsedSchemaValidatesWithNativeSchema() {
+        Schema parsed = assertDoesNotThrow(() -> Schema.parse(Schema.JsonOrCedar.Json,
+                PHOTOFLASH_SCHEMA.schemaJson.get().toString()));
+        assertTrue(parsed.getHandle().isPresent());
+        givenSchema(parsed);
+        givenPolicy(
+                "policy0",
+                "permit(principal == User::\"alice\", action == Action::\"viewPhoto\", resource == User::\"bob\");");
+        thenIsNotValid(whenValidated());
+
+        givenPolicy(
+                "policy0",
+                "permit(principal == User::\"alice\", action == Action::\"viewPhoto\", "
+                        + "resource == Photo::\"VacationPhoto94.jpg\");");
+        thenIsValid(whenValidated());
+
+        // Once closed, the schema is sent as text again
+        parsed.close();
+        assertFalse(parsed.getHandle().isPresent());
+        thenIsValid(whenValidated());
+    }
+
     /** Test. */
     @Test
     public void givenInvalidPolicyThrowsBadRequestError() {
@@ -0,0 +1,102 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cedarpolicy.pbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.cedarpolicy.EntityTypeNameTests;
+import com.cedarpolicy.value.EntityIdentifier;
+import com.cedarpolicy.value.EntityTypeName;
+import com.cedarpolicy.value.EntityUID;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import net.jqwik.api.Arbitraries;
+import net.jqwik.api.Arbitrary;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.From;
+import net.jqwik.api.Property;
+import net.jqwik.api.Provide;
+
+/**
+ * Property based tests checking that the string representations computed in Java match those of the Rust core.
+ * The Rust formatting is reached through the native methods the value classes keep for this purpose.
+ */
+public class ReprTest {
+
+    @Property
+    void identifierReprMatchesRust(@ForAll("identifiers") String id) {
+        EntityIdentifier eid = new EntityIdentifier(id);
+        assertEquals(rust(EntityIdentifier.class, "getEntityIdentifierRepr", eid), eid.getRepr());
+    }
+
+    @Property
+    void typeNameReprMatchesRust(@ForAll @From("typeNames") EntityTypeName type) {
+        assertEquals(rust(EntityTypeName.class, "getEntityTypeNameRepr", type), type.toString());
+    }
+
+    @Property
+    void euidReprMatchesRust(@ForAll @From("typeNames") EntityTypeName type, @ForAll("identifiers") String id) {
+        EntityUID euid = type.of(id);
+        assertEquals(rust(EntityUID.class, "getEUIDRepr", type, euid.getId()), euid.toString());
+        assertEquals(euid.toString(), euid.toCedarExpr());
+        assertEquals(euid, EntityUID.parse(euid.toString()).get());
+    }
+
+    @Provide
+    Arbitrary<EntityTypeName> typeNames() {
+        return EntityTypeNameTests.multiLevelName();
+    }
+
+    /**
+     * Identifiers drawn from ranges that exercise every escaping rule: ASCII including quotes, backslashes and
+     * control characters, Latin-1, combining marks, separators and format characters, CJK, private use, emoji and
+     * tag characters. The ranges are assigned identically in the Unicode versions of current JDKs and Rust.
+     */
+    @Provide
+    Arbitrary<String> identifiers() {
+        Arbitrary<Integer> codePoints = Arbitraries.oneOf(List.of(
+                Arbitraries.integers().between(0x00, 0x7f),
+                Arbitraries.integers().between(0x80, 0xff),
+                Arbitraries.integers().between(0x300, 0x36f),
+                Arbitraries.integers().between(0x2000, 0x2064),
+                Arbitraries.integers().between(0x4e00, 0x4fff),
+                Arbitraries.integers().between(0xe000, 0xe0ff),
+                Arbitraries.integers().between(0x1f600, 0x1f64f),
+                Arbitraries.integers().between(0xe0020, 0xe007f)));
+        return codePoints.list().ofMaxSize(12).map(cps -> {
+            StringBuilder sb = new StringBuilder();
+            cps.forEach(sb::appendCodePoint);
+            return sb.toString();
+        });
+    }
+
+    private static String rust(Class<?> cls, String name, Object... args) {
+        for (Method method : cls.getDeclaredMethods()) {
+            if (method.getName().equals(name)) {
+                method.setAccessible(true);
+                try {
+                    return (String) method.invoke(null, args);
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        }
+        throw new AssertionError("No native method " + name);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+//! Reading and writing the memory of direct `java.nio.ByteBuffer`s. This is
+//! the only module of the crate that uses unsafe code; every other module
+//! forbids it.
+//!
+//! The memory of a direct buffer stays at the same address, and is not freed,
+//! for as long as the buffer object is reachable. A `JByteBuffer` passed to a
+//! JNI function is a local reference, which keeps the buffer reachable until
+//! that function returns, so the functions here never let a slice of the
+//! buffer outlive the `JByteBuffer` they are given.
+//!
+//! The JVM does not stop Java code from writing to a buffer while Rust reads
+//! it. The Java callers in `com.cedarpolicy.BasicAuthorizationEngine` own
+//! their buffers exclusively, one pair per thread, and do not touch them
+//! during the native call.
+#![allow(unsafe_code)]
+
+use jni::{objects::JByteBuffer, JNIEnv};
+
+use crate::utils::Result;
+
+/// Call `read` with the first `len` bytes of `buffer`. Fails if the buffer is
+/// not direct or holds fewer than `len` bytes.
+pub(crate) fn read<R>(
+    env: &mut JNIEnv<'_>,
+    buffer: &JByteBuffer<'_>,
+    len: usize,
+    read: impl FnOnce(&[u8]) -> R,
+) -> Result<R> {
+    let address = env.get_direct_buffer_address(buffer)?;
+    let capacity = env.get_direct_buffer_capacity(buffer)?;
+    if len > capacity {
+        return Err("the length exceeds the capacity of the buffer".into());
+    }
+    // SAFETY: `address` is non-null, as `get_direct_buffer_address` fails
+    // otherwise, and addresses `capacity >= len` initialized bytes that stay
+    // valid while `buffer` is borrowed. `read` must accept a slice of any
+    // lifetime, so the slice cannot escape this call. Nothing writes to the
+    // memory meanwhile: `write` needs the `env` this function borrows
+    // mutably until the slice is dropped, and the Java caller does not write
+    // to the buffer during the call (see the module documentation).
+    let contents = unsafe { std::slice::from_raw_parts(address, len) };
+    Ok(read(contents))
+}
+
+/// Copy `bytes` to the start of `buffer`. Returns `false`, writing nothing, if
+/// the buffer is too small. Fails if the buffer is not direct.
+pub(crate) fn write(env: &mut JNIEnv<'_>, buffer: &JByteBuffer<'_>, bytes: &[u8]) -> Result<bool> {
+    let address = env.get_direct_buffer_address(buffer)?;
+    let capacity = env.get_direct_buffer_capacity(buffer)?;
+    if bytes.len() > capacity {
+        return Ok(false);
+    }
+    // SAFETY: as in `read`, `address` addresses at least `bytes.len()` bytes
+    // that stay valid while `buffer` is borrowed, and the slice is dropped
+    // before this function returns. It is the only reference to that memory:
+    // a slice from `read` never outlives its call, during which `env` cannot
+    // be borrowed again to call this function, so `bytes` cannot be one. The
+    // Java caller does not read the buffer until the native call returns.
+    let output = unsafe { std::slice::from_raw_parts_mut(address, bytes.len()) };
+    output.copy_from_slice(bytes);
+    Ok(true)
+}
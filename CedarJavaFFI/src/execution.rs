@@ -0,0 +1,200 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+//! Where Cedar calls made through `callCedarJNI` are run
+//! (`com.cedarpolicy.BasicAuthorizationEngine.ExecutionMode`).
+
+use std::{
+    any::Any,
+    num::NonZeroUsize,
+    panic::{self, AssertUnwindSafe},
+    sync::{mpsc, Arc, LazyLock, Mutex, PoisonError},
+    thread,
+};
+
+/// Stack size of the worker pool threads. Evaluating deeply nested policies
+/// recurses, so this is well above the default for spawned threads.
+const WORKER_STACK_SIZE: usize = 16 * 1024 * 1024;
+
+/// Number of calls that may wait for a free worker, per worker. Callers
+/// submitting beyond that block until a worker picks up a call.
+const QUEUED_CALLS_PER_WORKER: usize = 16;
+
+#[derive(Debug, Clone, Copy, PartialEq, Eq)]
+pub(crate) enum ExecutionMode {
+    /// Spawn a fresh thread for every call
+    SpawnThread,
+    /// Run on the calling Java thread
+    CallingThread,
+    /// Hand the call to a fixed pool of native threads
+    WorkerPool,
+}
+
+impl ExecutionMode {
+    /// Decode the mode code sent by Java. Unknown codes use the default, and
+    /// flags such as [`crate::timing::TIMINGS_FLAG`] are ignored.
+    pub fn from_code(code: i32) -> Self {
+        match code & 0xff {
+            1 => Self::CallingThread,
+            2 => Self::WorkerPool,
+            _ => Self::SpawnThread,
+        }
+    }
+
+    /// Run `call` according to this mode and return its result. A panic in
+    /// `call` is returned as an error message rather than unwinding into Java.
+    pub fn run<T: Send + 'static>(
+        self,
+        call: impl FnOnce() -> T + Send + 'static,
+    ) -> Result<T, String> {
+        match self {
+            Self::SpawnThread => thread::spawn(call).join().map_err(thread_failed),
+            Self::CallingThread => panic::catch_unwind(AssertUnwindSafe(call)).map_err(thread_failed),
+            Self::WorkerPool => WORKER_POOL.run(call),
+        }
+    }
+
+    /// Like [`Self::run`], but `call` is given `input`. Where the mode allows
+    /// it, `input` is borrowed rather than copied; the worker pool outlives
+    /// any borrow, so it gets its own copy.
+    pub fn run_with_input<T: Send + 'static>(
+        self,
+        input: &[u8],
+        call: impl FnOnce(&[u8]) -> T + Send + 'static,
+    ) -> Result<T, String> {
+        match self {
+            Self::SpawnThread => {
+                thread::scope(|s| s.spawn(move || call(input)).join()).map_err(thread_failed)
+            }
+            Self::CallingThread => {
+                panic::catch_unwind(AssertUnwindSafe(|| call(input))).map_err(thread_failed)
+            }
+            Self::WorkerPool => {
+                let input = input.to_vec();
+                WORKER_POOL.run(move || call(&input))
+            }
+        }
+    }
+}
+
+fn thread_failed(e: Box<dyn Any + Send>) -> String {
+    format!("Authorization thread failed {e:?}")
+}
+
+type Job = Box<dyn FnOnce() + Send>;
+
+static WORKER_POOL: LazyLock<WorkerPool> = LazyLock::new(|| {
+    WorkerPool::new(thread::available_parallelism().map_or(4, NonZeroUsize::get))
+});
+
+/// A fixed set of threads taking calls from a bounded queue
+struct WorkerPool {
+    jobs: mpsc::SyncSender<Job>,
+}
+
+impl WorkerPool {
+    fn new(workers: usize) -> Self {
+        let (jobs, queue) = mpsc::sync_channel::<Job>(workers * QUEUED_CALLS_PER_WORKER);
+        let queue = Arc::new(Mutex::new(queue));
+        for i in 0..workers {
+            let queue = Arc::clone(&queue);
+            thread::Builder::new()
+                .name(format!("cedar-worker-{i}"))
+                .stack_size(WORKER_STACK_SIZE)
+                .spawn(move || loop {
+                    let job = queue.lock().unwrap_or_else(PoisonError::into_inner).recv();
+                    match job {
+                        Ok(job) => job(),
+                        Err(_) => return,
+                    }
+                })
+                .expect("failed to spawn Cedar worker thread");
+        }
+        Self { jobs }
+    }
+
+    fn run<T: Send + 'static>(
+        &self,
+        call: impl FnOnce() -> T + Send + 'static,
+    ) -> Result<T, String> {
+        let (result_tx, result_rx) = mpsc::sync_channel(1);
+        let job: Job = Box::new(move || {
+            let result = panic::catch_unwind(AssertUnwindSafe(call)).map_err(thread_failed);
+            // The caller is blocked on the receiver, so this cannot fail
+            let _ = result_tx.send(result);
+        });
+        if self.jobs.send(job).is_err() {
+            return Err("Authorization worker pool is not running".to_string());
+        }
+        result_rx
+            .recv()
+            .unwrap_or_else(|_| Err("Authorization worker failed".to_string()))
+    }
+}
+
+#[cfg(test)]
+mod test {
+    use super::*;
+
+    #[test]
+    fn every_mode_returns_the_result() {
+        for mode in [
+            ExecutionMode::SpawnThread,
+            ExecutionMode::CallingThread,
+            ExecutionMode::WorkerPool,
+        ] {
+            assert_eq!(mode.run(|| "done"), Ok("done"));
+        }
+    }
+
+    #[test]
+    fn every_mode_survives_a_panic() {
+        for mode in [
+            ExecutionMode::SpawnThread,
+            ExecutionMode::CallingThread,
+            ExecutionMode::WorkerPool,
+        ] {
+            let result = mode.run(|| -> &str { panic!("boom") });
+            assert!(
+                matches!(&result, Err(e) if e.starts_with("Authorization thread failed")),
+                "{result:?}"
+            );
+            // The worker pool is still usable afterwards
+            assert_eq!(mode.run(|| "done"), Ok("done"));
+        }
+    }
+
+    #[test]
+    fn every_mode_passes_the_input() {
+        for mode in [
+            ExecutionMode::SpawnThread,
+            ExecutionMode::CallingThread,
+            ExecutionMode::WorkerPool,
+        ] {
+            assert_eq!(mode.run_with_input(b"abc", |input| input.len()), Ok(3));
+            let result = mode.run_with_input(b"abc", |_| -> usize { panic!("boom") });
+            assert!(result.is_err(), "{result:?}");
+        }
+    }
+
+    #[test]
+    fn unknown_codes_use_the_default() {
+        assert_eq!(ExecutionMode::from_code(0), ExecutionMode::SpawnThread);
+        assert_eq!(ExecutionMode::from_code(1), ExecutionMode::CallingThread);
+        assert_eq!(ExecutionMode::from_code(2), ExecutionMode::WorkerPool);
+        assert_eq!(ExecutionMode::from_code(42), ExecutionMode::SpawnThread);
+    }
+}
@@ -0,0 +1,785 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+//! Cedar objects that are parsed once and then kept resident on the Rust side.
+//! Java refers to them by an opaque `long` handle, so repeated requests only
+//! need to send the handle instead of re-sending (and re-parsing) the object.
+
+use std::{
+    collections::HashMap,
+    fmt::Display,
+    sync::{
+        atomic::{AtomicI64, Ordering},
+        Arc, LazyLock, Mutex, PoisonError, RwLock,
+    },
+};
+
+use cedar_policy::{
+    ffi::{AuthorizationAnswer, DetailedError, ValidationAnswer, ValidationError},
+    Authorizer, Context, Entities, Entity, EntityUid, Policy, PolicyId, PolicySet, Request,
+    Schema, SlotId, Template, ValidationMode, Validator,
+};
+use miette::{miette, Diagnostic, IntoDiagnostic};
+use serde::Deserialize;
+use serde_json::Value;
+
+use crate::{timing, utils::Result};
+
+/// Handles are shared between all registries so that a handle of one kind can
+/// never be mistaken for a live handle of another kind.
+static NEXT_HANDLE: AtomicI64 = AtomicI64::new(1);
+
+/// Compiled policy sets (com.cedarpolicy.model.policy.CompiledPolicySet)
+pub(crate) static POLICY_SETS: LazyLock<Registry<PolicySetStore>> = LazyLock::new(Registry::new);
+
+/// Entity stores (com.cedarpolicy.model.entity.EntityStore)
+pub(crate) static ENTITY_STORES: LazyLock<Registry<EntityStore>> = LazyLock::new(Registry::new);
+
+/// Parsed schemas (com.cedarpolicy.model.schema.Schema)
+pub(crate) static SCHEMAS: LazyLock<Registry<ParsedSchema>> = LazyLock::new(Registry::new);
+
+/// Responses that did not fit in the direct buffer of a `callCedarJNIBuffer`
+/// call, until Java takes them (com.cedarpolicy.BasicAuthorizationEngine)
+pub(crate) static PENDING_RESPONSES: LazyLock<Registry<String>> = LazyLock::new(Registry::new);
+
+/// A table of native objects indexed by the handles given out to Java.
+/// Lookups hand out an [`Arc`], so releasing a handle while a request is still
+/// using the object is safe: the object is dropped once the request finishes.
+pub(crate) struct Registry<T> {
+    entries: RwLock<HashMap<i64, Arc<T>>>,
+}
+
+impl<T> Registry<T> {
+    fn new() -> Self {
+        Self {
+            entries: RwLock::new(HashMap::new()),
+        }
+    }
+
+    /// Store `value` and return the handle that identifies it
+    pub fn insert(&self, value: T) -> i64 {
+        let handle = NEXT_HANDLE.fetch_add(1, Ordering::Relaxed);
+        self.entries
+            .write()
+            .unwrap_or_else(PoisonError::into_inner)
+            .insert(handle, Arc::new(value));
+        handle
+    }
+
+    /// Look up the object identified by `handle`
+    pub fn get(&self, handle: i64) -> Result<Arc<T>> {
+        self.entries
+            .read()
+            .unwrap_or_else(PoisonError::into_inner)
+            .get(&handle)
+            .cloned()
+            .ok_or_else(|| format!("unknown or released handle {handle}").into())
+    }
+
+    /// Release the object identified by `handle` and return it
+    pub fn take(&self, handle: i64) -> Result<Arc<T>> {
+        self.entries
+            .write()
+            .unwrap_or_else(PoisonError::into_inner)
+            .remove(&handle)
+            .ok_or_else(|| format!("unknown or released handle {handle}").into())
+    }
+
+    /// Release the object identified by `handle`. Returns `false` if there was
+    /// no such object.
+    pub fn remove(&self, handle: i64) -> bool {
+        self.entries
+            .write()
+            .unwrap_or_else(PoisonError::into_inner)
+            .remove(&handle)
+            .is_some()
+    }
+}
+
+/// The policy set format written by `com.cedarpolicy.serializer.PolicySetSerializer`
+#[derive(Debug, Default, Deserialize)]
+#[serde(rename_all = "camelCase")]
+pub(crate) struct JsonPolicySet {
+    #[serde(default)]
+    static_policies: HashMap<String, String>,
+    #[serde(default)]
+    templates: HashMap<String, String>,
+    #[serde(default)]
+    template_links: Vec<JsonTemplateLink>,
+}
+
+/// The template link format written by `com.cedarpolicy.serializer.TemplateLinkSerializer`
+#[derive(Debug, Deserialize)]
+#[serde(rename_all = "camelCase")]
+pub(crate) struct JsonTemplateLink {
+    template_id: String,
+    new_id: String,
+    #[serde(default)]
+    values: HashMap<String, Value>,
+}
+
+impl JsonPolicySet {
+    /// Parse every policy, template and link into a Cedar [`PolicySet`]
+    pub fn parse(self) -> miette::Result<PolicySet> {
+        let mut policy_set = PolicySet::new();
+        for (id, src) in self.static_policies {
+            policy_set.add(Policy::parse(Some(PolicyId::new(id)), src)?)?;
+        }
+        for (id, src) in self.templates {
+            policy_set.add_template(Template::parse(Some(PolicyId::new(id)), src)?)?;
+        }
+        for link in self.template_links {
+            link.apply(&mut policy_set)?;
+        }
+        Ok(policy_set)
+    }
+}
+
+impl JsonTemplateLink {
+    /// Link this template instantiation into `policy_set`
+    fn apply(self, policy_set: &mut PolicySet) -> miette::Result<()> {
+        self.parse()?.apply(policy_set)
+    }
+
+    /// Parse the values of the slots
+    fn parse(self) -> miette::Result<TemplateLink> {
+        let mut values = HashMap::new();
+        for (slot, euid) in self.values {
+            let slot = match slot.as_str() {
+                "?principal" => SlotId::principal(),
+                "?resource" => SlotId::resource(),
+                _ => return Err(miette!("invalid template slot `{slot}`")),
+            };
+            values.insert(slot, EntityUid::from_json(euid)?);
+        }
+        Ok(TemplateLink {
+            template_id: PolicyId::new(self.template_id),
+            new_id: PolicyId::new(self.new_id),
+            values,
+        })
+    }
+}
+
+/// A template instantiation whose slot values have been parsed
+struct TemplateLink {
+    template_id: PolicyId,
+    new_id: PolicyId,
+    values: HashMap<SlotId, EntityUid>,
+}
+
+impl TemplateLink {
+    fn apply(&self, policy_set: &mut PolicySet) -> miette::Result<()> {
+        policy_set.link(self.template_id.clone(), self.new_id.clone(), self.values.clone())?;
+        Ok(())
+    }
+}
+
+/// One change to a compiled policy set, in the format written by
+/// `com.cedarpolicy.model.policy.CompiledPolicySet`
+#[derive(Debug, Deserialize)]
+#[serde(tag = "op", rename_all = "camelCase")]
+pub(crate) enum JsonPolicySetChange {
+    AddPolicy { id: String, source: String },
+    RemovePolicy { id: String },
+    AddTemplate { id: String, source: String },
+    RemoveTemplate { id: String },
+    Link { link: JsonTemplateLink },
+    Unlink { id: String },
+}
+
+impl JsonPolicySetChange {
+    /// Parse the policies and template this change adds
+    fn parse(self) -> miette::Result<PolicySetChange> {
+        Ok(match self {
+            Self::AddPolicy { id, source } => {
+                PolicySetChange::AddPolicy(Policy::parse(Some(PolicyId::new(id)), source)?)
+            }
+            Self::RemovePolicy { id } => PolicySetChange::RemovePolicy(PolicyId::new(id)),
+            Self::AddTemplate { id, source } => {
+                PolicySetChange::AddTemplate(Template::parse(Some(PolicyId::new(id)), source)?)
+            }
+            Self::RemoveTemplate { id } => PolicySetChange::RemoveTemplate(PolicyId::new(id)),
+            Self::Link { link } => PolicySetChange::Link(link.parse()?),
+            Self::Unlink { id } => PolicySetChange::Unlink(PolicyId::new(id)),
+        })
+    }
+}
+
+/// A parsed change to a [`PolicySetStore`], kept so that it can be made twice
+/// without parsing its policies again
+enum PolicySetChange {
+    AddPolicy(Policy),
+    RemovePolicy(PolicyId),
+    AddTemplate(Template),
+    RemoveTemplate(PolicyId),
+    Link(TemplateLink),
+    Unlink(PolicyId),
+}
+
+impl PolicySetChange {
+    fn apply(&self, policy_set: &mut PolicySet) -> miette::Result<()> {
+        match self {
+            Self::AddPolicy(policy) => {
+                policy_set.add(policy.clone())?;
+            }
+            Self::RemovePolicy(id) => {
+                policy_set.remove_static(id.clone())?;
+            }
+            Self::AddTemplate(template) => {
+                policy_set.add_template(template.clone())?;
+            }
+            Self::RemoveTemplate(id) => {
+                policy_set.remove_template(id.clone())?;
+            }
+            Self::Link(link) => link.apply(policy_set)?,
+            Self::Unlink(id) => {
+                policy_set.unlink(id.clone())?;
+            }
+        }
+        Ok(())
+    }
+
+    fn apply_all(changes: &[Self], policy_set: &mut PolicySet) -> miette::Result<()> {
+        changes.iter().try_for_each(|change| change.apply(policy_set))
+    }
+}
+
+/// A policy set that can be changed a few policies at a time. Like
+/// [`EntityStore`], readers take a cheap snapshot, so authorization requests
+/// never wait on writers and never see a partially applied update, and
+/// updates are made to the spare previous snapshot rather than to a copy of
+/// the current policy set.
+pub(crate) struct PolicySetStore {
+    policies: RwLock<Arc<PolicySet>>,
+    spare: Mutex<Spare<PolicySet, Vec<PolicySetChange>>>,
+}
+
+impl PolicySetStore {
+    pub fn new(policy_set: PolicySet) -> Self {
+        Self {
+            policies: RwLock::new(Arc::new(policy_set)),
+            spare: Mutex::new(Spare::default()),
+        }
+    }
+
+    /// The current policy set
+    pub fn snapshot(&self) -> Arc<PolicySet> {
+        self.policies
+            .read()
+            .unwrap_or_else(PoisonError::into_inner)
+            .clone()
+    }
+
+    /// Make every change in the JSON array `changes`, in order. The policies
+    /// that are not changed are not parsed again, and a failed change leaves
+    /// the store unchanged.
+    pub fn apply(&self, changes: Value) -> miette::Result<()> {
+        let changes = json_array(changes)
+            .map_err(report)?
+            .into_iter()
+            .map(|change| {
+                serde_json::from_value::<JsonPolicySetChange>(change)
+                    .into_diagnostic()?
+                    .parse()
+            })
+            .collect::<miette::Result<Vec<_>>>()?;
+        let mut spare = self.spare.lock().unwrap_or_else(PoisonError::into_inner);
+        let mut updated = match (spare.snapshot.take().map(Arc::try_unwrap), spare.missing.take()) {
+            // The missing changes were made to the same policies before, so
+            // replaying them cannot fail
+            (Some(Ok(mut previous)), Some(missing)) => {
+                PolicySetChange::apply_all(&missing, &mut previous)?;
+                previous
+            }
+            // No spare yet, or a request is still reading it
+            _ => PolicySet::clone(&self.snapshot()),
+        };
+        PolicySetChange::apply_all(&changes, &mut updated)?;
+        *spare = Spare {
+            snapshot: Some(self.swap(updated)),
+            missing: Some(changes),
+        };
+        Ok(())
+    }
+
+    /// Replace the whole policy set, keeping its handle valid for the
+    /// requests that are about to use it
+    pub fn replace(&self, policy_set: PolicySet) {
+        let mut spare = self.spare.lock().unwrap_or_else(PoisonError::into_inner);
+        self.swap(policy_set);
+        // The previous policy set has nothing in common with the new one, so
+        // the next update starts from a copy of the new one instead
+        *spare = Spare::default();
+    }
+
+    fn swap(&self, policy_set: PolicySet) -> Arc<PolicySet> {
+        let mut current = self
+            .policies
+            .write()
+            .unwrap_or_else(PoisonError::into_inner);
+        std::mem::replace(&mut *current, Arc::new(policy_set))
+    }
+}
+
+/// A schema together with a validator built from it, so that neither has to
+/// be rebuilt per request
+pub(crate) struct ParsedSchema {
+    schema: Schema,
+    validator: Validator,
+    /// Raised while parsing the schema, and reported by every validation
+    /// that uses it like `cedar_policy::ffi` reports the warnings of an
+    /// inline schema
+    warnings: Vec<DetailedError>,
+}
+
+impl ParsedSchema {
+    pub fn new(schema: Schema) -> Self {
+        Self::with_warnings(schema, Vec::new())
+    }
+
+    pub fn with_warnings(schema: Schema, warnings: Vec<DetailedError>) -> Self {
+        Self {
+            validator: Validator::new(schema.clone()),
+            schema,
+            warnings,
+        }
+    }
+
+    pub fn schema(&self) -> &Schema {
+        &self.schema
+    }
+}
+
+/// A mutable set of entities. Readers take a cheap snapshot of the current
+/// [`Entities`], so authorization requests never wait on writers and always
+/// see a consistent hierarchy.
+///
+/// Updates are not made to a copy of the current entities but to a second,
+/// spare instance: the previous snapshot, which only lacks the previous
+/// update. Once no request reads it any more, that update is replayed on it
+/// and the new update applied, and it becomes the current snapshot. Both
+/// instances share the unchanged entities, and an update only costs a full
+/// copy when a request still holds the previous snapshot or an update failed.
+pub(crate) struct EntityStore {
+    entities: RwLock<Arc<Entities>>,
+    spare: Mutex<Spare<Entities, EntityChange>>,
+}
+
+/// The snapshot before the last update of a store, and that update
+struct Spare<T, C> {
+    snapshot: Option<Arc<T>>,
+    missing: Option<C>,
+}
+
+impl<T, C> Default for Spare<T, C> {
+    fn default() -> Self {
+        Self {
+            snapshot: None,
+            missing: None,
+        }
+    }
+}
+
+/// An update of an [`EntityStore`], kept so that it can be made twice
+enum EntityChange {
+    Upsert(Vec<Entity>),
+    Remove(Vec<EntityUid>),
+}
+
+impl EntityChange {
+    fn apply(&self, entities: Entities) -> Result<Entities> {
+        Ok(match self {
+            Self::Upsert(updated) => entities.upsert_entities(updated.iter().cloned(), None)?,
+            Self::Remove(uids) => entities.remove_entities(uids.iter().cloned())?,
+        })
+    }
+}
+
+impl EntityStore {
+    /// Build a store from a JSON array of entities
+    pub fn new(entities: Value) -> Result<Self> {
+        Ok(Self {
+            entities: RwLock::new(Arc::new(Entities::from_json_value(entities, None)?)),
+            spare: Mutex::new(Spare::default()),
+        })
+    }
+
+    /// The current contents of the store
+    pub fn snapshot(&self) -> Arc<Entities> {
+        self.entities
+            .read()
+            .unwrap_or_else(PoisonError::into_inner)
+            .clone()
+    }
+
+    /// Add or replace every entity in the JSON array `entities`, updating the
+    /// transitive closure of the hierarchy.
+    pub fn upsert(&self, entities: Value) -> Result<()> {
+        let entities = json_array(entities)?
+            .into_iter()
+            .map(|e| Entity::from_json_value(e, None))
+            .collect::<std::result::Result<Vec<_>, _>>()?;
+        self.update(EntityChange::Upsert(entities))
+    }
+
+    /// Remove every entity whose uid is in the JSON array `uids`. Unknown uids
+    /// are ignored.
+    pub fn remove(&self, uids: Value) -> Result<()> {
+        let uids = json_array(uids)?
+            .into_iter()
+            .map(EntityUid::from_json)
+            .collect::<std::result::Result<Vec<_>, _>>()?;
+        self.update(EntityChange::Remove(uids))
+    }
+
+    /// Make `change` to the spare entities and swap them with the current
+    /// ones. A failed update leaves the current entities unchanged.
+    fn update(&self, change: EntityChange) -> Result<()> {
+        let mut spare = self.spare.lock().unwrap_or_else(PoisonError::into_inner);
+        let base = match (spare.snapshot.take().map(Arc::try_unwrap), spare.missing.take()) {
+            // The missing update succeeded on the same entities before, so
+            // replaying it cannot fail
+            (Some(Ok(previous)), Some(missing)) => missing.apply(previous)?,
+            // No spare yet, or a request is still reading it
+            _ => Entities::clone(&self.snapshot()),
+        };
+        let updated = change.apply(base)?;
+        let previous = {
+            let mut current = self
+                .entities
+                .write()
+                .unwrap_or_else(PoisonError::into_inner);
+            std::mem::replace(&mut *current, Arc::new(updated))
+        };
+        *spare = Spare {
+            snapshot: Some(previous),
+            missing: Some(change),
+        };
+        Ok(())
+    }
+}
+
+fn json_array(value: Value) -> Result<Vec<Value>> {
+    match value {
+        Value::Array(values) => Ok(values),
+        _ => Err("expected a JSON array".into()),
+    }
+}
+
+/// The policies, entities and schema of an authorization request, each given
+/// either inline or by handle
+#[derive(Debug, Deserialize)]
+#[serde(rename_all = "camelCase")]
+struct AuthorizationInputs {
+    #[serde(default)]
+    schema: Option<Value>,
+    #[serde(default)]
+    schema_handle: Option<i64>,
+    #[serde(default)]
+    policy_set_handle: Option<i64>,
+    #[serde(default)]
+    policies: Option<JsonPolicySet>,
+    #[serde(default)]
+    entity_store_handle: Option<i64>,
+    #[serde(default)]
+    entities: Option<Value>,
+}
+
+/// The principal, action, resource and context of an authorization request
+#[derive(Debug, Deserialize)]
+#[serde(rename_all = "camelCase")]
+struct AuthorizationQuery {
+    principal: Value,
+    action: Value,
+    resource: Value,
+    #[serde(default)]
+    context: Option<Value>,
+    #[serde(default)]
+    validate_request: bool,
+}
+
+/// An authorization request that refers to native-resident objects by handle
+/// (`com.cedarpolicy.BasicAuthorizationEngine.HandleAuthorizationRequest`)
+#[derive(Debug, Deserialize)]
+pub(crate) struct HandleAuthorizationCall {
+    #[serde(flatten)]
+    query: AuthorizationQuery,
+    #[serde(flatten)]
+    inputs: AuthorizationInputs,
+}
+
+/// Several authorization requests sharing the same policies, entities and
+/// schema (`com.cedarpolicy.BasicAuthorizationEngine.BatchAuthorizationRequest`)
+#[derive(Debug, Deserialize)]
+pub(crate) struct BatchAuthorizationCall {
+    requests: Vec<AuthorizationQuery>,
+    #[serde(flatten)]
+    inputs: AuthorizationInputs,
+}
+
+/// [`AuthorizationInputs`] once every handle has been looked up and every
+/// inline input has been parsed
+struct ResolvedInputs {
+    policies: Arc<PolicySet>,
+    entities: Arc<Entities>,
+    schema: ResolvedSchema,
+}
+
+enum ResolvedSchema {
+    None,
+    Shared(Arc<ParsedSchema>),
+    Owned(Schema),
+}
+
+impl ResolvedSchema {
+    fn get(&self) -> Option<&Schema> {
+        match self {
+            Self::None => None,
+            Self::Shared(parsed) => Some(parsed.schema()),
+            Self::Owned(schema) => Some(schema),
+        }
+    }
+}
+
+impl AuthorizationInputs {
+    fn resolve(self) -> miette::Result<ResolvedInputs> {
+        let policies = match (self.policy_set_handle, self.policies) {
+            (Some(handle), _) => POLICY_SETS.get(handle).map_err(report)?.snapshot(),
+            (None, Some(policies)) => Arc::new(policies.parse()?),
+            (None, None) => return Err(miette!("missing policy set")),
+        };
+        let schema = match (self.schema_handle, self.schema) {
+            (Some(handle), _) => ResolvedSchema::Shared(SCHEMAS.get(handle).map_err(report)?),
+            (None, None | Some(Value::Null)) => ResolvedSchema::None,
+            (None, Some(schema)) => ResolvedSchema::Owned(parse_schema(schema)?),
+        };
+        let entities = match (self.entity_store_handle, self.entities) {
+            (Some(handle), _) => ENTITY_STORES.get(handle).map_err(report)?.snapshot(),
+            (None, None | Some(Value::Null)) => Arc::new(Entities::empty()),
+            (None, Some(entities)) => Arc::new(Entities::from_json_value(entities, schema.get())?),
+        };
+        Ok(ResolvedInputs {
+            policies,
+            entities,
+            schema,
+        })
+    }
+}
+
+/// A report for an error that carries no diagnostic of its own, such as a
+/// failed handle lookup or malformed input
+fn report(e: impl Display) -> miette::Report {
+    miette::Report::msg(e.to_string())
+}
+
+/// Convert Cedar diagnostics to the errors of `cedar_policy::ffi` answers,
+/// keeping their help, code, source locations and related errors
+pub(crate) fn detailed<E>(diagnostics: impl IntoIterator<Item = E>) -> Vec<DetailedError>
+where
+    E: Diagnostic + Send + Sync + 'static,
+{
+    diagnostics
+        .into_iter()
+        .map(|d| miette::Report::new(d).into())
+        .collect()
+}
+
+fn authorization_failure(error: miette::Report) -> AuthorizationAnswer {
+    AuthorizationAnswer::Failure {
+        errors: vec![error.into()],
+        warnings: vec![],
+    }
+}
+
+pub fn json_is_authorized_with_handles(input: &str) -> serde_json::Result<String> {
+    serde_json::to_string(&is_authorized_with_handles(timing::parse(|| {
+        serde_json::from_str(input)
+    })))
+}
+
+/// Answer an authorization request, given the result of decoding it. The
+/// answer is built from the same `cedar_policy::ffi` types as that of an
+/// `AuthorizationOperation`, so errors keep all of their details.
+pub(crate) fn is_authorized_with_handles(
+    call: std::result::Result<HandleAuthorizationCall, impl Display>,
+) -> AuthorizationAnswer {
+    match call {
+        Ok(call) => timing::parse(|| call.inputs.resolve())
+            .and_then(|inputs| inputs.is_authorized(call.query))
+            .unwrap_or_else(authorization_failure),
+        Err(e) => authorization_failure(report(e)),
+    }
+}
+
+pub fn json_is_authorized_batch(input: &str) -> serde_json::Result<String> {
+    serde_json::to_string(&is_authorized_batch(serde_json::from_str(input)))
+}
+
+/// Answer every request of a batch, in order. Policies, entities and schema
+/// are resolved once for the whole batch; if that fails, every request fails
+/// with the same error. Input that cannot be decoded has no requests to
+/// answer, so it yields a single failure carrying the decoding error.
+pub(crate) fn is_authorized_batch(
+    call: std::result::Result<BatchAuthorizationCall, impl Display>,
+) -> Vec<AuthorizationAnswer> {
+    match call {
+        Ok(call) => match call.inputs.resolve() {
+            Ok(inputs) => call
+                .requests
+                .into_iter()
+                .map(|query| {
+                    inputs
+                        .is_authorized(query)
+                        .unwrap_or_else(authorization_failure)
+                })
+                .collect(),
+            Err(e) => {
+                let error = DetailedError::from(e);
+                call.requests
+                    .iter()
+                    .map(|_| AuthorizationAnswer::Failure {
+                        errors: vec![error.clone()],
+                        warnings: vec![],
+                    })
+                    .collect()
+            }
+        },
+        Err(e) => vec![authorization_failure(report(e))],
+    }
+}
+
+impl ResolvedInputs {
+    fn is_authorized(&self, query: AuthorizationQuery) -> miette::Result<AuthorizationAnswer> {
+        let request = timing::parse(|| self.request(query))?;
+        let response = timing::evaluate(|| {
+            Authorizer::new().is_authorized(&request, &self.policies, &self.entities)
+        });
+        Ok(AuthorizationAnswer::Success {
+            response: response.into(),
+            warnings: vec![],
+        })
+    }
+
+    /// Build the Cedar request of `query`, validating it if asked to
+    fn request(&self, query: AuthorizationQuery) -> miette::Result<Request> {
+        let schema = self.schema.get();
+        let principal = EntityUid::from_json(query.principal)?;
+        let action = EntityUid::from_json(query.action)?;
+        let resource = EntityUid::from_json(query.resource)?;
+        let context = match query.context {
+            None | Some(Value::Null) => Context::empty(),
+            Some(context) => Context::from_json_value(context, schema.map(|s| (s, &action)))?,
+        };
+        let request_schema = if query.validate_request {
+            schema
+        } else {
+            None
+        };
+        Ok(Request::new(principal, action, resource, context, request_schema)?)
+    }
+}
+
+/// A validation request whose schema is given by handle
+/// (`com.cedarpolicy.BasicAuthorizationEngine.HandleValidationRequest`)
+#[derive(Debug, Deserialize)]
+#[serde(rename_all = "camelCase")]
+pub(crate) struct HandleValidationCall {
+    #[serde(default)]
+    validation_settings: ValidationSettings,
+    schema_handle: i64,
+    policies: JsonPolicySet,
+}
+
+/// The `validationSettings` of a `ValidateOperation`
+#[derive(Debug, Default, Deserialize)]
+#[serde(rename_all = "camelCase", deny_unknown_fields)]
+struct ValidationSettings {
+    #[serde(default)]
+    mode: JsonValidationMode,
+}
+
+/// The validation modes that `cedar_policy::ffi` accepts without optional
+/// Cedar features
+#[derive(Debug, Default, Deserialize)]
+#[serde(rename_all = "camelCase")]
+enum JsonValidationMode {
+    #[default]
+    Strict,
+}
+
+impl From<JsonValidationMode> for ValidationMode {
+    fn from(mode: JsonValidationMode) -> Self {
+        match mode {
+            JsonValidationMode::Strict => ValidationMode::Strict,
+        }
+    }
+}
+
+pub fn json_validate_with_handles(input: &str) -> serde_json::Result<String> {
+    serde_json::to_string(&validate_with_handles(serde_json::from_str(input)))
+}
+
+/// Answer a validation request, given the result of decoding it. Like
+/// [`is_authorized_with_handles`], the answer is that of a
+/// `ValidateOperation` with the same schema.
+pub(crate) fn validate_with_handles(
+    call: std::result::Result<HandleValidationCall, impl Display>,
+) -> ValidationAnswer {
+    let failure = |error: miette::Report, warnings| ValidationAnswer::Failure {
+        errors: vec![error.into()],
+        warnings,
+    };
+    let call = match call {
+        Ok(call) => call,
+        Err(e) => return failure(report(e), vec![]),
+    };
+    let schema = match SCHEMAS.get(call.schema_handle) {
+        Ok(schema) => schema,
+        Err(e) => return failure(report(e), vec![]),
+    };
+    let policies = match call.policies.parse() {
+        Ok(policies) => policies,
+        Err(e) => return failure(e, schema.warnings.clone()),
+    };
+    let (errors, warnings) = schema
+        .validator
+        .validate(&policies, call.validation_settings.mode.into())
+        .into_errors_and_warnings();
+    ValidationAnswer::Success {
+        validation_errors: errors
+            .map(|e| ValidationError {
+                policy_id: e.policy_id().clone(),
+                error: miette::Report::new(e).into(),
+            })
+            .collect(),
+        validation_warnings: warnings
+            .map(|w| ValidationError {
+                policy_id: w.policy_id().clone(),
+                error: miette::Report::new(w).into(),
+            })
+            .collect(),
+        other_warnings: schema.warnings.clone(),
+    }
+}
+
+/// Parse a schema as written by `com.cedarpolicy.serializer.SchemaSerializer`:
+/// a string holds the Cedar schema format, anything else the JSON format.
+pub(crate) fn parse_schema(schema: Value) -> miette::Result<Schema> {
+    match schema {
+        Value::String(text) => Ok(Schema::from_cedarschema_str(&text)?.0),
+        json => Ok(Schema::from_json_value(json)?),
+    }
+}
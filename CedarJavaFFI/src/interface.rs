@@ -16,27 +16,34 @@
 
 use cedar_policy::entities_errors::EntitiesError;
 #[cfg(feature = "partial-eval")]
-use cedar_policy::ffi::is_authorized_partial_json_str;
+use cedar_policy::ffi::{is_authorized_partial, is_authorized_partial_json_str};
 use cedar_policy::{
-    ffi::{is_authorized_json_str, validate_json_str},
+    ffi::{is_authorized, is_authorized_json_str, validate, validate_json_str},
     Entities, EntityUid, Policy, PolicySet, Schema, Template,
 };
 use cedar_policy_formatter::{policies_str_to_pretty, Config};
 use jni::{
-    objects::{JClass, JObject, JString, JValueGen, JValueOwned},
-    sys::{jstring, jvalue},
+    objects::{JByteArray, JByteBuffer, JClass, JObject, JString, JValueGen, JValueOwned},
+    sys::{jbyteArray, jint, jlong, jstring, jvalue},
     JNIEnv,
 };
 use jni_fn::jni_fn;
-use serde::{Deserialize, Serialize};
+use serde::{de::DeserializeOwned, Deserialize, Serialize};
 use serde_json::{from_str, Value};
-use std::{error::Error, str::FromStr, thread};
+use std::{error::Error, str::FromStr};
 
 use crate::objects::JFormatterConfig;
 use crate::{
     answer::Answer,
+    direct_buffer,
+    execution::ExecutionMode,
+    handles::{
+        self, EntityStore, JsonPolicySet, ParsedSchema, PolicySetStore, ENTITY_STORES,
+        PENDING_RESPONSES, POLICY_SETS, SCHEMAS,
+    },
     jset::Set,
     objects::{JEntityId, JEntityTypeName, JEntityUID, JPolicy, Object},
+    timing,
     utils::raise_npe,
 };
 
@@ -47,6 +54,9 @@ const V0_AUTH_OP: &str = "AuthorizationOperation";
 const V0_AUTH_PARTIAL_OP: &str = "AuthorizationPartialOperation";
 const V0_VALIDATE_OP: &str = "ValidateOperation";
 const V0_VALIDATE_ENTITIES: &str = "ValidateEntities";
+const V0_AUTH_HANDLE_OP: &str = "AuthorizationHandleOperation";
+const V0_VALIDATE_HANDLE_OP: &str = "ValidateHandleOperation";
+const V0_AUTH_BATCH_OP: &str = "AuthorizationBatchOperation";
 
 fn build_err_obj(env: &JNIEnv<'_>, err: &str) -> jstring {
     env.new_string(
@@ -60,17 +70,15 @@ fn build_err_obj(env: &JNIEnv<'_>, err: &str) -> jstring {
     .into_raw()
 }
 
-fn call_cedar_in_thread(call_str: String, input_str: String) -> String {
-    call_cedar(&call_str, &input_str)
-}
-
-/// JNI entry point for authorization and validation requests
+/// JNI entry point for authorization and validation requests. `j_mode` is the
+/// code of a `com.cedarpolicy.BasicAuthorizationEngine.ExecutionMode`.
 #[jni_fn("com.cedarpolicy.BasicAuthorizationEngine")]
 pub fn callCedarJNI(
     mut env: JNIEnv<'_>,
     _class: JClass<'_>,
     j_call: JString<'_>,
     j_input: JString<'_>,
+    j_mode: jint,
 ) -> jstring {
     let j_call_str: String = match env.get_string(&j_call) {
         Ok(call_str) => call_str.into(),
@@ -83,12 +91,14 @@ pub fn callCedarJNI(
     };
     j_input_str.push(' ');
 
-    let handle = thread::spawn(move || call_cedar_in_thread(j_call_str, j_input_str));
-
-    let result = match handle.join() {
-        Ok(s) => s,
-        Err(e) => format!("Authorization thread failed {e:?}"),
-    };
+    let timed = timing::requested(j_mode) && reports_timings(&j_call_str);
+    let result = ExecutionMode::from_code(j_mode)
+        .run(move || {
+            let (response, timings) =
+                timing::record(timed, || call_cedar(&j_call_str, &j_input_str));
+            timing::add_to_json(response, timings)
+        })
+        .unwrap_or_else(|e| e);
 
     let res = env.new_string(result);
     match res {
@@ -105,6 +115,162 @@ pub fn callCedarJNI(
     }
 }
 
+/// JNI entry point for authorization and validation requests encoded as CBOR
+/// rather than JSON text. The response is CBOR as well.
+#[jni_fn("com.cedarpolicy.BasicAuthorizationEngine")]
+pub fn callCedarJNIBinary<'a>(
+    mut env: JNIEnv<'a>,
+    _class: JClass<'a>,
+    j_call: JString<'a>,
+    j_input: JByteArray<'a>,
+    j_mode: jint,
+) -> jbyteArray {
+    match call_cedar_binary_internal(&mut env, j_call, j_input, j_mode) {
+        Ok(response) => response.into_raw(),
+        Err(e) => {
+            jni_failed(&mut env, e.as_ref());
+            JObject::null().into_raw()
+        }
+    }
+}
+
+fn call_cedar_binary_internal<'a>(
+    env: &mut JNIEnv<'a>,
+    j_call: JString<'a>,
+    j_input: JByteArray<'a>,
+    j_mode: jint,
+) -> Result<JByteArray<'a>> {
+    if j_call.is_null() || j_input.is_null() {
+        raise_npe(env)?;
+        return Ok(JByteArray::from(JObject::null()));
+    }
+    let call = String::from(env.get_string(&j_call)?);
+    let input = env.convert_byte_array(&j_input)?;
+    let timed = timing::requested(j_mode) && reports_timings(&call);
+    let response = ExecutionMode::from_code(j_mode)
+        .run(move || {
+            // The timings are encoded with the response, by `to_cbor`
+            timing::record(timed, || call_cedar_binary(&call, &input)).0
+        })
+        .unwrap_or_else(|e| to_cbor(&e));
+    Ok(env.byte_array_from_slice(&response)?)
+}
+
+/// JNI entry point for JSON requests passed in direct `ByteBuffer`s. The
+/// UTF-8 request occupies the first `j_input_len` bytes of `j_input` and is
+/// read in place. The UTF-8 response is written to the start of `j_output`
+/// and its length returned. If `j_output` is too small, the response is kept
+/// for [`takeCedarJNIResponse`] instead, so that the caller does not have to
+/// evaluate the request again: its handle is written to the first 8 bytes of
+/// `j_output`, big-endian, and the negated response length is returned.
+#[jni_fn("com.cedarpolicy.BasicAuthorizationEngine")]
+pub fn callCedarJNIBuffer<'a>(
+    mut env: JNIEnv<'a>,
+    _class: JClass<'a>,
+    j_call: JString<'a>,
+    j_input: JByteBuffer<'a>,
+    j_input_len: jint,
+    j_output: JByteBuffer<'a>,
+    j_mode: jint,
+) -> jint {
+    match call_cedar_buffer_internal(&mut env, j_call, j_input, j_input_len, j_output, j_mode) {
+        Ok(len) => len,
+        Err(e) => {
+            jni_failed(&mut env, e.as_ref());
+            0
+        }
+    }
+}
+
+fn call_cedar_buffer_internal<'a>(
+    env: &mut JNIEnv<'a>,
+    j_call: JString<'a>,
+    j_input: JByteBuffer<'a>,
+    j_input_len: jint,
+    j_output: JByteBuffer<'a>,
+    j_mode: jint,
+) -> Result<jint> {
+    if j_call.is_null() || j_input.is_null() || j_output.is_null() {
+        raise_npe(env)?;
+        return Ok(0);
+    }
+    let call = String::from(env.get_string(&j_call)?);
+
+    let input_len =
+        usize::try_from(j_input_len).map_err(|_| "request length exceeds the input buffer")?;
+    let timed = timing::requested(j_mode) && reports_timings(&call);
+    let response = direct_buffer::read(env, &j_input, input_len, |input| {
+        ExecutionMode::from_code(j_mode).run_with_input(input, move |input| {
+            let (response, timings) = timing::record(timed, || call_cedar_bytes(&call, input));
+            timing::add_to_json(response, timings)
+        })
+    })?
+    .unwrap_or_else(|e| e);
+
+    let response_len = jint::try_from(response.len())?;
+    if direct_buffer::write(env, &j_output, response.as_bytes())? {
+        return Ok(response_len);
+    }
+    let handle = PENDING_RESPONSES.insert(response);
+    if !direct_buffer::write(env, &j_output, &handle.to_be_bytes())? {
+        PENDING_RESPONSES.remove(handle);
+        return Err("the response buffer cannot hold a response handle".into());
+    }
+    Ok(-response_len)
+}
+
+/// JNI entry point that writes a response kept by [`callCedarJNIBuffer`] to
+/// the start of the direct buffer `j_output` and releases it, returning its
+/// length. A null `j_output` only releases the response.
+#[jni_fn("com.cedarpolicy.BasicAuthorizationEngine")]
+pub fn takeCedarJNIResponse<'a>(
+    mut env: JNIEnv<'a>,
+    _class: JClass<'a>,
+    handle: jlong,
+    j_output: JByteBuffer<'a>,
+) -> jint {
+    match take_response_internal(&mut env, handle, j_output) {
+        Ok(len) => len,
+        Err(e) => {
+            jni_failed(&mut env, e.as_ref());
+            0
+        }
+    }
+}
+
+fn take_response_internal<'a>(
+    env: &mut JNIEnv<'a>,
+    handle: jlong,
+    j_output: JByteBuffer<'a>,
+) -> Result<jint> {
+    let response = PENDING_RESPONSES.take(handle)?;
+    if j_output.is_null() {
+        return Ok(0);
+    }
+    if !direct_buffer::write(env, &j_output, response.as_bytes())? {
+        return Err("the response buffer is too small for the response".into());
+    }
+    Ok(jint::try_from(response.len())?)
+}
+
+/// Whether the response of `call` can carry timings. Only authorization
+/// responses do: Java parses them with a deserializer that expects them,
+/// whereas other responses are bound strictly.
+fn reports_timings(call: &str) -> bool {
+    matches!(call, V0_AUTH_OP | V0_AUTH_HANDLE_OP)
+}
+
+/// [`call_cedar`] on a request that has not been checked to be UTF-8 yet
+fn call_cedar_bytes(call: &str, input: &[u8]) -> String {
+    match std::str::from_utf8(input) {
+        Ok(input) => call_cedar(call, input),
+        Err(e) => serde_json::to_string(&Answer::fail_bad_request(vec![format!(
+            "request is not valid UTF-8: {e}"
+        )]))
+        .expect("could not serialise response"),
+    }
+}
+
 /// JNI entry point to get the Cedar version
 #[jni_fn("com.cedarpolicy.BasicAuthorizationEngine")]
 pub fn getCedarJNIVersion(env: JNIEnv<'_>) -> jstring {
@@ -120,6 +286,9 @@ pub(crate) fn call_cedar(call: &str, input: &str) -> String {
         V0_AUTH_PARTIAL_OP => is_authorized_partial_json_str(input),
         V0_VALIDATE_OP => validate_json_str(input),
         V0_VALIDATE_ENTITIES => json_validate_entities(&input),
+        V0_AUTH_HANDLE_OP => handles::json_is_authorized_with_handles(input),
+        V0_VALIDATE_HANDLE_OP => handles::json_validate_with_handles(input),
+        V0_AUTH_BATCH_OP => handles::json_is_authorized_batch(input),
         _ => {
             let ires = Answer::fail_internally(format!("unsupported operation: {}", call));
             serde_json::to_string(&ires)
@@ -130,9 +299,64 @@ pub(crate) fn call_cedar(call: &str, input: &str) -> String {
     })
 }
 
+/// Like [`call_cedar`], but for CBOR input and output. Every operation
+/// decodes its CBOR input straight into the call it expects and encodes its
+/// answer straight to CBOR, without going through JSON text.
+pub(crate) fn call_cedar_binary(call: &str, input: &[u8]) -> Vec<u8> {
+    match call {
+        V0_AUTH_OP => from_cbor(input, is_authorized),
+        #[cfg(feature = "partial-eval")]
+        V0_AUTH_PARTIAL_OP => from_cbor(input, is_authorized_partial),
+        V0_VALIDATE_OP => from_cbor(input, validate),
+        V0_VALIDATE_ENTITIES => from_cbor(input, validate_entity_call),
+        V0_AUTH_HANDLE_OP => to_cbor(&handles::is_authorized_with_handles(timing::parse(
+            || ciborium::from_reader(input),
+        ))),
+        V0_AUTH_BATCH_OP => to_cbor(&handles::is_authorized_batch(ciborium::from_reader(input))),
+        V0_VALIDATE_HANDLE_OP => to_cbor(&handles::validate_with_handles(ciborium::from_reader(
+            input,
+        ))),
+        _ => to_cbor(&Answer::fail_internally(format!("unsupported operation: {call}"))),
+    }
+}
+
+/// Decode `input` as the CBOR of a `T` and encode the answer to it
+fn from_cbor<T: DeserializeOwned, R: Serialize>(
+    input: &[u8],
+    answer: impl FnOnce(T) -> R,
+) -> Vec<u8> {
+    match ciborium::from_reader(input) {
+        Ok(call) => to_cbor(&answer(call)),
+        Err(e) => to_cbor(&Answer::fail_internally(format!(
+            "failed to decode CBOR input: {e}"
+        ))),
+    }
+}
+
+/// Encode `value` to CBOR, with the timings so far if the call is recorded
+fn to_cbor(value: &impl Serialize) -> Vec<u8> {
+    let mut out = Vec::new();
+    match timing::so_far() {
+        Some(timings) => ciborium::into_writer(
+            &timing::Timed {
+                response: value,
+                timings: Some(timings),
+            },
+            &mut out,
+        ),
+        None => ciborium::into_writer(value, &mut out),
+    }
+    .expect("could not serialise response");
+    out
+}
+
 #[derive(Serialize, Deserialize)]
+#[serde(rename_all = "camelCase")]
 struct ValidateEntityCall {
-    schema: Value,
+    #[serde(default)]
+    schema: Option<Value>,
+    #[serde(default)]
+    schema_handle: Option<i64>,
     entities: Value,
 }
 
@@ -144,26 +368,40 @@ pub fn json_validate_entities(input: &str) -> serde_json::Result<String> {
 /// public string-based JSON interface to be invoked by FFIs. Takes in a `ValidateEntityCall` and (if successful)
 /// returns unit value () which is null value when serialized to json.
 pub fn validate_entities(input: &str) -> serde_json::Result<Answer> {
-    let validate_entity_call = from_str::<ValidateEntityCall>(&input)?;
-    match Schema::from_json_value(validate_entity_call.schema) {
-        Err(e) => Ok(Answer::fail_bad_request(vec![e.to_string()])),
-        Ok(schema) => {
-            match Entities::from_json_value(validate_entity_call.entities, Some(&schema)) {
-                Err(error) => {
-                    let err_message = match error {
-                        EntitiesError::Serialization(err) => err.to_string(),
-                        EntitiesError::Deserialization(err) => err.to_string(),
-                        EntitiesError::Duplicate(err) => err.to_string(),
-                        EntitiesError::TransitiveClosureError(err) => err.to_string(),
-                        EntitiesError::InvalidEntity(err) => err.to_string(),
-                    };
-                    Ok(Answer::fail_bad_request(vec![err_message]))
-                }
-                Ok(_entities) => Ok(Answer::Success {
-                    result: "null".to_string(),
-                }),
-            }
+    Ok(validate_entity_call(from_str::<ValidateEntityCall>(&input)?))
+}
+
+fn validate_entity_call(validate_entity_call: ValidateEntityCall) -> Answer {
+    let (shared_schema, owned_schema) =
+        match (validate_entity_call.schema_handle, validate_entity_call.schema) {
+            (Some(handle), _) => match SCHEMAS.get(handle) {
+                Ok(schema) => (Some(schema), None),
+                Err(e) => return Answer::fail_bad_request(vec![e.to_string()]),
+            },
+            (None, Some(schema)) => match Schema::from_json_value(schema) {
+                Ok(schema) => (None, Some(schema)),
+                Err(e) => return Answer::fail_bad_request(vec![e.to_string()]),
+            },
+            (None, None) => return Answer::fail_bad_request(vec!["missing schema".into()]),
+        };
+    let schema = shared_schema
+        .as_deref()
+        .map(ParsedSchema::schema)
+        .or(owned_schema.as_ref());
+    match Entities::from_json_value(validate_entity_call.entities, schema) {
+        Err(error) => {
+            let err_message = match error {
+                EntitiesError::Serialization(err) => err.to_string(),
+                EntitiesError::Deserialization(err) => err.to_string(),
+                EntitiesError::Duplicate(err) => err.to_string(),
+                EntitiesError::TransitiveClosureError(err) => err.to_string(),
+                EntitiesError::InvalidEntity(err) => err.to_string(),
+            };
+            Answer::fail_bad_request(vec![err_message])
         }
+        Ok(_entities) => Answer::Success {
+            result: "null".to_string(),
+        },
     }
 }
 
@@ -188,7 +426,7 @@ fn jni_failed(env: &mut JNIEnv<'_>, e: &dyn Error) -> jvalue {
     JValueOwned::Object(JObject::null()).as_jni()
 }
 
-/// Public string-based JSON interface to parse a schema in Cedar's JSON format
+/// Parse a schema in Cedar's JSON format and keep it resident, returning its handle
 #[jni_fn("com.cedarpolicy.model.schema.Schema")]
 pub fn parseJsonSchemaJni<'a>(mut env: JNIEnv<'a>, _: JClass, schema_jstr: JString<'a>) -> jvalue {
     match parse_json_schema_internal(&mut env, schema_jstr) {
@@ -197,7 +435,7 @@ pub fn parseJsonSchemaJni<'a>(mut env: JNIEnv<'a>, _: JClass, schema_jstr: JStri
     }
 }
 
-/// public string-based JSON interface to parse a schema in Cedar's cedar-readable format
+/// Parse a schema in Cedar's human-readable format and keep it resident, returning its handle
 #[jni_fn("com.cedarpolicy.model.schema.Schema")]
 pub fn parseCedarSchemaJni<'a>(mut env: JNIEnv<'a>, _: JClass, schema_jstr: JString<'a>) -> jvalue {
     match parse_cedar_schema_internal(&mut env, schema_jstr) {
@@ -215,10 +453,8 @@ fn parse_json_schema_internal<'a>(
     } else {
         let schema_jstring = env.get_string(&schema_jstr)?;
         let schema_string = String::from(schema_jstring);
-        match Schema::from_json_str(&schema_string) {
-            Err(e) => Err(Box::new(e)),
-            Ok(_) => Ok(JValueGen::Object(env.new_string("success")?.into())),
-        }
+        let schema = Schema::from_json_str(&schema_string)?;
+        Ok(JValueGen::Long(SCHEMAS.insert(ParsedSchema::new(schema))))
     }
 }
 
@@ -231,13 +467,17 @@ fn parse_cedar_schema_internal<'a>(
     } else {
         let schema_jstring = env.get_string(&schema_jstr)?;
         let schema_string = String::from(schema_jstring);
-        match Schema::from_cedarschema_str(&schema_string) {
-            Err(e) => Err(Box::new(e)),
-            Ok(_) => Ok(JValueGen::Object(env.new_string("success")?.into())),
-        }
+        let (schema, warnings) = Schema::from_cedarschema_str(&schema_string)?;
+        let parsed = ParsedSchema::with_warnings(schema, handles::detailed(warnings));
+        Ok(JValueGen::Long(SCHEMAS.insert(parsed)))
     }
 }
 
+#[jni_fn("com.cedarpolicy.model.schema.Schema")]
+pub fn releaseSchemaJni(_env: JNIEnv<'_>, _: JClass<'_>, handle: jlong) {
+    SCHEMAS.remove(handle);
+}
+
 #[jni_fn("com.cedarpolicy.model.policy.Policy")]
 pub fn parsePolicyJni<'a>(mut env: JNIEnv<'a>, _: JClass, policy_jstr: JString<'a>) -> jvalue {
     match parse_policy_internal(&mut env, policy_jstr) {
@@ -336,6 +576,145 @@ fn create_java_policy_set<'a>(
     .expect("Failed to create new PolicySet object")
 }
 
+#[jni_fn("com.cedarpolicy.model.policy.CompiledPolicySet")]
+pub fn compilePolicySetJni<'a>(mut env: JNIEnv<'a>, _: JClass, policies_jstr: JString<'a>) -> jvalue {
+    match compile_policy_set_internal(&mut env, policies_jstr) {
+        Err(e) => jni_failed(&mut env, e.as_ref()),
+        Ok(handle) => handle.as_jni(),
+    }
+}
+
+fn compile_policy_set_internal<'a>(
+    env: &mut JNIEnv<'a>,
+    policies_jstr: JString<'a>,
+) -> Result<JValueOwned<'a>> {
+    if policies_jstr.is_null() {
+        raise_npe(env)
+    } else {
+        let policies_jstring = env.get_string(&policies_jstr)?;
+        let policies_string = String::from(policies_jstring);
+        let policy_set = from_str::<JsonPolicySet>(&policies_string)?
+            .parse()
+            .map_err(|e| e.to_string())?;
+        Ok(JValueGen::Long(POLICY_SETS.insert(PolicySetStore::new(policy_set))))
+    }
+}
+
+#[jni_fn("com.cedarpolicy.model.policy.CompiledPolicySet")]
+pub fn updatePolicySetJni<'a>(mut env: JNIEnv<'a>, _: JClass, handle: jlong, changes_jstr: JString<'a>) {
+    if let Err(e) = update_policy_set_internal(&mut env, handle, changes_jstr) {
+        jni_failed(&mut env, e.as_ref());
+    }
+}
+
+fn update_policy_set_internal<'a>(
+    env: &mut JNIEnv<'a>,
+    handle: jlong,
+    changes_jstr: JString<'a>,
+) -> Result<()> {
+    if changes_jstr.is_null() {
+        raise_npe(env).map(|_| ())
+    } else {
+        let changes_jstring = env.get_string(&changes_jstr)?;
+        let changes = from_str::<Value>(&String::from(changes_jstring))?;
+        Ok(POLICY_SETS
+            .get(handle)?
+            .apply(changes)
+            .map_err(|e| e.to_string())?)
+    }
+}
+
+#[jni_fn("com.cedarpolicy.model.policy.CompiledPolicySet")]
+pub fn replacePolicySetJni<'a>(
+    mut env: JNIEnv<'a>,
+    _: JClass,
+    handle: jlong,
+    policies_jstr: JString<'a>,
+) {
+    if let Err(e) = replace_policy_set_internal(&mut env, handle, policies_jstr) {
+        jni_failed(&mut env, e.as_ref());
+    }
+}
+
+fn replace_policy_set_internal<'a>(
+    env: &mut JNIEnv<'a>,
+    handle: jlong,
+    policies_jstr: JString<'a>,
+) -> Result<()> {
+    if policies_jstr.is_null() {
+        raise_npe(env).map(|_| ())
+    } else {
+        let policies_jstring = env.get_string(&policies_jstr)?;
+        let policies_string = String::from(policies_jstring);
+        let policy_set = from_str::<JsonPolicySet>(&policies_string)?
+            .parse()
+            .map_err(|e| e.to_string())?;
+        POLICY_SETS.get(handle)?.replace(policy_set);
+        Ok(())
+    }
+}
+
+#[jni_fn("com.cedarpolicy.model.policy.CompiledPolicySet")]
+pub fn releasePolicySetJni(_env: JNIEnv<'_>, _: JClass<'_>, handle: jlong) {
+    POLICY_SETS.remove(handle);
+}
+
+#[jni_fn("com.cedarpolicy.model.entity.EntityStore")]
+pub fn createEntityStoreJni<'a>(mut env: JNIEnv<'a>, _: JClass, entities_jstr: JString<'a>) -> jvalue {
+    match create_entity_store_internal(&mut env, entities_jstr) {
+        Err(e) => jni_failed(&mut env, e.as_ref()),
+        Ok(handle) => handle.as_jni(),
+    }
+}
+
+fn create_entity_store_internal<'a>(
+    env: &mut JNIEnv<'a>,
+    entities_jstr: JString<'a>,
+) -> Result<JValueOwned<'a>> {
+    if entities_jstr.is_null() {
+        raise_npe(env)
+    } else {
+        let entities_jstring = env.get_string(&entities_jstr)?;
+        let entities = from_str::<Value>(&String::from(entities_jstring))?;
+        let store = EntityStore::new(entities)?;
+        Ok(JValueGen::Long(ENTITY_STORES.insert(store)))
+    }
+}
+
+#[jni_fn("com.cedarpolicy.model.entity.EntityStore")]
+pub fn upsertEntitiesJni<'a>(mut env: JNIEnv<'a>, _: JClass, handle: jlong, entities_jstr: JString<'a>) {
+    if let Err(e) = update_entity_store_internal(&mut env, handle, entities_jstr, EntityStore::upsert) {
+        jni_failed(&mut env, e.as_ref());
+    }
+}
+
+#[jni_fn("com.cedarpolicy.model.entity.EntityStore")]
+pub fn removeEntitiesJni<'a>(mut env: JNIEnv<'a>, _: JClass, handle: jlong, uids_jstr: JString<'a>) {
+    if let Err(e) = update_entity_store_internal(&mut env, handle, uids_jstr, EntityStore::remove) {
+        jni_failed(&mut env, e.as_ref());
+    }
+}
+
+fn update_entity_store_internal<'a>(
+    env: &mut JNIEnv<'a>,
+    handle: jlong,
+    input_jstr: JString<'a>,
+    update: fn(&EntityStore, Value) -> Result<()>,
+) -> Result<()> {
+    if input_jstr.is_null() {
+        raise_npe(env).map(|_| ())
+    } else {
+        let input_jstring = env.get_string(&input_jstr)?;
+        let input = from_str::<Value>(&String::from(input_jstring))?;
+        update(&ENTITY_STORES.get(handle)?, input)
+    }
+}
+
+#[jni_fn("com.cedarpolicy.model.entity.EntityStore")]
+pub fn releaseEntityStoreJni(_env: JNIEnv<'_>, _: JClass<'_>, handle: jlong) {
+    ENTITY_STORES.remove(handle);
+}
+
 #[jni_fn("com.cedarpolicy.model.policy.Policy")]
 pub fn parsePolicyTemplateJni<'a>(
     mut env: JNIEnv<'a>,
@@ -634,6 +1013,63 @@ mod interface_tests {
     // Static JVM to be used by all the tests. LazyLock for thread-safe lazy initialization
     static JVM: LazyLock<JavaVM> = LazyLock::new(|| create_jvm().unwrap());
 
+    mod buffer_tests {
+        use super::*;
+
+        /// A direct buffer allocated by the JVM
+        fn allocate_direct<'a>(env: &mut JNIEnv<'a>, capacity: i32) -> JByteBuffer<'a> {
+            env.call_static_method(
+                "java/nio/ByteBuffer",
+                "allocateDirect",
+                "(I)Ljava/nio/ByteBuffer;",
+                &[JValueGen::Int(capacity)],
+            )
+            .and_then(|buffer| buffer.l())
+            .map(JByteBuffer::from)
+            .unwrap()
+        }
+
+        #[test]
+        fn response_that_does_not_fit_is_kept_instead_of_evaluated_again() {
+            let mut env = JVM.attach_current_thread().unwrap();
+            let input = serde_json::json!({
+                "principal": { "type": "User", "id": "alice" },
+                "action": { "type": "Action", "id": "view" },
+                "resource": { "type": "Photo", "id": "door" },
+                "context": {},
+                "policies": { "staticPolicies": { "p0": "permit(principal, action, resource);" } },
+                "entities": []
+            })
+            .to_string()
+            .into_bytes();
+            let input_len = jint::try_from(input.len()).unwrap();
+            let j_input = allocate_direct(&mut env, input_len);
+            assert!(direct_buffer::write(&mut env, &j_input, &input).unwrap());
+            let j_small = allocate_direct(&mut env, 8);
+            let j_large = allocate_direct(&mut env, 4096);
+
+            let call = env.new_string(V0_AUTH_OP).unwrap();
+            let j_output = JByteBuffer::from(env.new_local_ref(&j_small).unwrap());
+            let len = call_cedar_buffer_internal(&mut env, call, j_input, input_len, j_output, 1)
+                .unwrap();
+            assert!(len < 0, "response of {len} bytes fit in 8 bytes");
+
+            let small = direct_buffer::read(&mut env, &j_small, 8, <[u8]>::to_vec).unwrap();
+            let handle = i64::from_be_bytes(small.try_into().unwrap());
+            let j_output = JByteBuffer::from(env.new_local_ref(&j_large).unwrap());
+            let taken = take_response_internal(&mut env, handle, j_output).unwrap();
+            assert_eq!(taken, -len);
+            let taken = usize::try_from(taken).unwrap();
+            let response = direct_buffer::read(&mut env, &j_large, taken, |response| {
+                String::from_utf8(response.to_vec()).unwrap()
+            })
+            .unwrap();
+            assert!(response.contains(r#""decision":"allow""#), "response was `{response}`");
+            // The response is released once taken
+            assert!(PENDING_RESPONSES.take(handle).is_err());
+        }
+    }
+
     mod policy_tests {
         use super::*;
 
@@ -14,14 +14,30 @@
  * limitations under the License.
  */
 
-#![forbid(unsafe_code)]
+// Unsafe code is confined to `direct_buffer`; every other module forbids it
+#![deny(unsafe_code)]
+#[forbid(unsafe_code)]
 mod answer;
+mod direct_buffer;
+#[forbid(unsafe_code)]
+mod execution;
+#[forbid(unsafe_code)]
+mod handles;
+#[forbid(unsafe_code)]
 mod interface;
+#[forbid(unsafe_code)]
 mod jlist;
+#[forbid(unsafe_code)]
 mod jset;
+#[forbid(unsafe_code)]
 mod jvm_test_utils;
+#[forbid(unsafe_code)]
 mod objects;
+#[forbid(unsafe_code)]
 mod tests;
+#[forbid(unsafe_code)]
+mod timing;
+#[forbid(unsafe_code)]
 mod utils;
 
 pub use interface::*;
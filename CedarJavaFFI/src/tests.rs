@@ -17,7 +17,7 @@
 #![cfg(test)]
 
 use crate::answer::Answer;
-use crate::call_cedar;
+use crate::{call_cedar, call_cedar_binary};
 #[cfg(feature = "partial-eval")]
 use cedar_policy::ffi::PartialAuthorizationAnswer;
 use cedar_policy::ffi::{AuthorizationAnswer, ValidationAnswer};
@@ -657,4 +657,579 @@ mod partial_authorization_tests {
     }
 }
 
+mod handle_authorization_tests {
+    use super::*;
+    use crate::handles::{
+        detailed, EntityStore, JsonPolicySet, ParsedSchema, PolicySetStore, ENTITY_STORES,
+        POLICY_SETS, SCHEMAS,
+    };
+    use cedar_policy::{PolicyId, Schema};
+    use serde_json::json;
+
+    fn compile(policies: &str) -> i64 {
+        let policy_set = serde_json::from_str::<JsonPolicySet>(policies)
+            .unwrap()
+            .parse()
+            .unwrap();
+        POLICY_SETS.insert(PolicySetStore::new(policy_set))
+    }
+
+    fn authorize(handle: i64, principal: &str) -> String {
+        call_cedar(
+            "AuthorizationHandleOperation",
+            &format!(
+                r#"
+    {{
+        "principal" : {{ "type" : "User", "id" : "{principal}" }},
+        "action" : {{ "type" : "Action", "id" : "view" }},
+        "resource" : {{ "type" : "Photo", "id" : "door" }},
+        "context": {{}},
+        "validateRequest": false,
+        "policySetHandle": {handle},
+        "entities": []
+    }}
+    "#
+            ),
+        )
+    }
+
+    #[test]
+    fn compiled_policy_set_is_reused() {
+        let handle = compile(
+            r#"
+    {
+        "staticPolicies": {
+            "001": "permit(principal == User::\"alice\", action, resource);"
+        },
+        "templates": {
+            "ID0": "permit(principal == ?principal, action, resource);"
+        },
+        "templateLinks": [
+            {
+                "templateId": "ID0",
+                "newId": "ID0_User_bob",
+                "values": { "?principal": { "type": "User", "id": "bob" } }
+            }
+        ]
+    }
+    "#,
+        );
+        for principal in ["alice", "bob"] {
+            let result = authorize(handle, principal);
+            assert!(result.contains(r#""type":"success""#), "result was `{result}`");
+            assert!(result.contains(r#""decision":"allow""#), "result was `{result}`");
+        }
+        let result = authorize(handle, "eve");
+        assert!(result.contains(r#""decision":"deny""#), "result was `{result}`");
+        assert!(POLICY_SETS.remove(handle));
+    }
+
+    #[test]
+    fn released_handle_fails() {
+        let handle = compile("{}");
+        assert!(POLICY_SETS.remove(handle));
+        let result = authorize(handle, "alice");
+        assert!(result.contains(r#""type":"failure""#), "result was `{result}`");
+    }
+
+    #[test]
+    fn policy_set_updates_are_visible() {
+        let handle = compile(
+            r#"
+    {
+        "staticPolicies": {
+            "001": "permit(principal == User::\"alice\", action, resource);"
+        },
+        "templates": {
+            "ID0": "permit(principal == ?principal, action, resource);"
+        }
+    }
+    "#,
+        );
+        let policies = POLICY_SETS.get(handle).unwrap();
+        let before = policies.snapshot();
+        policies
+            .apply(json!([
+                { "op": "removePolicy", "id": "001" },
+                {
+                    "op": "addPolicy",
+                    "id": "001",
+                    "source": "permit(principal == User::\"eve\", action, resource);"
+                },
+                {
+                    "op": "link",
+                    "link": {
+                        "templateId": "ID0",
+                        "newId": "ID0_User_bob",
+                        "values": { "?principal": { "type": "User", "id": "bob" } }
+                    }
+                }
+            ]))
+            .unwrap();
+        for (principal, decision) in [("alice", "deny"), ("bob", "allow"), ("eve", "allow")] {
+            let result = authorize(handle, principal);
+            assert!(
+                result.contains(&format!(r#""decision":"{decision}""#)),
+                "result was `{result}`"
+            );
+        }
+        // Requests already holding the previous policy set are unaffected
+        assert_eq!(before.policies().count(), 1);
+
+        policies.apply(json!([{ "op": "unlink", "id": "ID0_User_bob" }])).unwrap();
+        let result = authorize(handle, "bob");
+        assert!(result.contains(r#""decision":"deny""#), "result was `{result}`");
+        assert!(POLICY_SETS.remove(handle));
+    }
+
+    #[test]
+    fn failed_policy_set_update_leaves_policy_set_unchanged() {
+        let handle = compile("{}");
+        let policies = POLICY_SETS.get(handle).unwrap();
+        let result = policies.apply(json!([
+            { "op": "addPolicy", "id": "001", "source": "permit(principal, action, resource);" },
+            { "op": "removeTemplate", "id": "missing" }
+        ]));
+        assert!(result.is_err());
+        assert!(policies.apply(json!([{ "op": "rename" }])).is_err());
+        assert_eq!(policies.snapshot().policies().count(), 0);
+        assert!(POLICY_SETS.remove(handle));
+    }
+
+    #[test]
+    fn successive_policy_set_updates_are_all_visible() {
+        let handle = compile("{}");
+        let policies = POLICY_SETS.get(handle).unwrap();
+        // Each update after the first is made to the previous snapshot, once
+        // the update it lacks has been replayed
+        for principal in ["alice", "bob", "eve"] {
+            let source = format!("permit(principal == User::\"{principal}\", action, resource);");
+            policies
+                .apply(json!([{ "op": "addPolicy", "id": principal, "source": source }]))
+                .unwrap();
+        }
+        policies.apply(json!([{ "op": "removePolicy", "id": "bob" }])).unwrap();
+        for (principal, decision) in [("alice", "allow"), ("bob", "deny"), ("eve", "allow")] {
+            let result = authorize(handle, principal);
+            assert!(
+                result.contains(&format!(r#""decision":"{decision}""#)),
+                "result was `{result}`"
+            );
+        }
+        assert_eq!(policies.snapshot().policies().count(), 2);
+        assert!(POLICY_SETS.remove(handle));
+    }
+
+    #[test]
+    fn replaced_policy_set_keeps_its_handle() {
+        let handle = compile(
+            r#"
+    {
+        "staticPolicies": {
+            "001": "permit(principal == User::\"alice\", action, resource);"
+        }
+    }
+    "#,
+        );
+        let policies = POLICY_SETS.get(handle).unwrap();
+        let before = policies.snapshot();
+        policies.replace(
+            serde_json::from_value::<JsonPolicySet>(json!({
+                "staticPolicies": {
+                    "002": "permit(principal == User::\"bob\", action, resource);"
+                }
+            }))
+            .unwrap()
+            .parse()
+            .unwrap(),
+        );
+        for (principal, decision) in [("alice", "deny"), ("bob", "allow")] {
+            let result = authorize(handle, principal);
+            assert!(
+                result.contains(&format!(r#""decision":"{decision}""#)),
+                "result was `{result}`"
+            );
+        }
+        // Requests already holding the previous policy set are unaffected
+        assert!(before.policy(&PolicyId::new("001")).is_some());
+
+        // Updates after a replacement start from the new policy set
+        policies.apply(json!([{ "op": "removePolicy", "id": "002" }])).unwrap();
+        let result = authorize(handle, "bob");
+        assert!(result.contains(r#""decision":"deny""#), "result was `{result}`");
+        assert!(POLICY_SETS.remove(handle));
+    }
+
+    fn authorize_with_store(store: i64, principal: &str) -> String {
+        call_cedar(
+            "AuthorizationHandleOperation",
+            &format!(
+                r#"
+    {{
+        "principal" : {{ "type" : "User", "id" : "{principal}" }},
+        "action" : {{ "type" : "Action", "id" : "view" }},
+        "resource" : {{ "type" : "Photo", "id" : "door" }},
+        "context": {{}},
+        "validateRequest": false,
+        "policies": {{
+            "staticPolicies": {{
+                "001": "permit(principal in Group::\"admins\", action, resource);"
+            }}
+        }},
+        "entityStoreHandle": {store}
+    }}
+    "#
+            ),
+        )
+    }
+
+    #[test]
+    fn entity_store_updates_are_visible() {
+        let store = ENTITY_STORES.insert(
+            EntityStore::new(json!([
+                { "uid": { "type": "Group", "id": "admins" }, "attrs": {}, "parents": [] },
+                { "uid": { "type": "User", "id": "alice" }, "attrs": {}, "parents": [] }
+            ]))
+            .unwrap(),
+        );
+        let result = authorize_with_store(store, "alice");
+        assert!(result.contains(r#""decision":"deny""#), "result was `{result}`");
+
+        ENTITY_STORES
+            .get(store)
+            .unwrap()
+            .upsert(json!([{
+                "uid": { "type": "User", "id": "alice" },
+                "attrs": {},
+                "parents": [{ "type": "Group", "id": "admins" }]
+            }]))
+            .unwrap();
+        let result = authorize_with_store(store, "alice");
+        assert!(result.contains(r#""decision":"allow""#), "result was `{result}`");
+
+        ENTITY_STORES
+            .get(store)
+            .unwrap()
+            .remove(json!([{ "type": "User", "id": "alice" }]))
+            .unwrap();
+        let result = authorize_with_store(store, "alice");
+        assert!(result.contains(r#""decision":"deny""#), "result was `{result}`");
+        assert!(ENTITY_STORES.remove(store));
+    }
+
+    #[test]
+    fn failed_entity_store_update_leaves_store_unchanged() {
+        let entities = ENTITY_STORES.insert(EntityStore::new(json!([])).unwrap());
+        let store = ENTITY_STORES.get(entities).unwrap();
+        assert!(store.upsert(json!([{ "uid": "not a uid" }])).is_err());
+        assert!(store.upsert(json!({})).is_err());
+        assert_eq!(store.snapshot().iter().count(), 0);
+        assert!(ENTITY_STORES.remove(entities));
+    }
+
+    fn uids(entities: &cedar_policy::Entities) -> Vec<String> {
+        let mut uids: Vec<String> = entities.iter().map(|e| e.uid().to_string()).collect();
+        uids.sort();
+        uids
+    }
+
+    #[test]
+    fn entity_store_updates_are_replayed_on_the_spare() {
+        let user = |id: &str| {
+            json!({ "uid": { "type": "User", "id": id }, "attrs": {}, "parents": [] })
+        };
+        let store = EntityStore::new(json!([])).unwrap();
+        let held = store.snapshot();
+        for id in ["a", "b", "c"] {
+            store.upsert(json!([user(id)])).unwrap();
+        }
+        store.remove(json!([{ "type": "User", "id": "b" }])).unwrap();
+        // A snapshot taken before the updates does not see them
+        assert_eq!(uids(&held), Vec::<String>::new());
+        drop(held);
+        store.upsert(json!([user("d")])).unwrap();
+        assert_eq!(uids(&store.snapshot()), [r#"User::"a""#, r#"User::"c""#, r#"User::"d""#]);
+
+        // A cycle fails the update, which loses the spare but not the entities
+        let group = |id: &str, parent: &str| {
+            json!({
+                "uid": { "type": "Group", "id": id },
+                "attrs": {},
+                "parents": [{ "type": "Group", "id": parent }]
+            })
+        };
+        store.upsert(json!([group("x", "y")])).unwrap();
+        assert!(store.upsert(json!([group("y", "x")])).is_err());
+        store.remove(json!([{ "type": "User", "id": "a" }])).unwrap();
+        let expected = [r#"Group::"x""#, r#"User::"c""#, r#"User::"d""#];
+        assert_eq!(uids(&store.snapshot()), expected);
+    }
+
+    const SCHEMA: &str =
+        "entity User; entity Photo; action view appliesTo { principal: User, resource: Photo };";
+
+    fn parsed_schema() -> i64 {
+        let (schema, warnings) = Schema::from_cedarschema_str(SCHEMA).unwrap();
+        SCHEMAS.insert(ParsedSchema::with_warnings(schema, detailed(warnings)))
+    }
+
+    #[test]
+    fn parsed_schema_is_used_for_validation() {
+        let schema = parsed_schema();
+        let validate = |policy: &str| {
+            call_cedar(
+                "ValidateHandleOperation",
+                &json!({
+                    "schemaHandle": schema,
+                    "policies": { "staticPolicies": { "p0": policy } }
+                })
+                .to_string(),
+            )
+        };
+        let result = validate(r#"permit(principal == User::"alice", action, resource);"#);
+        assert!(result.contains(r#""validationErrors":[]"#), "result was `{result}`");
+        let result = validate(r#"permit(principal == Photo::"alice", action, resource);"#);
+        assert!(result.contains(r#""policyId":"p0""#), "result was `{result}`");
+        assert!(SCHEMAS.remove(schema));
+    }
+
+    #[test]
+    fn parsed_schema_is_used_for_entity_validation() {
+        let schema = parsed_schema();
+        let validate = |entity_type: &str| {
+            call_cedar(
+                "ValidateEntities",
+                &json!({
+                    "schemaHandle": schema,
+                    "entities": [{ "uid": { "type": entity_type, "id": "a" }, "attrs": {}, "parents": [] }]
+                })
+                .to_string(),
+            )
+        };
+        let result = validate("User");
+        assert!(result.contains(r#""success":"true""#), "result was `{result}`");
+        let result = validate("Unknown");
+        assert!(result.contains(r#""success":"false""#), "result was `{result}`");
+        assert!(SCHEMAS.remove(schema));
+    }
+
+    #[test]
+    fn parsed_schema_is_used_for_request_validation() {
+        let schema = parsed_schema();
+        let policies = compile(r#"{ "staticPolicies": { "p0": "permit(principal, action, resource);" } }"#);
+        let authorize = |resource_type: &str| {
+            call_cedar(
+                "AuthorizationHandleOperation",
+                &json!({
+                    "principal": { "type": "User", "id": "alice" },
+                    "action": { "type": "Action", "id": "view" },
+                    "resource": { "type": resource_type, "id": "a" },
+                    "context": {},
+                    "schemaHandle": schema,
+                    "validateRequest": true,
+                    "policySetHandle": policies,
+                })
+                .to_string(),
+            )
+        };
+        let result = authorize("Photo");
+        assert!(result.contains(r#""decision":"allow""#), "result was `{result}`");
+        let result = authorize("User");
+        assert!(result.contains(r#""type":"failure""#), "result was `{result}`");
+        assert!(SCHEMAS.remove(schema));
+        assert!(POLICY_SETS.remove(policies));
+    }
+
+    fn answer(call: &str, input: &serde_json::Value) -> serde_json::Value {
+        serde_json::from_str(&call_cedar(call, &input.to_string())).unwrap()
+    }
+
+    #[test]
+    fn handle_authorization_reports_the_same_errors_as_ffi() {
+        let mut request = json!({
+            "principal": { "type": "User", "id": "alice" },
+            "action": { "type": "Action", "id": "view" },
+            "resource": { "type": "Photo", "id": "door" },
+            "context": {},
+            "policies": {
+                "staticPolicies": { "p0": "permit(principal, action, resource) when { principal.level > 3 };" }
+            },
+            "entities": [{ "uid": { "type": "User", "id": "alice" }, "attrs": {}, "parents": [] }]
+        });
+        let expected = answer("AuthorizationOperation", &request);
+        let actual = answer("AuthorizationHandleOperation", &request);
+        assert_eq!(expected, actual);
+        let errors = &actual["response"]["diagnostics"]["errors"];
+        assert_eq!(errors[0]["policyId"], "p0", "result was `{actual}`");
+
+        request["principal"] = json!("not a uid");
+        let actual = answer("AuthorizationHandleOperation", &request);
+        assert_eq!(actual["type"], "failure", "result was `{actual}`");
+        assert!(actual["errors"][0]["message"].is_string(), "result was `{actual}`");
+    }
+
+    #[test]
+    fn handle_validation_reports_the_same_errors_as_ffi() {
+        let schema = parsed_schema();
+        let policies = json!({
+            "staticPolicies": {
+                "p0": "permit(principal == Photo::\"alice\", action == Action::\"view\", resource);"
+            }
+        });
+        let expected = answer(
+            "ValidateOperation",
+            &json!({ "schema": SCHEMA, "policies": policies }),
+        );
+        let actual = answer(
+            "ValidateHandleOperation",
+            &json!({ "schemaHandle": schema, "policies": policies }),
+        );
+        assert_eq!(expected, actual);
+        let error = &actual["validationErrors"][0]["error"];
+        assert!(
+            error["sourceLocations"].as_array().is_some_and(|l| !l.is_empty()),
+            "result was `{actual}`"
+        );
+
+        let actual = answer(
+            "ValidateHandleOperation",
+            &json!({
+                "validationSettings": { "mode": "strict" },
+                "schemaHandle": schema,
+                "policies": policies
+            }),
+        );
+        assert_eq!(expected, actual);
+        assert!(SCHEMAS.remove(schema));
+    }
+
+    #[test]
+    fn batch_answers_each_request_in_order() {
+        let query = |principal: &str| {
+            json!({
+                "principal": { "type": "User", "id": principal },
+                "action": { "type": "Action", "id": "view" },
+                "resource": { "type": "Photo", "id": "door" },
+                "context": {}
+            })
+        };
+        let result = call_cedar(
+            "AuthorizationBatchOperation",
+            &json!({
+                "requests": [query("alice"), query("bob"), query("alice")],
+                "policies": {
+                    "staticPolicies": { "p0": "permit(principal == User::\"alice\", action, resource);" }
+                },
+                "entities": []
+            })
+            .to_string(),
+        );
+        let answers: Vec<serde_json::Value> = serde_json::from_str(&result).unwrap();
+        let decisions: Vec<_> = answers
+            .iter()
+            .map(|a| a["response"]["decision"].as_str().unwrap())
+            .collect();
+        assert_eq!(decisions, ["allow", "deny", "allow"]);
+    }
+
+    #[test]
+    fn batch_with_invalid_policies_fails_every_request() {
+        let result = call_cedar(
+            "AuthorizationBatchOperation",
+            &json!({
+                "requests": [
+                    { "principal": { "type": "User", "id": "alice" }, "action": { "type": "Action", "id": "view" }, "resource": { "type": "Photo", "id": "door" } },
+                    { "principal": { "type": "User", "id": "bob" }, "action": { "type": "Action", "id": "view" }, "resource": { "type": "Photo", "id": "door" } }
+                ],
+                "policies": { "staticPolicies": { "p0": "permit(" } }
+            })
+            .to_string(),
+        );
+        let answers: Vec<serde_json::Value> = serde_json::from_str(&result).unwrap();
+        assert_eq!(answers.len(), 2);
+        assert!(answers.iter().all(|a| a["type"] == "failure"), "result was `{result}`");
+    }
+
+    #[test]
+    fn malformed_batch_fails_with_the_decoding_error() {
+        let result = call_cedar(
+            "AuthorizationBatchOperation",
+            r#"{ "requests": [{ "principal": { "type": "User", "id": "alice" } }] }"#,
+        );
+        let answers: Vec<serde_json::Value> = serde_json::from_str(&result).unwrap();
+        assert_eq!(answers.len(), 1, "result was `{result}`");
+        assert_eq!(answers[0]["type"], "failure", "result was `{result}`");
+        let message = answers[0]["errors"][0]["message"].as_str().unwrap();
+        assert!(message.contains("action"), "result was `{result}`");
+
+        let answers: Vec<serde_json::Value> = ciborium::from_reader(
+            call_cedar_binary("AuthorizationBatchOperation", &[0xff, 0x00]).as_slice(),
+        )
+        .unwrap();
+        assert_eq!(answers.len(), 1);
+        assert_eq!(answers[0]["type"], "failure");
+    }
+
+    fn cbor(value: &serde_json::Value) -> Vec<u8> {
+        let mut out = Vec::new();
+        ciborium::into_writer(value, &mut out).unwrap();
+        out
+    }
+
+    #[test]
+    fn binary_calls_match_json_calls() {
+        let request = json!({
+            "principal": { "type": "User", "id": "alice" },
+            "action": { "type": "Action", "id": "view" },
+            "resource": { "type": "Photo", "id": "door" },
+            "context": {},
+            "policies": {
+                "staticPolicies": { "p0": "permit(principal == User::\"alice\", action, resource);" }
+            },
+            "entities": []
+        });
+        let validation = json!({
+            "schema": SCHEMA,
+            "policies": {
+                "staticPolicies": { "p0": "permit(principal == Photo::\"alice\", action, resource);" }
+            }
+        });
+        let entities = json!({
+            "schema": { "": { "entityTypes": { "User": {} }, "actions": {} } },
+            "entities": [{ "uid": { "type": "User", "id": "alice" }, "attrs": {}, "parents": [] }]
+        });
+        for (call, request) in [
+            ("AuthorizationOperation", &request),
+            ("AuthorizationHandleOperation", &request),
+            ("ValidateOperation", &validation),
+            ("ValidateEntities", &entities),
+        ] {
+            let expected: serde_json::Value =
+                serde_json::from_str(&call_cedar(call, &request.to_string())).unwrap();
+            let actual: serde_json::Value =
+                ciborium::from_reader(call_cedar_binary(call, &cbor(request)).as_slice()).unwrap();
+            assert_eq!(expected, actual, "call {call}");
+        }
+    }
+
+    #[test]
+    fn undecodable_binary_call_fails() {
+        let result: serde_json::Value = ciborium::from_reader(
+            call_cedar_binary("AuthorizationOperation", &[0xff, 0x00]).as_slice(),
+        )
+        .unwrap();
+        assert_eq!(result["success"], "false", "result was `{result}`");
+    }
+
+    #[test]
+    fn invalid_policy_fails_to_compile() {
+        let result = serde_json::from_str::<JsonPolicySet>(
+            r#"{ "staticPolicies": { "001": "permit(principal, action" } }"#,
+        )
+        .unwrap()
+        .parse();
+        assert!(result.is_err());
+    }
+}
+
 mod parsing_tests {}
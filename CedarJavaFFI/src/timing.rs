@@ -0,0 +1,232 @@
+/*
+ * Copyright Cedar Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+//! Timings of the native part of a call, reported back to Java when the
+//! engine measures its calls (`com.cedarpolicy.metrics.NativeTimings`).
+//!
+//! A call is recorded by [`record`] on the thread that runs it. The stages of
+//! the call add their time with [`parse`] and [`evaluate`], which do nothing
+//! when the call is not recorded. A CBOR response encoded during the call
+//! gets the timings so far through [`so_far`], in that same encoding.
+
+use std::{
+    cell::Cell,
+    time::{Duration, Instant},
+};
+
+use serde::Serialize;
+
+/// Bit Java adds to the execution mode code to ask for timings
+pub(crate) const TIMINGS_FLAG: i32 = 0x100;
+
+/// Time spent on a call. Parsing and evaluation are only known for calls
+/// that go through [`parse`] and [`evaluate`].
+#[derive(Debug, Default, Clone, Copy, PartialEq, Eq, Serialize)]
+#[serde(rename_all = "camelCase")]
+pub(crate) struct Timings {
+    #[serde(skip_serializing_if = "Option::is_none")]
+    pub parse_nanos: Option<u64>,
+    #[serde(skip_serializing_if = "Option::is_none")]
+    pub evaluation_nanos: Option<u64>,
+    pub total_nanos: u64,
+}
+
+/// A call being recorded
+#[derive(Debug, Clone, Copy)]
+struct Recording {
+    start: Instant,
+    timings: Timings,
+}
+
+thread_local! {
+    /// The call being recorded on this thread, if any
+    static CURRENT: Cell<Option<Recording>> = const { Cell::new(None) };
+}
+
+/// Whether the execution mode code sent by Java asks for timings
+pub(crate) fn requested(code: i32) -> bool {
+    code & TIMINGS_FLAG != 0
+}
+
+/// Run `call`, and if `enabled`, return the time spent in it and its stages
+pub(crate) fn record<T>(enabled: bool, call: impl FnOnce() -> T) -> (T, Option<Timings>) {
+    if !enabled {
+        return (call(), None);
+    }
+    let start = Instant::now();
+    let recording = Recording {
+        start,
+        timings: Timings::default(),
+    };
+    let restore = Restore(CURRENT.with(|current| current.replace(Some(recording))));
+    let result = call();
+    let total_nanos = nanos(start.elapsed());
+    let timings = CURRENT
+        .with(Cell::get)
+        .map_or_else(Timings::default, |recording| recording.timings);
+    drop(restore);
+    (
+        result,
+        Some(Timings {
+            total_nanos,
+            ..timings
+        }),
+    )
+}
+
+/// Puts back the recording that was current before [`record`], also when the
+/// recorded call panics
+struct Restore(Option<Recording>);
+
+impl Drop for Restore {
+    fn drop(&mut self) {
+        CURRENT.with(|current| current.set(self.0.take()));
+    }
+}
+
+/// The timings of the call being recorded on this thread, if any, with its
+/// total so far
+pub(crate) fn so_far() -> Option<Timings> {
+    CURRENT.with(Cell::get).map(|recording| Timings {
+        total_nanos: nanos(recording.start.elapsed()),
+        ..recording.timings
+    })
+}
+
+/// Run a parsing stage of the current call
+pub(crate) fn parse<T>(stage: impl FnOnce() -> T) -> T {
+    measure(stage, |timings, nanos| {
+        timings.parse_nanos = Some(timings.parse_nanos.unwrap_or(0) + nanos)
+    })
+}
+
+/// Run an evaluation stage of the current call
+pub(crate) fn evaluate<T>(stage: impl FnOnce() -> T) -> T {
+    measure(stage, |timings, nanos| {
+        timings.evaluation_nanos = Some(timings.evaluation_nanos.unwrap_or(0) + nanos)
+    })
+}
+
+fn measure<T>(stage: impl FnOnce() -> T, add: impl FnOnce(&mut Timings, u64)) -> T {
+    if CURRENT.with(|current| current.get().is_none()) {
+        return stage();
+    }
+    let start = Instant::now();
+    let result = stage();
+    let elapsed = nanos(start.elapsed());
+    CURRENT.with(|current| {
+        if let Some(mut recording) = current.get() {
+            add(&mut recording.timings, elapsed);
+            current.set(Some(recording));
+        }
+    });
+    result
+}
+
+fn nanos(duration: Duration) -> u64 {
+    u64::try_from(duration.as_nanos()).unwrap_or(u64::MAX)
+}
+
+/// Add `timings` to a JSON object response as its `timings` field
+pub(crate) fn add_to_json(mut response: String, timings: Option<Timings>) -> String {
+    let Some(timings) = timings else {
+        return response;
+    };
+    if response.len() > 2 && response.ends_with('}') {
+        if let Ok(timings) = serde_json::to_string(&timings) {
+            response.pop();
+            response.push_str(",\"timings\":");
+            response.push_str(&timings);
+            response.push('}');
+        }
+    }
+    response
+}
+
+/// A response with the timings of its call added as its `timings` field, for
+/// encodings that write the response once. The response must serialize as a
+/// map, such as a struct or an internally tagged enum.
+#[derive(Serialize)]
+pub(crate) struct Timed<'a, T> {
+    #[serde(flatten)]
+    pub response: &'a T,
+    #[serde(skip_serializing_if = "Option::is_none")]
+    pub timings: Option<Timings>,
+}
+
+#[cfg(test)]
+mod test {
+    use super::*;
+
+    #[test]
+    fn stages_are_only_timed_while_recording() {
+        assert_eq!(parse(|| 1), 1);
+        let (result, timings) = record(false, || parse(|| 2));
+        assert_eq!(result, 2);
+        assert_eq!(timings, None);
+
+        let (result, timings) = record(true, || parse(|| 3) + evaluate(|| 4) + evaluate(|| 5));
+        assert_eq!(result, 12);
+        let timings = timings.expect("timings were requested");
+        assert!(timings.parse_nanos.is_some());
+        assert!(timings.evaluation_nanos.is_some());
+        assert!(timings.total_nanos >= timings.parse_nanos.unwrap());
+        assert!(CURRENT.with(Cell::get).is_none());
+    }
+
+    #[test]
+    fn timings_are_added_to_object_responses() {
+        let timings = Some(Timings {
+            parse_nanos: None,
+            evaluation_nanos: None,
+            total_nanos: 7,
+        });
+        assert_eq!(
+            add_to_json(r#"{"type":"success"}"#.to_string(), timings),
+            r#"{"type":"success","timings":{"totalNanos":7}}"#
+        );
+        assert_eq!(add_to_json("[]".to_string(), timings), "[]");
+        assert_eq!(add_to_json("{}".to_string(), None), "{}");
+
+        let response = serde_json::json!({ "type": "success" });
+        let mut cbor = Vec::new();
+        let timed = Timed {
+            response: &response,
+            timings,
+        };
+        ciborium::into_writer(&timed, &mut cbor).unwrap();
+        let decoded: serde_json::Value = ciborium::from_reader(cbor.as_slice()).unwrap();
+        assert_eq!(
+            decoded,
+            serde_json::json!({ "type": "success", "timings": { "totalNanos": 7 } })
+        );
+    }
+
+    #[test]
+    fn timings_so_far_are_only_known_while_recording() {
+        assert_eq!(so_far(), None);
+        let (timings, recorded) = record(true, || parse(so_far));
+        let timings = timings.expect("the call is recorded");
+        assert_eq!(timings.parse_nanos, None);
+        assert!(timings.total_nanos <= recorded.unwrap().total_nanos);
+        assert_eq!(so_far(), None);
+
+        let panicked = std::panic::catch_unwind(|| record(true, || panic!("call failed")));
+        assert!(panicked.is_err());
+        assert_eq!(so_far(), None);
+    }
+}